@@ -99,7 +99,7 @@ public class FhirGroupMemberService_2_1Test {
 		when(translator.toFhirResource(cohortMembership)).thenReturn(groupMember);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = groupMemberService.getGroupMembers(GROUP_MEMBER_UUID);
 		
@@ -30,6 +30,7 @@ import org.openmrs.annotation.Authorized;
 import org.openmrs.annotation.OpenmrsProfile;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirConditionDao;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.stereotype.Component;
@@ -69,6 +70,30 @@ public class FhirConditionDaoImpl_2_2 extends BaseFhirDao<Condition> implements
 		return super.getSearchResults(theParams, resourceIds);
 	}
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return super.getSearchResultIds(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultCount(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount) {
+		return super.getSearchResultCount(theParams, maxCount);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONDITIONS)
+	public List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count) {
+		return super.getSearchResultKeys(theParams, after, count);
+	}
+	
 	private ConditionClinicalStatus convertStatus(String status) {
 		if ("active".equalsIgnoreCase(status)) {
 			return ConditionClinicalStatus.ACTIVE;
@@ -25,6 +25,7 @@ import org.openmrs.annotation.Authorized;
 import org.openmrs.annotation.OpenmrsProfile;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirMedicationDispenseDao;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.stereotype.Component;
@@ -65,6 +66,30 @@ public class FhirMedicationDispenseDaoImpl_2_6 extends BaseFhirDao<MedicationDis
 		return super.getSearchResults(theParams, resourceIds);
 	}
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_MEDICATION_DISPENSE)
+	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return super.getSearchResultIds(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_MEDICATION_DISPENSE)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultCount(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_MEDICATION_DISPENSE)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount) {
+		return super.getSearchResultCount(theParams, maxCount);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_MEDICATION_DISPENSE)
+	public List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count) {
+		return super.getSearchResultKeys(theParams, after, count);
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		theParams.getParameters().forEach(entry -> {
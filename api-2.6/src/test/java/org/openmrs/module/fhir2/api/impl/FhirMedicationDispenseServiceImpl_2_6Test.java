@@ -237,7 +237,7 @@ public class FhirMedicationDispenseServiceImpl_2_6Test {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(openmrsDispense));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(openmrsDispense)).thenReturn(fhirDispense);
 		
 		MedicationDispenseSearchParams params = new MedicationDispenseSearchParams();
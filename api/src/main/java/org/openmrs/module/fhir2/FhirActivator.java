@@ -28,6 +28,8 @@ import ca.uhn.fhir.rest.server.IResourceProvider;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleException;
 import org.openmrs.module.ModuleFactory;
@@ -48,11 +50,15 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware {
+public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware, DaemonTokenAware {
 	
 	@Getter
 	private static ConfigurableApplicationContext applicationContext;
 	
+	// allows background work, such as bulk exports, to run in its own authenticated context
+	@Getter
+	private static DaemonToken daemonToken;
+	
 	private final Map<String, Set<Class<?>>> services = new HashMap<>();
 	
 	private final List<ModuleLifecycleListener> lifecycleListeners = new ArrayList<>();
@@ -123,6 +129,11 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		}
 	}
 	
+	@Override
+	public void setDaemonToken(DaemonToken token) {
+		FhirActivator.daemonToken = token;
+	}
+	
 	protected void loadModules() {
 		ModuleFactory.getLoadedModules().stream()
 		        // only try to load services from modules that have the FHIR2 module available on their ModuleClasspath
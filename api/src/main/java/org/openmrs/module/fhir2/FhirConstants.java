@@ -116,6 +116,38 @@ public class FhirConstants {
 	
 	public static final String OPENMRS_FHIR_MAXIMUM_PAGE_SIZE = "fhir2.paging.maximum";
 	
+	public static final String OPENMRS_FHIR_KEYSET_PAGING = "fhir2.paging.keyset";
+	
+	public static final String OPENMRS_FHIR_TOTAL_ESTIMATE_LIMIT = "fhir2.paging.totalEstimateLimit";
+	
+	public static final String OPENMRS_FHIR_PAGING_STORE_MAXIMUM_SIZE = "fhir2.paging.storeMaximumSize";
+	
+	public static final String OPENMRS_FHIR_PAGING_STORE_IDLE_TIMEOUT = "fhir2.paging.storeIdleTimeout";
+	
+	public static final String OPENMRS_FHIR_PAGING_SHARED_STORE = "fhir2.paging.sharedStore";
+	
+	public static final String OPENMRS_FHIR_SEARCH_CACHE_ENABLED = "fhir2.search.cacheEnabled";
+	
+	public static final String OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE = "fhir2.search.cacheMaximumSize";
+	
+	public static final String OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE = "fhir2.search.cacheTimeToLive";
+	
+	public static final String OPENMRS_FHIR_PARALLEL_TRANSLATION = "fhir2.search.parallelTranslation";
+	
+	public static final String OPENMRS_FHIR_PARALLEL_INCLUDES = "fhir2.search.parallelIncludes";
+	
+	public static final String OPENMRS_FHIR_STREAMING_RESPONSES = "fhir2.search.streamingResponses";
+	
+	public static final String OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT = "fhir2.search.reverseIncludeLimit";
+	
+	public static final String OPENMRS_FHIR_INCLUDE_CACHE_SIZE = "fhir2.search.includeCacheSize";
+	
+	public static final String OPENMRS_FHIR_INCLUDE_ITERATE_MAX_DEPTH = "fhir2.search.includeIterateMaxDepth";
+	
+	public static final String OPENMRS_FHIR_INCLUDE_ITERATE_LIMIT = "fhir2.search.includeIterateLimit";
+	
+	public static final String OPENMRS_FHIR_EXPORT_RETENTION = "fhir2.export.retention";
+	
 	public static final String ALLERGY_INTOLERANCE = "AllergyIntolerance";
 	
 	public static final String CONDITION = "Condition";
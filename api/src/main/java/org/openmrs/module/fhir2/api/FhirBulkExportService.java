@@ -0,0 +1,67 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api;
+
+import javax.annotation.Nonnull;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+
+/**
+ * Runs FHIR Bulk Data exports in the background, writing the exported resources to NDJSON files in
+ * the OpenMRS application data directory. Each export can only be seen by the user who started it.
+ */
+public interface FhirBulkExportService {
+	
+	/**
+	 * @return the types of resources which can be exported
+	 */
+	Set<String> getSupportedResourceTypes();
+	
+	/**
+	 * Starts a new export, which runs in the background as the authenticated user
+	 *
+	 * @param level whether to export all data, data for all patients or data for the members of a group
+	 * @param groupId the uuid of the group to export, only used for group-level exports
+	 * @param resourceTypes the types of resources to export or null or empty to export all supported
+	 *            types
+	 * @param since if not null, only resources updated at or after this time are exported
+	 * @param request the URL of the request which started the export
+	 * @return the new export job
+	 */
+	BulkExportJob startExport(@Nonnull BulkExportJob.Level level, String groupId, Collection<String> resourceTypes,
+	        Date since, String request);
+	
+	/**
+	 * @param jobId the id of the export job
+	 * @return the export job or null if no such job exists or it was started by another user
+	 */
+	BulkExportJob getJob(@Nonnull String jobId);
+	
+	/**
+	 * Cancels an export job if it is still running and deletes its files
+	 *
+	 * @param jobId the id of the export job
+	 * @return false if no such job exists or it was started by another user
+	 */
+	boolean deleteJob(@Nonnull String jobId);
+	
+	/**
+	 * @param jobId the id of a completed export job
+	 * @param fileName the name of one of the files written by the job
+	 * @return the file or null if the job is not complete, was started by another user or did not write
+	 *         such a file
+	 */
+	File getOutputFile(@Nonnull String jobId, @Nonnull String fileName);
+}
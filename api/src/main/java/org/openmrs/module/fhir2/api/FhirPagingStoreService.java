@@ -0,0 +1,66 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+
+/**
+ * Stores searches which are being paged through in the database, so that their pages can be served
+ * by any server sharing that database
+ */
+public interface FhirPagingStoreService {
+	
+	/**
+	 * Stores the current state of a search, replacing any state previously stored for it
+	 *
+	 * @param searchId the id of the search
+	 * @param bundleProvider the search
+	 * @return false if the search could not be stored because it cannot be serialized
+	 */
+	boolean saveSearch(@Nonnull String searchId, @Nonnull IBundleProvider bundleProvider);
+	
+	/**
+	 * Stores the current state of a search if it differs from the state last stored or read by this
+	 * server, e.g. because reading a page has loaded more of its results
+	 *
+	 * @param searchId the id of the search
+	 * @param bundleProvider the search
+	 * @return false if the search could not be stored because it cannot be serialized
+	 */
+	boolean updateSearch(@Nonnull String searchId, @Nonnull IBundleProvider bundleProvider);
+	
+	/**
+	 * Marks a stored search as accessed now, so that it does not expire, without rewriting its state
+	 *
+	 * @param searchId the id of the search
+	 */
+	void touchSearch(@Nonnull String searchId);
+	
+	/**
+	 * Retrieves a stored search
+	 *
+	 * @param searchId the id of the search
+	 * @param accessedSince searches which were last accessed before this date are treated as expired
+	 * @return the search or null if no such search is stored or it has expired
+	 */
+	IBundleProvider getSearch(@Nonnull String searchId, @Nonnull Date accessedSince);
+	
+	/**
+	 * Deletes the stored searches which were last accessed before the supplied date
+	 *
+	 * @param accessedBefore the cut-off date
+	 * @return the number of searches deleted
+	 */
+	int purgeSearches(@Nonnull Date accessedBefore);
+}
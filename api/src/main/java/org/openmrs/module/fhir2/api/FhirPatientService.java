@@ -15,6 +15,9 @@ import java.util.Collection;
 import java.util.List;
 
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Patient;
@@ -37,4 +40,26 @@ public interface FhirPatientService extends FhirService<Patient> {
 	IBundleProvider getPatientEverything(TokenParam identifier);
 	
 	IBundleProvider getPatientEverything();
+	
+	/**
+	 * Fetches the resources related to the specified patient, one page at a time
+	 *
+	 * @param identifier the id of the patient
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
+	 * @return the patient and the resources which refer to them
+	 */
+	IBundleProvider getPatientEverything(TokenParam identifier, DateParam since, StringAndListParam types,
+	        NumberParam count);
+	
+	/**
+	 * Fetches the resources related to every patient, one page at a time
+	 *
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
+	 * @return the patients and the resources which refer to them
+	 */
+	IBundleProvider getPatientEverything(DateParam since, StringAndListParam types, NumberParam count);
 }
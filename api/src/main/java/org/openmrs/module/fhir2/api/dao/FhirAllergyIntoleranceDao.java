@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.openmrs.Allergy;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -35,4 +36,20 @@ public interface FhirAllergyIntoleranceDao extends FhirDao<Allergy> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_ALLERGIES)
 	List<Allergy> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
 }
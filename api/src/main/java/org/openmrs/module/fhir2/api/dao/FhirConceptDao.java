@@ -17,6 +17,7 @@ import java.util.Optional;
 import org.openmrs.Concept;
 import org.openmrs.ConceptSource;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -41,6 +42,22 @@ public interface FhirConceptDao extends FhirDao<Concept> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Concept> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Concept> getConceptsWithAnyMappingInSource(ConceptSource conceptSource, String mappingCode);
 	
@@ -17,6 +17,7 @@ import java.util.List;
 
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 
 /**
@@ -32,7 +33,67 @@ public interface FhirDao<T extends OpenmrsObject & Auditable> extends Serializab
 	
 	T delete(@Nonnull String uuid);
 	
+	/**
+	 * Returns the distinct primary keys of all objects matching theParams in sort order.
+	 * Implementations should return a compact list such as
+	 * {@link org.openmrs.module.fhir2.api.search.SearchResultIds}, since these lists may be held for
+	 * the lifetime of a search.
+	 *
+	 * @param theParams the parameters for this search
+	 * @return the ids of all matching objects
+	 */
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	/**
+	 * Returns at most maxResults of the distinct primary keys of objects matching theParams in sort
+	 * order, skipping the first firstResult. Unlike {@link #getSearchResultIds(SearchParameterMap)},
+	 * this stops reading once enough ids have been found. The cost of each call still grows with
+	 * firstResult, so searches which are read through to the end should be paged using
+	 * {@link #getSearchResultKeys(SearchParameterMap, SearchCursor, int)} where possible.
+	 *
+	 * @param theParams the parameters for this search
+	 * @param firstResult the number of matching ids to skip
+	 * @param maxResults the maximum number of ids to return or a negative number for no limit
+	 * @return the ids of the requested window of matching objects
+	 */
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	/**
+	 * Counts the distinct objects matching theParams without loading their ids
+	 *
+	 * @param theParams the parameters for this search
+	 * @return the number of matching objects
+	 */
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Counts the distinct objects matching theParams, stopping once maxCount have been found
+	 *
+	 * @param theParams the parameters for this search
+	 * @param maxCount the maximum number of objects to count
+	 * @return the number of matching objects or maxCount if there are at least that many
+	 */
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
 	List<T> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
+	
+	/**
+	 * Determines whether the search described by theParams can be paged using
+	 * {@link #getSearchResultKeys(SearchParameterMap, SearchCursor, int)}
+	 *
+	 * @param theParams the parameters for this search
+	 * @return true if the search can be keyset-paged
+	 */
+	boolean isKeysetPageable(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Returns the keys of at most count rows matching theParams that sort strictly after the supplied
+	 * cursor. The key of the last row returned can be used as the cursor for the next page.
+	 *
+	 * @param theParams the parameters for this search
+	 * @param after the cursor to resume the search from or null to start from the first row
+	 * @param count the maximum number of rows to return
+	 * @return the keys of the matching rows, in sort order
+	 */
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
 }
@@ -14,6 +14,7 @@ import javax.annotation.Nonnull;
 import java.util.List;
 
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.model.FhirDiagnosticReport;
 import org.openmrs.util.PrivilegeConstants;
@@ -36,6 +37,22 @@ public interface FhirDiagnosticReportDao extends FhirDao<FhirDiagnosticReport> {
 	@Authorized(PrivilegeConstants.GET_OBS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_OBS)
 	List<FhirDiagnosticReport> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.openmrs.Encounter;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -36,6 +37,22 @@ public interface FhirEncounterDao extends FhirDao<Encounter> {
 	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
 	List<String> getSearchResultUuids(@Nonnull SearchParameterMap theParams);
 	
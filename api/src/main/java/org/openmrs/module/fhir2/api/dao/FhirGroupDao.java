@@ -16,6 +16,8 @@ import java.util.List;
 
 import org.openmrs.Cohort;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
 public interface FhirGroupDao extends FhirDao<Cohort> {
@@ -35,4 +37,20 @@ public interface FhirGroupDao extends FhirDao<Cohort> {
 	@Override
 	@Authorized(PrivilegeConstants.DELETE_COHORTS)
 	Cohort delete(@Nonnull String uuid);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
 }
@@ -18,6 +18,7 @@ import org.openmrs.LocationAttribute;
 import org.openmrs.LocationAttributeType;
 import org.openmrs.LocationTag;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -43,6 +44,22 @@ public interface FhirLocationDao extends FhirDao<Location> {
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	List<Location> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
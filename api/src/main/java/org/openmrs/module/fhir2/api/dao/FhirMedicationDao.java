@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.openmrs.Drug;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -36,6 +37,22 @@ public interface FhirMedicationDao extends FhirDao<Drug> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	List<Drug> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.openmrs.DrugOrder;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -36,6 +37,22 @@ public interface FhirMedicationRequestDao extends FhirDao<DrugOrder> {
 	@Authorized(PrivilegeConstants.GET_ORDERS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_ORDERS)
 	List<DrugOrder> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
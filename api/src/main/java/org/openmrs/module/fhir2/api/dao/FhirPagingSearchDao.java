@@ -0,0 +1,40 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import org.openmrs.module.fhir2.model.FhirPagingSearch;
+
+public interface FhirPagingSearchDao {
+	
+	FhirPagingSearch get(@Nonnull String searchId);
+	
+	FhirPagingSearch createOrUpdate(@Nonnull FhirPagingSearch pagingSearch);
+	
+	/**
+	 * Sets the date a search was last accessed without loading or rewriting its state
+	 *
+	 * @param searchId the id of the search
+	 * @param date the date the search was accessed
+	 * @return false if no such search is stored
+	 */
+	boolean updateDateAccessed(@Nonnull String searchId, @Nonnull Date date);
+	
+	/**
+	 * Deletes all searches which have not been accessed since the supplied date
+	 *
+	 * @param date the cut-off date
+	 * @return the number of searches deleted
+	 */
+	int deleteAccessedBefore(@Nonnull Date date);
+}
@@ -16,6 +16,7 @@ import java.util.List;
 import org.openmrs.Provider;
 import org.openmrs.ProviderAttribute;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -40,6 +41,22 @@ public interface FhirPractitionerDao extends FhirDao<Provider> {
 	@Authorized(PrivilegeConstants.GET_PROVIDERS)
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PROVIDERS)
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PROVIDERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PROVIDERS)
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PROVIDERS)
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_PROVIDERS)
 	List<Provider> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.openmrs.User;
 import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 
@@ -39,6 +40,22 @@ public interface FhirUserDao extends FhirDao<User> {
 	@Override
 	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams);
 	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount);
+	
+	@Authorized(PrivilegeConstants.GET_USERS)
+	@Override
+	List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count);
+	
 	@Authorized(PrivilegeConstants.GET_USERS)
 	@Override
 	List<User> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds);
@@ -11,21 +11,29 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.gt;
 import static org.hibernate.criterion.Restrictions.in;
+import static org.hibernate.criterion.Restrictions.isNotNull;
 import static org.hibernate.criterion.Restrictions.isNull;
+import static org.hibernate.criterion.Restrictions.lt;
 import static org.hibernate.criterion.Restrictions.or;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import com.google.common.reflect.TypeToken;
 import lombok.AccessLevel;
@@ -33,10 +41,23 @@ import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.NullPrecedence;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
 import org.hl7.fhir.r4.model.DomainResource;
 import org.openmrs.Auditable;
 import org.openmrs.Obs;
@@ -49,6 +70,9 @@ import org.openmrs.api.handler.RetireHandler;
 import org.openmrs.api.handler.VoidHandler;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
+import org.openmrs.module.fhir2.api.search.SearchResultIdCache;
+import org.openmrs.module.fhir2.api.search.SearchResultIds;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -80,6 +104,10 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	@Qualifier("sessionFactory")
 	private SessionFactory sessionFactory;
 	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PUBLIC)
+	private SearchResultIdCache searchResultIdCache;
+	
 	@SuppressWarnings("UnstableApiUsage")
 	protected BaseFhirDao() {
 		// @formatter:off
@@ -152,6 +180,59 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	
 	@Override
 	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams) {
+		if (searchResultIdCache == null) {
+			return collectSearchResultIds(theParams, 0, -1);
+		}
+		
+		return searchResultIdCache.getSearchResultIds(getClass(), typeToken.getRawType(), theParams,
+		    () -> collectSearchResultIds(theParams, 0, -1));
+	}
+	
+	@Override
+	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return collectSearchResultIds(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		
+		if (isVoidable) {
+			handleVoidable(criteria);
+		} else if (isRetireable) {
+			handleRetireable(criteria);
+		}
+		
+		setupSearchParams(criteria, theParams);
+		
+		criteria.setProjection(Projections.countDistinct("id"));
+		
+		Number count = (Number) criteria.uniqueResult();
+		return count == null ? 0 : count.intValue();
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		
+		if (isVoidable) {
+			handleVoidable(criteria);
+		} else if (isRetireable) {
+			handleRetireable(criteria);
+		}
+		
+		setupSearchParams(criteria, theParams);
+		
+		// without an ORDER BY, the database can stop as soon as it has found maxCount distinct ids
+		criteria.setProjection(Projections.distinct(Projections.property("id")));
+		criteria.setMaxResults(maxCount);
+		
+		return criteria.list().size();
+	}
+	
+	private SearchResultIds collectSearchResultIds(SearchParameterMap theParams, int firstResult, int maxResults) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
 		
 		if (isVoidable) {
@@ -166,20 +247,184 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		criteria.addOrder(org.hibernate.criterion.Order.asc("id"));
 		criteria.setProjection(Projections.property("id"));
 		
-		@SuppressWarnings("unchecked")
-		List<Integer> results = criteria.list();
+		int first = Math.max(firstResult, 0);
+		int limit;
+		
+		// when every row is a distinct resource, the database can skip straight to the requested window;
+		// otherwise the ids before the window have to be read to know which rows are duplicates
+		boolean distinctRows = !joinsCollection(criteria);
+		if (distinctRows) {
+			criteria.setFirstResult(first);
+			if (maxResults >= 0) {
+				criteria.setMaxResults(maxResults);
+			}
+			
+			limit = maxResults < 0 ? Integer.MAX_VALUE : maxResults;
+		} else {
+			limit = maxResults < 0 ? Integer.MAX_VALUE : (int) Math.min((long) first + maxResults, Integer.MAX_VALUE);
+		}
+		
+		// read the ids straight off the result set rather than materializing a List<Integer>, stopping
+		// as soon as enough distinct ids have been seen
+		SearchResultIds.Builder results = new SearchResultIds.Builder();
+		ScrollableResults scrollableResults = criteria.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.size() < limit && scrollableResults.next()) {
+				Integer id = scrollableResults.getInteger(0);
+				if (id != null) {
+					results.add(id);
+				}
+			}
+		}
+		finally {
+			scrollableResults.close();
+		}
+		
+		SearchResultIds ids = results.build();
+		if (distinctRows || first == 0) {
+			return ids;
+		}
+		
+		if (first >= ids.size()) {
+			return SearchResultIds.empty();
+		}
+		
+		return SearchResultIds.of(ids.subList(first, ids.size()));
+	}
+	
+	/**
+	 * Determines whether any of the aliases used by a search joins a collection, in which case a
+	 * single resource can match more than one row. Aliases which cannot be resolved are assumed to
+	 * join a collection.
+	 *
+	 * @param criteria the criteria object representing the current search
+	 * @return true if the search may return the same resource more than once
+	 */
+	protected boolean joinsCollection(Criteria criteria) {
+		ClassMetadata metadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+		if (metadata == null || !(criteria instanceof CriteriaImpl)) {
+			return true;
+		}
+		
+		Map<String, Type> aliasTypes = new HashMap<>();
+		Iterator<CriteriaImpl.Subcriteria> subcriteria = ((CriteriaImpl) criteria).iterateSubcriteria();
+		while (subcriteria.hasNext()) {
+			CriteriaImpl.Subcriteria join = subcriteria.next();
+			
+			// a path is either relative to the root entity or starts with a previously defined alias
+			String path = join.getPath();
+			Type type = null;
+			int dot = path.indexOf('.');
+			if (dot > 0 && aliasTypes.containsKey(path.substring(0, dot))) {
+				type = aliasTypes.get(path.substring(0, dot));
+				path = path.substring(dot + 1);
+			}
+			
+			try {
+				for (String propertyName : path.split("\\.")) {
+					type = getPropertyType(metadata, type, propertyName);
+					if (type == null || type.isCollectionType()) {
+						return true;
+					}
+				}
+			}
+			catch (HibernateException e) {
+				return true;
+			}
+			
+			aliasTypes.put(join.getAlias(), type);
+		}
+		
+		return false;
+	}
+	
+	private Type getPropertyType(ClassMetadata rootMetadata, Type parentType, String propertyName) {
+		if (parentType == null) {
+			return rootMetadata.getPropertyType(propertyName);
+		}
+		
+		if (parentType.isEntityType()) {
+			ClassMetadata metadata = sessionFactory
+			        .getClassMetadata(((EntityType) parentType).getAssociatedEntityName());
+			return metadata == null ? null : metadata.getPropertyType(propertyName);
+		}
+		
+		if (parentType.isComponentType()) {
+			CompositeType componentType = (CompositeType) parentType;
+			String[] propertyNames = componentType.getPropertyNames();
+			for (int i = 0; i < propertyNames.length; i++) {
+				if (propertyNames[i].equals(propertyName)) {
+					return componentType.getSubtypes()[i];
+				}
+			}
+		}
 		
-		return results.stream().distinct().collect(Collectors.toList());
+		return null;
 	}
 	
 	@Override
 	public List<T> getSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull List<Integer> resourceIds) {
+		if (resourceIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		
 		@SuppressWarnings("unchecked")
 		List<T> results = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
 		        .add(in("id", resourceIds)).list();
 		
-		results.sort(Comparator.comparingInt(r -> resourceIds.indexOf(r.getId())));
-		return results.stream().map(this::deproxyResult).collect(Collectors.toList());
+		return orderByIds(results, resourceIds).stream().map(this::deproxyResult).collect(Collectors.toList());
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public boolean isKeysetPageable(@Nonnull SearchParameterMap theParams) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		return getKeysetOrders(criteria, theParams.getSortSpec()).isPresent();
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
+		
+		if (isVoidable) {
+			handleVoidable(criteria);
+		} else if (isRetireable) {
+			handleRetireable(criteria);
+		}
+		
+		setupSearchParams(criteria, theParams);
+		
+		List<org.hibernate.criterion.Order> orders = getKeysetOrders(criteria, theParams.getSortSpec())
+		        .orElseThrow(() -> new IllegalArgumentException("This search cannot be paged using a cursor"));
+		
+		if (after != null) {
+			if (after.getSortValues().size() != orders.size() - 1) {
+				throw new IllegalArgumentException("The supplied cursor does not match this search");
+			}
+			
+			criteria.add(handleKeyset(orders, after));
+		}
+		
+		// the sort keys are all properties of the root entity, so DISTINCT collapses the duplicate rows
+		// any joins might introduce without collapsing distinct resources
+		ProjectionList projections = Projections.projectionList();
+		for (org.hibernate.criterion.Order order : orders) {
+			projections.add(Projections.property(order.getPropertyName()));
+			criteria.addOrder(order);
+		}
+		
+		criteria.setProjection(Projections.distinct(projections));
+		criteria.setMaxResults(count);
+		
+		List<?> results = criteria.list();
+		List<SearchCursor> keys = new ArrayList<>(results.size());
+		for (Object result : results) {
+			Object[] row = result instanceof Object[] ? (Object[]) result : new Object[] { result };
+			keys.add(new SearchCursor(Arrays.asList(row).subList(0, row.length - 1), (Integer) row[row.length - 1]));
+		}
+		
+		return keys;
 	}
 	
 	@Override
@@ -290,6 +535,142 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return super.paramToProp(param);
 	}
 	
+	/**
+	 * Determines the orderings to use when keyset-paging a search. Keyset paging is only possible when
+	 * every sort key is a simple property of the root entity, since otherwise a single resource may
+	 * appear at more than one position in the results. The primary key is always appended as the final
+	 * sort key so that every row has a unique position.
+	 *
+	 * @param criteria the criteria object representing the current search
+	 * @param sortSpec the requested sort
+	 * @return the orderings to use or an empty optional if this search cannot be keyset-paged
+	 */
+	protected Optional<List<org.hibernate.criterion.Order>> getKeysetOrders(Criteria criteria, SortSpec sortSpec) {
+		List<org.hibernate.criterion.Order> orders = new ArrayList<>();
+		
+		Optional<List<org.hibernate.criterion.Order>> sortOrders = handleSort(criteria, sortSpec, this::paramToProps);
+		if (sortOrders.isPresent()) {
+			ClassMetadata metadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+			if (metadata == null) {
+				return Optional.empty();
+			}
+			
+			for (org.hibernate.criterion.Order order : sortOrders.get()) {
+				String propertyName = order.getPropertyName();
+				if (order.getClass() != org.hibernate.criterion.Order.class || propertyName == null
+				        || propertyName.contains(".")) {
+					return Optional.empty();
+				}
+				
+				Type type;
+				try {
+					type = metadata.getPropertyType(propertyName);
+				}
+				catch (HibernateException e) {
+					return Optional.empty();
+				}
+				
+				if (type.isAssociationType() || type.isComponentType() || type.isCollectionType()) {
+					return Optional.empty();
+				}
+				
+				// the null ordering is fixed so that it matches the comparisons in handleKeyset()
+				if (order.isAscending()) {
+					orders.add(org.hibernate.criterion.Order.asc(propertyName).nulls(NullPrecedence.FIRST));
+				} else {
+					orders.add(org.hibernate.criterion.Order.desc(propertyName).nulls(NullPrecedence.LAST));
+				}
+			}
+		}
+		
+		orders.add(org.hibernate.criterion.Order.asc("id"));
+		return Optional.of(orders);
+	}
+	
+	/**
+	 * Generates the restriction selecting rows that sort strictly after the supplied cursor, i.e. the
+	 * expansion of the row-value comparison {@code (k1, k2, ..., id) > (v1, v2, ..., vid)} taking the
+	 * direction of each ordering into account.
+	 *
+	 * @param orders the orderings returned by {@link #getKeysetOrders(Criteria, SortSpec)}
+	 * @param after the cursor to resume from
+	 * @return the restriction to add to the search
+	 */
+	protected Criterion handleKeyset(List<org.hibernate.criterion.Order> orders, SearchCursor after) {
+		List<Object> values = new ArrayList<>(after.getSortValues());
+		values.add(after.getId());
+		
+		Disjunction disjunction = Restrictions.disjunction();
+		for (int i = 0; i < orders.size(); i++) {
+			org.hibernate.criterion.Order order = orders.get(i);
+			Optional<Criterion> sortsAfter = handleSortsAfter(order.getPropertyName(), order.isAscending(),
+			    values.get(i));
+			
+			if (sortsAfter.isPresent()) {
+				Conjunction conjunction = Restrictions.conjunction();
+				for (int j = 0; j < i; j++) {
+					Object value = values.get(j);
+					String propertyName = orders.get(j).getPropertyName();
+					conjunction.add(value == null ? isNull(propertyName) : eq(propertyName, value));
+				}
+				
+				conjunction.add(sortsAfter.get());
+				disjunction.add(conjunction);
+			}
+		}
+		
+		return disjunction;
+	}
+	
+	private Optional<Criterion> handleSortsAfter(String propertyName, boolean ascending, Object value) {
+		if (ascending) {
+			// nulls sort first
+			return Optional.of(value == null ? isNotNull(propertyName) : gt(propertyName, value));
+		}
+		
+		// nulls sort last, so nothing sorts after a null
+		if (value == null) {
+			return Optional.empty();
+		}
+		
+		return Optional.of(or(lt(propertyName, value), isNull(propertyName)));
+	}
+	
+	/**
+	 * Puts the supplied results into the same order as the supplied ids. This runs in time linear in
+	 * the number of ids, using an index of the position of each id rather than searching the list of
+	 * ids for each result.
+	 *
+	 * @param results the objects loaded for the supplied ids, in any order
+	 * @param ids the ids in the order the results should be returned
+	 * @return the results in the order of their ids; results whose id is not in ids are dropped
+	 */
+	protected static <V extends OpenmrsObject> List<V> orderByIds(List<V> results, List<Integer> ids) {
+		Map<Integer, Integer> positions = new HashMap<>((int) (ids.size() / 0.75f) + 1);
+		for (int i = 0; i < ids.size(); i++) {
+			positions.putIfAbsent(ids.get(i), i);
+		}
+		
+		Object[] ordered = new Object[ids.size()];
+		for (V result : results) {
+			Integer position = positions.get(result.getId());
+			if (position != null) {
+				ordered[position] = result;
+			}
+		}
+		
+		List<V> orderedResults = new ArrayList<>(results.size());
+		for (Object result : ordered) {
+			if (result != null) {
+				@SuppressWarnings("unchecked")
+				V typedResult = (V) result;
+				orderedResults.add(typedResult);
+			}
+		}
+		
+		return orderedResults;
+	}
+	
 	protected static <V> V deproxyObject(V object) {
 		if (object instanceof HibernateProxy) {
 			Hibernate.initialize(object);
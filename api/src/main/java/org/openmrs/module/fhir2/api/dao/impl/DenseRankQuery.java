@@ -0,0 +1,169 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaJoinWalker;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.OuterJoinLoadable;
+
+/**
+ * Runs a Criteria query with its rows ranked by the SQL {@code DENSE_RANK()} window function,
+ * returning only the ids of the rows within the top ranks of each partition. This lets operations
+ * like $lastn be answered without loading every matching row, but requires a database which
+ * supports window functions, see {@link #isSupported(DatabaseMetaData)}.
+ */
+@Slf4j
+public final class DenseRankQuery {
+	
+	private DenseRankQuery() {
+	}
+	
+	/**
+	 * Determines whether the database supports window functions. This is the case for MySQL from 8.0,
+	 * MariaDB from 10.2, H2 from 1.4.198, PostgreSQL, SQL Server and Oracle.
+	 *
+	 * @param metaData the metadata of the database
+	 * @return true if the database supports {@code DENSE_RANK() OVER (...)}
+	 */
+	public static boolean isSupported(DatabaseMetaData metaData) throws SQLException {
+		String product = metaData.getDatabaseProductName().toLowerCase(Locale.ROOT);
+		String version = metaData.getDatabaseProductVersion();
+		
+		// MariaDB servers report a MySQL 5.5.5 compatibility prefix to the MySQL driver, e.g. 5.5.5-10.3.22-MariaDB
+		if (product.contains("mariadb") || version.toLowerCase(Locale.ROOT).contains("mariadb")) {
+			int[] mariaDbVersion = parseVersion(version.replaceFirst("^5\\.5\\.5-", ""));
+			return compare(mariaDbVersion, 10, 2, 0) >= 0;
+		}
+		
+		if (product.contains("mysql")) {
+			return metaData.getDatabaseMajorVersion() >= 8;
+		}
+		
+		if (product.contains("h2")) {
+			return compare(parseVersion(version), 1, 4, 198) >= 0;
+		}
+		
+		return product.contains("postgresql") || product.contains("sql server") || product.contains("oracle");
+	}
+	
+	/**
+	 * Runs the query
+	 *
+	 * @param session the session to run the query in
+	 * @param criteria a criteria query projecting exactly three properties: the id to return, the
+	 *            property to partition by and the property to rank by, in descending order
+	 * @param maxRank the lowest rank to return
+	 * @return the ids of the rows with a rank no lower than {@code maxRank} within their partition,
+	 *         ordered by partition and then by rank, or an empty optional if the criteria binds a
+	 *         parameter that cannot be passed to the database as a plain JDBC value
+	 */
+	public static Optional<List<Integer>> getTopRankedIds(Session session, Criteria criteria, int maxRank) {
+		CriteriaImpl criteriaImpl = (CriteriaImpl) criteria;
+		SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+		String entityName = criteriaImpl.getEntityOrClassName();
+		
+		CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory, criteriaImpl, entityName,
+		        CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+		CriteriaJoinWalker walker = new CriteriaJoinWalker(
+		        (OuterJoinLoadable) factory.getEntityPersister(factory.getImplementors(entityName)[0]), translator, factory,
+		        criteriaImpl, entityName, ((SessionImplementor) session).getLoadQueryInfluencers());
+		
+		String[] columns = translator.getProjectedColumnAliases();
+		if (columns.length != 3) {
+			throw new IllegalArgumentException(
+			        "The criteria must project an id, a partition and an ordering, but projects " + columns.length
+			                + " columns");
+		}
+		
+		QueryParameters queryParameters = translator.getQueryParameters();
+		Object[] parameters = queryParameters.getPositionalParameterValues();
+		for (Object parameter : parameters) {
+			if (!isPlainJdbcValue(parameter)) {
+				log.debug("Cannot rank a query with the parameter {} in the database", parameter);
+				return Optional.empty();
+			}
+		}
+		
+		String sql = String.format("select ranked.%1$s from (select matching.%1$s, matching.%2$s, matching.%3$s, "
+		        + "dense_rank() over (partition by matching.%2$s order by matching.%3$s desc) as rank_ "
+		        + "from (%4$s) matching) ranked where ranked.rank_ <= ? order by ranked.%2$s, ranked.%3$s desc",
+		    columns[0], columns[1], columns[2], walker.getSQLString());
+		
+		return Optional.of(session.doReturningWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				for (int i = 0; i < parameters.length; i++) {
+					Object parameter = parameters[i];
+					statement.setObject(i + 1,
+					    parameter instanceof Date ? new Timestamp(((Date) parameter).getTime()) : parameter);
+				}
+				statement.setInt(parameters.length + 1, maxRank);
+				
+				List<Integer> ids = new ArrayList<>();
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						ids.add(resultSet.getInt(1));
+					}
+				}
+				return ids;
+			}
+		}));
+	}
+	
+	// the parameters are bound directly through JDBC, since the Hibernate Type binding API differs between the
+	// Hibernate versions supported by this module
+	private static boolean isPlainJdbcValue(Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Date
+		        || value instanceof Character;
+	}
+	
+	private static int[] parseVersion(String version) {
+		int[] parts = new int[3];
+		String[] numbers = version.trim().split("[^0-9]+", 4);
+		for (int i = 0; i < parts.length && i < numbers.length; i++) {
+			try {
+				parts[i] = Integer.parseInt(numbers[i]);
+			}
+			catch (NumberFormatException e) {
+				break;
+			}
+		}
+		return parts;
+	}
+	
+	private static int compare(int[] version, int major, int minor, int patch) {
+		if (version[0] != major) {
+			return Integer.compare(version[0], major);
+		}
+		
+		if (version[1] != minor) {
+			return Integer.compare(version[1], minor);
+		}
+		
+		return Integer.compare(version[2], patch);
+	}
+}
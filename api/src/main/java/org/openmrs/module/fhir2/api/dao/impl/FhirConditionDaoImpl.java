@@ -30,6 +30,7 @@ import org.openmrs.annotation.Authorized;
 import org.openmrs.annotation.OpenmrsProfile;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirConditionDao;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.util.PrivilegeConstants;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -75,6 +76,30 @@ public class FhirConditionDaoImpl extends BaseFhirDao<Obs> implements FhirCondit
 		return super.getSearchResults(theParams, resourceIds);
 	}
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		return super.getSearchResultIds(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams) {
+		return super.getSearchResultCount(theParams);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount) {
+		return super.getSearchResultCount(theParams, maxCount);
+	}
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	public List<SearchCursor> getSearchResultKeys(@Nonnull SearchParameterMap theParams, SearchCursor after, int count) {
+		return super.getSearchResultKeys(theParams, after, count);
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		criteria.createAlias("concept", "c");
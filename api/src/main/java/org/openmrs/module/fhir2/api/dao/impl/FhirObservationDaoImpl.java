@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.fhir2.api.dao.impl;
 
+import static lombok.AccessLevel.PACKAGE;
 import static org.hibernate.criterion.Projections.property;
 import static org.hibernate.criterion.Restrictions.eq;
 import static org.openmrs.module.fhir2.api.util.LastnOperationUtils.getTopNRankedIds;
@@ -32,18 +33,20 @@ import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Subqueries;
 import org.hl7.fhir.r4.model.Observation;
-import org.openmrs.Concept;
 import org.openmrs.Obs;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
+import org.openmrs.module.fhir2.api.search.SearchResultIds;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.util.LastnResult;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,16 +61,30 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 	@Autowired
 	private FhirEncounterDao encounterDao;
 	
+	// whether the database can rank $lastn results itself; the database does not change while the module is running
+	@Setter(PACKAGE)
+	private volatile Boolean windowFunctionSupported;
+	
 	@Override
 	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams) {
 		if (!theParams.getParameters(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER).isEmpty()) {
-			Criteria criteria = getSessionFactory().getCurrentSession().createCriteria(typeToken.getRawType());
+			Session session = getSessionFactory().getCurrentSession();
+			Criteria criteria = session.createCriteria(typeToken.getRawType());
 			
 			setupSearchParams(criteria, theParams);
 			
 			criteria.setProjection(
-			    Projections.projectionList().add(property("id")).add(property("concept")).add(property("obsDatetime")));
+			    Projections.projectionList().add(property("id")).add(property("concept.id")).add(property("obsDatetime")));
+			
+			int max = getMaxParameter(theParams);
+			if (isWindowFunctionSupported(session)) {
+				Optional<List<Integer>> ids = DenseRankQuery.getTopRankedIds(session, criteria, max);
+				if (ids.isPresent()) {
+					return SearchResultIds.of(ids.get());
+				}
+			}
 			
+			// databases without window functions, such as MySQL before 8.0, rank every matching obs in memory
 			@SuppressWarnings("unchecked")
 			List<LastnResult<Integer>> results = ((List<Object[]>) criteria.list()).stream().map(objects -> {
 				Map<String, Object> attributes = new HashMap<>();
@@ -75,8 +92,7 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 				return new LastnResult<>((Integer) objects[0], (Date) objects[2], attributes);
 			}).collect(Collectors.toList());
 			
-			return getLastnIds(handleGrouping(results), getMaxParameter(theParams)).stream().distinct()
-			        .collect(Collectors.toList());
+			return SearchResultIds.of(getLastnIds(handleGrouping(results), max));
 		}
 		
 		if (!theParams.getParameters(FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER).isEmpty()) {
@@ -94,6 +110,52 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		return super.getSearchResultIds(theParams);
 	}
 	
+	@Override
+	public List<Integer> getSearchResultIds(@Nonnull SearchParameterMap theParams, int firstResult, int maxResults) {
+		if (isLastn(theParams)) {
+			List<Integer> ids = getSearchResultIds(theParams);
+			int first = Math.min(Math.max(firstResult, 0), ids.size());
+			int last = maxResults < 0 ? ids.size() : (int) Math.min((long) first + maxResults, ids.size());
+			return SearchResultIds.of(ids.subList(first, last));
+		}
+		
+		return super.getSearchResultIds(theParams, firstResult, maxResults);
+	}
+	
+	@Override
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams) {
+		if (isLastn(theParams)) {
+			return getSearchResultIds(theParams).size();
+		}
+		
+		return super.getSearchResultCount(theParams);
+	}
+	
+	@Override
+	public int getSearchResultCount(@Nonnull SearchParameterMap theParams, int maxCount) {
+		if (isLastn(theParams)) {
+			return Math.min(getSearchResultIds(theParams).size(), maxCount);
+		}
+		
+		return super.getSearchResultCount(theParams, maxCount);
+	}
+	
+	@Override
+	public boolean isKeysetPageable(@Nonnull SearchParameterMap theParams) {
+		if (isLastn(theParams)) {
+			return false;
+		}
+		
+		return super.isKeysetPageable(theParams);
+	}
+	
+	// $lastn searches rank the whole result and rewrite their own parameters, so they can only be run
+	// through getSearchResultIds(SearchParameterMap)
+	private boolean isLastn(SearchParameterMap theParams) {
+		return !theParams.getParameters(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER).isEmpty()
+		        || !theParams.getParameters(FhirConstants.LASTN_ENCOUNTERS_SEARCH_HANDLER).isEmpty();
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		theParams.getParameters().forEach(entry -> {
@@ -235,13 +297,22 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		        .intValue();
 	}
 	
-	private Map<Concept, List<LastnResult<Integer>>> handleGrouping(List<LastnResult<Integer>> observations) {
-		return observations.stream().collect(Collectors.groupingBy(obs -> (Concept) (obs.getAttributes().get("concept"))));
+	private boolean isWindowFunctionSupported(Session session) {
+		if (windowFunctionSupported == null) {
+			windowFunctionSupported = session
+			        .doReturningWork(connection -> DenseRankQuery.isSupported(connection.getMetaData()));
+		}
+		
+		return windowFunctionSupported;
+	}
+	
+	private Map<Integer, List<LastnResult<Integer>>> handleGrouping(List<LastnResult<Integer>> observations) {
+		return observations.stream().collect(Collectors.groupingBy(obs -> (Integer) (obs.getAttributes().get("concept"))));
 	}
 	
-	private List<Integer> getLastnIds(Map<Concept, List<LastnResult<Integer>>> groupingByObsCode, int max) {
+	private List<Integer> getLastnIds(Map<Integer, List<LastnResult<Integer>>> groupingByObsCode, int max) {
 		List<Integer> results = new ArrayList<>(groupingByObsCode.size());
-		for (Map.Entry<Concept, List<LastnResult<Integer>>> entry : groupingByObsCode.entrySet()) {
+		for (Map.Entry<Integer, List<LastnResult<Integer>>> entry : groupingByObsCode.entrySet()) {
 			results.addAll(getTopNRankedIds(entry.getValue(), max));
 		}
 		return results;
@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.api.dao.FhirPagingSearchDao;
+import org.openmrs.module.fhir2.model.FhirPagingSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirPagingSearchDaoImpl implements FhirPagingSearchDao {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Override
+	public FhirPagingSearch get(@Nonnull String searchId) {
+		return (FhirPagingSearch) sessionFactory.getCurrentSession().get(FhirPagingSearch.class, searchId);
+	}
+	
+	@Override
+	public FhirPagingSearch createOrUpdate(@Nonnull FhirPagingSearch pagingSearch) {
+		sessionFactory.getCurrentSession().saveOrUpdate(pagingSearch);
+		return pagingSearch;
+	}
+	
+	@Override
+	public boolean updateDateAccessed(@Nonnull String searchId, @Nonnull Date date) {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("update FhirPagingSearch s set s.dateAccessed = :date where s.searchId = :searchId")
+		        .setParameter("date", date).setParameter("searchId", searchId).executeUpdate() > 0;
+	}
+	
+	@Override
+	public int deleteAccessedBefore(@Nonnull Date date) {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("delete from FhirPagingSearch s where s.dateAccessed < :date").setParameter("date", date)
+		        .executeUpdate();
+	}
+}
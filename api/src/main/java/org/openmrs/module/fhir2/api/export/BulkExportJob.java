@@ -0,0 +1,126 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.export;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The state of an asynchronous FHIR Bulk Data export. Jobs are created by
+ * {@link org.openmrs.module.fhir2.api.FhirBulkExportService#startExport} and updated by the thread
+ * running them, so the mutable state is safe to read from other threads.
+ */
+@Getter
+public class BulkExportJob implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public enum Level {
+		SYSTEM,
+		PATIENT,
+		GROUP
+	}
+	
+	public enum Status {
+		ACCEPTED,
+		IN_PROGRESS,
+		COMPLETE,
+		ERROR,
+		CANCELLED
+	}
+	
+	private final String id;
+	
+	// the uuid of the user who started the export, the only user who can see it
+	private final String owner;
+	
+	private final Level level;
+	
+	private final String groupId;
+	
+	private final List<String> resourceTypes;
+	
+	private final Date since;
+	
+	private final String request;
+	
+	private final Date transactionTime;
+	
+	private final List<Output> outputs = new CopyOnWriteArrayList<>();
+	
+	@Setter
+	private volatile Status status = Status.ACCEPTED;
+	
+	@Setter
+	private volatile String progress;
+	
+	@Setter
+	private volatile String error;
+	
+	@Setter
+	private volatile Date dateFinished;
+	
+	public BulkExportJob(@Nonnull String id, @Nonnull String owner, @Nonnull Level level, String groupId,
+	    @Nonnull List<String> resourceTypes, Date since, String request, @Nonnull Date transactionTime) {
+		this.id = id;
+		this.owner = owner;
+		this.level = level;
+		this.groupId = groupId;
+		this.resourceTypes = Collections.unmodifiableList(new ArrayList<>(resourceTypes));
+		this.since = since;
+		this.request = request;
+		this.transactionTime = transactionTime;
+	}
+	
+	public List<Output> getOutputs() {
+		return Collections.unmodifiableList(outputs);
+	}
+	
+	public void addOutput(@Nonnull Output output) {
+		outputs.add(output);
+	}
+	
+	/**
+	 * @return true if the job will not make any further progress
+	 */
+	public boolean isFinished() {
+		return status == Status.COMPLETE || status == Status.ERROR || status == Status.CANCELLED;
+	}
+	
+	/**
+	 * A file written by an export, holding all exported resources of one type
+	 */
+	@Getter
+	public static class Output implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String type;
+		
+		private final String fileName;
+		
+		private final long count;
+		
+		public Output(@Nonnull String type, @Nonnull String fileName, long count) {
+			this.type = type;
+			this.fileName = fileName;
+			this.count = count;
+		}
+	}
+}
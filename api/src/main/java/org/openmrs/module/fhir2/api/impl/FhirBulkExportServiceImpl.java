@@ -0,0 +1,691 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.Auditable;
+import org.openmrs.Cohort;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.Patient;
+import org.openmrs.TestOrder;
+import org.openmrs.User;
+import org.openmrs.Visit;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.fhir2.FhirActivator;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirBulkExportService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirAllergyIntoleranceDao;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirDiagnosticReportDao;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.dao.FhirGroupDao;
+import org.openmrs.module.fhir2.api.dao.FhirMedicationRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirServiceRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirVisitDao;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.AllergyIntoleranceTranslator;
+import org.openmrs.module.fhir2.api.translators.DiagnosticReportTranslator;
+import org.openmrs.module.fhir2.api.translators.EncounterTranslator;
+import org.openmrs.module.fhir2.api.translators.MedicationRequestTranslator;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.module.fhir2.api.translators.ServiceRequestTranslator;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.OpenmrsUtil;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Runs FHIR Bulk Data exports one at a time on a background thread. Each requested resource type is
+ * read from its DAOs in id order, a chunk at a time, and written to its own NDJSON file, so the
+ * memory used by an export does not depend on the amount of data exported. The Hibernate session is
+ * cleared after each chunk for the same reason.
+ * </p>
+ * <p>
+ * An export is only visible to the user who started it. It runs in a context of its own, acting as
+ * that user, so it does not depend on the request which started it.
+ * </p>
+ * <p>
+ * Jobs are only held in memory, so the status of an export is lost when the server restarts, though
+ * its files are not. Finished jobs and their files, including files left by jobs lost in a restart,
+ * are removed once they are older than {@link FhirConstants#OPENMRS_FHIR_EXPORT_RETENTION} hours.
+ * </p>
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirBulkExportServiceImpl implements FhirBulkExportService {
+	
+	static final int CHUNK_SIZE = 500;
+	
+	// the number of group members whose resources are exported at once
+	static final int PATIENT_BATCH_SIZE = 100;
+	
+	static final String FILE_EXTENSION = ".ndjson";
+	
+	static final int DEFAULT_RETENTION = 24;
+	
+	private static final long PURGE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+	
+	@Autowired
+	private FhirPatientDao patientDao;
+	
+	@Autowired
+	private PatientTranslator patientTranslator;
+	
+	@Autowired
+	private FhirEncounterDao encounterDao;
+	
+	@Autowired
+	private EncounterTranslator<org.openmrs.Encounter> encounterTranslator;
+	
+	@Autowired
+	private FhirVisitDao visitDao;
+	
+	@Autowired
+	private EncounterTranslator<Visit> visitTranslator;
+	
+	@Autowired
+	private FhirObservationDao observationDao;
+	
+	@Autowired
+	private ObservationTranslator observationTranslator;
+	
+	@Autowired
+	private FhirAllergyIntoleranceDao allergyIntoleranceDao;
+	
+	@Autowired
+	private AllergyIntoleranceTranslator allergyIntoleranceTranslator;
+	
+	@Autowired
+	private FhirDiagnosticReportDao diagnosticReportDao;
+	
+	@Autowired
+	private DiagnosticReportTranslator diagnosticReportTranslator;
+	
+	@Autowired
+	private FhirMedicationRequestDao medicationRequestDao;
+	
+	@Autowired
+	private MedicationRequestTranslator medicationRequestTranslator;
+	
+	@Autowired
+	private FhirServiceRequestDao<TestOrder> serviceRequestDao;
+	
+	@Autowired
+	private ServiceRequestTranslator<TestOrder> serviceRequestTranslator;
+	
+	@Autowired
+	private FhirGroupDao groupDao;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private File exportDirectory;
+	
+	private ExecutorService executor;
+	
+	private ScheduledExecutorService reaper;
+	
+	private final Map<String, BulkExportJob> jobs = new ConcurrentHashMap<>();
+	
+	@Override
+	public Set<String> getSupportedResourceTypes() {
+		return Collections.unmodifiableSet(getExportSources().keySet());
+	}
+	
+	@Override
+	public BulkExportJob startExport(@Nonnull BulkExportJob.Level level, String groupId, Collection<String> resourceTypes,
+	        Date since, String request) {
+		Set<String> supportedTypes = getSupportedResourceTypes();
+		
+		List<String> types;
+		if (resourceTypes == null || resourceTypes.isEmpty()) {
+			types = new ArrayList<>(supportedTypes);
+		} else {
+			types = new ArrayList<>(new LinkedHashSet<>(resourceTypes));
+			for (String type : types) {
+				if (!supportedTypes.contains(type)) {
+					throw new InvalidRequestException("Resources of type " + type + " cannot be exported");
+				}
+			}
+		}
+		
+		if (level == BulkExportJob.Level.GROUP) {
+			if (groupId == null || groupDao.get(groupId) == null) {
+				throw new ResourceNotFoundException("Could not find Group with Id " + groupId);
+			}
+		}
+		
+		// the export itself cannot be refused once it has been accepted, so the user must be able to read everything
+		Map<String, List<ExportSource<?>>> sources = getExportSources();
+		for (String type : types) {
+			for (ExportSource<?> source : sources.get(type)) {
+				Context.requirePrivilege(source.privilege);
+			}
+		}
+		
+		BulkExportJob job = new BulkExportJob(UUID.randomUUID().toString(), Context.getAuthenticatedUser().getUuid(),
+		        level, groupId, types, since, request, new Date());
+		jobs.put(job.getId(), job);
+		
+		try {
+			getExecutor().execute(() -> runJob(job));
+		}
+		catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw new IllegalStateException("The export could not be started", e);
+		}
+		
+		return job;
+	}
+	
+	@Override
+	public BulkExportJob getJob(@Nonnull String jobId) {
+		BulkExportJob job = jobs.get(jobId);
+		if (job == null) {
+			return null;
+		}
+		
+		// another user's export is treated as not existing, so that its id cannot be confirmed by guessing
+		User user = Context.getAuthenticatedUser();
+		return user != null && job.getOwner().equals(user.getUuid()) ? job : null;
+	}
+	
+	@Override
+	public boolean deleteJob(@Nonnull String jobId) {
+		BulkExportJob job = getJob(jobId);
+		if (job == null || !jobs.remove(jobId, job)) {
+			return false;
+		}
+		
+		// a running job deletes its own files once it notices it has been cancelled
+		synchronized (job) {
+			boolean finished = job.isFinished();
+			job.setStatus(BulkExportJob.Status.CANCELLED);
+			if (finished) {
+				deleteJobDirectory(job);
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public File getOutputFile(@Nonnull String jobId, @Nonnull String fileName) {
+		BulkExportJob job = getJob(jobId);
+		if (job == null || job.getStatus() != BulkExportJob.Status.COMPLETE) {
+			return null;
+		}
+		
+		// only files recorded by the job are served, so the file name cannot be used to escape its directory
+		for (BulkExportJob.Output output : job.getOutputs()) {
+			if (output.getFileName().equals(fileName)) {
+				return getJobDirectory(job).resolve(fileName).toFile();
+			}
+		}
+		
+		return null;
+	}
+	
+	@PostConstruct
+	public synchronized void startReaper() {
+		if (reaper == null) {
+			reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "fhir2-bulk-export-reaper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			
+			reaper.scheduleWithFixedDelay(this::purgeExpiredJobs, PURGE_INTERVAL, PURGE_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		
+		if (reaper != null) {
+			reaper.shutdownNow();
+			reaper = null;
+		}
+	}
+	
+	void runJob(BulkExportJob job) {
+		DaemonToken daemonToken = FhirActivator.getDaemonToken();
+		if (daemonToken == null) {
+			fail(job, new IllegalStateException("Exports cannot be run until the FHIR module has started"));
+			return;
+		}
+		
+		// the export gets a session and user context of its own rather than borrowing those of the request
+		Thread thread = Daemon.runInDaemonThread(() -> runJobAsOwner(job), daemonToken);
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			// the service is being shut down, so the export is abandoned
+			synchronized (job) {
+				if (!job.isFinished()) {
+					job.setStatus(BulkExportJob.Status.CANCELLED);
+				}
+			}
+			
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Removes the jobs which finished longer ago than the retention period, together with their files
+	 */
+	void purgeExpiredJobs() {
+		try {
+			Context.openSession();
+			int retention = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_EXPORT_RETENTION,
+			    DEFAULT_RETENTION);
+			if (retention > 0) {
+				purgeJobsFinishedBefore(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retention)));
+			}
+		}
+		catch (Exception e) {
+			log.warn("Failed to remove expired bulk exports", e);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+	
+	void purgeJobsFinishedBefore(Date date) throws IOException {
+		for (BulkExportJob job : jobs.values()) {
+			synchronized (job) {
+				if (job.isFinished() && job.getDateFinished() != null && job.getDateFinished().before(date)) {
+					jobs.remove(job.getId());
+					deleteJobDirectory(job);
+				}
+			}
+		}
+		
+		// the files of jobs which were lost when the server restarted
+		Path exportRoot = getExportRoot();
+		if (!Files.isDirectory(exportRoot)) {
+			return;
+		}
+		
+		try (Stream<Path> directories = Files.list(exportRoot)) {
+			for (Path directory : directories.collect(Collectors.toList())) {
+				if (!jobs.containsKey(directory.getFileName().toString())
+				        && Files.getLastModifiedTime(directory).toMillis() < date.getTime()) {
+					deleteDirectory(directory);
+				}
+			}
+		}
+	}
+	
+	private void runJobAsOwner(BulkExportJob job) {
+		try {
+			User owner = Context.getUserService().getUserByUuid(job.getOwner());
+			if (owner == null) {
+				throw new IllegalStateException("The user who started the export no longer exists");
+			}
+			
+			Context.becomeUser(owner.getSystemId());
+			
+			synchronized (job) {
+				if (job.getStatus() != BulkExportJob.Status.ACCEPTED) {
+					return;
+				}
+				
+				job.setStatus(BulkExportJob.Status.IN_PROGRESS);
+			}
+			
+			Path directory = getJobDirectory(job);
+			Files.createDirectories(directory);
+			
+			List<String> patientIds = null;
+			if (job.getLevel() == BulkExportJob.Level.GROUP) {
+				requirePrivilege(owner, PrivilegeConstants.GET_PATIENT_COHORTS);
+				patientIds = getGroupMemberIds(job.getGroupId());
+			}
+			
+			Map<String, List<ExportSource<?>>> sources = getExportSources();
+			for (String type : job.getResourceTypes()) {
+				job.setProgress("Exporting " + type + " resources");
+				
+				String fileName = type + FILE_EXTENSION;
+				IParser parser = fhirContext.newJsonParser().setPrettyPrint(false);
+				long count = 0;
+				try (Writer writer = Files.newBufferedWriter(directory.resolve(fileName), StandardCharsets.UTF_8)) {
+					for (ExportSource<?> source : sources.get(type)) {
+						// daemon threads are granted every privilege, so the owner's are checked here instead
+						requirePrivilege(owner, source.privilege);
+						count += export(job, source, patientIds, parser, writer);
+					}
+				}
+				
+				if (job.getStatus() == BulkExportJob.Status.CANCELLED) {
+					break;
+				}
+				
+				if (count > 0) {
+					job.addOutput(new BulkExportJob.Output(type, fileName, count));
+				} else {
+					Files.deleteIfExists(directory.resolve(fileName));
+				}
+			}
+			
+			job.setProgress(null);
+			finish(job, BulkExportJob.Status.COMPLETE);
+		}
+		catch (Exception e) {
+			fail(job, e);
+		}
+	}
+	
+	private static void requirePrivilege(User owner, String privilege) {
+		if (!owner.hasPrivilege(privilege)) {
+			throw new APIAuthenticationException("Privilege required: " + privilege);
+		}
+	}
+	
+	private void fail(BulkExportJob job, Exception e) {
+		log.error("Bulk export {} failed", job.getId(), e);
+		job.setError(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+		finish(job, BulkExportJob.Status.ERROR);
+	}
+	
+	private void finish(BulkExportJob job, BulkExportJob.Status status) {
+		synchronized (job) {
+			if (job.getStatus() == BulkExportJob.Status.CANCELLED) {
+				deleteJobDirectory(job);
+			} else {
+				job.setStatus(status);
+				job.setDateFinished(new Date());
+			}
+		}
+	}
+	
+	private <T extends OpenmrsObject & Auditable> long export(BulkExportJob job, ExportSource<T> source,
+	        List<String> patientIds, IParser parser, Writer writer) throws IOException {
+		if (patientIds == null) {
+			return export(job, source, createSearchParameters(job, source, null), parser, writer);
+		}
+		
+		long count = 0;
+		for (int start = 0; start < patientIds.size(); start += PATIENT_BATCH_SIZE) {
+			List<String> batch = patientIds.subList(start, Math.min(start + PATIENT_BATCH_SIZE, patientIds.size()));
+			count += export(job, source, createSearchParameters(job, source, batch), parser, writer);
+		}
+		
+		return count;
+	}
+	
+	private <T extends OpenmrsObject & Auditable> long export(BulkExportJob job, ExportSource<T> source,
+	        SearchParameterMap theParams, IParser parser, Writer writer) throws IOException {
+		FhirDao<T> dao = source.dao;
+		long count = 0;
+		
+		if (dao.isKeysetPageable(theParams)) {
+			SearchCursor cursor = null;
+			while (job.getStatus() != BulkExportJob.Status.CANCELLED) {
+				List<SearchCursor> keys = dao.getSearchResultKeys(theParams, cursor, CHUNK_SIZE);
+				if (keys.isEmpty()) {
+					break;
+				}
+				
+				count += writeChunk(source, theParams,
+				    keys.stream().map(SearchCursor::getId).collect(Collectors.toList()), parser, writer);
+				
+				if (keys.size() < CHUNK_SIZE) {
+					break;
+				}
+				
+				cursor = keys.get(keys.size() - 1);
+			}
+		} else {
+			// each chunk costs time proportional to its offset, so this is only used for the few searches which
+			// cannot be keyset-paged
+			for (int first = 0; job.getStatus() != BulkExportJob.Status.CANCELLED; first += CHUNK_SIZE) {
+				List<Integer> ids = dao.getSearchResultIds(theParams, first, CHUNK_SIZE);
+				if (ids.isEmpty()) {
+					break;
+				}
+				
+				count += writeChunk(source, theParams, ids, parser, writer);
+				
+				if (ids.size() < CHUNK_SIZE) {
+					break;
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	private <T extends OpenmrsObject & Auditable> long writeChunk(ExportSource<T> source, SearchParameterMap theParams,
+	        List<Integer> ids, IParser parser, Writer writer) throws IOException {
+		long count = 0;
+		for (T result : source.dao.getSearchResults(theParams, ids)) {
+			IBaseResource resource = source.translator.toFhirResource(result);
+			if (resource != null) {
+				writer.write(parser.encodeResourceToString(resource));
+				writer.write('\n');
+				count++;
+			}
+		}
+		
+		// nothing read by the export is needed again, so there is no reason to keep it in the session
+		Context.clearSession();
+		return count;
+	}
+	
+	private SearchParameterMap createSearchParameters(BulkExportJob job, ExportSource<?> source, List<String> patientIds) {
+		SearchParameterMap theParams = new SearchParameterMap();
+		
+		if (job.getSince() != null) {
+			theParams.addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY,
+			    new DateRangeParam().setLowerBoundInclusive(job.getSince()));
+		}
+		
+		if (patientIds != null) {
+			if (source.patientCompartment) {
+				ReferenceOrListParam patients = new ReferenceOrListParam();
+				patientIds.forEach(patientId -> patients.add(new ReferenceParam().setValue(patientId)));
+				theParams.addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+				    new ReferenceAndListParam().addAnd(patients));
+			} else {
+				TokenOrListParam patients = new TokenOrListParam();
+				patientIds.forEach(patientId -> patients.add(new TokenParam(patientId)));
+				theParams.addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY,
+				    new TokenAndListParam().addAnd(patients));
+			}
+		}
+		
+		return theParams;
+	}
+	
+	private List<String> getGroupMemberIds(String groupId) {
+		Cohort cohort = groupDao.get(groupId);
+		if (cohort == null) {
+			throw new ResourceNotFoundException("Could not find Group with Id " + groupId);
+		}
+		
+		List<Integer> memberIds = new ArrayList<>(cohort.getMemberIds());
+		Collections.sort(memberIds);
+		
+		List<String> patientIds = new ArrayList<>(memberIds.size());
+		for (int start = 0; start < memberIds.size(); start += CHUNK_SIZE) {
+			List<Integer> chunk = memberIds.subList(start, Math.min(start + CHUNK_SIZE, memberIds.size()));
+			for (Patient patient : patientDao.getSearchResults(new SearchParameterMap(), chunk)) {
+				if (!Boolean.TRUE.equals(patient.getVoided())) {
+					patientIds.add(patient.getUuid());
+				}
+			}
+			
+			Context.clearSession();
+		}
+		
+		return patientIds;
+	}
+	
+	private Map<String, List<ExportSource<?>>> getExportSources() {
+		Map<String, List<ExportSource<?>>> sources = new LinkedHashMap<>();
+		sources.put("Patient", Collections.singletonList(
+		    new ExportSource<>(patientDao, patientTranslator, PrivilegeConstants.GET_PATIENTS, false)));
+		sources.put("Encounter",
+		    asList(new ExportSource<>(encounterDao, encounterTranslator, PrivilegeConstants.GET_ENCOUNTERS, true),
+		        new ExportSource<>(visitDao, visitTranslator, PrivilegeConstants.GET_VISITS, true)));
+		sources.put("Observation", Collections.singletonList(
+		    new ExportSource<>(observationDao, observationTranslator, PrivilegeConstants.GET_OBS, true)));
+		sources.put("AllergyIntolerance", Collections.singletonList(new ExportSource<>(allergyIntoleranceDao,
+		        allergyIntoleranceTranslator, PrivilegeConstants.GET_ALLERGIES, true)));
+		sources.put("DiagnosticReport", Collections.singletonList(
+		    new ExportSource<>(diagnosticReportDao, diagnosticReportTranslator, PrivilegeConstants.GET_OBS, true)));
+		sources.put("MedicationRequest", Collections.singletonList(
+		    new ExportSource<>(medicationRequestDao, medicationRequestTranslator, PrivilegeConstants.GET_ORDERS, true)));
+		sources.put("ServiceRequest", Collections.singletonList(
+		    new ExportSource<>(serviceRequestDao, serviceRequestTranslator, PrivilegeConstants.GET_ORDERS, true)));
+		return sources;
+	}
+	
+	private static List<ExportSource<?>> asList(ExportSource<?>... sources) {
+		List<ExportSource<?>> result = new ArrayList<>(sources.length);
+		Collections.addAll(result, sources);
+		return result;
+	}
+	
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "fhir2-bulk-export");
+				thread.setDaemon(true);
+				thread.setContextClassLoader(OpenmrsClassLoader.getInstance());
+				return thread;
+			});
+		}
+		
+		return executor;
+	}
+	
+	private Path getExportRoot() {
+		File directory = exportDirectory;
+		if (directory == null) {
+			directory = new File(new File(OpenmrsUtil.getApplicationDataDirectory(), "fhir2"), "bulk-export");
+		}
+		
+		return directory.toPath();
+	}
+	
+	private Path getJobDirectory(BulkExportJob job) {
+		return getExportRoot().resolve(job.getId());
+	}
+	
+	private void deleteJobDirectory(BulkExportJob job) {
+		deleteDirectory(getJobDirectory(job));
+	}
+	
+	private void deleteDirectory(Path directory) {
+		if (!Files.exists(directory)) {
+			return;
+		}
+		
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.deleteIfExists(path);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Could not delete the files of bulk export {}", directory.getFileName(), e);
+		}
+	}
+	
+	private static final class ExportSource<T extends OpenmrsObject & Auditable> {
+		
+		private final FhirDao<T> dao;
+		
+		private final ToFhirTranslator<T, ? extends IBaseResource> translator;
+		
+		// the privilege needed to read the resources from the dao
+		private final String privilege;
+		
+		// whether resources are linked to their patient by reference rather than being the patient
+		private final boolean patientCompartment;
+		
+		private ExportSource(FhirDao<T> dao, ToFhirTranslator<T, ? extends IBaseResource> translator, String privilege,
+		    boolean patientCompartment) {
+			this.dao = dao;
+			this.translator = translator;
+			this.privilege = privilege;
+			this.patientCompartment = patientCompartment;
+		}
+	}
+}
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 
@@ -31,9 +32,10 @@ import org.openmrs.module.fhir2.api.FhirEncounterService;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirVisitService;
 import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.search.CompositeSearchPlanner;
+import org.openmrs.module.fhir2.api.search.MergingBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
-import org.openmrs.module.fhir2.api.search.TwoSearchQueryBundleProvider;
 import org.openmrs.module.fhir2.api.search.param.EncounterSearchParams;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.EncounterTranslator;
@@ -150,16 +152,20 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 		IBundleProvider visitBundle = null;
 		IBundleProvider encounterBundle = null;
 		
-		if (shouldSearchExplicitlyFor(searchParameters.getTag(), "visit")) {
+		// visits and encounters have types from different code systems, so a type may rule either out
+		if (shouldSearchExplicitlyFor(searchParameters.getTag(), "visit") && CompositeSearchPlanner
+		        .canMatch(searchParameters.getEncounterType(), FhirConstants.VISIT_TYPE_SYSTEM_URI)) {
 			visitBundle = visitService.searchForVisits(theParams);
 		}
 		
-		if (shouldSearchExplicitlyFor(searchParameters.getTag(), "encounter")) {
+		if (shouldSearchExplicitlyFor(searchParameters.getTag(), "encounter") && CompositeSearchPlanner
+		        .canMatch(searchParameters.getEncounterType(), FhirConstants.ENCOUNTER_TYPE_SYSTEM_URI)) {
 			encounterBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
 		}
 		
 		if (encounterBundle != null && visitBundle != null) {
-			return new TwoSearchQueryBundleProvider(visitBundle, encounterBundle, globalPropertyService);
+			return new MergingBundleProvider(Arrays.asList(visitBundle, encounterBundle), theParams.getSortSpec(),
+			        globalPropertyService);
 		} else if (encounterBundle == null && visitBundle != null) {
 			return visitBundle;
 		}
@@ -193,13 +199,9 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 		IBundleProvider visitBundle = visitService.searchForVisits(theParams);
 		IBundleProvider encounterBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
 		
-		if (!encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return new TwoSearchQueryBundleProvider(encounterBundle, visitBundle, globalPropertyService);
-		} else if (encounterBundle.isEmpty() && !visitBundle.isEmpty()) {
-			return visitBundle;
-		}
-		
-		return encounterBundle;
+		// the encounter is either an encounter or a visit, which is only found when the results are read
+		return new MergingBundleProvider(Arrays.asList(encounterBundle, visitBundle), theParams.getSortSpec(),
+		        globalPropertyService);
 	}
 	
 	private void populateReverseIncludeForEverythingOperationParams(SearchParameterMap theParams) {
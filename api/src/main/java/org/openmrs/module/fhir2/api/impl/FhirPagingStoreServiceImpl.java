@@ -0,0 +1,339 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import javax.annotation.Nonnull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.api.FhirPagingStoreService;
+import org.openmrs.module.fhir2.api.dao.FhirPagingSearchDao;
+import org.openmrs.module.fhir2.model.FhirPagingSearch;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stores searches using Java serialization. Searches hold references to Spring beans such as their
+ * DAO and translator, which are written as the name of the bean and resolved against the
+ * application context of the server reading the search back.
+ * <p/>
+ * A digest of the state each search had when this server last stored or read it is kept in memory,
+ * so that {@link #updateSearch(String, IBundleProvider)} only writes searches whose state has
+ * changed since.
+ * <p/>
+ * Only the classes which make up a stored search, i.e. the bundle providers, their search parameters
+ * and the JDK and HAPI types they hold, are read back from the database. Any other class in a
+ * stored search causes it to be discarded.
+ */
+@Slf4j
+@Component
+@Transactional
+@Setter(AccessLevel.PACKAGE)
+public class FhirPagingStoreServiceImpl implements FhirPagingStoreService, ApplicationContextAware {
+	
+	@Autowired
+	private FhirPagingSearchDao dao;
+	
+	private ApplicationContext applicationContext;
+	
+	private volatile Map<Object, String> beanNames;
+	
+	private final Map<String, StoredState> storedStates = new ConcurrentHashMap<>();
+	
+	@Override
+	public void setApplicationContext(@Nonnull ApplicationContext applicationContext) {
+		this.applicationContext = applicationContext;
+		this.beanNames = null;
+	}
+	
+	@Override
+	public boolean saveSearch(@Nonnull String searchId, @Nonnull IBundleProvider bundleProvider) {
+		byte[] state = serializeOrNull(searchId, bundleProvider);
+		if (state == null) {
+			return false;
+		}
+		
+		writeSearch(searchId, state);
+		return true;
+	}
+	
+	@Override
+	public boolean updateSearch(@Nonnull String searchId, @Nonnull IBundleProvider bundleProvider) {
+		byte[] state = serializeOrNull(searchId, bundleProvider);
+		if (state == null) {
+			return false;
+		}
+		
+		StoredState storedState = storedStates.get(searchId);
+		if (storedState == null || !storedState.digest.equals(digest(state))) {
+			writeSearch(searchId, state);
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public void touchSearch(@Nonnull String searchId) {
+		dao.updateDateAccessed(searchId, new Date());
+	}
+	
+	private void writeSearch(String searchId, byte[] state) {
+		Date now = new Date();
+		FhirPagingSearch pagingSearch = dao.get(searchId);
+		if (pagingSearch == null) {
+			pagingSearch = new FhirPagingSearch();
+			pagingSearch.setSearchId(searchId);
+			pagingSearch.setDateCreated(now);
+		}
+		
+		pagingSearch.setSearchState(state);
+		pagingSearch.setDateAccessed(now);
+		dao.createOrUpdate(pagingSearch);
+		storedStates.put(searchId, new StoredState(digest(state), now.getTime()));
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public IBundleProvider getSearch(@Nonnull String searchId, @Nonnull Date accessedSince) {
+		FhirPagingSearch pagingSearch = dao.get(searchId);
+		if (pagingSearch == null || pagingSearch.getDateAccessed().before(accessedSince)) {
+			return null;
+		}
+		
+		try {
+			IBundleProvider bundleProvider = deserialize(pagingSearch.getSearchState());
+			storedStates.put(searchId,
+			    new StoredState(digest(pagingSearch.getSearchState()), System.currentTimeMillis()));
+			return bundleProvider;
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException e) {
+			// most likely stored by a different version of the module
+			log.warn("Search {} could not be read from the database", searchId, e);
+			return null;
+		}
+	}
+	
+	@Override
+	public int purgeSearches(@Nonnull Date accessedBefore) {
+		storedStates.values().removeIf(storedState -> storedState.recorded < accessedBefore.getTime());
+		return dao.deleteAccessedBefore(accessedBefore);
+	}
+	
+	private byte[] serializeOrNull(String searchId, IBundleProvider bundleProvider) {
+		try {
+			return serialize(bundleProvider);
+		}
+		catch (IOException e) {
+			log.debug("Search {} cannot be stored in the database", searchId, e);
+			return null;
+		}
+	}
+	
+	private static HashCode digest(byte[] state) {
+		return Hashing.sha256().hashBytes(state);
+	}
+	
+	protected byte[] serialize(IBundleProvider bundleProvider) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new BeanReplacingObjectOutputStream(bytes, getBeanNames())) {
+			out.writeObject(bundleProvider);
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	protected IBundleProvider deserialize(byte[] state) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new BeanResolvingObjectInputStream(new ByteArrayInputStream(state),
+		        applicationContext)) {
+			return (IBundleProvider) in.readObject();
+		}
+	}
+	
+	private Map<Object, String> getBeanNames() {
+		Map<Object, String> result = beanNames;
+		if (result == null) {
+			result = new IdentityHashMap<>();
+			for (Map.Entry<String, Object> bean : applicationContext.getBeansWithAnnotation(Component.class).entrySet()) {
+				result.put(bean.getValue(), bean.getKey());
+			}
+			
+			beanNames = result;
+		}
+		
+		return result;
+	}
+	
+	private static class StoredState {
+		
+		private final HashCode digest;
+		
+		private final long recorded;
+		
+		private StoredState(HashCode digest, long recorded) {
+			this.digest = digest;
+			this.recorded = recorded;
+		}
+	}
+	
+	/**
+	 * Stands in for a Spring bean in a serialized search
+	 */
+	private static class BeanReference implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String beanName;
+		
+		private BeanReference(String beanName) {
+			this.beanName = beanName;
+		}
+	}
+	
+	private static class BeanReplacingObjectOutputStream extends ObjectOutputStream {
+		
+		private final Map<Object, String> beanNames;
+		
+		private BeanReplacingObjectOutputStream(OutputStream out, Map<Object, String> beanNames) throws IOException {
+			super(out);
+			this.beanNames = beanNames;
+			enableReplaceObject(true);
+		}
+		
+		@Override
+		protected Object replaceObject(Object obj) {
+			String beanName = beanNames.get(obj);
+			return beanName == null ? obj : new BeanReference(beanName);
+		}
+	}
+	
+	private static class BeanResolvingObjectInputStream extends ObjectInputStream {
+		
+		// the bundle providers and search parameters of this module and the HAPI search parameter types
+		private static final String[] ALLOWED_PACKAGES = { "org.openmrs.module.fhir2.api.search.",
+		        "ca.uhn.fhir.rest.param.", "ca.uhn.fhir.rest.api.", "ca.uhn.fhir.model.api.",
+		        "ca.uhn.fhir.model.primitive." };
+		
+		// the JDK and library types referenced by those classes
+		private static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList(BeanReference.class.getName(),
+		    "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+		    "java.lang.Float", "java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Short",
+		    "java.lang.String", "java.math.BigDecimal", "java.math.BigInteger", "java.sql.Date", "java.sql.Timestamp",
+		    "java.util.ArrayDeque", "java.util.ArrayList", "java.util.Arrays$ArrayList", "java.util.BitSet",
+		    "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+		    "java.util.Collections$SingletonList", "java.util.Collections$UnmodifiableCollection",
+		    "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableMap",
+		    "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableSet",
+		    "java.util.Date", "java.util.HashMap", "java.util.HashSet", "java.util.LinkedHashMap",
+		    "java.util.LinkedHashSet", "java.util.LinkedList", "java.util.Locale", "java.util.SimpleTimeZone",
+		    "java.util.TimeZone", "java.util.concurrent.ConcurrentHashMap",
+		    "java.util.concurrent.ConcurrentHashMap$Segment", "java.util.concurrent.locks.AbstractOwnableSynchronizer",
+		    "java.util.concurrent.locks.AbstractQueuedSynchronizer", "java.util.concurrent.locks.ReentrantLock",
+		    "java.util.concurrent.locks.ReentrantLock$NonfairSync", "java.util.concurrent.locks.ReentrantLock$Sync",
+		    "sun.util.calendar.ZoneInfo", "org.springframework.util.LinkedCaseInsensitiveMap",
+		    "org.springframework.util.LinkedCaseInsensitiveMap$1"));
+		
+		private final ApplicationContext applicationContext;
+		
+		private BeanResolvingObjectInputStream(InputStream in, ApplicationContext applicationContext) throws IOException {
+			super(in);
+			this.applicationContext = applicationContext;
+			enableResolveObject(true);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if (!isAllowed(desc.getName())) {
+				throw new InvalidClassException(desc.getName(), "Class is not part of a stored search");
+			}
+			
+			// module classes are not necessarily visible to the default class loader
+			try {
+				return Class.forName(desc.getName(), false, OpenmrsClassLoader.getInstance());
+			}
+			catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+		
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+			throw new InvalidClassException("Proxy classes are not part of a stored search");
+		}
+		
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof BeanReference) {
+				String beanName = ((BeanReference) obj).beanName;
+				if (!applicationContext.containsBean(beanName)) {
+					throw new InvalidObjectException("No bean named " + beanName + " is available");
+				}
+				
+				return applicationContext.getBean(beanName);
+			}
+			
+			return obj;
+		}
+		
+		private static boolean isAllowed(String className) {
+			// arrays are allowed if their element type is, e.g. [I or [Ljava.lang.Integer;
+			String elementName = className.replaceFirst("^\\[+", "");
+			if (!elementName.equals(className)) {
+				if (elementName.length() == 1) {
+					return true;
+				}
+				
+				if (!elementName.startsWith("L") || !elementName.endsWith(";")) {
+					return false;
+				}
+				
+				elementName = elementName.substring(1, elementName.length() - 1);
+			}
+			
+			if (ALLOWED_CLASSES.contains(elementName)) {
+				return true;
+			}
+			
+			for (String allowedPackage : ALLOWED_PACKAGES) {
+				if (elementName.startsWith(allowedPackage)) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+	}
+}
@@ -11,13 +11,26 @@ package org.openmrs.module.fhir2.api.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import lombok.AccessLevel;
@@ -28,10 +41,20 @@ import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Patient;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirAllergyIntoleranceService;
+import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirMedicationRequestService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
 import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.FhirServiceRequestService;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.search.ConcatenatedBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
+import org.openmrs.module.fhir2.api.search.SearchRequestContext;
+import org.openmrs.module.fhir2.api.search.param.EncounterSearchParams;
+import org.openmrs.module.fhir2.api.search.param.ObservationSearchParams;
 import org.openmrs.module.fhir2.api.search.param.PatientSearchParams;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.PatientTranslator;
@@ -45,6 +68,12 @@ import org.springframework.transaction.annotation.Transactional;
 @Getter(AccessLevel.PROTECTED)
 public class FhirPatientServiceImpl extends BaseFhirService<Patient, org.openmrs.Patient> implements FhirPatientService {
 	
+	// the types of resources returned by $everything
+	private static final Set<String> EVERYTHING_RESOURCE_TYPES = Collections.unmodifiableSet(
+	    new HashSet<>(Arrays.asList(FhirConstants.PATIENT, FhirConstants.ENCOUNTER, FhirConstants.OBSERVATION,
+	        FhirConstants.ALLERGY_INTOLERANCE, FhirConstants.DIAGNOSTIC_REPORT, FhirConstants.MEDICATION_REQUEST,
+	        FhirConstants.SERVICE_REQUEST, FhirConstants.PROCEDURE_REQUEST)));
+	
 	@Autowired
 	private PatientTranslator translator;
 	
@@ -54,6 +83,24 @@ public class FhirPatientServiceImpl extends BaseFhirService<Patient, org.openmrs
 	@Autowired
 	private SearchQueryInclude<Patient> searchQueryInclude;
 	
+	@Autowired
+	private FhirEncounterService encounterService;
+	
+	@Autowired
+	private FhirObservationService observationService;
+	
+	@Autowired
+	private FhirAllergyIntoleranceService allergyIntoleranceService;
+	
+	@Autowired
+	private FhirDiagnosticReportService diagnosticReportService;
+	
+	@Autowired
+	private FhirMedicationRequestService medicationRequestService;
+	
+	@Autowired
+	private FhirServiceRequestService serviceRequestService;
+	
 	@Autowired
 	private SearchQuery<org.openmrs.Patient, Patient, FhirPatientDao, PatientTranslator, SearchQueryInclude<Patient>> searchQuery;
 	
@@ -87,34 +134,97 @@ public class FhirPatientServiceImpl extends BaseFhirService<Patient, org.openmrs
 	@Override
 	@Transactional(readOnly = true)
 	public IBundleProvider getPatientEverything(TokenParam patientId) {
-		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.EVERYTHING_SEARCH_HANDLER, "")
-		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY,
-		            new TokenAndListParam().addAnd(patientId));
-		
-		populateEverythingOperationParams(theParams);
-		return searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+		return getPatientEverything(patientId, null, null, null);
 	}
 	
 	@Override
 	@Transactional(readOnly = true)
 	public IBundleProvider getPatientEverything() {
-		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.EVERYTHING_SEARCH_HANDLER, "");
+		return getPatientEverything(null, null, null);
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public IBundleProvider getPatientEverything(TokenParam patientId, DateParam since, StringAndListParam types,
+	        NumberParam count) {
+		ReferenceAndListParam patientReference = new ReferenceAndListParam()
+		        .addAnd(new ReferenceOrListParam().add(new ReferenceParam().setValue(patientId.getValue())));
 		
-		populateEverythingOperationParams(theParams);
-		return searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+		return getEverything(new TokenAndListParam().addAnd(patientId), patientReference, since, types, count);
 	}
 	
-	private void populateEverythingOperationParams(SearchParameterMap theParams) {
-		HashSet<Include> revIncludes = new HashSet<>();
+	@Override
+	@Transactional(readOnly = true)
+	public IBundleProvider getPatientEverything(DateParam since, StringAndListParam types, NumberParam count) {
+		return getEverything(null, null, since, types, count);
+	}
+	
+	private IBundleProvider getEverything(TokenAndListParam patientId, ReferenceAndListParam patientReference,
+	        DateParam since, StringAndListParam types, NumberParam count) {
+		DateRangeParam lastUpdated = since == null || since.getValue() == null ? null
+		        : new DateRangeParam().setLowerBoundInclusive(since.getValue());
+		
+		Set<String> resourceTypes = getResourceTypes(types);
+		
+		// each resource type is searched separately and only the requested page is read from each search, which
+		// requires every search to count its results rather than load them
+		List<IBundleProvider> results = SearchRequestContext.withTotalMode(SearchTotalModeEnum.ACCURATE, () -> {
+			List<IBundleProvider> bundleProviders = new ArrayList<>();
+			
+			if (resourceTypes.contains(FhirConstants.PATIENT)) {
+				SearchParameterMap theParams = new SearchParameterMap()
+				        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, patientId)
+				        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY,
+				            lastUpdated);
+				bundleProviders.add(searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.ENCOUNTER)) {
+				bundleProviders.add(encounterService.searchForEncounters(
+				    EncounterSearchParams.builder().subject(patientReference).lastUpdated(lastUpdated).build()));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.OBSERVATION)) {
+				bundleProviders.add(observationService.searchForObservations(ObservationSearchParams.builder()
+				        .patientReference(patientReference).lastUpdated(lastUpdated).build()));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.ALLERGY_INTOLERANCE)) {
+				bundleProviders.add(allergyIntoleranceService.searchForAllergies(patientReference, null, null, null, null,
+				    null, null, lastUpdated, null, null));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.DIAGNOSTIC_REPORT)) {
+				bundleProviders.add(diagnosticReportService.searchForDiagnosticReports(null, patientReference, null, null,
+				    null, null, lastUpdated, null, null));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.MEDICATION_REQUEST)) {
+				bundleProviders.add(medicationRequestService.searchForMedicationRequests(patientReference, null, null, null,
+				    null, null, null, lastUpdated, null, null));
+			}
+			
+			if (resourceTypes.contains(FhirConstants.SERVICE_REQUEST)
+			        || resourceTypes.contains(FhirConstants.PROCEDURE_REQUEST)) {
+				bundleProviders.add(serviceRequestService.searchForServiceRequests(patientReference, null, null, null, null,
+				    null, lastUpdated, null));
+			}
+			
+			return bundleProviders;
+		});
 		
-		revIncludes.add(new Include(FhirConstants.OBSERVATION + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ALLERGY_INTOLERANCE + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.DIAGNOSTIC_REPORT + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ENCOUNTER + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.MEDICATION_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.SERVICE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.PROCEDURE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
+		return new ConcatenatedBundleProvider(results,
+		        count == null || count.getValue() == null ? null : count.getValue().intValue());
+	}
+	
+	private static Set<String> getResourceTypes(StringAndListParam types) {
+		if (types == null || types.getValuesAsQueryTokens().isEmpty()) {
+			return EVERYTHING_RESOURCE_TYPES;
+		}
 		
-		theParams.addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
+		// resource types which cannot refer to a patient are ignored, as there can be no results of those types
+		return types.getValuesAsQueryTokens().stream().flatMap(orList -> orList.getValuesAsQueryTokens().stream())
+		        .map(StringParam::getValue).filter(Objects::nonNull).map(String::trim)
+		        .filter(EVERYTHING_RESOURCE_TYPES::contains).collect(Collectors.toSet());
 	}
 }
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
 import java.util.HashSet;
 
 import ca.uhn.fhir.model.api.Include;
@@ -18,6 +19,7 @@ import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
@@ -33,9 +35,10 @@ import org.openmrs.module.fhir2.api.FhirPractitionerService;
 import org.openmrs.module.fhir2.api.FhirUserService;
 import org.openmrs.module.fhir2.api.dao.FhirPractitionerDao;
 import org.openmrs.module.fhir2.api.dao.FhirUserDao;
+import org.openmrs.module.fhir2.api.search.CompositeSearchPlanner;
+import org.openmrs.module.fhir2.api.search.MergingBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
-import org.openmrs.module.fhir2.api.search.TwoSearchQueryBundleProvider;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.PractitionerTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -113,15 +116,25 @@ public class FhirPractitionerServiceImpl extends BaseFhirService<Practitioner, P
 		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, lastUpdated)
 		        .addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
 		
-		IBundleProvider providerBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
-		IBundleProvider userBundle = userService.searchForUsers(theParams);
+		// providers and users have identifiers from different systems, so an identifier may rule either out
+		boolean searchProviders = CompositeSearchPlanner.canMatch(identifier,
+		    FhirConstants.OPENMRS_FHIR_EXT_PROVIDER_IDENTIFIER);
+		boolean searchUsers = CompositeSearchPlanner.canMatch(identifier, FhirConstants.OPENMRS_FHIR_EXT_USER_IDENTIFIER);
+		
+		if (!searchUsers) {
+			return searchProviders ? searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude)
+			        : new SimpleBundleProvider();
+		}
 		
-		if (!providerBundle.isEmpty() && !userBundle.isEmpty()) {
-			return new TwoSearchQueryBundleProvider(providerBundle, userBundle, globalPropertyService);
-		} else if (providerBundle.isEmpty() && !userBundle.isEmpty()) {
+		IBundleProvider userBundle = userService.searchForUsers(theParams);
+		if (!searchProviders) {
 			return userBundle;
 		}
 		
-		return providerBundle;
+		IBundleProvider providerBundle = searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+		
+		// neither search is counted up-front, as a practitioner may be either a provider or a user
+		return new MergingBundleProvider(Arrays.asList(providerBundle, userBundle), theParams.getSortSpec(),
+		        globalPropertyService);
 	}
 }
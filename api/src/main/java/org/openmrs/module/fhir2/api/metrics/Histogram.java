@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative values with a bucket per power of two, which keeps its
+ * size fixed however many values are recorded. Percentiles are reported as the upper bound of the
+ * bucket they fall in, so they are accurate to within a factor of two.
+ */
+public final class Histogram {
+	
+	// bucket 0 holds 0 and bucket b holds the values in [2^(b-1), 2^b)
+	private static final int BUCKETS = Long.SIZE;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	
+	private final LongAdder count = new LongAdder();
+	
+	private final LongAdder sum = new LongAdder();
+	
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+	
+	/**
+	 * @param value the value to record; negative values are recorded as 0
+	 */
+	public void record(long value) {
+		long recorded = Math.max(0, value);
+		buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(recorded));
+		count.increment();
+		sum.add(recorded);
+		max.accumulate(recorded);
+	}
+	
+	public HistogramSnapshot getSnapshot() {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		
+		long maximum = max.get();
+		return new HistogramSnapshot(total, sum.sum(), maximum, percentile(counts, total, 0.5, maximum),
+		        percentile(counts, total, 0.95, maximum), percentile(counts, total, 0.99, maximum));
+	}
+	
+	private static long percentile(long[] counts, long total, double quantile, long maximum) {
+		if (total == 0) {
+			return 0;
+		}
+		
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return i == 0 ? 0 : Math.min(maximum, (1L << i) - 1);
+			}
+		}
+		
+		return maximum;
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The values recorded by a {@link Histogram} at a point in time
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class HistogramSnapshot {
+	
+	private final long count;
+	
+	private final long sum;
+	
+	private final long max;
+	
+	private final long p50;
+	
+	private final long p95;
+	
+	private final long p99;
+	
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.google.common.reflect.TypeToken;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Keeps timing histograms for the phases of each FHIR search, i.e. loading the ids of the matching
+ * results, fetching the results of a page, translating them and loading their includes, along with
+ * the number of matching results. These are kept for each resource type and "search shape", the set
+ * of search parameters used regardless of their values, so that the searches which drive the load on
+ * the database can be found.
+ * </p>
+ * <p>
+ * The metrics are kept in memory only. They can be read through the {@code $metrics} operation or
+ * over JMX as {@value #OBJECT_NAME}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SearchMetrics implements SearchMetricsMXBean {
+	
+	public static final String OBJECT_NAME = "org.openmrs.module.fhir2:type=SearchMetrics";
+	
+	// searches with new shapes are counted together once this many shapes are being tracked
+	static final int MAXIMUM_SHAPES = 1000;
+	
+	static final String OTHER_SHAPE = "*";
+	
+	private static final String UNKNOWN_RESOURCE_TYPE = "Resource";
+	
+	private static final Map<Class<?>, String> RESOURCE_TYPES = new ConcurrentHashMap<>();
+	
+	public enum Phase {
+		ID_QUERY,
+		PAGE_FETCH,
+		TRANSLATION,
+		INCLUDE
+	}
+	
+	private final Map<Key, ShapeMetrics> metrics = new ConcurrentHashMap<>();
+	
+	private ObjectName objectName;
+	
+	@PostConstruct
+	public synchronized void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			try {
+				server.registerMBean(this, name);
+			}
+			catch (InstanceAlreadyExistsException e) {
+				// left behind by an earlier instance of the module, e.g., before it was refreshed
+				server.unregisterMBean(name);
+				server.registerMBean(this, name);
+			}
+			
+			objectName = name;
+		}
+		catch (JMException e) {
+			log.warn("Cannot register the FHIR search metrics with JMX", e);
+		}
+	}
+	
+	@PreDestroy
+	public synchronized void unregister() {
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch (JMException e) {
+				log.debug("Cannot unregister the FHIR search metrics from JMX", e);
+			}
+			
+			objectName = null;
+		}
+	}
+	
+	/**
+	 * Runs one phase of a search, recording how long it takes
+	 *
+	 * @param resourceType the resource type searched for
+	 * @param shape the shape of the search, as returned by {@link #getShape(SearchParameterMap)}
+	 * @param phase the phase of the search
+	 * @param action the phase to run
+	 * @return the result of the action
+	 */
+	public <R> R time(@Nonnull String resourceType, @Nonnull String shape, @Nonnull Phase phase,
+	        @Nonnull Supplier<R> action) {
+		long start = System.nanoTime();
+		try {
+			return action.get();
+		}
+		finally {
+			recordTime(resourceType, shape, phase, System.nanoTime() - start);
+		}
+	}
+	
+	public void recordTime(@Nonnull String resourceType, @Nonnull String shape, @Nonnull Phase phase, long nanos) {
+		getShapeMetrics(resourceType, shape).times[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+	
+	/**
+	 * @param resourceType the resource type searched for
+	 * @param shape the shape of the search, as returned by {@link #getShape(SearchParameterMap)}
+	 * @param results the number of results matching the search
+	 */
+	public void recordCardinality(@Nonnull String resourceType, @Nonnull String shape, long results) {
+		getShapeMetrics(resourceType, shape).cardinality.record(results);
+	}
+	
+	@Override
+	public List<SearchShapeStatistics> getSearches() {
+		return metrics.entrySet().stream().sorted(Map.Entry.comparingByKey()).map(entry -> {
+			ShapeMetrics shapeMetrics = entry.getValue();
+			return new SearchShapeStatistics(entry.getKey().resourceType, entry.getKey().shape,
+			        shapeMetrics.times[Phase.ID_QUERY.ordinal()].getSnapshot(),
+			        shapeMetrics.times[Phase.PAGE_FETCH.ordinal()].getSnapshot(),
+			        shapeMetrics.times[Phase.TRANSLATION.ordinal()].getSnapshot(),
+			        shapeMetrics.times[Phase.INCLUDE.ordinal()].getSnapshot(), shapeMetrics.cardinality.getSnapshot());
+		}).collect(Collectors.toList());
+	}
+	
+	@Override
+	public void reset() {
+		metrics.clear();
+	}
+	
+	/**
+	 * @param searchParameterMap the parameters of a search
+	 * @return the names of the parameters used by the search, sorted and separated by commas, where each
+	 *         name is the search handler and, if there is one, the property it applies to
+	 */
+	public static String getShape(@Nonnull SearchParameterMap searchParameterMap) {
+		TreeSet<String> names = new TreeSet<>();
+		for (Map.Entry<String, List<PropParam<?>>> parameter : searchParameterMap.getParameters()) {
+			String handler = StringUtils.removeEnd(parameter.getKey(), ".search.handler");
+			for (PropParam<?> propParam : parameter.getValue()) {
+				String property = StringUtils.removeEnd(propParam.getPropertyName(), ".property");
+				names.add(property == null ? handler : handler + ":" + property);
+			}
+		}
+		
+		if (searchParameterMap.getSortSpec() != null) {
+			names.add("_sort");
+		}
+		
+		return String.join(",", names);
+	}
+	
+	/**
+	 * @param translator the translator used by a search
+	 * @return the name of the type of resource the translator produces, e.g. {@code Patient}
+	 */
+	public static String getResourceType(@Nonnull ToFhirTranslator<?, ?> translator) {
+		return RESOURCE_TYPES.computeIfAbsent(translator.getClass(), translatorClass -> {
+			Class<?> resourceClass = TypeToken.of(translatorClass)
+			        .resolveType(ToFhirTranslator.class.getTypeParameters()[1]).getRawType();
+			if (!IBaseResource.class.isAssignableFrom(resourceClass) || resourceClass.isInterface()
+			        || Modifier.isAbstract(resourceClass.getModifiers())) {
+				return UNKNOWN_RESOURCE_TYPE;
+			}
+			
+			return resourceClass.getSimpleName();
+		});
+	}
+	
+	private ShapeMetrics getShapeMetrics(String resourceType, String shape) {
+		Key key = new Key(resourceType, shape);
+		ShapeMetrics shapeMetrics = metrics.get(key);
+		if (shapeMetrics != null) {
+			return shapeMetrics;
+		}
+		
+		if (metrics.size() >= MAXIMUM_SHAPES) {
+			key = new Key(resourceType, OTHER_SHAPE);
+		}
+		
+		return metrics.computeIfAbsent(key, k -> new ShapeMetrics());
+	}
+	
+	@EqualsAndHashCode
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	private static final class Key implements Comparable<Key> {
+		
+		private static final Comparator<Key> ORDER = Comparator.<Key, String> comparing(key -> key.resourceType)
+		        .thenComparing(key -> key.shape);
+		
+		private final String resourceType;
+		
+		private final String shape;
+		
+		@Override
+		public int compareTo(Key other) {
+			return ORDER.compare(this, other);
+		}
+	}
+	
+	private static final class ShapeMetrics {
+		
+		private final Histogram[] times = new Histogram[Phase.values().length];
+		
+		private final Histogram cardinality = new Histogram();
+		
+		private ShapeMetrics() {
+			for (int i = 0; i < times.length; i++) {
+				times[i] = new Histogram();
+			}
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The metrics recorded for the searches of one resource type which used the same set of search
+ * parameters. Times are in microseconds.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class SearchShapeStatistics {
+	
+	private final String resourceType;
+	
+	private final String shape;
+	
+	private final HistogramSnapshot idQueryMicros;
+	
+	private final HistogramSnapshot pageFetchMicros;
+	
+	private final HistogramSnapshot translationMicros;
+	
+	private final HistogramSnapshot includeMicros;
+	
+	private final HistogramSnapshot cardinality;
+}
@@ -0,0 +1,72 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * <p>
+ * Decides which of the searches backing a FHIR resource stored in more than one OpenMRS table need
+ * to be run, such as visits and encounters for Encounter, or providers and users for Practitioner.
+ * </p>
+ * <p>
+ * Most search parameters apply to both tables, but codes and identifiers are qualified by a code
+ * system which is only ever used by one of them. A search which can only match codes from another
+ * system can never find anything in that table, so it need not be run at all.
+ * </p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class CompositeSearchPlanner {
+	
+	/**
+	 * @param tokenAndListParam the values of a token search parameter
+	 * @param system the only code system used for the parameter by the table being searched
+	 * @return false if the parameter can only match codes from other code systems, and so the table
+	 *         need not be searched, otherwise true
+	 */
+	public static boolean canMatch(@Nullable TokenAndListParam tokenAndListParam, @Nonnull String system) {
+		if (tokenAndListParam == null) {
+			return true;
+		}
+		
+		// every one of the and-ed parameters must be able to match the system for the search to match
+		for (TokenOrListParam tokenOrListParam : tokenAndListParam.getValuesAsQueryTokens()) {
+			if (tokenOrListParam != null && !canMatch(tokenOrListParam, system)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static boolean canMatch(TokenOrListParam tokenOrListParam, String system) {
+		if (tokenOrListParam.getValuesAsQueryTokens().isEmpty()) {
+			return true;
+		}
+		
+		for (TokenParam tokenParam : tokenOrListParam.getValuesAsQueryTokens()) {
+			// a modifier such as :not or :text may match codes in any system
+			if (tokenParam == null || tokenParam.getModifier() != null || StringUtils.isBlank(tokenParam.getSystem())
+			        || system.equals(tokenParam.getSystem())) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.Getter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+
+/**
+ * <p>
+ * An {@link IBundleProvider} which returns the results of several other bundle providers one after
+ * the other, as if they were a single search. This is used by operations like
+ * {@code Patient/$everything}, which return resources of several types.
+ * </p>
+ * <p>
+ * Only the results of the requested page are read from the underlying bundle providers, so the
+ * memory used for each page does not depend on how many results there are in total. For this to
+ * work, every underlying bundle provider must know its size.
+ * </p>
+ */
+public class ConcatenatedBundleProvider implements IBundleProvider, WeightedBundleProvider, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// rough size of the provider itself
+	private static final long BASE_WEIGHT = 512;
+	
+	private final List<IBundleProvider> bundleProviders;
+	
+	@Getter
+	private final IPrimitiveType<Date> published;
+	
+	@Getter
+	private final String uuid;
+	
+	private final Integer pageSize;
+	
+	/**
+	 * @param bundleProviders the bundle providers whose results should be returned, in order
+	 * @param pageSize the preferred page size or null to use that of the first bundle provider
+	 */
+	public ConcatenatedBundleProvider(@Nonnull List<IBundleProvider> bundleProviders, @Nullable Integer pageSize) {
+		this.bundleProviders = new ArrayList<>(bundleProviders);
+		this.published = InstantDt.withCurrentTime();
+		this.uuid = FhirUtils.newUuid();
+		this.pageSize = pageSize;
+	}
+	
+	@Nonnull
+	@Override
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		int firstResult = Math.max(fromIndex, 0);
+		int lastResult = toIndex - firstResult > 0 ? toIndex : Integer.MAX_VALUE;
+		
+		if (SearchRequestContext.deferPage(consumer -> readResources(firstResult, lastResult, consumer))) {
+			return Collections.emptyList();
+		}
+		
+		List<IBaseResource> resources = new ArrayList<>();
+		readResources(firstResult, lastResult, resources::add);
+		return resources;
+	}
+	
+	@Override
+	public Integer preferredPageSize() {
+		if (pageSize != null || bundleProviders.isEmpty()) {
+			return pageSize;
+		}
+		
+		return bundleProviders.get(0).preferredPageSize();
+	}
+	
+	@Nullable
+	@Override
+	public Integer size() {
+		int size = 0;
+		for (IBundleProvider bundleProvider : bundleProviders) {
+			size += sizeOf(bundleProvider);
+		}
+		
+		return size;
+	}
+	
+	@Override
+	public long getWeight() {
+		long weight = BASE_WEIGHT;
+		for (IBundleProvider bundleProvider : bundleProviders) {
+			if (bundleProvider instanceof WeightedBundleProvider) {
+				weight += Math.max(((WeightedBundleProvider) bundleProvider).getWeight(), 0);
+			}
+		}
+		
+		return weight;
+	}
+	
+	private void readResources(int firstResult, int lastResult, Consumer<IBaseResource> consumer) {
+		int offset = 0;
+		for (IBundleProvider bundleProvider : bundleProviders) {
+			if (offset >= lastResult) {
+				break;
+			}
+			
+			int size = sizeOf(bundleProvider);
+			if (size > 0 && firstResult < offset + size) {
+				int from = Math.max(firstResult - offset, 0);
+				int to = (int) Math.min((long) lastResult - offset, size);
+				
+				// the results are read on behalf of this provider, so must not be streamed by the underlying one
+				SearchRequestContext.withoutStreaming(() -> bundleProvider.getResources(from, to)).forEach(consumer);
+			}
+			
+			offset += size;
+		}
+	}
+	
+	private static int sizeOf(IBundleProvider bundleProvider) {
+		Integer size = bundleProvider.size();
+		if (size == null) {
+			throw new IllegalStateException("Cannot page through the results of "
+			        + bundleProvider.getClass().getSimpleName() + " as its size is unknown");
+		}
+		
+		return size;
+	}
+}
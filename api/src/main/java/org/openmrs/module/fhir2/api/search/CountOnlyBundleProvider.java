@@ -0,0 +1,87 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.Getter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * An {@link IBundleProvider} for searches where only the number of matching results is wanted, as
+ * for {@code _summary=count}. The results are counted by a single query and are never loaded, so
+ * neither they nor the resources they include are translated.
+ */
+public class CountOnlyBundleProvider<T extends OpenmrsObject & Auditable> implements WeightedBundleProvider, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// rough size of the provider itself, including its search parameters
+	private static final long BASE_WEIGHT = 2048;
+	
+	private final FhirDao<T> dao;
+	
+	private final SearchParameterMap searchParameterMap;
+	
+	@Getter
+	private final IPrimitiveType<Date> published;
+	
+	@Getter
+	private final String uuid;
+	
+	private Integer count;
+	
+	public CountOnlyBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao) {
+		this.dao = dao;
+		this.searchParameterMap = searchParameterMap;
+		this.published = InstantDt.withCurrentTime();
+		this.uuid = FhirUtils.newUuid();
+	}
+	
+	@Nonnull
+	@Override
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		return Collections.emptyList();
+	}
+	
+	@Override
+	public Integer preferredPageSize() {
+		return null;
+	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	public Integer size() {
+		if (count == null) {
+			count = dao.getSearchResultCount(searchParameterMap);
+		}
+		
+		return count;
+	}
+	
+	@Override
+	public long getWeight() {
+		return BASE_WEIGHT;
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+
+/**
+ * An {@link IBundleProvider} which can hand out page ids (see {@link IBundleProvider#getNextPageId()})
+ * and resume the search from them. Paging providers use this to serve requests for
+ * {@code _getpages} links that carry a page id instead of an offset.
+ */
+public interface CursorBundleProvider extends IBundleProvider {
+	
+	/**
+	 * Returns a bundle provider positioned at the page identified by the supplied page id
+	 *
+	 * @param pageId a page id previously returned by this provider
+	 * @return a bundle provider whose results start at the identified page
+	 */
+	IBundleProvider getPage(@Nonnull String pageId);
+}
@@ -0,0 +1,185 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * Runs the independent branches of an _include or _revinclude, each of which is its own database
+ * round trip, at the same time on a small pool of threads shared by all searches. The first branch
+ * runs on the calling thread, and each of the others runs in its own read-only OpenMRS session on
+ * behalf of the user who made the request.
+ * </p>
+ * <p>
+ * When the pool is busy, branches are run on the calling thread instead, and branches started from
+ * another branch, e.g., by the search for a reverse include, always run on the calling thread, so
+ * that the pool cannot be exhausted by threads waiting on each other.
+ * </p>
+ */
+@Component
+public class IncludeBranchExecutor {
+	
+	public static final int PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	
+	// the number of branches which may wait for a thread before new branches run on the calling thread
+	private static final int QUEUE_CAPACITY = PARALLELISM * 8;
+	
+	private static final ThreadLocal<Boolean> IN_BRANCH = new ThreadLocal<>();
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	@Setter(AccessLevel.PACKAGE)
+	private SessionFactory sessionFactory;
+	
+	@Setter(AccessLevel.PACKAGE)
+	private ExecutorService executor;
+	
+	/**
+	 * Runs each of the branches, in parallel where possible
+	 *
+	 * @param branches the branches to run
+	 * @return the result of each branch, in the same order as the branches
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> List<R> invokeAll(@Nonnull List<Supplier<R>> branches) {
+		if (branches.size() < 2 || IN_BRANCH.get() != null) {
+			return branches.stream().map(Supplier::get).collect(Collectors.toList());
+		}
+		
+		UserContext userContext = Context.getUserContext();
+		
+		List<Future<R>> futures = new ArrayList<>(branches.size());
+		futures.add(null);
+		for (Supplier<R> branch : branches.subList(1, branches.size())) {
+			try {
+				futures.add(getExecutor().submit(() -> runBranch(branch, userContext)));
+			}
+			catch (RejectedExecutionException e) {
+				futures.add(null);
+			}
+		}
+		
+		Object[] results = new Object[branches.size()];
+		boolean completed = false;
+		try {
+			// the calling thread runs the first branch, and any that could not be queued, while the others run
+			for (int i = 0; i < branches.size(); i++) {
+				if (futures.get(i) == null) {
+					results[i] = branches.get(i).get();
+				}
+			}
+			
+			for (int i = 0; i < branches.size(); i++) {
+				if (futures.get(i) != null) {
+					results[i] = futures.get(i).get();
+				}
+			}
+			
+			completed = true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException("Interrupted while including resources", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			
+			throw new InternalErrorException("Error including resources", cause);
+		}
+		finally {
+			if (!completed) {
+				futures.stream().filter(Objects::nonNull).forEach(future -> future.cancel(true));
+			}
+		}
+		
+		return (List<R>) Arrays.asList(results);
+	}
+	
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+	
+	private <R> R runBranch(Supplier<R> branch, UserContext userContext) {
+		Context.openSession();
+		IN_BRANCH.set(Boolean.TRUE);
+		try {
+			Context.setUserContext(userContext);
+			
+			// branches only read, so nothing loaded needs to be tracked for changes or flushed
+			Session session = sessionFactory.getCurrentSession();
+			session.setDefaultReadOnly(true);
+			session.setFlushMode(FlushMode.MANUAL);
+			
+			return branch.get();
+		}
+		finally {
+			IN_BRANCH.remove();
+			Context.closeSession();
+		}
+	}
+	
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 60, TimeUnit.SECONDS,
+			        new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+				        Thread thread = new Thread(runnable, "fhir2-include-" + threadCount.incrementAndGet());
+				        thread.setDaemon(true);
+				        thread.setContextClassLoader(OpenmrsClassLoader.getInstance());
+				        return thread;
+			        });
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		
+		return executor;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * Holds the resources added to the pages of a single search by _include, so that a resource
+ * referenced from several pages is only loaded and translated once. The least recently used
+ * resources are discarded once the cache holds its maximum number of resources; a maximum of zero
+ * or less disables caching.
+ */
+public class IncludeCache {
+	
+	// rough size of each translated resource held by the cache
+	static final long RESOURCE_WEIGHT = 2048;
+	
+	private final int maximumSize;
+	
+	private final Map<String, IBaseResource> resources;
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder evictions = new LongAdder();
+	
+	public IncludeCache(int maximumSize) {
+		this.maximumSize = maximumSize;
+		this.resources = new LinkedHashMap<String, IBaseResource>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IBaseResource> eldest) {
+				if (size() > IncludeCache.this.maximumSize) {
+					evictions.increment();
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the resources of the given type with the given ids, loading only those which are not
+	 * already cached
+	 *
+	 * @param resourceType the type of the resources, e.g. Patient
+	 * @param ids the ids of the resources
+	 * @param loader loads the resources with the given ids
+	 * @return the cached and loaded resources
+	 */
+	public List<IBaseResource> get(String resourceType, Collection<String> ids,
+	        Function<Collection<String>, ? extends Collection<? extends IBaseResource>> loader) {
+		List<IBaseResource> result = new ArrayList<>(ids.size());
+		Set<String> missing = new LinkedHashSet<>();
+		
+		synchronized (resources) {
+			for (String id : ids) {
+				IBaseResource resource = maximumSize > 0 ? resources.get(toKey(resourceType, id)) : null;
+				if (resource != null) {
+					hits.increment();
+					result.add(resource);
+				} else if (missing.add(id)) {
+					misses.increment();
+				}
+			}
+		}
+		
+		if (missing.isEmpty()) {
+			return result;
+		}
+		
+		Collection<? extends IBaseResource> loaded = loader.apply(missing);
+		if (loaded == null) {
+			return result;
+		}
+		
+		result.addAll(loaded);
+		if (maximumSize > 0) {
+			synchronized (resources) {
+				for (IBaseResource resource : loaded) {
+					if (resource != null && resource.getIdElement().getIdPart() != null) {
+						resources.put(toKey(resourceType, resource.getIdElement().getIdPart()), resource);
+					}
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the number of resources currently cached
+	 */
+	public int size() {
+		synchronized (resources) {
+			return resources.size();
+		}
+	}
+	
+	/**
+	 * @return the maximum number of resources which may be cached
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * @return the number of requested resources which were found in the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of requested resources which had to be loaded
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the number of resources discarded because the cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return the estimated size in bytes of the cached resources
+	 */
+	public long getWeight() {
+		return size() * RESOURCE_WEIGHT;
+	}
+	
+	@Override
+	public String toString() {
+		return "IncludeCache{size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHitCount() + ", misses="
+		        + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+	}
+	
+	private static String toKey(String resourceType, String id) {
+		return resourceType + "/" + id;
+	}
+}
@@ -0,0 +1,396 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.Getter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * <p>
+ * An {@link IBundleProvider} which merges the results of several searches for the same resource
+ * type, such as the visits and encounters which are both returned as FHIR Encounters. The results
+ * are interleaved in the order given by the {@code _sort} of the search, or returned one search
+ * after the other if the search is not sorted.
+ * </p>
+ * <p>
+ * Results are read from the underlying bundle providers a chunk at a time, only as they are needed
+ * for the requested page, so none of them needs to know its size up-front. The position reached in
+ * each underlying bundle provider at the end of every page is recorded, so that the following page
+ * carries on from there rather than merging the results from the start again. The results read
+ * ahead at the end of the last page are kept too, so that the following page does not need to read
+ * and translate them again.
+ * </p>
+ */
+public class MergingBundleProvider implements WeightedBundleProvider, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// rough size of the provider itself
+	private static final long BASE_WEIGHT = 512;
+	
+	// rough size of each recorded position, per underlying bundle provider
+	private static final long POSITION_WEIGHT = 16;
+	
+	// rough size of each result read ahead
+	private static final long RESOURCE_WEIGHT = IncludeCache.RESOURCE_WEIGHT;
+	
+	private final List<IBundleProvider> bundleProviders;
+	
+	private final SortSpecComparator comparator;
+	
+	private final FhirGlobalPropertyService globalPropertyService;
+	
+	@Getter
+	private final IPrimitiveType<Date> published;
+	
+	@Getter
+	private final String uuid;
+	
+	private transient Integer pageSize;
+	
+	// the number of results read from each bundle provider to reach a position in the merged results
+	private final Map<Integer, int[]> positions = new ConcurrentHashMap<>();
+	
+	// the sizes of the bundle providers, as found by reading to the end of their results
+	private final Integer[] sizes;
+	
+	// the results read ahead of the end of the last page, which the next page starts from
+	private transient volatile ReadAhead readAhead;
+	
+	/**
+	 * @param bundleProviders the bundle providers whose results should be merged, where results
+	 *            which sort equally are returned in the order of the bundle providers
+	 * @param sort the sort used by every one of the bundle providers or null if they are not sorted
+	 * @param globalPropertyService used to find the preferred page size
+	 */
+	public MergingBundleProvider(@Nonnull List<IBundleProvider> bundleProviders, @Nullable SortSpec sort,
+	    FhirGlobalPropertyService globalPropertyService) {
+		this.bundleProviders = new ArrayList<>(bundleProviders);
+		this.comparator = SortSpecComparator.of(sort);
+		this.globalPropertyService = globalPropertyService;
+		this.published = InstantDt.withCurrentTime();
+		this.uuid = FhirUtils.newUuid();
+		this.sizes = new Integer[bundleProviders.size()];
+		this.positions.put(0, new int[bundleProviders.size()]);
+	}
+	
+	@Transactional(readOnly = true)
+	@Nonnull
+	@Override
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		// reading the results would record the sizes of the underlying searches as zero
+		if (SearchRequestContext.isCountOnly()) {
+			return Collections.emptyList();
+		}
+		
+		int firstResult = Math.max(fromIndex, 0);
+		int lastResult = toIndex - firstResult > 0 ? toIndex : Integer.MAX_VALUE;
+		
+		// the pages of the searches are combined here, so none can be streamed on its own
+		return SearchRequestContext.withoutStreaming(() -> getMergedResources(firstResult, lastResult));
+	}
+	
+	@Override
+	public Integer preferredPageSize() {
+		if (pageSize == null) {
+			pageSize = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, 10);
+		}
+		
+		return pageSize;
+	}
+	
+	/**
+	 * @return the total number of results, which is only counted by the underlying bundle providers
+	 *         when the merged results have not already been read to the end
+	 */
+	@Nullable
+	@Override
+	public Integer size() {
+		long size = 0;
+		for (int i = 0; i < bundleProviders.size(); i++) {
+			Integer providerSize = sizes[i] != null ? sizes[i] : bundleProviders.get(i).size();
+			if (providerSize == null) {
+				return null;
+			}
+			
+			size += providerSize;
+		}
+		
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public long getWeight() {
+		long weight = BASE_WEIGHT + positions.size() * POSITION_WEIGHT * bundleProviders.size();
+		ReadAhead currentReadAhead = readAhead;
+		if (currentReadAhead != null) {
+			weight += currentReadAhead.size() * RESOURCE_WEIGHT;
+		}
+		
+		for (IBundleProvider bundleProvider : bundleProviders) {
+			if (bundleProvider instanceof WeightedBundleProvider) {
+				weight += Math.max(((WeightedBundleProvider) bundleProvider).getWeight(), 0);
+			}
+		}
+		
+		return weight;
+	}
+	
+	private List<IBaseResource> getMergedResources(int firstResult, int lastResult) {
+		// the merge is resumed from the closest position already reached before the requested page
+		int position = 0;
+		for (Integer recordedPosition : positions.keySet()) {
+			if (recordedPosition <= firstResult && recordedPosition > position) {
+				position = recordedPosition;
+			}
+		}
+		
+		List<Cursor> cursors = new ArrayList<>(bundleProviders.size());
+		int[] offsets = positions.get(position);
+		ReadAhead currentReadAhead = readAhead;
+		for (int i = 0; i < bundleProviders.size(); i++) {
+			Cursor cursor = new Cursor(i, offsets[i]);
+			if (currentReadAhead != null && currentReadAhead.position == position) {
+				cursor.buffer.addAll(currentReadAhead.buffers.get(i));
+				cursor.includedResources.addAll(currentReadAhead.includedResources.get(i));
+			}
+			
+			cursors.add(cursor);
+		}
+		
+		List<IBaseResource> results = new ArrayList<>();
+		List<IBaseResource> includedResources = new ArrayList<>();
+		while (position < lastResult) {
+			Cursor cursor = nextCursor(cursors, lastResult - position);
+			if (cursor == null) {
+				break;
+			}
+			
+			IBaseResource resource = cursor.take();
+			if (position >= firstResult) {
+				results.add(resource);
+				// resources included with results before the requested page are not needed
+				if (!cursor.includesReturned) {
+					includedResources.addAll(cursor.includedResources);
+					cursor.includesReturned = true;
+				}
+			}
+			
+			position++;
+		}
+		
+		if (position > firstResult) {
+			int[] reached = new int[cursors.size()];
+			for (Cursor cursor : cursors) {
+				reached[cursor.index] = cursor.offset;
+			}
+			
+			positions.putIfAbsent(position, reached);
+			readAhead = new ReadAhead(position, cursors);
+		}
+		
+		if (results.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		// a resource may be included by several of the searches
+		Set<String> resourceIds = new HashSet<>();
+		results.forEach(resource -> resourceIds.add(toResourceId(resource)));
+		for (IBaseResource includedResource : includedResources) {
+			String resourceId = toResourceId(includedResource);
+			if (resourceId == null || resourceIds.add(resourceId)) {
+				results.add(includedResource);
+			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * @return the cursor whose next result comes next in the merged results or null if there are no
+	 *         more results
+	 */
+	private Cursor nextCursor(List<Cursor> cursors, int remaining) {
+		Cursor next = null;
+		for (Cursor cursor : cursors) {
+			// every bundle provider which may be needed for the rest of the page reads a share of it
+			int chunkSize = (remaining - 1) / countRemainingCursors(cursors) + 1;
+			if (!cursor.hasNext(chunkSize)) {
+				continue;
+			}
+			
+			if (comparator == null) {
+				return cursor;
+			}
+			
+			if (next == null || comparator.compare(cursor.peek(), next.peek()) < 0) {
+				next = cursor;
+			}
+		}
+		
+		return next;
+	}
+	
+	private int countRemainingCursors(List<Cursor> cursors) {
+		if (comparator == null) {
+			return 1;
+		}
+		
+		int count = 0;
+		for (Cursor cursor : cursors) {
+			if (!cursor.isExhausted()) {
+				count++;
+			}
+		}
+		
+		return Math.max(count, 1);
+	}
+	
+	private static String toResourceId(IBaseResource resource) {
+		if (!resource.getIdElement().hasIdPart()) {
+			return null;
+		}
+		
+		return resource.fhirType() + "/" + resource.getIdElement().getIdPart();
+	}
+	
+	/**
+	 * Reads through the results of one of the underlying bundle providers
+	 */
+	private class Cursor {
+		
+		private final int index;
+		
+		private final Deque<IBaseResource> buffer = new ArrayDeque<>();
+		
+		// the resources included with the results in the buffer
+		private final List<IBaseResource> includedResources = new ArrayList<>();
+		
+		// whether the included resources have been added to the page
+		private boolean includesReturned;
+		
+		// the number of results taken from the bundle provider
+		private int offset;
+		
+		Cursor(int index, int offset) {
+			this.index = index;
+			this.offset = offset;
+		}
+		
+		boolean isExhausted() {
+			return buffer.isEmpty() && sizes[index] != null && offset >= sizes[index];
+		}
+		
+		boolean hasNext(int chunkSize) {
+			if (buffer.isEmpty() && !isExhausted()) {
+				readChunk(chunkSize);
+			}
+			
+			return !buffer.isEmpty();
+		}
+		
+		IBaseResource peek() {
+			return buffer.peekFirst();
+		}
+		
+		IBaseResource take() {
+			offset++;
+			return buffer.pollFirst();
+		}
+		
+		private void readChunk(int chunkSize) {
+			int to = (int) Math.min((long) offset + chunkSize, Integer.MAX_VALUE);
+			List<IBaseResource> resources = bundleProviders.get(index).getResources(offset, to);
+			
+			// the results come first, followed by any resources included with them
+			int count = 0;
+			String resourceType = resources.isEmpty() ? null : resources.get(0).fhirType();
+			while (count < resources.size() && count < to - offset && isResult(resources.get(count), resourceType)) {
+				count++;
+			}
+			
+			if (count < to - offset) {
+				sizes[index] = offset + count;
+			}
+			
+			buffer.addAll(resources.subList(0, count));
+			// the resources included with results not yet reached are no longer needed
+			includedResources.clear();
+			includedResources.addAll(resources.subList(count, resources.size()));
+			includesReturned = false;
+		}
+		
+		private boolean isResult(IBaseResource resource, String resourceType) {
+			BundleEntrySearchModeEnum searchMode = ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(resource);
+			if (searchMode != null) {
+				return searchMode == BundleEntrySearchModeEnum.MATCH;
+			}
+			
+			return resource.fhirType().equals(resourceType);
+		}
+	}
+	
+	/**
+	 * The results each cursor had read but not yet taken at a position in the merged results, along
+	 * with the resources included with them
+	 */
+	private static class ReadAhead {
+		
+		private final int position;
+		
+		private final List<List<IBaseResource>> buffers = new ArrayList<>();
+		
+		private final List<List<IBaseResource>> includedResources = new ArrayList<>();
+		
+		ReadAhead(int position, List<Cursor> cursors) {
+			this.position = position;
+			for (Cursor cursor : cursors) {
+				buffers.add(new ArrayList<>(cursor.buffer));
+				// the resources included with results partly returned on this page are returned again
+				includedResources.add(cursor.buffer.isEmpty() ? Collections.emptyList()
+				        : new ArrayList<>(cursor.includedResources));
+			}
+		}
+		
+		long size() {
+			long size = 0;
+			for (int i = 0; i < buffers.size(); i++) {
+				size += buffers.get(i).size() + includedResources.get(i).size();
+			}
+			
+			return size;
+		}
+	}
+}
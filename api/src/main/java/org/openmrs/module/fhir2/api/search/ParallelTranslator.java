@@ -0,0 +1,130 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.util.OpenmrsClassLoader;
+
+/**
+ * <p>
+ * Loads and translates a page of search results on a small fork-join pool shared by all searches,
+ * returning the translated resources in the same order as the results. The ids of the page are
+ * split into one contiguous chunk per thread, and each chunk is loaded and translated in its own
+ * read-only OpenMRS session on behalf of the user who made the request.
+ * </p>
+ * <p>
+ * Hibernate sessions must not be used by more than one thread, so the results are never loaded by
+ * the calling thread and handed to the pool: whatever the translation loads lazily, however deep,
+ * is loaded through the session of the thread doing the translation.
+ * </p>
+ */
+public final class ParallelTranslator {
+	
+	public static final int PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
+	// smaller pages are translated on the calling thread, as they gain little from running in parallel
+	static final int MINIMUM_PARALLEL_SIZE = 4;
+	
+	private ParallelTranslator() {
+	}
+	
+	/**
+	 * Applies the translator to chunks of the supplied ids, in parallel where worthwhile
+	 *
+	 * @param ids the ids of the objects to translate
+	 * @param translator loads and translates the objects with the given ids, returning them in the
+	 *            same order as the ids
+	 * @return the translated objects, in the same order as the supplied ids
+	 */
+	public static <T, U> List<U> translate(@Nonnull List<T> ids, @Nonnull Function<List<T>, List<U>> translator) {
+		if (ids.size() < MINIMUM_PARALLEL_SIZE) {
+			return translator.apply(ids);
+		}
+		
+		UserContext userContext = Context.getUserContext();
+		
+		int chunkSize = (ids.size() + PARALLELISM - 1) / PARALLELISM;
+		List<Callable<List<U>>> tasks = new ArrayList<>(PARALLELISM);
+		for (int start = 0; start < ids.size(); start += chunkSize) {
+			List<T> chunk = new ArrayList<>(ids.subList(start, Math.min(start + chunkSize, ids.size())));
+			tasks.add(() -> translateChunk(chunk, translator, userContext));
+		}
+		
+		List<U> results = new ArrayList<>(ids.size());
+		try {
+			for (Future<List<U>> future : PoolHolder.POOL.invokeAll(tasks)) {
+				results.addAll(future.get());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException("Interrupted while translating search results", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			
+			throw new InternalErrorException("Error translating search results", cause);
+		}
+		
+		return results;
+	}
+	
+	private static <T, U> List<U> translateChunk(List<T> chunk, Function<List<T>, List<U>> translator,
+	        UserContext userContext) {
+		Context.openSession();
+		try {
+			Context.setUserContext(userContext);
+			
+			// translation only reads, so nothing loaded needs to be tracked for changes or flushed
+			Session session = Context.getRegisteredComponent("sessionFactory", SessionFactory.class).getCurrentSession();
+			session.setDefaultReadOnly(true);
+			session.setFlushMode(FlushMode.MANUAL);
+			
+			return translator.apply(chunk);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+	
+	// created on first use, so the threads only exist on servers which translate in parallel
+	private static class PoolHolder {
+		
+		private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("fhir2-translator-" + thread.getPoolIndex());
+			thread.setContextClassLoader(OpenmrsClassLoader.getInstance());
+			return thread;
+		}, null, false);
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The position of a single row in a keyset-paged search, that is, the values of each of the sort
+ * keys for that row followed by its primary key. A search can be resumed from a cursor by asking
+ * for the rows which sort strictly after it. Cursors can be converted to and from an opaque,
+ * URL-safe token so that they can be carried in paging links.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class SearchCursor implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final String SEPARATOR = ".";
+	
+	private final List<Object> sortValues;
+	
+	private final Integer id;
+	
+	public SearchCursor(@Nonnull List<Object> sortValues, @Nonnull Integer id) {
+		this.sortValues = Collections.unmodifiableList(new ArrayList<>(sortValues));
+		this.id = id;
+	}
+	
+	/**
+	 * Converts this cursor into an opaque token
+	 *
+	 * @return a URL-safe string representing this cursor
+	 * @throws IllegalArgumentException if one of the sort values is of an unsupported type
+	 */
+	public String encode() {
+		StringBuilder sb = new StringBuilder(encodePart("i" + id));
+		for (Object value : sortValues) {
+			sb.append(SEPARATOR).append(encodePart(encodeValue(value)));
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Converts a token created by {@link #encode()} back into a cursor
+	 *
+	 * @param token the token to decode
+	 * @return the cursor represented by the token
+	 * @throws IllegalArgumentException if the token is not a valid cursor
+	 */
+	public static SearchCursor decode(@Nonnull String token) {
+		String[] parts = token.split("\\" + SEPARATOR, -1);
+		
+		Object id = decodeValue(decodePart(parts[0]));
+		if (!(id instanceof Integer)) {
+			throw new IllegalArgumentException("Invalid search cursor " + token);
+		}
+		
+		List<Object> sortValues = new ArrayList<>(parts.length - 1);
+		for (int i = 1; i < parts.length; i++) {
+			sortValues.add(decodeValue(decodePart(parts[i])));
+		}
+		
+		return new SearchCursor(sortValues, (Integer) id);
+	}
+	
+	/**
+	 * @param value a sort key value
+	 * @return true if values of this type can be carried in a cursor
+	 */
+	public static boolean isSupportedValue(Object value) {
+		return value == null || value instanceof Integer || value instanceof Long || value instanceof String
+		        || value instanceof Date || value instanceof Boolean || value instanceof Double
+		        || value instanceof BigDecimal;
+	}
+	
+	private static String encodeValue(Object value) {
+		if (value == null) {
+			return "n";
+		} else if (value instanceof Integer) {
+			return "i" + value;
+		} else if (value instanceof Long) {
+			return "l" + value;
+		} else if (value instanceof String) {
+			return "s" + value;
+		} else if (value instanceof Date) {
+			return "d" + ((Date) value).getTime();
+		} else if (value instanceof Boolean) {
+			return "b" + value;
+		} else if (value instanceof Double) {
+			return "f" + value;
+		} else if (value instanceof BigDecimal) {
+			return "m" + ((BigDecimal) value).toPlainString();
+		}
+		
+		throw new IllegalArgumentException("Cannot use values of type " + value.getClass() + " in a search cursor");
+	}
+	
+	private static Object decodeValue(String value) {
+		if (value.isEmpty()) {
+			throw new IllegalArgumentException("Invalid search cursor value");
+		}
+		
+		String body = value.substring(1);
+		try {
+			switch (value.charAt(0)) {
+				case 'n':
+					return null;
+				case 'i':
+					return Integer.valueOf(body);
+				case 'l':
+					return Long.valueOf(body);
+				case 's':
+					return body;
+				case 'd':
+					return new Date(Long.parseLong(body));
+				case 'b':
+					return Boolean.valueOf(body);
+				case 'f':
+					return Double.valueOf(body);
+				case 'm':
+					return new BigDecimal(body);
+			}
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid search cursor value " + value, e);
+		}
+		
+		throw new IllegalArgumentException("Invalid search cursor value " + value);
+	}
+	
+	private static String encodePart(String part) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(part.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static String decodePart(String part) {
+		return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+	}
+}
@@ -17,6 +17,7 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,9 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	@Autowired
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Autowired
+	private SearchMetrics searchMetrics;
+	
 	/**
 	 * Gets query results
 	 *
@@ -46,13 +50,19 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	 */
 	public IBundleProvider getQueryResults(SearchParameterMap theParams, O dao, V translator, W searchQueryInclude) {
 		if (!theParams.getParameters(FhirConstants.EVERYTHING_SEARCH_HANDLER).isEmpty()) {
-			SimpleBundleProvider result = new SimpleBundleProvider(
-			        new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude)
-			                .getAllResources());
+			SimpleBundleProvider result = new SimpleBundleProvider(SearchRequestContext.withoutStreaming(
+			    () -> new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude,
+			            null, searchMetrics).getAllResources()));
 			
 			result.setPreferredPageSize(result.size());
 			return result;
 		}
-		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude);
+		
+		if (SearchRequestContext.isCountOnly()) {
+			return new CountOnlyBundleProvider<>(theParams, dao);
+		}
+		
+		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude,
+		        SearchRequestContext.getTotalMode(), searchMetrics);
 	}
 }
@@ -17,12 +17,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import lombok.Getter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -31,14 +38,31 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics.Phase;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.springframework.transaction.annotation.Transactional;
 
-public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements IBundleProvider, Serializable {
+public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements CursorBundleProvider, WeightedBundleProvider, Serializable {
 	
-	private static final long serialVersionUID = 4L;
+	private static final long serialVersionUID = 6L;
+	
+	private static final String PAGE_ID_SEPARATOR = ".";
+	
+	// rough size of the provider itself, including its search parameters
+	private static final long BASE_WEIGHT = 2048;
+	
+	// rough size of each cursor recorded for keyset paging
+	private static final long CURSOR_WEIGHT = 256;
+	
+	// the number of results translated at a time when a page is streamed
+	private static final int STREAMING_BATCH_SIZE = 50;
+	
+	// the number of included resources kept for reuse by later pages if not configured
+	private static final int DEFAULT_INCLUDE_CACHE_SIZE = 500;
 	
 	private final FhirDao<T> dao;
 	
@@ -54,17 +78,63 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	
 	private final FhirGlobalPropertyService globalPropertyService;
 	
-	private transient Integer count;
+	private final SearchTotalModeEnum totalMode;
 	
 	private transient Integer pageSize;
 	
-	private transient List<Integer> matchingResources;
+	private transient Boolean parallelTranslation;
+	
+	// included resources are not worth serializing, as they can simply be loaded again
+	private transient volatile IncludeCache includeCache;
+	
+	// the progress made through the search is serialized with it, so that paging can be resumed by
+	// another server without re-running the search
+	private Integer count;
+	
+	private SearchResultIds matchingResources;
+	
+	private Boolean keysetPaging;
+	
+	private Map<Integer, SearchCursor> cursors;
+	
+	private String nextPageId;
+	
+	private boolean totalOverEstimateLimit;
 	
 	private final SearchQueryInclude<U> searchQueryInclude;
 	
+	// the metrics are not worth serializing, so a search resumed by another server does not record them
+	private final transient SearchMetrics searchMetrics;
+	
+	private final String resourceType;
+	
+	private transient String shape;
+	
 	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
 	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
 	    SearchQueryInclude<U> searchQueryInclude) {
+		this(searchParameterMap, dao, translator, globalPropertyService, searchQueryInclude, null);
+	}
+	
+	/**
+	 * @param totalMode how the total number of results should be determined or null to determine it by
+	 *            loading the ids of every matching result
+	 */
+	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
+	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
+	    SearchQueryInclude<U> searchQueryInclude, SearchTotalModeEnum totalMode) {
+		this(searchParameterMap, dao, translator, globalPropertyService, searchQueryInclude, totalMode, null);
+	}
+	
+	/**
+	 * @param totalMode how the total number of results should be determined or null to determine it by
+	 *            loading the ids of every matching result
+	 * @param searchMetrics where the time taken by each phase of the search is recorded or null if it
+	 *            should not be recorded
+	 */
+	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
+	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
+	    SearchQueryInclude<U> searchQueryInclude, SearchTotalModeEnum totalMode, SearchMetrics searchMetrics) {
 		this.dao = dao;
 		this.published = InstantDt.withCurrentTime();
 		this.searchParameterMap = searchParameterMap;
@@ -72,25 +142,45 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 		this.uuid = FhirUtils.newUuid();
 		this.globalPropertyService = globalPropertyService;
 		this.searchQueryInclude = searchQueryInclude;
+		this.totalMode = totalMode;
+		this.searchMetrics = searchMetrics;
+		this.resourceType = searchMetrics == null ? null : SearchMetrics.getResourceType(translator);
 	}
 	
 	@Transactional(readOnly = true)
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		int firstResult = 0;
+		if (fromIndex >= 0) {
+			firstResult = fromIndex;
+		}
+		
+		// sequential paging can resume from the cursor recorded at the end of the previous page
+		if (toIndex - firstResult > 0 && isKeysetPaging()) {
+			if (firstResult == 0) {
+				return getKeysetResources(0, null, toIndex).resources;
+			}
+			
+			SearchCursor cursor = getCursors().get(firstResult);
+			if (cursor != null) {
+				return getKeysetResources(firstResult, cursor, toIndex - firstResult).resources;
+			}
+		}
+		
+		// when _total is given, only the ids for the requested page are loaded
+		if (totalMode != null && matchingResources == null) {
+			return getWindowedResources(firstResult, toIndex);
+		}
+		
 		if (matchingResources == null) {
-			matchingResources = dao.getSearchResultIds(searchParameterMap);
+			matchingResources = SearchResultIds.of(timed(Phase.ID_QUERY, () -> dao.getSearchResultIds(searchParameterMap)));
 		}
 		
 		if (matchingResources.isEmpty()) {
 			return Collections.emptyList();
 		}
 		
-		int firstResult = 0;
-		if (fromIndex >= 0) {
-			firstResult = fromIndex;
-		}
-		
 		Integer size = size();
 		if (size != null && firstResult > size) {
 			return Collections.emptyList();
@@ -104,17 +194,49 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 			lastResult = Math.min(lastResult, toIndex);
 		}
 		
-		List<U> returnedResourceList = dao
-		        .getSearchResults(searchParameterMap, matchingResources.subList(firstResult, lastResult)).stream()
-		        .map(translator::toFhirResource).filter(Objects::nonNull).collect(Collectors.toList());
+		return getResources(matchingResources.subList(firstResult, lastResult));
+	}
+	
+	@Nonnull
+	@Override
+	public List<IBaseResource> getAllResources() {
+		// unlike the default implementation, this does not depend on the size being known
+		return getResources(0, -1);
+	}
+	
+	@Override
+	public String getCurrentPageId() {
+		if (!isKeysetPaging()) {
+			return null;
+		}
+		
+		return toPageId(0, null);
+	}
+	
+	@Override
+	public String getNextPageId() {
+		return nextPageId;
+	}
+	
+	@Override
+	public IBundleProvider getPage(@Nonnull String pageId) {
+		int separator = pageId.indexOf(PAGE_ID_SEPARATOR);
 		
-		Set<IBaseResource> includedResources = searchQueryInclude.getIncludedResources(returnedResourceList,
-		    this.searchParameterMap);
+		int offset;
+		SearchCursor cursor;
+		try {
+			offset = Integer.parseInt(separator < 0 ? pageId : pageId.substring(0, separator));
+			cursor = separator < 0 ? null : SearchCursor.decode(pageId.substring(separator + 1));
+		}
+		catch (IllegalArgumentException e) {
+			throw new InvalidRequestException("Invalid page id " + pageId);
+		}
 		
-		List<IBaseResource> resultList = new ArrayList<>(returnedResourceList);
-		resultList.addAll(includedResources);
+		if (offset < 0 || (offset > 0 && cursor == null)) {
+			throw new InvalidRequestException("Invalid page id " + pageId);
+		}
 		
-		return resultList;
+		return new KeysetPage(pageId, offset, cursor);
 	}
 	
 	@Override
@@ -129,14 +251,318 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	@Override
 	@Nullable
 	public Integer size() {
+		if (count == null && totalMode != null) {
+			return getTotal();
+		}
+		
+		// in keyset mode, the size is only known once the last page has been read
+		if (count == null && matchingResources == null && isKeysetPaging()) {
+			return null;
+		}
+		
 		if (matchingResources == null) {
-			matchingResources = dao.getSearchResultIds(searchParameterMap);
+			matchingResources = SearchResultIds.of(timed(Phase.ID_QUERY, () -> dao.getSearchResultIds(searchParameterMap)));
 		}
 		
 		if (count == null) {
-			count = matchingResources.size();
+			setCount(matchingResources.size());
 		}
 		
 		return count;
 	}
+	
+	@Override
+	public long getWeight() {
+		long weight = BASE_WEIGHT;
+		
+		SearchResultIds ids = matchingResources;
+		if (ids != null) {
+			weight += ids.getByteSize();
+		}
+		
+		Map<Integer, SearchCursor> keysetCursors = cursors;
+		if (keysetCursors != null) {
+			weight += keysetCursors.size() * CURSOR_WEIGHT;
+		}
+		
+		IncludeCache cache = includeCache;
+		if (cache != null) {
+			weight += cache.getWeight();
+		}
+		
+		return weight;
+	}
+	
+	private List<IBaseResource> getResources(List<Integer> resourceIds) {
+		// the requested elements are read on this thread, as the page may be streamed or translated on other threads
+		RequestedElements elements = SearchRequestContext.getRequestedElements();
+		
+		// the page is only streamed if the size is known, as otherwise HAPI relies on the page contents to
+		// decide whether there is a next page
+		if (SearchRequestContext.isStreaming() && size() != null
+		        && SearchRequestContext.deferPage(consumer -> streamResources(resourceIds, elements, consumer))) {
+			return Collections.emptyList();
+		}
+		
+		List<U> returnedResourceList = translate(resourceIds, elements);
+		
+		Set<IBaseResource> includedResources = timed(Phase.INCLUDE,
+		    () -> searchQueryInclude.getIncludedResources(returnedResourceList, this.searchParameterMap,
+		        searchQueryInclude.newPageIncludeState(), getIncludeCache()));
+		
+		List<IBaseResource> resultList = new ArrayList<>(returnedResourceList);
+		resultList.addAll(includedResources);
+		
+		return resultList;
+	}
+	
+	private void streamResources(List<Integer> resourceIds, RequestedElements elements,
+	        Consumer<IBaseResource> consumer) {
+		// the limits apply to the whole page rather than each batch, and resources included by an earlier
+		// batch are not included again
+		SearchQueryInclude.PageIncludeState pageIncludeState = searchQueryInclude.newPageIncludeState();
+		for (int start = 0; start < resourceIds.size(); start += STREAMING_BATCH_SIZE) {
+			int end = Math.min(start + STREAMING_BATCH_SIZE, resourceIds.size());
+			List<U> batch = translate(resourceIds.subList(start, end), elements);
+			batch.forEach(consumer);
+			
+			timed(Phase.INCLUDE, () -> searchQueryInclude.getIncludedResources(batch, searchParameterMap,
+			    pageIncludeState, getIncludeCache())).forEach(consumer);
+		}
+	}
+	
+	private List<U> translate(List<Integer> resourceIds, RequestedElements elements) {
+		Function<T, U> translation = elements.isAll() ? translator::toFhirResource
+		        : result -> translator.toFhirResource(result, elements);
+		
+		List<U> translatedResults;
+		if (isParallelTranslation() && resourceIds.size() >= ParallelTranslator.MINIMUM_PARALLEL_SIZE) {
+			// each thread loads its share of the page through its own session, so loading is part of the
+			// translation time here
+			translatedResults = timed(Phase.TRANSLATION, () -> ParallelTranslator.translate(resourceIds,
+			    ids -> dao.getSearchResults(searchParameterMap, ids).stream().map(translation)
+			            .collect(Collectors.toList())));
+		} else {
+			List<T> results = timed(Phase.PAGE_FETCH, () -> dao.getSearchResults(searchParameterMap, resourceIds));
+			
+			// associations loaded lazily are part of the translation time
+			translatedResults = timed(Phase.TRANSLATION,
+			    () -> results.stream().map(translation).collect(Collectors.toList()));
+		}
+		
+		return translatedResults.stream().filter(Objects::nonNull).collect(Collectors.toList());
+	}
+	
+	private List<IBaseResource> getWindowedResources(int firstResult, int toIndex) {
+		int maxResults = toIndex - firstResult > 0 ? toIndex - firstResult : -1;
+		List<Integer> ids = timed(Phase.ID_QUERY, () -> dao.getSearchResultIds(searchParameterMap, firstResult, maxResults));
+		
+		// a short page means this is the end of the results, so the total is now known
+		if (count == null && (maxResults < 0 || ids.size() < maxResults) && (firstResult == 0 || !ids.isEmpty())) {
+			setCount(firstResult + ids.size());
+		}
+		
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		return getResources(ids);
+	}
+	
+	private Integer getTotal() {
+		switch (totalMode) {
+			case ACCURATE:
+				setCount(timed(Phase.ID_QUERY, () -> dao.getSearchResultCount(searchParameterMap)));
+				return count;
+			case ESTIMATED:
+				// count at most a limited number of results; beyond that, the total is reported as unknown
+				if (!totalOverEstimateLimit) {
+					int limit = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_TOTAL_ESTIMATE_LIMIT,
+					    1000);
+					int estimate = timed(Phase.ID_QUERY, () -> dao.getSearchResultCount(searchParameterMap, limit + 1));
+					if (estimate <= limit) {
+						setCount(estimate);
+						return count;
+					}
+					
+					totalOverEstimateLimit = true;
+				}
+				
+				return null;
+			default:
+				return null;
+		}
+	}
+	
+	private KeysetPage getKeysetResources(int offset, SearchCursor after, int maxResults) {
+		List<SearchCursor> keys = timed(Phase.ID_QUERY,
+		    () -> dao.getSearchResultKeys(searchParameterMap, after, maxResults));
+		
+		String pageNextPageId = null;
+		if (keys.size() < maxResults) {
+			if (count == null) {
+				setCount(offset + keys.size());
+			}
+		} else {
+			SearchCursor last = keys.get(keys.size() - 1);
+			getCursors().put(offset + keys.size(), last);
+			pageNextPageId = toPageId(offset + keys.size(), last);
+		}
+		
+		if (offset == 0) {
+			nextPageId = pageNextPageId;
+		}
+		
+		KeysetPage page = new KeysetPage(toPageId(offset, after), offset, after);
+		page.nextPageId = pageNextPageId;
+		page.resources = keys.isEmpty() ? Collections.emptyList()
+		        : getResources(keys.stream().map(SearchCursor::getId).collect(Collectors.toList()));
+		return page;
+	}
+	
+	private void setCount(int count) {
+		this.count = count;
+		if (searchMetrics != null) {
+			searchMetrics.recordCardinality(resourceType, getShape(), count);
+		}
+	}
+	
+	private <R> R timed(Phase phase, Supplier<R> action) {
+		if (searchMetrics == null) {
+			return action.get();
+		}
+		
+		return searchMetrics.time(resourceType, getShape(), phase, action);
+	}
+	
+	private String getShape() {
+		if (shape == null) {
+			shape = SearchMetrics.getShape(searchParameterMap);
+		}
+		
+		return shape;
+	}
+	
+	private boolean isKeysetPaging() {
+		if (keysetPaging == null) {
+			keysetPaging = Boolean.parseBoolean(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_KEYSET_PAGING, "false"))
+			        && dao.isKeysetPageable(searchParameterMap);
+		}
+		
+		return keysetPaging;
+	}
+	
+	/**
+	 * @return the resources included in the pages of this search so far, which are reused by later
+	 *         pages
+	 */
+	public IncludeCache getIncludeCache() {
+		IncludeCache cache = includeCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = includeCache;
+				if (cache == null) {
+					Integer maximumSize = globalPropertyService.getGlobalProperty(
+					    FhirConstants.OPENMRS_FHIR_INCLUDE_CACHE_SIZE, DEFAULT_INCLUDE_CACHE_SIZE);
+					cache = new IncludeCache(maximumSize == null ? DEFAULT_INCLUDE_CACHE_SIZE : maximumSize);
+					includeCache = cache;
+				}
+			}
+		}
+		
+		return cache;
+	}
+	
+	private boolean isParallelTranslation() {
+		if (parallelTranslation == null) {
+			parallelTranslation = Boolean.parseBoolean(
+			    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PARALLEL_TRANSLATION, "false"));
+		}
+		
+		return parallelTranslation;
+	}
+	
+	private Map<Integer, SearchCursor> getCursors() {
+		if (cursors == null) {
+			cursors = new ConcurrentHashMap<>();
+		}
+		
+		return cursors;
+	}
+	
+	private static String toPageId(int offset, SearchCursor cursor) {
+		if (cursor == null) {
+			return String.valueOf(offset);
+		}
+		
+		return offset + PAGE_ID_SEPARATOR + cursor.encode();
+	}
+	
+	/**
+	 * A single page of a keyset-paged search, identified by the offset of its first result and the
+	 * cursor of the row immediately before it
+	 */
+	private class KeysetPage implements IBundleProvider {
+		
+		private final String pageId;
+		
+		private final int offset;
+		
+		private final SearchCursor after;
+		
+		private String nextPageId;
+		
+		private List<IBaseResource> resources;
+		
+		private KeysetPage(String pageId, int offset, SearchCursor after) {
+			this.pageId = pageId;
+			this.offset = offset;
+			this.after = after;
+		}
+		
+		@Override
+		public IPrimitiveType<Date> getPublished() {
+			return published;
+		}
+		
+		@Nonnull
+		@Override
+		public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+			if (resources == null) {
+				KeysetPage page = getKeysetResources(offset, after, Math.max(toIndex - Math.max(fromIndex, 0), 1));
+				nextPageId = page.nextPageId;
+				resources = page.resources;
+			}
+			
+			return resources;
+		}
+		
+		@Override
+		public String getCurrentPageId() {
+			return pageId;
+		}
+		
+		@Override
+		public String getNextPageId() {
+			return nextPageId;
+		}
+		
+		@Nullable
+		@Override
+		public String getUuid() {
+			return uuid;
+		}
+		
+		@Override
+		public Integer preferredPageSize() {
+			return SearchQueryBundleProvider.this.preferredPageSize();
+		}
+		
+		@Nullable
+		@Override
+		public Integer size() {
+			return SearchQueryBundleProvider.this.size();
+		}
+	}
 }
@@ -19,6 +19,7 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.hl7.fhir.convertors.VersionConvertor_30_40;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -26,7 +27,7 @@ import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.Task;
 import org.openmrs.module.fhir2.providers.util.TaskVersionConverter;
 
-public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Serializable {
+public class SearchQueryBundleProviderR3Wrapper implements CursorBundleProvider, WeightedBundleProvider, Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
@@ -51,6 +52,15 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 		return bundleProvider.getPreviousPageId();
 	}
 	
+	@Override
+	public IBundleProvider getPage(@Nonnull String pageId) {
+		if (!(bundleProvider instanceof CursorBundleProvider)) {
+			throw new InvalidRequestException("This search does not support paging by page id");
+		}
+		
+		return new SearchQueryBundleProviderR3Wrapper(((CursorBundleProvider) bundleProvider).getPage(pageId));
+	}
+	
 	@Override
 	public IPrimitiveType<Date> getPublished() {
 		return bundleProvider.getPublished();
@@ -63,6 +73,13 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 		        .filter(Objects::nonNull).collect(Collectors.toList());
 	}
 	
+	@Override
+	@Nonnull
+	public List<IBaseResource> getAllResources() {
+		return bundleProvider.getAllResources().stream().map(this::transformToR3).filter(Objects::nonNull)
+		        .collect(Collectors.toList());
+	}
+	
 	@Override
 	@Nullable
 	public String getUuid() {
@@ -80,6 +97,15 @@ public class SearchQueryBundleProviderR3Wrapper implements IBundleProvider, Seri
 		return bundleProvider.size();
 	}
 	
+	@Override
+	public long getWeight() {
+		if (bundleProvider instanceof WeightedBundleProvider) {
+			return ((WeightedBundleProvider) bundleProvider).getWeight();
+		}
+		
+		return -1;
+	}
+	
 	private IBaseResource transformToR3(IBaseResource resource) {
 		if (resource instanceof org.hl7.fhir.dstu3.model.Resource) {
 			return resource;
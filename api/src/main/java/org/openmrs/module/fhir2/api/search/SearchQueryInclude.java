@@ -10,13 +10,23 @@
 package org.openmrs.module.fhir2.api.search;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceOrListParam;
@@ -32,6 +42,7 @@ import org.hl7.fhir.r4.model.Location;
 import org.hl7.fhir.r4.model.MedicationDispense;
 import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Person;
 import org.hl7.fhir.r4.model.Reference;
 import org.hl7.fhir.r4.model.RelatedPerson;
@@ -41,6 +52,7 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirAllergyIntoleranceService;
 import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
 import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirLocationService;
 import org.openmrs.module.fhir2.api.FhirMedicationDispenseService;
 import org.openmrs.module.fhir2.api.FhirMedicationRequestService;
@@ -62,6 +74,12 @@ import org.springframework.stereotype.Component;
 @NoArgsConstructor
 public class SearchQueryInclude<U extends IBaseResource> {
 	
+	static final int DEFAULT_REVERSE_INCLUDE_LIMIT = 1000;
+	
+	static final int DEFAULT_ITERATE_MAX_DEPTH = 5;
+	
+	static final int DEFAULT_ITERATE_LIMIT = 1000;
+	
 	@Autowired
 	private FhirLocationService locationService;
 	
@@ -95,8 +113,47 @@ public class SearchQueryInclude<U extends IBaseResource> {
 	@Autowired
 	private FhirMedicationDispenseService medicationDispenseService;
 	
-	@SuppressWarnings("unchecked")
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired(required = false)
+	private IncludeBranchExecutor includeBranchExecutor;
+	
 	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams) {
+		return getIncludedResources(resourceList, theParams, newPageIncludeState());
+	}
+	
+	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams,
+	        PageIncludeState pageIncludeState) {
+		return getIncludedResources(resourceList, theParams, pageIncludeState, null);
+	}
+	
+	/**
+	 * Returns the resources included in a page of results by the _include and _revinclude parameters
+	 * of a search. The supplied state can be shared between several calls for the same page, e.g., when
+	 * a page is processed in batches, so that the limits on the number of included resources apply to
+	 * the whole page and no resource is returned twice within it. Resources added by _include are
+	 * looked up in the supplied cache first, so that those already loaded for another page of the same
+	 * search are reused. Resources which are already part of the page are not returned at all.
+	 * <p/>
+	 * Each _include:iterate parameter is also applied to the resources it matches among those
+	 * included, level by level, until no new resources are found. The resources of each level are
+	 * loaded in one batch per type, and the iteration is bounded by
+	 * {@link FhirConstants#OPENMRS_FHIR_INCLUDE_ITERATE_MAX_DEPTH} and
+	 * {@link FhirConstants#OPENMRS_FHIR_INCLUDE_ITERATE_LIMIT}; when either stops it early, an
+	 * OperationOutcome warning that the page is incomplete is added.
+	 *
+	 * @param resourceList the resources in the page, or a batch of them
+	 * @param theParams the parameters of the search
+	 * @param pageIncludeState the resources already included in this page and how many more may be,
+	 *            or null if the whole page is processed by this call
+	 * @param includeCache the resources already included by this search, or null to load every
+	 *            included resource
+	 * @return the included resources
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams,
+	        PageIncludeState pageIncludeState, IncludeCache includeCache) {
 		
 		List<PropParam<?>> includeParamList = theParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER);
 		List<PropParam<?>> revIncludeParamList = theParams.getParameters(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER);
@@ -112,124 +169,329 @@ public class SearchQueryInclude<U extends IBaseResource> {
 			revIncludeSet = (HashSet<Include>) revIncludeParamList.get(0).getParam();
 		}
 		
-		Set<IBaseResource> _includeResources = handleInclude(resourceList, includeSet);
-		Set<IBaseResource> _revIncludeResources = handleRevInclude(resourceList, includeSet, revIncludeSet);
+		IncludeCache cache = includeCache == null ? new IncludeCache(0) : includeCache;
+		HashSet<Include> iterateIncludes = getRecursiveIncludes(includeSet);
+		
+		// iterated includes only apply to the page itself if it has the type they start from
+		HashSet<Include> pageIncludes = new HashSet<>(includeSet);
+		if (!resourceList.isEmpty()) {
+			String resourceType = resourceList.get(0).fhirType();
+			iterateIncludes.stream().filter(include -> !appliesTo(include, resourceType)).forEach(pageIncludes::remove);
+		}
+		
+		PageIncludeState state = pageIncludeState == null ? newPageIncludeState() : pageIncludeState;
+		resourceList.stream().map(SearchQueryInclude::toResourceId).filter(Objects::nonNull)
+		        .forEach(state.visitedIds::add);
 		
-		Set<IBaseResource> resourcesToBeReturned = new HashSet<>();
-		resourcesToBeReturned.addAll(_includeResources);
-		resourcesToBeReturned.addAll(_revIncludeResources);
+		// the same resource may be referenced by several parameters, or even be one of the results
+		Set<IBaseResource> resourcesToBeReturned = new LinkedHashSet<>();
+		for (IBaseResource resource : handleInclude(resourceList, pageIncludes, cache)) {
+			String resourceId = toResourceId(resource);
+			if (resourceId == null || state.visitedIds.add(resourceId)) {
+				resourcesToBeReturned.add(resource);
+			}
+		}
+		
+		// reverse included resources are only taken if they have not been seen in the page
+		resourcesToBeReturned.addAll(handleRevInclude(resourceList, includeSet, revIncludeSet, state));
+		
+		if (!iterateIncludes.isEmpty()) {
+			resourcesToBeReturned
+			        .addAll(handleIterateInclude(new ArrayList<>(resourcesToBeReturned), iterateIncludes, state, cache));
+		}
+		
+		// allows the included resources to be told apart from the results when pages are merged
+		for (IBaseResource resource : resourcesToBeReturned) {
+			if (ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(resource) == null) {
+				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.INCLUDE);
+			}
+		}
 		
 		return resourcesToBeReturned;
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * @return the state of a new page of results, limited as configured by
+	 *         {@link FhirConstants#OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT} and
+	 *         {@link FhirConstants#OPENMRS_FHIR_INCLUDE_ITERATE_LIMIT}
+	 */
+	public PageIncludeState newPageIncludeState() {
+		return new PageIncludeState(
+		        getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT, DEFAULT_REVERSE_INCLUDE_LIMIT),
+		        getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_LIMIT, DEFAULT_ITERATE_LIMIT));
+	}
+	
 	private Set<IBaseResource> handleRevInclude(List<U> resourceList, HashSet<Include> includeSet,
-	        HashSet<Include> revIncludeSet) {
-		Set<IBaseResource> revIncludedResourcesSet = new HashSet<>();
+	        HashSet<Include> revIncludeSet, PageIncludeState state) {
+		Limit reverseIncludeLimit = state.reverseIncludeLimit;
+		Set<IBaseResource> revIncludedResourcesSet = new LinkedHashSet<>();
+		
+		// without any ids to restrict by, the reverse include searches would match everything
+		if (CollectionUtils.isEmpty(revIncludeSet) || CollectionUtils.isEmpty(resourceList)) {
+			return revIncludedResourcesSet;
+		}
 		
-		if (CollectionUtils.isEmpty(revIncludeSet)) {
+		// once an earlier batch of the page has found more than may be taken, nothing else can be added
+		if (reverseIncludeLimit.isExceeded()) {
 			return revIncludedResourcesSet;
 		}
 		
+		// all the resources in the page are referenced from a single parameter, so each reverse include is one query
 		ReferenceAndListParam referenceParams = new ReferenceAndListParam();
 		ReferenceOrListParam params = new ReferenceOrListParam();
 		resourceList.forEach(resource -> params.addOr(new ReferenceParam(resource.getIdElement().getIdPart())));
 		referenceParams.addAnd(params);
 		
-		revIncludeSet.forEach(revIncludeParam -> {
-			IBundleProvider bundleProvider = null;
-			switch (revIncludeParam.getParamName()) {
-				case FhirConstants.INCLUDE_PART_OF_PARAM:
-				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					bundleProvider = handleLocationReverseInclude(referenceParams, revIncludeParam.getParamType());
-					break;
-				case FhirConstants.INCLUDE_CONTEXT_PARAM:
-				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					bundleProvider = handleEncounterReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					bundleProvider = handleMedicationReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					bundleProvider = handlePatientReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
-				case FhirConstants.INCLUDE_RESULT_PARAM:
-				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					bundleProvider = handleObservationReverseInclude(referenceParams, revIncludeParam.getParamType());
+		if (isParallelIncludes()) {
+			// every branch may load as many resources as remain, as it cannot know how many the others found
+			int maxResults = reverseIncludeLimit.getMaxResults();
+			List<Supplier<List<IBaseResource>>> branches = revIncludeSet.stream()
+			        .map(revIncludeParam -> (Supplier<List<IBaseResource>>) () -> getReverseIncludedResources(
+			            revIncludeParam, referenceParams, includeSet, revIncludeSet, maxResults))
+			        .collect(Collectors.toList());
+			
+			for (List<IBaseResource> resources : includeBranchExecutor.invokeAll(branches)) {
+				revIncludedResourcesSet.addAll(state.takeReverseIncluded(resources, maxResults));
+			}
+		} else {
+			for (Include revIncludeParam : revIncludeSet) {
+				if (reverseIncludeLimit.isExceeded()) {
 					break;
-				case FhirConstants.INCLUDE_REQUESTER_PARAM:
-				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					bundleProvider = handlePractitionerReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
+				}
+				
+				int maxResults = reverseIncludeLimit.getMaxResults();
+				List<IBaseResource> resources = getReverseIncludedResources(revIncludeParam, referenceParams, includeSet,
+				    revIncludeSet, maxResults);
+				revIncludedResourcesSet.addAll(state.takeReverseIncluded(resources, maxResults));
+			}
+		}
+		
+		if (reverseIncludeLimit.isExceeded() && !state.reverseIncludeIncompleteReported) {
+			state.reverseIncludeIncompleteReported = true;
+			revIncludedResourcesSet.add(createIncompleteOutcome(reverseIncludeLimit.limit));
+		}
+		
+		return revIncludedResourcesSet;
+	}
+	
+	private List<IBaseResource> getReverseIncludedResources(Include revIncludeParam,
+	        ReferenceAndListParam referenceParams, HashSet<Include> includeSet, HashSet<Include> revIncludeSet,
+	        int maxResults) {
+		// only the requested number of results is loaded, so no total or streamed page is needed
+		return SearchRequestContext
+		        .withoutStreaming(() -> SearchRequestContext.withTotalMode(SearchTotalModeEnum.NONE, () -> {
+			        IBundleProvider bundleProvider = searchForReverseIncludes(revIncludeParam, referenceParams, includeSet,
+			            revIncludeSet);
+			        return bundleProvider == null ? Collections.<IBaseResource> emptyList()
+			                : bundleProvider.getResources(0, maxResults);
+		        }));
+	}
+	
+	private IBundleProvider searchForReverseIncludes(Include revIncludeParam, ReferenceAndListParam referenceParams,
+	        HashSet<Include> includeSet, HashSet<Include> revIncludeSet) {
+		switch (revIncludeParam.getParamName()) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				return handleLocationReverseInclude(referenceParams, revIncludeParam.getParamType());
+			case FhirConstants.INCLUDE_CONTEXT_PARAM:
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				return handleEncounterReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				return handleMedicationReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				return handlePatientReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
+			case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
+			case FhirConstants.INCLUDE_RESULT_PARAM:
+			case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
+				return handleObservationReverseInclude(referenceParams, revIncludeParam.getParamType());
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+			case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
+				return handlePractitionerReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
+			case FhirConstants.INCLUDE_PRESCRIPTION_PARAMETER:
+				return handlePrescriptionReverseInclude(referenceParams, revIncludeParam.getParamType());
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Walks the _include:iterate parameters breadth-first from the given resources. Each level is
+	 * grouped by resource type, so that the references of all the resources of one type are resolved
+	 * together, and only resources which have not been seen in the page before are followed further,
+	 * which stops the iteration at cycles such as two locations which are each a part of the other.
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<IBaseResource> handleIterateInclude(List<IBaseResource> startingResources,
+	        HashSet<Include> iterateIncludes, PageIncludeState state, IncludeCache includeCache) {
+		int maxDepth = getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAX_DEPTH, DEFAULT_ITERATE_MAX_DEPTH);
+		Limit iterateLimit = state.iterateLimit;
+		
+		Set<IBaseResource> iteratedResources = new LinkedHashSet<>();
+		List<IBaseResource> level = startingResources;
+		String incompleteReason = null;
+		
+		// once an earlier batch of the page has used up the limit, nothing else can be added
+		if (iterateLimit.isExceeded()) {
+			level = Collections.emptyList();
+		}
+		
+		for (int depth = 1; !level.isEmpty() && incompleteReason == null; depth++) {
+			Map<String, List<IBaseResource>> levelByType = level.stream().filter(resource -> toResourceId(resource) != null)
+			        .collect(Collectors.groupingBy(IBaseResource::fhirType, LinkedHashMap::new, Collectors.toList()));
+			List<IBaseResource> nextLevel = new ArrayList<>();
+			
+			for (Map.Entry<String, List<IBaseResource>> resourcesOfType : levelByType.entrySet()) {
+				HashSet<Include> includes = iterateIncludes.stream()
+				        .filter(include -> appliesTo(include, resourcesOfType.getKey()))
+				        .collect(Collectors.toCollection(HashSet::new));
+				if (includes.isEmpty()) {
+					continue;
+				}
+				
+				if (maxDepth > 0 && depth > maxDepth) {
+					incompleteReason = "_include:iterate was only followed for " + maxDepth + " levels in this page";
 					break;
-				case FhirConstants.INCLUDE_PRESCRIPTION_PARAMETER:
-					bundleProvider = handlePrescriptionReverseInclude(referenceParams, revIncludeParam.getParamType());
+				}
+				
+				for (IBaseResource resource : handleInclude((List<U>) resourcesOfType.getValue(), includes,
+				    includeCache)) {
+					String resourceId = toResourceId(resource);
+					if (resourceId == null || state.visitedIds.contains(resourceId)) {
+						continue;
+					}
+					
+					if (!iterateLimit.takeOne()) {
+						incompleteReason = "Only the first " + iterateLimit.limit
+						        + " resources found by _include:iterate are included in this page";
+						break;
+					}
+					
+					state.visitedIds.add(resourceId);
+					iteratedResources.add(resource);
+					nextLevel.add(resource);
+				}
+				
+				if (incompleteReason != null) {
 					break;
+				}
 			}
 			
-			if (bundleProvider != null && !bundleProvider.isEmpty()) {
-				revIncludedResourcesSet.addAll(bundleProvider.getResources(0, -1));
-			}
-		});
+			level = nextLevel;
+		}
 		
-		return revIncludedResourcesSet;
+		if (incompleteReason != null && !state.iterateIncompleteReported) {
+			state.iterateIncompleteReported = true;
+			iteratedResources.add(createIncompleteOutcome(incompleteReason));
+		}
+		
+		return iteratedResources;
+	}
+	
+	private boolean isParallelIncludes() {
+		if (includeBranchExecutor == null || globalPropertyService == null) {
+			return false;
+		}
+		
+		return Boolean.parseBoolean(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PARALLEL_INCLUDES, "false"));
+	}
+	
+	private int getGlobalProperty(String property, int defaultValue) {
+		Integer value = globalPropertyService == null ? null
+		        : globalPropertyService.getGlobalProperty(property, defaultValue);
+		return value == null ? defaultValue : value;
+	}
+	
+	private static boolean appliesTo(Include include, String resourceType) {
+		String paramType = include.getParamType();
+		if (FhirConstants.PROCEDURE_REQUEST.equals(paramType)) {
+			paramType = FhirConstants.SERVICE_REQUEST;
+		}
+		
+		return resourceType.equals(paramType);
+	}
+	
+	private static OperationOutcome createIncompleteOutcome(int limit) {
+		return createIncompleteOutcome(
+		    "Only the first " + limit + " resources matching _revinclude are included in this page");
+	}
+	
+	private static OperationOutcome createIncompleteOutcome(String diagnostics) {
+		OperationOutcome outcome = new OperationOutcome();
+		outcome.setId(UUID.randomUUID().toString());
+		outcome.addIssue().setSeverity(OperationOutcome.IssueSeverity.WARNING).setCode(OperationOutcome.IssueType.INCOMPLETE)
+		        .setDiagnostics(diagnostics);
+		ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(outcome, BundleEntrySearchModeEnum.OUTCOME);
+		return outcome;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Set<IBaseResource> handleInclude(List<U> resourceList, HashSet<Include> includeSet) {
+		return handleInclude(resourceList, includeSet, new IncludeCache(0));
+	}
+	
+	@SuppressWarnings("unchecked")
+	public Set<IBaseResource> handleInclude(List<U> resourceList, HashSet<Include> includeSet,
+	        IncludeCache includeCache) {
 		Set<IBaseResource> includedResourcesSet = new HashSet<>();
 		
 		if (CollectionUtils.isEmpty(includeSet)) {
 			return includedResourcesSet;
 		}
 		
+		List<Supplier<Collection<IBaseResource>>> branches = new ArrayList<>();
 		includeSet.forEach(includeParam -> {
 			switch (includeParam.getParamName()) {
 				case FhirConstants.INCLUDE_PART_OF_PARAM:
-					includedResourcesSet.addAll(handleParentLocationInclude((List<Location>) resourceList));
+					branches.add(() -> handleParentLocationInclude((List<Location>) resourceList, includeCache));
 					break;
 				case FhirConstants.INCLUDE_CONTEXT_PARAM:
 				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					includedResourcesSet.addAll(handleEncounterInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleEncounterInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					includedResourcesSet.addAll(handlePatientInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handlePatientInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
 				case FhirConstants.INCLUDE_RESULT_PARAM:
 				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					includedResourcesSet.addAll(handleObsGroupInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleObsGroupInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_REQUESTER_PARAM:
 				case FhirConstants.INCLUDE_PERFORMER_PARAM:
 				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					includedResourcesSet.addAll(handleParticipantInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleParticipantInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					includedResourcesSet.addAll(handleLocationInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleLocationInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					includedResourcesSet.addAll(handleMedicationInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleMedicationInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_LINK_PARAM:
-					includedResourcesSet.addAll(handlePersonLinkInclude(resourceList, includeParam.getParamTargetType()));
+					branches.add(
+					    () -> handlePersonLinkInclude(resourceList, includeParam.getParamTargetType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_BASED_0N_PARAM:
-					includedResourcesSet.addAll(handleServiceRequestInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handleServiceRequestInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_OWNER_PARAM:
-					includedResourcesSet.addAll(handlePractitionerInclude(resourceList, includeParam.getParamType()));
+					branches.add(() -> handlePractitionerInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 				case FhirConstants.INCLUDE_PRESCRIPTION_PARAM:
-					includedResourcesSet.addAll(handleMedicationRequestInclude(resourceList, includeParam.getParamType()));
+					branches.add(
+					    () -> handleMedicationRequestInclude(resourceList, includeParam.getParamType(), includeCache));
 					break;
 			}
 		});
 		
+		List<Collection<IBaseResource>> results = isParallelIncludes() ? includeBranchExecutor.invokeAll(branches)
+		        : branches.stream().map(Supplier::get).collect(Collectors.toList());
+		results.forEach(includedResourcesSet::addAll);
+		
 		return includedResourcesSet;
 	}
 	
@@ -350,14 +612,14 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		return null;
 	}
 	
-	private List<Location> handleParentLocationInclude(List<Location> resourceList) {
+	private List<IBaseResource> handleParentLocationInclude(List<Location> resourceList, IncludeCache includeCache) {
 		Set<String> uniqueParentLocationUUIDs = resourceList.stream().map(Location::getPartOf)
 		        .map(SearchQueryInclude::getIdFromReference).filter(Objects::nonNull).collect(Collectors.toSet());
 		
-		return locationService.get(uniqueParentLocationUUIDs);
+		return includeCache.get(FhirConstants.LOCATION, uniqueParentLocationUUIDs, locationService::get);
 	}
 	
-	private Set<IBaseResource> handlePersonLinkInclude(List<U> resourceList, String targetType) {
+	private Set<IBaseResource> handlePersonLinkInclude(List<U> resourceList, String targetType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		
 		switch (targetType) {
@@ -368,8 +630,8 @@ public class SearchQueryInclude<U extends IBaseResource> {
 					        .filter(res -> res.getTarget().getType().equals(FhirConstants.PATIENT))
 					        .forEach(patient -> patientReferenceList.add(patient.getTarget()));
 					
-					includedResources
-					        .addAll(patientService.get(new HashSet<>(getIdsFromReferenceList(patientReferenceList))));
+					includedResources.addAll(includeCache.get(FhirConstants.PATIENT,
+					    new HashSet<>(getIdsFromReferenceList(patientReferenceList)), patientService::get));
 				});
 				break;
 		}
@@ -377,7 +639,7 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleMedicationInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleMedicationInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueMedicationUUIDs = new HashSet<>();
 		
@@ -393,12 +655,12 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueMedicationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(medicationService.get(uniqueMedicationUUIDs));
+		includedResources.addAll(includeCache.get(FhirConstants.MEDICATION, uniqueMedicationUUIDs, medicationService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleLocationInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleLocationInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueLocationUUIDs = new HashSet<>();
 		
@@ -414,12 +676,12 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueLocationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(locationService.get(uniqueLocationUUIDs));
+		includedResources.addAll(includeCache.get(FhirConstants.LOCATION, uniqueLocationUUIDs, locationService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleParticipantInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleParticipantInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueParticipantUUIDs = new HashSet<>();
 		
@@ -452,12 +714,13 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueParticipantUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(practitionerService.get(uniqueParticipantUUIDs));
+		includedResources
+		        .addAll(includeCache.get(FhirConstants.PRACTITIONER, uniqueParticipantUUIDs, practitionerService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleObsGroupInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleObsGroupInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueObservationUUIDs = new HashSet<>();
 		
@@ -473,12 +736,13 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueObservationUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(observationService.get(uniqueObservationUUIDs));
+		includedResources
+		        .addAll(includeCache.get(FhirConstants.OBSERVATION, uniqueObservationUUIDs, observationService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handlePatientInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handlePatientInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniquePatientUUIDs = new HashSet<>();
 		
@@ -533,12 +797,12 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniquePatientUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(patientService.get(uniquePatientUUIDs));
+		includedResources.addAll(includeCache.get(FhirConstants.PATIENT, uniquePatientUUIDs, patientService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleEncounterInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleEncounterInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueEncounterUUIDs = new HashSet<>();
 		
@@ -571,12 +835,13 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueEncounterUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(encounterService.get(uniqueEncounterUUIDs));
+		includedResources.addAll(includeCache.get(FhirConstants.ENCOUNTER, uniqueEncounterUUIDs, encounterService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleServiceRequestInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleServiceRequestInclude(List<U> resourceList, String paramType,
+	        IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueServiceRequestUUIDs = new HashSet<>();
 		
@@ -591,11 +856,12 @@ public class SearchQueryInclude<U extends IBaseResource> {
 				break;
 		}
 		uniqueServiceRequestUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(serviceRequestService.get(uniqueServiceRequestUUIDs));
+		includedResources.addAll(
+		    includeCache.get(FhirConstants.SERVICE_REQUEST, uniqueServiceRequestUUIDs, serviceRequestService::get));
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handlePractitionerInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handlePractitionerInclude(List<U> resourceList, String paramType, IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniquePractitionerUUIDs = new HashSet<>();
 		
@@ -607,12 +873,14 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniquePractitionerUUIDs.removeIf(Objects::isNull);
-		includedResources.addAll(practitionerService.get(uniquePractitionerUUIDs));
+		includedResources
+		        .addAll(includeCache.get(FhirConstants.PRACTITIONER, uniquePractitionerUUIDs, practitionerService::get));
 		
 		return includedResources;
 	}
 	
-	private Set<IBaseResource> handleMedicationRequestInclude(List<U> resourceList, String paramType) {
+	private Set<IBaseResource> handleMedicationRequestInclude(List<U> resourceList, String paramType,
+	        IncludeCache includeCache) {
 		Set<IBaseResource> includedResources = new HashSet<>();
 		Set<String> uniqueUuids = new HashSet<>();
 		
@@ -624,13 +892,14 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		}
 		
 		uniqueUuids.removeIf(Objects::isNull);
-		includedResources.addAll(medicationRequestService.get(uniqueUuids));
+		includedResources
+		        .addAll(includeCache.get(FhirConstants.MEDICATION_REQUEST, uniqueUuids, medicationRequestService::get));
 		
 		return includedResources;
 	}
 	
 	private HashSet<Include> getRecursiveIncludes(HashSet<Include> includeSet) {
-		return (HashSet<Include>) includeSet.stream().filter(res -> res.isRecurse()).collect(Collectors.toSet());
+		return includeSet.stream().filter(Include::isRecurse).collect(Collectors.toCollection(HashSet::new));
 	}
 	
 	private static List<String> getIdsFromReferenceList(List<Reference> referenceList) {
@@ -643,7 +912,114 @@ public class SearchQueryInclude<U extends IBaseResource> {
 		return idList;
 	}
 	
+	private static String toResourceId(IBaseResource resource) {
+		if (resource == null || resource.getIdElement().getIdPart() == null) {
+			return null;
+		}
+		
+		return resource.fhirType() + "/" + resource.getIdElement().getIdPart();
+	}
+	
 	protected static String getIdFromReference(Reference reference) {
 		return reference != null ? reference.getReferenceElement().getIdPart() : null;
 	}
+	
+	/**
+	 * Tracks what has been added to one page of results, which may be processed in several batches:
+	 * the resources which are already part of the page, and how many more may be added by _revinclude
+	 * and by _include:iterate. A limit of zero or less means there is no limit.
+	 */
+	public static final class PageIncludeState {
+		
+		private final Limit reverseIncludeLimit;
+		
+		private final Limit iterateLimit;
+		
+		// the Type/id of every resource returned or included in the page so far
+		private final Set<String> visitedIds = new HashSet<>();
+		
+		private boolean reverseIncludeIncompleteReported = false;
+		
+		private boolean iterateIncompleteReported = false;
+		
+		PageIncludeState(int reverseIncludeLimit, int iterateLimit) {
+			this.reverseIncludeLimit = new Limit(reverseIncludeLimit);
+			this.iterateLimit = new Limit(iterateLimit);
+		}
+		
+		/**
+		 * Takes the resources found by one reverse include which have not been seen in the page yet, up to
+		 * the number which may still be added
+		 *
+		 * @param resources the resources found
+		 * @param maxResults the number of resources which were requested, or -1 if all were
+		 * @return the resources to add to the page
+		 */
+		private List<IBaseResource> takeReverseIncluded(List<IBaseResource> resources, int maxResults) {
+			// a full window means that there may have been more than could be loaded
+			if (maxResults > 0 && resources.size() >= maxResults) {
+				reverseIncludeLimit.exceeded = true;
+			}
+			
+			List<IBaseResource> taken = new ArrayList<>();
+			for (IBaseResource resource : resources) {
+				String resourceId = toResourceId(resource);
+				if (resourceId != null && visitedIds.contains(resourceId)) {
+					continue;
+				}
+				
+				if (!reverseIncludeLimit.takeOne()) {
+					break;
+				}
+				
+				if (resourceId != null) {
+					visitedIds.add(resourceId);
+				}
+				
+				taken.add(resource);
+			}
+			
+			return taken;
+		}
+	}
+	
+	/**
+	 * Counts down the number of resources which may still be added to a page by one kind of include
+	 */
+	private static final class Limit {
+		
+		private final int limit;
+		
+		private int remaining;
+		
+		private boolean exceeded = false;
+		
+		private Limit(int limit) {
+			this.limit = limit;
+			this.remaining = limit;
+		}
+		
+		private boolean isExceeded() {
+			return exceeded;
+		}
+		
+		// one more result than may be taken is requested, so that it is known whether there were more
+		private int getMaxResults() {
+			return limit > 0 ? remaining + 1 : -1;
+		}
+		
+		private boolean takeOne() {
+			if (limit <= 0) {
+				return true;
+			}
+			
+			if (remaining == 0) {
+				exceeded = true;
+				return false;
+			}
+			
+			remaining--;
+			return true;
+		}
+	}
 }
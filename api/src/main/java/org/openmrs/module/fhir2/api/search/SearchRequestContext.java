@@ -0,0 +1,175 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
+
+/**
+ * Holds the options of the FHIR request being processed by the current thread which affect how
+ * searches are executed but which are not search parameters themselves, such as {@code _total}.
+ * These are populated by the web layer at the start of each request and cleared once it completes.
+ */
+public final class SearchRequestContext {
+	
+	private static final ThreadLocal<SearchTotalModeEnum> TOTAL_MODE = new ThreadLocal<>();
+	
+	private static final ThreadLocal<Boolean> COUNT_ONLY = new ThreadLocal<>();
+	
+	private static final ThreadLocal<RequestedElements> REQUESTED_ELEMENTS = new ThreadLocal<>();
+	
+	private static final ThreadLocal<Boolean> STREAMING = new ThreadLocal<>();
+	
+	private static final ThreadLocal<StreamedPage> STREAMED_PAGE = new ThreadLocal<>();
+	
+	private SearchRequestContext() {
+	}
+	
+	/**
+	 * @return the value of the {@code _total} parameter for the current request or null if none was
+	 *         supplied
+	 */
+	public static SearchTotalModeEnum getTotalMode() {
+		return TOTAL_MODE.get();
+	}
+	
+	public static void setTotalMode(SearchTotalModeEnum mode) {
+		if (mode == null) {
+			TOTAL_MODE.remove();
+		} else {
+			TOTAL_MODE.set(mode);
+		}
+	}
+	
+	/**
+	 * Runs an action with a different {@code _total} mode than the one requested, for example, to
+	 * create searches which must know their size regardless of what the client asked for
+	 *
+	 * @param mode the mode to use while running the action
+	 * @param action the action to run
+	 * @return the result of the action
+	 */
+	public static <T> T withTotalMode(SearchTotalModeEnum mode, Supplier<T> action) {
+		SearchTotalModeEnum requestedMode = TOTAL_MODE.get();
+		setTotalMode(mode);
+		try {
+			return action.get();
+		}
+		finally {
+			setTotalMode(requestedMode);
+		}
+	}
+	
+	/**
+	 * @return true if only the number of results matching the current request is wanted, as for
+	 *         {@code _summary=count}, so that the results themselves need not be loaded
+	 */
+	public static boolean isCountOnly() {
+		return Boolean.TRUE.equals(COUNT_ONLY.get());
+	}
+	
+	public static void setCountOnly(boolean countOnly) {
+		if (countOnly) {
+			COUNT_ONLY.set(true);
+		} else {
+			COUNT_ONLY.remove();
+		}
+	}
+	
+	/**
+	 * @return the elements the current request asked to be returned, as for {@code _elements}
+	 */
+	public static RequestedElements getRequestedElements() {
+		RequestedElements elements = REQUESTED_ELEMENTS.get();
+		return elements == null ? RequestedElements.all() : elements;
+	}
+	
+	public static void setRequestedElements(RequestedElements elements) {
+		if (elements == null || elements.isAll()) {
+			REQUESTED_ELEMENTS.remove();
+		} else {
+			REQUESTED_ELEMENTS.set(elements);
+		}
+	}
+	
+	/**
+	 * @return true if the response to the current request can be streamed and no page of results has
+	 *         been deferred for streaming yet
+	 */
+	public static boolean isStreaming() {
+		return Boolean.TRUE.equals(STREAMING.get());
+	}
+	
+	public static void setStreaming(boolean streaming) {
+		if (streaming) {
+			STREAMING.set(true);
+		} else {
+			STREAMING.remove();
+		}
+	}
+	
+	/**
+	 * Defers translating a page of results until the response is written, if the response to the
+	 * current request can be streamed. Only the first page deferred for a request is streamed; after
+	 * that, {@link #isStreaming()} returns false.
+	 *
+	 * @param page the page to stream
+	 * @return true if the page will be streamed, in which case its resources must not also be returned
+	 */
+	public static boolean deferPage(StreamedPage page) {
+		if (!isStreaming() || STREAMED_PAGE.get() != null) {
+			return false;
+		}
+		
+		STREAMING.remove();
+		STREAMED_PAGE.set(page);
+		return true;
+	}
+	
+	/**
+	 * @return the page deferred for streaming by the current request or null if there is none
+	 */
+	public static StreamedPage getStreamedPage() {
+		return STREAMED_PAGE.get();
+	}
+	
+	/**
+	 * Runs an action which reads search results for its own use, rather than as the response to the
+	 * current request, so that the results it reads are not deferred for streaming
+	 *
+	 * @param action the action to run
+	 * @return the result of the action
+	 */
+	public static <T> T withoutStreaming(Supplier<T> action) {
+		Boolean streaming = STREAMING.get();
+		STREAMING.remove();
+		try {
+			return action.get();
+		}
+		finally {
+			if (streaming != null) {
+				STREAMING.set(streaming);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all options associated with the current thread
+	 */
+	public static void clear() {
+		TOTAL_MODE.remove();
+		COUNT_ONLY.remove();
+		REQUESTED_ELEMENTS.remove();
+		STREAMING.remove();
+		STREAMED_PAGE.remove();
+	}
+}
@@ -0,0 +1,628 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortSpec;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.DuplicationStrategy;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>
+ * A cache of the ids matching searches, so that clients repeating the same search, e.g. polling for
+ * new results, do not re-run the underlying query until the data it reads has changed. Searches
+ * are identified by a canonical form of their {@link SearchParameterMap} and {@link SortSpec}, in
+ * which the order of parameters and of the values in or-lists does not matter. Searches with
+ * parameters that have no canonical form are never cached.
+ * </p>
+ * <p>
+ * Cached ids are grouped into regions, one for each Dao, and each region depends on the entity
+ * type the Dao searches and the entity types associated with it. A Hibernate listener discards a
+ * region whenever a transaction which inserted, updated or deleted one of its entity types commits.
+ * Ids are also discarded once they exceed a time-to-live and, least recently used first, when the
+ * cache grows beyond its maximum size.
+ * </p>
+ * <p>
+ * The cache is local to a single server: changes made by other servers sharing the same database
+ * are not seen by the listener, so their searches would be answered from stale ids until the
+ * time-to-live expires. It must only be enabled for single-node deployments.
+ * </p>
+ * <p>
+ * The cache is disabled unless the {@link FhirConstants#OPENMRS_FHIR_SEARCH_CACHE_ENABLED} global
+ * property is set to true.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SearchResultIdCache {
+	
+	public static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024 * 1024;
+	
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+	
+	// assumed size of an entry, in addition to its key and ids
+	static final long ENTRY_WEIGHT = 128;
+	
+	// how often the global properties configuring the cache are re-read
+	private static final long SETTINGS_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+	
+	// how many associations away from the searched entity type a change discards its searches
+	private static final int DEPENDENCY_DEPTH = 2;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	@Setter(AccessLevel.PACKAGE)
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	@Setter(AccessLevel.PACKAGE)
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	@Setter(AccessLevel.PACKAGE)
+	private FhirContext fhirContext;
+	
+	// guarded by itself; iterates in access order, so the least recently used entry comes first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long totalWeight = 0;
+	
+	private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+	
+	private final Map<String, Set<String>> regionsByEntity = new ConcurrentHashMap<>();
+	
+	private final Map<Class<?>, Set<String>> dependencies = new ConcurrentHashMap<>();
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder evictions = new LongAdder();
+	
+	private final LongAdder invalidations = new LongAdder();
+	
+	private final LongSupplier clock;
+	
+	private volatile boolean listening = false;
+	
+	private volatile boolean enabled = false;
+	
+	@Setter(AccessLevel.PACKAGE)
+	private volatile long maximumSize = DEFAULT_MAXIMUM_SIZE;
+	
+	@Setter(AccessLevel.PACKAGE)
+	private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+	
+	private volatile long settingsExpiry = 0;
+	
+	public SearchResultIdCache() {
+		this(System::currentTimeMillis);
+	}
+	
+	SearchResultIdCache(LongSupplier clock) {
+		this.clock = clock;
+	}
+	
+	@PostConstruct
+	public void registerInvalidationListener() {
+		if (!(sessionFactory instanceof SessionFactoryImplementor)) {
+			log.warn("Cannot listen for changes to {}, so search results will not be cached", sessionFactory);
+			return;
+		}
+		
+		EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+		        .getService(EventListenerRegistry.class);
+		
+		// when the module is refreshed, the new listener replaces the one for the previous cache
+		registry.addDuplicationStrategy(new InvalidationListenerReplacement());
+		
+		InvalidationListener listener = new InvalidationListener(this);
+		registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+		registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+		listening = true;
+	}
+	
+	/**
+	 * Returns the ids matching a search, from the cache if possible
+	 *
+	 * @param daoType the type of the Dao running the search
+	 * @param entityType the type of entity being searched for
+	 * @param theParams the search parameters
+	 * @param loader runs the search if its results are not cached
+	 * @return the ids matching the search
+	 */
+	public List<Integer> getSearchResultIds(@Nonnull Class<?> daoType, @Nonnull Class<?> entityType,
+	        @Nonnull SearchParameterMap theParams, @Nonnull Supplier<List<Integer>> loader) {
+		refreshSettings();
+		if (!enabled || !listening) {
+			return loader.get();
+		}
+		
+		String key = toCacheKey(daoType, theParams);
+		if (key == null) {
+			return loader.get();
+		}
+		
+		return getSearchResultIds(daoType.getName(), getDependencies(entityType), key, loader);
+	}
+	
+	List<Integer> getSearchResultIds(String region, Set<String> dependencies, String key,
+	        Supplier<List<Integer>> loader) {
+		registerRegion(region, dependencies);
+		
+		long now = clock.getAsLong();
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiry > now) {
+					hits.increment();
+					return entry.ids;
+				}
+				
+				remove(key);
+			}
+		}
+		
+		misses.increment();
+		
+		// read before running the search, so that changes committed while it runs prevent it being cached
+		long generation = generations.get(region).get();
+		SearchResultIds ids = SearchResultIds.of(loader.get());
+		
+		Entry entry = new Entry(region, ids, now + timeToLive, weigh(key, ids));
+		if (entry.weight <= maximumSize) {
+			synchronized (entries) {
+				if (generations.get(region).get() == generation) {
+					Entry previous = entries.put(key, entry);
+					totalWeight += entry.weight - (previous == null ? 0 : previous.weight);
+					evictIfNecessary();
+				}
+			}
+		}
+		
+		return ids;
+	}
+	
+	/**
+	 * Discards all cached searches which depend on the named entity type
+	 *
+	 * @param entityName the name of the entity type which has changed
+	 */
+	public void invalidate(@Nonnull String entityName) {
+		Set<String> regions = regionsByEntity.get(entityName);
+		if (regions == null) {
+			return;
+		}
+		
+		for (String region : regions) {
+			AtomicLong generation = generations.get(region);
+			if (generation != null) {
+				generation.incrementAndGet();
+			}
+		}
+		
+		synchronized (entries) {
+			Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry entry = iterator.next().getValue();
+				if (regions.contains(entry.region)) {
+					iterator.remove();
+					totalWeight -= entry.weight;
+					invalidations.increment();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Discards all cached searches
+	 */
+	public void clear() {
+		for (AtomicLong generation : generations.values()) {
+			generation.incrementAndGet();
+		}
+		
+		synchronized (entries) {
+			entries.clear();
+			totalWeight = 0;
+		}
+	}
+	
+	/**
+	 * @return the number of searches currently cached
+	 */
+	public int getCachedSearchCount() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * @return the estimated size in bytes of all searches currently cached
+	 */
+	public long getCachedSize() {
+		synchronized (entries) {
+			return totalWeight;
+		}
+	}
+	
+	/**
+	 * @return the number of searches served from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of cacheable searches which had to be run
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the proportion of cacheable searches served from the cache, or 0 if there have been none
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0.0 : (double) hitCount / total;
+	}
+	
+	/**
+	 * @return the number of searches discarded because the cache grew too large
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return the number of searches discarded because data they depend on changed
+	 */
+	public long getInvalidationCount() {
+		return invalidations.sum();
+	}
+	
+	/**
+	 * Creates the key identifying a search. Parameters are ordered by name, and the values of repeated
+	 * parameters and of or-lists are sorted, so that equivalent searches produce the same key.
+	 *
+	 * @param daoType the type of the Dao running the search
+	 * @param theParams the search parameters
+	 * @return the key, or null if the search cannot be cached
+	 */
+	String toCacheKey(Class<?> daoType, SearchParameterMap theParams) {
+		StringBuilder key = new StringBuilder(daoType.getName());
+		
+		List<Map.Entry<String, List<PropParam<?>>>> parameters = new ArrayList<>(theParams.getParameters());
+		parameters.sort(Comparator.comparing(parameter -> parameter.getKey().toLowerCase(Locale.ROOT)));
+		
+		for (Map.Entry<String, List<PropParam<?>>> parameter : parameters) {
+			List<String> values = new ArrayList<>(parameter.getValue().size());
+			for (PropParam<?> propParam : parameter.getValue()) {
+				String value = canonicalize(propParam.getParam());
+				if (value == null) {
+					return null;
+				}
+				
+				values.add(propParam.getPropertyName() + "=" + value);
+			}
+			
+			Collections.sort(values);
+			key.append('|').append(parameter.getKey().toLowerCase(Locale.ROOT)).append(values);
+		}
+		
+		for (SortSpec sort = theParams.getSortSpec(); sort != null; sort = sort.getChain()) {
+			key.append("|_sort=").append(sort.getParamName()).append(':').append(sort.getOrder());
+		}
+		
+		return key.toString();
+	}
+	
+	private String canonicalize(Object value) {
+		if (value == null) {
+			return "null";
+		}
+		
+		if (value instanceof IQueryParameterType) {
+			IQueryParameterType param = (IQueryParameterType) value;
+			return value.getClass().getSimpleName() + Objects.toString(param.getQueryParameterQualifier(), "") + "="
+			        + Objects.toString(param.getValueAsQueryToken(fhirContext), "");
+		}
+		
+		if (value instanceof IQueryParameterAnd) {
+			return canonicalize("and", ((IQueryParameterAnd<?>) value).getValuesAsQueryTokens());
+		}
+		
+		if (value instanceof IQueryParameterOr) {
+			return canonicalize("or", ((IQueryParameterOr<?>) value).getValuesAsQueryTokens());
+		}
+		
+		if (value instanceof Include) {
+			Include include = (Include) value;
+			return "include=" + include.getValue() + (include.isRecurse() ? ":iterate" : "");
+		}
+		
+		if (value instanceof Collection) {
+			return canonicalize("all", (Collection<?>) value);
+		}
+		
+		if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+		        || value instanceof Enum) {
+			return value.getClass().getSimpleName() + "=" + value;
+		}
+		
+		// other values, e.g. dates, may be equal without having the same string form
+		return null;
+	}
+	
+	private String canonicalize(String operator, Collection<?> values) {
+		List<String> canonicalValues = new ArrayList<>(values.size());
+		for (Object value : values) {
+			String canonicalValue = canonicalize(value);
+			if (canonicalValue == null) {
+				return null;
+			}
+			
+			canonicalValues.add(canonicalValue);
+		}
+		
+		Collections.sort(canonicalValues);
+		return operator + canonicalValues;
+	}
+	
+	private void registerRegion(String region, Set<String> dependencies) {
+		generations.computeIfAbsent(region, name -> {
+			for (String dependency : dependencies) {
+				regionsByEntity.computeIfAbsent(dependency, entityName -> ConcurrentHashMap.newKeySet()).add(region);
+			}
+			
+			return new AtomicLong();
+		});
+	}
+	
+	private Set<String> getDependencies(Class<?> entityType) {
+		return dependencies.computeIfAbsent(entityType, this::findDependencies);
+	}
+	
+	private Set<String> findDependencies(Class<?> entityType) {
+		Set<String> entityNames = new HashSet<>();
+		
+		ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+		if (metadata == null) {
+			entityNames.add(entityType.getName());
+		} else {
+			addAssociatedEntities(metadata.getEntityName(), DEPENDENCY_DEPTH, entityNames);
+		}
+		
+		// changes are reported under the name of the entity saved, which may be a super- or subclass
+		Map<String, ClassMetadata> allMetadata = sessionFactory.getAllClassMetadata();
+		Set<Class<?>> dependentClasses = new HashSet<>();
+		for (String entityName : entityNames) {
+			ClassMetadata entityMetadata = allMetadata.get(entityName);
+			if (entityMetadata != null && entityMetadata.getMappedClass() != null) {
+				dependentClasses.add(entityMetadata.getMappedClass());
+			}
+		}
+		
+		for (ClassMetadata candidate : allMetadata.values()) {
+			Class<?> mappedClass = candidate.getMappedClass();
+			if (mappedClass != null && dependentClasses.stream().anyMatch(dependentClass -> dependentClass
+			        .isAssignableFrom(mappedClass) || mappedClass.isAssignableFrom(dependentClass))) {
+				entityNames.add(candidate.getEntityName());
+			}
+		}
+		
+		// many searches are configured by global properties
+		entityNames.add(GlobalProperty.class.getName());
+		
+		return Collections.unmodifiableSet(entityNames);
+	}
+	
+	private void addAssociatedEntities(String entityName, int depth, Set<String> entityNames) {
+		entityNames.add(entityName);
+		
+		ClassMetadata metadata = sessionFactory.getClassMetadata(entityName);
+		if (depth <= 0 || metadata == null) {
+			return;
+		}
+		
+		for (Type type : metadata.getPropertyTypes()) {
+			addAssociatedEntities(type, depth - 1, entityNames);
+		}
+	}
+	
+	private void addAssociatedEntities(Type type, int depth, Set<String> entityNames) {
+		if (type.isEntityType()) {
+			addAssociatedEntities(((EntityType) type).getAssociatedEntityName(), depth, entityNames);
+		} else if (type.isCollectionType()) {
+			addAssociatedEntities(
+			    ((CollectionType) type).getElementType((SessionFactoryImplementor) sessionFactory), depth, entityNames);
+		} else if (type.isComponentType()) {
+			for (Type subtype : ((CompositeType) type).getSubtypes()) {
+				addAssociatedEntities(subtype, depth, entityNames);
+			}
+		}
+	}
+	
+	// must hold the lock on entries
+	private void evictIfNecessary() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (totalWeight > maximumSize && iterator.hasNext()) {
+			totalWeight -= iterator.next().getValue().weight;
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+	
+	// must hold the lock on entries
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			totalWeight -= entry.weight;
+		}
+	}
+	
+	private void refreshSettings() {
+		long now = clock.getAsLong();
+		if (now < settingsExpiry) {
+			return;
+		}
+		
+		settingsExpiry = now + SETTINGS_INTERVAL;
+		
+		maximumSize = globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_MAXIMUM_SIZE,
+		    (int) (DEFAULT_MAXIMUM_SIZE / (1024 * 1024))) * 1024L * 1024L;
+		timeToLive = TimeUnit.SECONDS.toMillis(globalPropertyService.getGlobalProperty(
+		    FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_TIME_TO_LIVE, (int) (DEFAULT_TIME_TO_LIVE / 1000)));
+		
+		boolean wasEnabled = enabled;
+		enabled = Boolean.parseBoolean(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_SEARCH_CACHE_ENABLED, "false"));
+		
+		if (wasEnabled && !enabled) {
+			clear();
+		} else {
+			synchronized (entries) {
+				evictIfNecessary();
+			}
+		}
+	}
+	
+	private static long weigh(String key, SearchResultIds ids) {
+		return ENTRY_WEIGHT + 2L * key.length() + ids.getByteSize();
+	}
+	
+	private static class Entry {
+		
+		private final String region;
+		
+		private final SearchResultIds ids;
+		
+		private final long expiry;
+		
+		private final long weight;
+		
+		private Entry(String region, SearchResultIds ids, long expiry, long weight) {
+			this.region = region;
+			this.ids = ids;
+			this.expiry = expiry;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * Discards cached searches when a transaction changing the data they depend on commits
+	 */
+	static class InvalidationListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final transient SearchResultIdCache cache;
+		
+		InvalidationListener(SearchResultIdCache cache) {
+			this.cache = cache;
+		}
+		
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			invalidate(event.getPersister());
+		}
+		
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			invalidate(event.getPersister());
+		}
+		
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			invalidate(event.getPersister());
+		}
+		
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return true;
+		}
+		
+		private void invalidate(EntityPersister persister) {
+			if (cache != null) {
+				cache.invalidate(persister.getEntityName());
+			}
+		}
+	}
+	
+	private static class InvalidationListenerReplacement implements DuplicationStrategy {
+		
+		@Override
+		public boolean areMatch(Object listener, Object original) {
+			// compared by name, as a refreshed module loads its classes afresh
+			return listener.getClass().getName().equals(InvalidationListener.class.getName())
+			        && original.getClass().getName().equals(InvalidationListener.class.getName());
+		}
+		
+		@Override
+		public Action getAction() {
+			return Action.REPLACE_ORIGINAL;
+		}
+	}
+}
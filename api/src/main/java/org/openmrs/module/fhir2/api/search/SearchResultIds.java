@@ -0,0 +1,276 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * A compact, immutable list of the distinct primary keys matching a search, in result order. Ids
+ * are stored as primitives rather than boxed {@link Integer}s, so a list of n ids costs roughly 4n
+ * bytes rather than the 20n or so of an {@link java.util.ArrayList}.
+ * </p>
+ * <p>
+ * When the ids are in ascending order and reasonably dense (the common case for searches without
+ * an explicit sort), they are stored as a bitmap instead, which costs one bit per id in the range
+ * spanned by the results plus a small index used to make positional access cheap.
+ * </p>
+ * <p>
+ * Instances should be created using a {@link Builder}, which also takes care of removing any
+ * duplicate ids.
+ * </p>
+ */
+public final class SearchResultIds extends AbstractList<Integer> implements RandomAccess, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// one entry in the bitmap index for every 64 set bits
+	private static final int INDEX_INTERVAL = 64;
+	
+	private static final SearchResultIds EMPTY = new SearchResultIds(new int[0], null, null, 0);
+	
+	private final int[] ids;
+	
+	private final BitSet bitmap;
+	
+	private final int[] bitmapIndex;
+	
+	private final int size;
+	
+	private SearchResultIds(int[] ids, BitSet bitmap, int[] bitmapIndex, int size) {
+		this.ids = ids;
+		this.bitmap = bitmap;
+		this.bitmapIndex = bitmapIndex;
+		this.size = size;
+	}
+	
+	/**
+	 * @return an empty list of ids
+	 */
+	public static SearchResultIds empty() {
+		return EMPTY;
+	}
+	
+	/**
+	 * Creates a {@link SearchResultIds} containing the same ids as the supplied collection
+	 *
+	 * @param ids the ids
+	 * @return the supplied collection if it is already a {@link SearchResultIds} or a compact copy of
+	 *         it
+	 */
+	public static SearchResultIds of(@Nonnull Collection<Integer> ids) {
+		if (ids instanceof SearchResultIds) {
+			return (SearchResultIds) ids;
+		}
+		
+		Builder builder = new Builder();
+		for (Integer id : ids) {
+			if (id != null) {
+				builder.add(id);
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+	
+	/**
+	 * Returns the id at the supplied position without boxing it
+	 *
+	 * @param index the position in the list
+	 * @return the id at that position
+	 */
+	public int getInt(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		
+		if (bitmap == null) {
+			return ids[index];
+		}
+		
+		int id = bitmapIndex[index / INDEX_INTERVAL];
+		for (int i = index % INDEX_INTERVAL; i > 0; i--) {
+			id = bitmap.nextSetBit(id + 1);
+		}
+		
+		return id;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return true if the ids are stored as a bitmap
+	 */
+	public boolean isBitmap() {
+		return bitmap != null;
+	}
+	
+	/**
+	 * @return the approximate number of bytes of heap used to store these ids
+	 */
+	public long getByteSize() {
+		if (bitmap == null) {
+			return arrayBytes(ids.length);
+		}
+		
+		return arrayBytes(bitmap.size() / 32) + arrayBytes(bitmapIndex.length);
+	}
+	
+	private static long arrayBytes(int ints) {
+		// array header plus payload
+		return 16L + 4L * ints;
+	}
+	
+	/**
+	 * Accumulates ids, discarding duplicates while preserving the order in which ids were first seen
+	 */
+	public static final class Builder {
+		
+		// marks an empty slot in the hash table, as ids are never negative
+		private static final int FREE = -1;
+		
+		private int[] ids;
+		
+		private int size = 0;
+		
+		private boolean ascending = true;
+		
+		// an open addressing hash set of the ids added so far, only needed once the ids are out of order, since
+		// until then a duplicate can only be the last id added
+		private int[] seen;
+		
+		public Builder() {
+			this(16);
+		}
+		
+		public Builder(int expectedSize) {
+			ids = new int[Math.max(expectedSize, 1)];
+		}
+		
+		/**
+		 * Adds an id if it has not been added before
+		 *
+		 * @param id the id to add, which must not be negative
+		 * @return this builder
+		 */
+		public Builder add(int id) {
+			if (id < 0) {
+				throw new IllegalArgumentException("Search result ids cannot be negative");
+			}
+			
+			if (ascending && size > 0 && ids[size - 1] >= id) {
+				if (ids[size - 1] == id) {
+					return this;
+				}
+				
+				ascending = false;
+				seen = new int[tableSize(size + 1)];
+				Arrays.fill(seen, FREE);
+				for (int i = 0; i < size; i++) {
+					insert(seen, ids[i]);
+				}
+			}
+			
+			if (!ascending) {
+				if (!insert(seen, id)) {
+					return this;
+				}
+				
+				// keep the table at most half full
+				if ((size + 1) * 2 > seen.length) {
+					int[] table = new int[seen.length * 2];
+					Arrays.fill(table, FREE);
+					for (int i = 0; i < size; i++) {
+						insert(table, ids[i]);
+					}
+					insert(table, id);
+					seen = table;
+				}
+			}
+			
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+			}
+			
+			ids[size++] = id;
+			return this;
+		}
+		
+		/**
+		 * @return the number of distinct ids added so far
+		 */
+		public int size() {
+			return size;
+		}
+		
+		public SearchResultIds build() {
+			if (size == 0) {
+				return EMPTY;
+			}
+			
+			// the bitmap is only usable if result order is id order and it is actually smaller
+			if (ascending && arrayBytes(ids[size - 1] / 32 + 1) + arrayBytes(size / INDEX_INTERVAL + 1) < arrayBytes(
+			    size)) {
+				int[] index = new int[(size + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+				for (int i = 0; i < index.length; i++) {
+					index[i] = ids[i * INDEX_INTERVAL];
+				}
+				
+				BitSet bitmap = new BitSet(ids[size - 1] + 1);
+				for (int i = 0; i < size; i++) {
+					bitmap.set(ids[i]);
+				}
+				
+				return new SearchResultIds(null, bitmap, index, size);
+			}
+			
+			return new SearchResultIds(Arrays.copyOf(ids, size), null, null, size);
+		}
+		
+		private static int tableSize(int entries) {
+			int tableSize = 16;
+			while (tableSize < entries * 2) {
+				tableSize <<= 1;
+			}
+			return tableSize;
+		}
+		
+		// returns false if the table already contains the id
+		private static boolean insert(int[] table, int id) {
+			int mask = table.length - 1;
+			int hash = id * 0x9E3779B9;
+			for (int slot = (hash ^ hash >>> 16) & mask;; slot = (slot + 1) & mask) {
+				if (table[slot] == FREE) {
+					table[slot] = id;
+					return true;
+				}
+				
+				if (table[slot] == id) {
+					return false;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Address;
+import org.hl7.fhir.r4.model.DomainResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Person;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.StringType;
+import org.openmrs.module.fhir2.FhirConstants;
+
+/**
+ * Orders translated resources in the same way as the database orders them for a {@link SortSpec},
+ * so that the results of several searches can be merged. This covers the sort parameters supported
+ * by the searches which are merged: {@code _id} and {@code _lastUpdated} for every resource,
+ * {@code date} for Encounters and {@code name}, {@code given}, {@code family}, {@code birthdate} and
+ * the {@code address-*} parameters for Practitioners. Any other sort parameter is ignored by those
+ * searches, so it is ignored here too.
+ */
+@Slf4j
+class SortSpecComparator implements Comparator<IBaseResource>, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final List<String> SUPPORTED_PARAMETERS = Arrays.asList(DomainResource.SP_RES_ID,
+	    FhirConstants.SP_LAST_UPDATED.toLowerCase(), Encounter.SP_DATE, Practitioner.SP_NAME, Practitioner.SP_GIVEN,
+	    Practitioner.SP_FAMILY, Person.SP_BIRTHDATE, Practitioner.SP_ADDRESS_CITY, Practitioner.SP_ADDRESS_STATE,
+	    Practitioner.SP_ADDRESS_POSTALCODE, Practitioner.SP_ADDRESS_COUNTRY);
+	
+	private final List<String> parameters;
+	
+	private final List<SortOrderEnum> orders;
+	
+	private SortSpecComparator(List<String> parameters, List<SortOrderEnum> orders) {
+		this.parameters = parameters;
+		this.orders = orders;
+	}
+	
+	/**
+	 * @param sort the sort of the searches whose results are being compared
+	 * @return a comparator for the given sort or null if the results are not sorted by any supported
+	 *         sort parameter
+	 */
+	@Nullable
+	static SortSpecComparator of(@Nullable SortSpec sort) {
+		List<String> parameters = new ArrayList<>();
+		List<SortOrderEnum> orders = new ArrayList<>();
+		for (SortSpec sortSpec = sort; sortSpec != null; sortSpec = sortSpec.getChain()) {
+			// as in BaseDao, the sort parameters are not case-sensitive
+			String parameter = sortSpec.getParamName().toLowerCase();
+			if (!SUPPORTED_PARAMETERS.contains(parameter)) {
+				log.warn("Sort parameter {} is not supported when merging search results and will be ignored", parameter);
+				continue;
+			}
+			
+			parameters.add(parameter);
+			orders.add(sortSpec.getOrder());
+		}
+		
+		return parameters.isEmpty() ? null : new SortSpecComparator(parameters, orders);
+	}
+	
+	@Override
+	public int compare(IBaseResource first, IBaseResource second) {
+		for (int i = 0; i < parameters.size(); i++) {
+			int result = compareKeys(getSortKeys(first, parameters.get(i)), getSortKeys(second, parameters.get(i)));
+			if (result != 0) {
+				return orders.get(i) == SortOrderEnum.DESC ? -result : result;
+			}
+		}
+		
+		return 0;
+	}
+	
+	private static int compareKeys(List<Comparable<?>> first, List<Comparable<?>> second) {
+		for (int i = 0; i < first.size(); i++) {
+			int result = compareKey(first.get(i), second.get(i));
+			if (result != 0) {
+				return result;
+			}
+		}
+		
+		return 0;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareKey(Comparable first, Comparable second) {
+		// as in MySQL, nulls are sorted first when ascending
+		if (first == null || second == null) {
+			return first == null ? (second == null ? 0 : -1) : 1;
+		}
+		
+		// as with MySQL's default collations, strings are not compared case-sensitively
+		if (first instanceof String && second instanceof String) {
+			return String.CASE_INSENSITIVE_ORDER.compare((String) first, (String) second);
+		}
+		
+		return first.compareTo(second);
+	}
+	
+	/**
+	 * @return the values the database sorts by for the given parameter, in order, where every resource
+	 *         has the same number of values for the same parameter
+	 */
+	private static List<Comparable<?>> getSortKeys(IBaseResource resource, String parameter) {
+		switch (parameter) {
+			case DomainResource.SP_RES_ID:
+				return Collections.singletonList(resource.getIdElement().getIdPart());
+			case Encounter.SP_DATE:
+				if (resource instanceof Encounter && ((Encounter) resource).hasPeriod()) {
+					return Collections.singletonList(((Encounter) resource).getPeriod().getStart());
+				}
+				
+				return Collections.singletonList(null);
+			case Practitioner.SP_NAME: {
+				// the same name parts as BasePersonDao sorts by
+				HumanName name = getName(resource);
+				return Arrays.asList(name.getFamily(), getNameExtension(name, "familyName2"), getGiven(name, 0),
+				    getGiven(name, 1), getNameExtension(name, "familyNamePrefix"),
+				    getNameExtension(name, "familyNameSuffix"));
+			}
+			case Practitioner.SP_GIVEN:
+				return Collections.singletonList(getGiven(getName(resource), 0));
+			case Practitioner.SP_FAMILY:
+				return Collections.singletonList(getName(resource).getFamily());
+			case Person.SP_BIRTHDATE:
+				return Collections.singletonList(
+				    resource instanceof Practitioner ? ((Practitioner) resource).getBirthDate() : null);
+			case Practitioner.SP_ADDRESS_CITY:
+				return Collections.singletonList(getAddress(resource).getCity());
+			case Practitioner.SP_ADDRESS_STATE:
+				return Collections.singletonList(getAddress(resource).getState());
+			case Practitioner.SP_ADDRESS_POSTALCODE:
+				return Collections.singletonList(getAddress(resource).getPostalCode());
+			case Practitioner.SP_ADDRESS_COUNTRY:
+				return Collections.singletonList(getAddress(resource).getCountry());
+			default:
+				// _lastUpdated, the only supported parameter not handled above
+				return Collections.singletonList(resource.getMeta().getLastUpdated());
+		}
+	}
+	
+	private static HumanName getName(IBaseResource resource) {
+		// the preferred name of a person is translated first
+		if (resource instanceof Practitioner && ((Practitioner) resource).hasName()) {
+			return ((Practitioner) resource).getNameFirstRep();
+		}
+		
+		return new HumanName();
+	}
+	
+	private static Address getAddress(IBaseResource resource) {
+		if (resource instanceof Practitioner && ((Practitioner) resource).hasAddress()) {
+			return ((Practitioner) resource).getAddressFirstRep();
+		}
+		
+		return new Address();
+	}
+	
+	private static String getGiven(HumanName name, int index) {
+		return name.getGiven().size() > index ? name.getGiven().get(index).getValue() : null;
+	}
+	
+	private static String getNameExtension(HumanName name, String property) {
+		Extension nameExtension = name.getExtensionByUrl(FhirConstants.OPENMRS_FHIR_EXT_NAME);
+		if (nameExtension == null) {
+			return null;
+		}
+		
+		Extension extension = nameExtension.getExtensionByUrl(FhirConstants.OPENMRS_FHIR_EXT_NAME + "#" + property);
+		return extension != null && extension.getValue() instanceof StringType
+		        ? ((StringType) extension.getValue()).getValue()
+		        : null;
+	}
+}
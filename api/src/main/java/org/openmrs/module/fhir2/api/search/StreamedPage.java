@@ -0,0 +1,35 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+
+import java.util.function.Consumer;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+/**
+ * A page of search results whose translation has been deferred until the response is written, so
+ * that each resource can be written out and discarded as soon as it has been translated rather than
+ * holding the whole page in memory
+ *
+ * @see SearchRequestContext#deferPage(StreamedPage)
+ */
+@FunctionalInterface
+public interface StreamedPage {
+	
+	/**
+	 * Translates the resources on this page, followed by any resources they include, passing each to
+	 * the consumer as soon as it is available
+	 *
+	 * @param consumer receives the resources in the order they appear in the response
+	 */
+	void forEachResource(@Nonnull Consumer<IBaseResource> consumer);
+}
@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+
+/**
+ * An {@link IBundleProvider} which can estimate how much memory it is holding on to, so that paging
+ * providers can bound the memory used by the searches they store
+ */
+public interface WeightedBundleProvider extends IBundleProvider {
+	
+	/**
+	 * Estimates the memory currently used by this bundle provider. As bundle providers generally load
+	 * their results lazily, this may change over the lifetime of the search.
+	 *
+	 * @return the approximate number of bytes of heap held by this bundle provider or a negative number
+	 *         if this cannot be estimated
+	 */
+	long getWeight();
+}
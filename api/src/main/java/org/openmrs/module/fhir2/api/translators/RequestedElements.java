@@ -0,0 +1,133 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The elements of FHIR resources which the client asked to be returned, for example, through
+ * {@code _elements} or {@code _summary=true}. HAPI removes any other elements from the response, so
+ * translators may leave them out, along with any queries needed to fill them in.
+ * <p/>
+ * Elements are tracked per resource type and every element of a resource type for which no elements
+ * were named is considered requested. Only the top-level element is tracked, so {@code name.given}
+ * requests the whole {@code name} element.
+ */
+@ToString
+@EqualsAndHashCode
+public final class RequestedElements {
+	
+	private static final String ANY_RESOURCE_TYPE = "*";
+	
+	private static final String CHOICE_SUFFIX = "[x]";
+	
+	private static final RequestedElements ALL = new RequestedElements(Collections.emptyMap(), false);
+	
+	private final Map<String, Set<String>> elementsByResourceType;
+	
+	private final boolean exclude;
+	
+	private RequestedElements(Map<String, Set<String>> elementsByResourceType, boolean exclude) {
+		this.elementsByResourceType = elementsByResourceType;
+		this.exclude = exclude;
+	}
+	
+	/**
+	 * @return the instance which requests every element of every resource type
+	 */
+	public static RequestedElements all() {
+		return ALL;
+	}
+	
+	/**
+	 * Parses a list of elements in the format used by {@code _elements}, i.e. either an element name,
+	 * such as {@code name}, or an element name qualified by a resource type, such as
+	 * {@code Patient.name}
+	 *
+	 * @param resourceType the resource type of the request, which applies to unqualified element names
+	 *            or null if unqualified element names should be ignored
+	 * @param elements the element names
+	 * @param exclude true if the elements are the ones which should be left out, as for
+	 *            {@code _elements:exclude}, or false if they are the only ones which should be returned
+	 * @return the requested elements
+	 */
+	public static RequestedElements of(@Nullable String resourceType, @Nonnull Collection<String> elements,
+	        boolean exclude) {
+		Map<String, Set<String>> elementsByResourceType = new HashMap<>();
+		for (String element : elements) {
+			String trimmedElement = StringUtils.trimToNull(element);
+			if (trimmedElement == null) {
+				continue;
+			}
+			
+			String elementResourceType = resourceType;
+			String path = trimmedElement;
+			int separator = trimmedElement.indexOf('.');
+			if (separator > 0 && isResourceType(trimmedElement.substring(0, separator))) {
+				elementResourceType = trimmedElement.substring(0, separator);
+				path = trimmedElement.substring(separator + 1);
+			}
+			
+			if (elementResourceType == null || path.isEmpty()) {
+				continue;
+			}
+			
+			String name = StringUtils.substringBefore(path, ".");
+			name = StringUtils.removeEnd(name, CHOICE_SUFFIX);
+			elementsByResourceType.computeIfAbsent(elementResourceType, k -> new HashSet<>()).add(name);
+		}
+		
+		if (elementsByResourceType.isEmpty()) {
+			return ALL;
+		}
+		
+		return new RequestedElements(elementsByResourceType, exclude);
+	}
+	
+	/**
+	 * @return true if every element of every resource type is requested
+	 */
+	public boolean isAll() {
+		return elementsByResourceType.isEmpty();
+	}
+	
+	/**
+	 * @param resourceType the type of the resource being translated, e.g. {@code Patient}
+	 * @param element the name of a top-level element of that resource type, e.g. {@code telecom}
+	 * @return true if the element should be populated
+	 */
+	public boolean isRequested(@Nonnull String resourceType, @Nonnull String element) {
+		Set<String> elements = elementsByResourceType.get(resourceType);
+		Set<String> anyTypeElements = elementsByResourceType.get(ANY_RESOURCE_TYPE);
+		if (elements == null && anyTypeElements == null) {
+			return true;
+		}
+		
+		boolean named = (elements != null && elements.contains(element))
+		        || (anyTypeElements != null && anyTypeElements.contains(element));
+		return exclude != named;
+	}
+	
+	private static boolean isResourceType(String name) {
+		return ANY_RESOURCE_TYPE.equals(name) || Character.isUpperCase(name.charAt(0));
+	}
+}
@@ -26,4 +26,17 @@ public interface ToFhirTranslator<T, U> extends FhirTranslator {
 	 * @return the corresponding FHIR resource
 	 */
 	U toFhirResource(@Nonnull T data);
+	
+	/**
+	 * Maps an OpenMRS data element to a FHIR resource which only needs to have the requested elements
+	 * populated. Translators which can avoid expensive work for elements which were not requested
+	 * should override this; by default, every element is populated.
+	 *
+	 * @param data the OpenMRS data element to translate
+	 * @param elements the elements which will be returned to the client
+	 * @return the corresponding FHIR resource
+	 */
+	default U toFhirResource(@Nonnull T data, @Nonnull RequestedElements elements) {
+		return toFhirResource(data);
+	}
 }
@@ -43,6 +43,7 @@ import org.openmrs.module.fhir2.api.translators.PatientIdentifierTranslator;
 import org.openmrs.module.fhir2.api.translators.PatientTranslator;
 import org.openmrs.module.fhir2.api.translators.PersonAddressTranslator;
 import org.openmrs.module.fhir2.api.translators.PersonNameTranslator;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
 import org.openmrs.module.fhir2.api.translators.TelecomTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -77,46 +78,69 @@ public class PatientTranslatorImpl implements PatientTranslator {
 	
 	@Override
 	public Patient toFhirResource(@Nonnull org.openmrs.Patient openmrsPatient) {
+		return toFhirResource(openmrsPatient, RequestedElements.all());
+	}
+	
+	@Override
+	public Patient toFhirResource(@Nonnull org.openmrs.Patient openmrsPatient, @Nonnull RequestedElements elements) {
 		notNull(openmrsPatient, "The Openmrs Patient object should not be null");
 		
 		Patient patient = new Patient();
 		patient.setId(openmrsPatient.getUuid());
 		patient.setActive(!openmrsPatient.getVoided());
 		
-		for (PatientIdentifier identifier : openmrsPatient.getActiveIdentifiers()) {
-			patient.addIdentifier(identifierTranslator.toFhirResource(identifier));
+		if (isRequested(elements, "identifier")) {
+			for (PatientIdentifier identifier : openmrsPatient.getActiveIdentifiers()) {
+				patient.addIdentifier(identifierTranslator.toFhirResource(identifier));
+			}
 		}
 		
-		for (PersonName name : openmrsPatient.getNames()) {
-			patient.addName(nameTranslator.toFhirResource(name));
+		if (isRequested(elements, "name")) {
+			for (PersonName name : openmrsPatient.getNames()) {
+				patient.addName(nameTranslator.toFhirResource(name));
+			}
 		}
 		
-		if (openmrsPatient.getGender() != null) {
+		if (openmrsPatient.getGender() != null && isRequested(elements, "gender")) {
 			patient.setGender(genderTranslator.toFhirResource(openmrsPatient.getGender()));
 		}
 		
-		patient.setBirthDateElement(birthDateTranslator.toFhirResource(openmrsPatient));
+		if (isRequested(elements, "birthDate")) {
+			patient.setBirthDateElement(birthDateTranslator.toFhirResource(openmrsPatient));
+		}
 		
-		if (openmrsPatient.getDead()) {
-			if (openmrsPatient.getDeathDate() != null) {
-				patient.setDeceased(new DateTimeType(openmrsPatient.getDeathDate()));
+		if (isRequested(elements, "deceased")) {
+			if (openmrsPatient.getDead()) {
+				if (openmrsPatient.getDeathDate() != null) {
+					patient.setDeceased(new DateTimeType(openmrsPatient.getDeathDate()));
+				} else {
+					patient.setDeceased(new BooleanType(true));
+				}
 			} else {
-				patient.setDeceased(new BooleanType(true));
+				patient.setDeceased(new BooleanType(false));
 			}
-		} else {
-			patient.setDeceased(new BooleanType(false));
 		}
 		
-		for (PersonAddress address : openmrsPatient.getAddresses()) {
-			patient.addAddress(addressTranslator.toFhirResource(address));
+		if (isRequested(elements, "address")) {
+			for (PersonAddress address : openmrsPatient.getAddresses()) {
+				patient.addAddress(addressTranslator.toFhirResource(address));
+			}
+		}
+		
+		// the contact details take a query per attribute type, so they are only loaded when needed
+		if (isRequested(elements, "telecom")) {
+			patient.setTelecom(getPatientContactDetails(openmrsPatient));
 		}
 		
-		patient.setTelecom(getPatientContactDetails(openmrsPatient));
 		patient.getMeta().setLastUpdated(getLastUpdated(openmrsPatient));
 		
 		return patient;
 	}
 	
+	private boolean isRequested(RequestedElements elements, String element) {
+		return elements.isRequested(FhirConstants.PATIENT, element);
+	}
+	
 	/* 
 	public List<ContactPoint> getPatientContactDetails(@Nonnull org.openmrs.Patient patient) {
 		return fhirPersonDao
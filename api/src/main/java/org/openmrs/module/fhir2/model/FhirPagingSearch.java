@@ -0,0 +1,52 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The stored state of a search which is being paged through, so that any server sharing this
+ * database can serve its subsequent pages
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@ToString(exclude = "searchState")
+@Entity
+@Table(name = "fhir_paging_search")
+public class FhirPagingSearch implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@Column(name = "search_id", length = 36)
+	private String searchId;
+	
+	@Column(name = "search_state", nullable = false, length = Integer.MAX_VALUE)
+	private byte[] searchState;
+	
+	@Column(name = "date_created", nullable = false)
+	private Date dateCreated;
+	
+	@Column(name = "date_accessed", nullable = false)
+	private Date dateAccessed;
+}
@@ -119,7 +119,9 @@ public class MedicationDispenseFhirResourceProvider implements IResourceProvider
 	                "MedicationDispense:" + MedicationDispense.SP_CONTEXT,
 	                "MedicationDispense:" + MedicationDispense.SP_PRESCRIPTION,
 	                "MedicationDispense:" + MedicationDispense.SP_MEDICATION,
-	                "MedicationDispense:" + MedicationDispense.SP_PERFORMER }) HashSet<Include> includes,
+	                "MedicationDispense:" + MedicationDispense.SP_PERFORMER,
+	                "MedicationRequest:" + MedicationRequest.SP_MEDICATION,
+	                "MedicationRequest:" + MedicationRequest.SP_REQUESTER }) HashSet<Include> includes,
 	        @Sort SortSpec sort) {
 		
 		MedicationDispenseSearchParams params = new MedicationDispenseSearchParams();
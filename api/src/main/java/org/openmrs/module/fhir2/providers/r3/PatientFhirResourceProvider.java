@@ -22,6 +22,7 @@ import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.IncludeParam;
 import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
@@ -31,7 +32,9 @@ import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
@@ -144,10 +147,14 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 	 * The $everything operation fetches all the information related the specified patient
 	 *
 	 * @param patientId The id of the patient
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
 	 * @return a bundle of resources which reference to or are referenced from the patient
 	 */
 	@Operation(name = "everything", idempotent = true, type = Patient.class, bundleType = BundleTypeEnum.SEARCHSET)
-	public IBundleProvider getPatientEverything(@IdParam IdType patientId) {
+	public IBundleProvider getPatientEverything(@IdParam IdType patientId, @OperationParam(name = "_since") DateParam since,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_count") NumberParam count) {
 		
 		if (patientId == null || patientId.getIdPart() == null || patientId.getIdPart().isEmpty()) {
 			return null;
@@ -155,16 +162,21 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 		
 		TokenParam patientReference = new TokenParam().setValue(patientId.getIdPart());
 		
-		return new SearchQueryBundleProviderR3Wrapper(patientService.getPatientEverything(patientReference));
+		return new SearchQueryBundleProviderR3Wrapper(
+		        patientService.getPatientEverything(patientReference, since, types, count));
 	}
 	
 	/**
 	 * The $everything operation fetches all the information related to all the patients
 	 *
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
 	 * @return a bundle of resources which reference to or are referenced from the patients
 	 */
 	@Operation(name = "everything", idempotent = true, type = Patient.class, bundleType = BundleTypeEnum.SEARCHSET)
-	public IBundleProvider getPatientEverything() {
-		return new SearchQueryBundleProviderR3Wrapper(patientService.getPatientEverything());
+	public IBundleProvider getPatientEverything(@OperationParam(name = "_since") DateParam since,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_count") NumberParam count) {
+		return new SearchQueryBundleProviderR3Wrapper(patientService.getPatientEverything(since, types, count));
 	}
 }
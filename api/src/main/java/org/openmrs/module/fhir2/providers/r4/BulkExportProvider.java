@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.providers.r4;
+
+import static lombok.AccessLevel.PACKAGE;
+
+import java.io.IOException;
+
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import lombok.Setter;
+import org.openmrs.module.fhir2.api.FhirBulkExportService;
+import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+import org.openmrs.module.fhir2.providers.util.BulkExportUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the server-level operations of the FHIR Bulk Data export: the system-level
+ * {@code $export}, the status endpoint returned when an export is started and the endpoint serving
+ * the exported files. The {@code Patient/$export} and {@code Group/[id]/$export} operations are
+ * provided by the corresponding resource providers.
+ */
+@Component("BulkExportR4Provider")
+@R4Provider
+@Setter(PACKAGE)
+public class BulkExportProvider {
+	
+	@Autowired
+	private FhirBulkExportService bulkExportService;
+	
+	@Operation(name = BulkExportUtils.EXPORT_OPERATION, idempotent = true, manualResponse = true)
+	public void export(@OperationParam(name = "_outputFormat") StringParam outputFormat,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_since") DateParam since,
+	        ServletRequestDetails requestDetails) {
+		BulkExportUtils.kickOff(bulkExportService, BulkExportJob.Level.SYSTEM, null, outputFormat, types, since,
+		    requestDetails);
+	}
+	
+	@Operation(name = BulkExportUtils.STATUS_OPERATION, idempotent = true, manualResponse = true, deleteEnabled = true)
+	public void pollStatus(@OperationParam(name = "_jobId") StringParam jobId, ServletRequestDetails requestDetails)
+	        throws IOException {
+		BulkExportUtils.pollStatus(bulkExportService, jobId, requestDetails);
+	}
+	
+	@Operation(name = BulkExportUtils.FILE_OPERATION, idempotent = true, manualResponse = true)
+	public void getFile(@OperationParam(name = "_jobId") StringParam jobId,
+	        @OperationParam(name = "_file") StringParam fileName, ServletRequestDetails requestDetails) throws IOException {
+		BulkExportUtils.writeFile(bulkExportService, jobId, fileName, requestDetails);
+	}
+}
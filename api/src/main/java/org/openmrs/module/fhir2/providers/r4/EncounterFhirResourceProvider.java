@@ -131,7 +131,8 @@ public class EncounterFhirResourceProvider implements IResourceProvider {
 	        @OptionalParam(name = "_lastUpdated") DateRangeParam lastUpdated, @Sort SortSpec sort,
 	        @OptionalParam(name = FhirConstants.HAS_SEARCH_HANDLER) HasAndListParam hasAndListParam,
 	        @IncludeParam(allow = { "Encounter:" + Encounter.SP_LOCATION, "Encounter:" + Encounter.SP_PATIENT,
-	                "Encounter:" + Encounter.SP_PARTICIPANT }) HashSet<Include> includes,
+	                "Encounter:" + Encounter.SP_PARTICIPANT,
+	                "Location:" + Location.SP_PARTOF }) HashSet<Include> includes,
 	        @IncludeParam(reverse = true, allow = { "Observation:" + Observation.SP_ENCOUNTER,
 	                "DiagnosticReport:" + DiagnosticReport.SP_ENCOUNTER,
 	                "MedicationRequest:" + MedicationRequest.SP_ENCOUNTER, "ServiceRequest:" + ServiceRequest.SP_ENCOUNTER,
@@ -17,6 +17,7 @@ import ca.uhn.fhir.rest.annotation.Create;
 import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
@@ -24,19 +25,26 @@ import ca.uhn.fhir.rest.annotation.Search;
 import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import lombok.Setter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Group;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Practitioner;
+import org.openmrs.module.fhir2.api.FhirBulkExportService;
 import org.openmrs.module.fhir2.api.FhirGroupMemberService;
 import org.openmrs.module.fhir2.api.FhirGroupService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+import org.openmrs.module.fhir2.providers.util.BulkExportUtils;
 import org.openmrs.module.fhir2.providers.util.FhirProviderUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -52,6 +60,9 @@ public class GroupFhirResourceProvider implements IResourceProvider {
 	@Autowired
 	private FhirGroupMemberService groupMemberService;
 	
+	@Autowired
+	private FhirBulkExportService bulkExportService;
+	
 	@Override
 	public Class<? extends IBaseResource> getResourceType() {
 		return Group.class;
@@ -100,6 +111,19 @@ public class GroupFhirResourceProvider implements IResourceProvider {
 		return groupMemberService.getGroupMembers(groupId.getIdPart());
 	}
 	
+	/**
+	 * The $export operation starts an asynchronous export of the members of a group and the resources
+	 * related to them, following the FHIR Bulk Data pattern
+	 */
+	@Operation(name = BulkExportUtils.EXPORT_OPERATION, idempotent = true, manualResponse = true)
+	public void exportGroup(@IdParam @Nonnull IdType groupId,
+	        @OperationParam(name = "_outputFormat") StringParam outputFormat,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_since") DateParam since,
+	        ServletRequestDetails requestDetails) {
+		BulkExportUtils.kickOff(bulkExportService, BulkExportJob.Level.GROUP, groupId.getIdPart(), outputFormat, types,
+		    since, requestDetails);
+	}
+	
 	@Search
 	@SuppressWarnings("unused")
 	public IBundleProvider searchForGroups(@OptionalParam(name = Group.SP_MANAGING_ENTITY, chainWhitelist = { "",
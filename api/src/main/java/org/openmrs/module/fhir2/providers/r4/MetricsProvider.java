@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.providers.r4;
+
+import static lombok.AccessLevel.PACKAGE;
+
+import ca.uhn.fhir.rest.annotation.Operation;
+import lombok.Setter;
+import org.hl7.fhir.r4.model.DecimalType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.StringType;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.metrics.HistogramSnapshot;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics;
+import org.openmrs.module.fhir2.api.metrics.SearchShapeStatistics;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Provides the system-level {@code $metrics} operation, which reports the {@link SearchMetrics}
+ * recorded for each resource type and search shape. Each {@code search} parameter describes one shape,
+ * with a histogram summary for each phase of the search, in microseconds, and for the number of
+ * matching results. As the search shapes and timings reveal how the server is used, the operation
+ * is only available to users who can view the administration functions.
+ */
+@Component("MetricsR4Provider")
+@R4Provider
+@Setter(PACKAGE)
+public class MetricsProvider {
+	
+	public static final String METRICS_OPERATION = "metrics";
+	
+	@Autowired
+	private SearchMetrics searchMetrics;
+	
+	@Operation(name = METRICS_OPERATION, idempotent = true)
+	public Parameters getMetrics() {
+		Context.requirePrivilege(PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+		
+		Parameters parameters = new Parameters();
+		for (SearchShapeStatistics statistics : searchMetrics.getSearches()) {
+			Parameters.ParametersParameterComponent search = parameters.addParameter().setName("search");
+			search.addPart().setName("resourceType").setValue(new StringType(statistics.getResourceType()));
+			search.addPart().setName("shape").setValue(new StringType(statistics.getShape()));
+			addHistogram(search, "idQueryMicros", statistics.getIdQueryMicros());
+			addHistogram(search, "pageFetchMicros", statistics.getPageFetchMicros());
+			addHistogram(search, "translationMicros", statistics.getTranslationMicros());
+			addHistogram(search, "includeMicros", statistics.getIncludeMicros());
+			addHistogram(search, "cardinality", statistics.getCardinality());
+		}
+		
+		return parameters;
+	}
+	
+	private static void addHistogram(Parameters.ParametersParameterComponent search, String name,
+	        HistogramSnapshot snapshot) {
+		Parameters.ParametersParameterComponent histogram = search.addPart().setName(name);
+		histogram.addPart().setName("count").setValue(new DecimalType(snapshot.getCount()));
+		histogram.addPart().setName("mean").setValue(new DecimalType(snapshot.getMean()));
+		histogram.addPart().setName("p50").setValue(new DecimalType(snapshot.getP50()));
+		histogram.addPart().setName("p95").setValue(new DecimalType(snapshot.getP95()));
+		histogram.addPart().setName("p99").setValue(new DecimalType(snapshot.getP99()));
+		histogram.addPart().setName("max").setValue(new DecimalType(snapshot.getMax()));
+	}
+}
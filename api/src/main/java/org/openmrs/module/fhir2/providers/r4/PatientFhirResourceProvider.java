@@ -22,6 +22,7 @@ import ca.uhn.fhir.rest.annotation.Delete;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.IncludeParam;
 import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.annotation.ResourceParam;
@@ -31,13 +32,17 @@ import ca.uhn.fhir.rest.annotation.Update;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import lombok.Setter;
 import org.apache.commons.collections.CollectionUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -51,9 +56,12 @@ import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.ServiceRequest;
+import org.openmrs.module.fhir2.api.FhirBulkExportService;
 import org.openmrs.module.fhir2.api.FhirPatientService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
 import org.openmrs.module.fhir2.api.search.param.PatientSearchParams;
+import org.openmrs.module.fhir2.providers.util.BulkExportUtils;
 import org.openmrs.module.fhir2.providers.util.FhirProviderUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -66,6 +74,9 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 	@Autowired
 	private FhirPatientService patientService;
 	
+	@Autowired
+	private FhirBulkExportService bulkExportService;
+	
 	@Override
 	public Class<? extends IBaseResource> getResourceType() {
 		return Patient.class;
@@ -136,12 +147,16 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 	
 	/**
 	 * The $everything operation fetches all the information related the specified patient
-	 * 
+	 *
 	 * @param patientId The id of the patient
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
 	 * @return a bundle of resources which reference to or are referenced from the patient
 	 */
 	@Operation(name = "everything", idempotent = true, type = Patient.class, bundleType = BundleTypeEnum.SEARCHSET)
-	public IBundleProvider getPatientEverything(@IdParam IdType patientId) {
+	public IBundleProvider getPatientEverything(@IdParam IdType patientId, @OperationParam(name = "_since") DateParam since,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_count") NumberParam count) {
 		
 		if (patientId == null || patientId.getIdPart() == null || patientId.getIdPart().isEmpty()) {
 			return null;
@@ -149,16 +164,36 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 		
 		TokenParam patientReference = new TokenParam().setValue(patientId.getIdPart());
 		
-		return patientService.getPatientEverything(patientReference);
+		return patientService.getPatientEverything(patientReference, since, types, count);
 	}
 	
 	/**
 	 * The $everything operation fetches all the information related to all the patients
 	 *
+	 * @param since if supplied, only resources updated at or after this time are returned
+	 * @param types if supplied, only resources of these types are returned
+	 * @param count if supplied, the number of resources to return per page
 	 * @return a bundle of resources which reference to or are referenced from the patients
 	 */
 	@Operation(name = "everything", idempotent = true, type = Patient.class, bundleType = BundleTypeEnum.SEARCHSET)
-	public IBundleProvider getPatientEverything() {
-		return patientService.getPatientEverything();
+	public IBundleProvider getPatientEverything(@OperationParam(name = "_since") DateParam since,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_count") NumberParam count) {
+		return patientService.getPatientEverything(since, types, count);
+	}
+	
+	/**
+	 * The $export operation starts an asynchronous export of all patients and the resources related to
+	 * them, following the FHIR Bulk Data pattern
+	 *
+	 * @param outputFormat the format of the exported files, which must be NDJSON
+	 * @param types if supplied, only resources of these types are exported
+	 * @param since if supplied, only resources updated at or after this time are exported
+	 */
+	@Operation(name = BulkExportUtils.EXPORT_OPERATION, idempotent = true, type = Patient.class, manualResponse = true)
+	public void exportPatients(@OperationParam(name = "_outputFormat") StringParam outputFormat,
+	        @OperationParam(name = "_type") StringAndListParam types, @OperationParam(name = "_since") DateParam since,
+	        ServletRequestDetails requestDetails) {
+		BulkExportUtils.kickOff(bulkExportService, BulkExportJob.Level.PATIENT, null, outputFormat, types, since,
+		    requestDetails);
 	}
 }
@@ -0,0 +1,182 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.providers.util;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.hl7.fhir.r4.model.InstantType;
+import org.openmrs.module.fhir2.api.FhirBulkExportService;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+
+/**
+ * Implements the kick-off, status and file requests of the FHIR Bulk Data export pattern on top of
+ * {@link FhirBulkExportService}, so that the same responses are written for system, Patient and Group
+ * level exports
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BulkExportUtils {
+	
+	public static final String EXPORT_OPERATION = "export";
+	
+	public static final String STATUS_OPERATION = "export-poll-status";
+	
+	public static final String FILE_OPERATION = "export-file";
+	
+	public static final String NDJSON_CONTENT_TYPE = "application/fhir+ndjson";
+	
+	private static final Set<String> OUTPUT_FORMATS = new HashSet<>(
+	        Arrays.asList(NDJSON_CONTENT_TYPE, "application/ndjson", "ndjson"));
+	
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	
+	/**
+	 * Starts an export and responds with 202 Accepted and the location at which its status can be
+	 * polled
+	 */
+	public static void kickOff(FhirBulkExportService bulkExportService, BulkExportJob.Level level, String groupId,
+	        StringParam outputFormat, StringAndListParam types, DateParam since, ServletRequestDetails requestDetails) {
+		if (outputFormat != null && outputFormat.getValue() != null && !OUTPUT_FORMATS.contains(outputFormat.getValue())) {
+			throw new InvalidRequestException("Unsupported _outputFormat " + outputFormat.getValue());
+		}
+		
+		BulkExportJob job = bulkExportService.startExport(level, groupId, getResourceTypes(types),
+		    since == null ? null : since.getValue(), requestDetails.getCompleteUrl());
+		
+		HttpServletResponse response = requestDetails.getServletResponse();
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		response.setHeader("Content-Location", getStatusUrl(requestDetails, job));
+	}
+	
+	/**
+	 * Responds to a status request. A DELETE request cancels the export.
+	 */
+	public static void pollStatus(FhirBulkExportService bulkExportService, StringParam jobId,
+	        ServletRequestDetails requestDetails) throws IOException {
+		if (jobId == null || jobId.getValue() == null) {
+			throw new InvalidRequestException("_jobId must be specified");
+		}
+		
+		BulkExportJob job = bulkExportService.getJob(jobId.getValue());
+		if (job == null) {
+			throw new ResourceNotFoundException("Could not find export with id " + jobId.getValue());
+		}
+		
+		HttpServletResponse response = requestDetails.getServletResponse();
+		if (requestDetails.getRequestType() == RequestTypeEnum.DELETE) {
+			bulkExportService.deleteJob(job.getId());
+			response.setStatus(HttpServletResponse.SC_ACCEPTED);
+			return;
+		}
+		
+		switch (job.getStatus()) {
+			case COMPLETE:
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType("application/json");
+				response.setCharacterEncoding("UTF-8");
+				OBJECT_MAPPER.writeValue(response.getWriter(), getManifest(requestDetails, job));
+				break;
+			case ERROR:
+				throw new InternalErrorException("Export failed: " + job.getError());
+			default:
+				response.setStatus(HttpServletResponse.SC_ACCEPTED);
+				response.setHeader("X-Progress", job.getProgress() == null ? job.getStatus().name() : job.getProgress());
+				response.setHeader("Retry-After", "10");
+		}
+	}
+	
+	/**
+	 * Responds with the contents of one of the files written by an export
+	 */
+	public static void writeFile(FhirBulkExportService bulkExportService, StringParam jobId, StringParam fileName,
+	        ServletRequestDetails requestDetails) throws IOException {
+		if (jobId == null || jobId.getValue() == null || fileName == null || fileName.getValue() == null) {
+			throw new InvalidRequestException("_jobId and _file must be specified");
+		}
+		
+		File file = bulkExportService.getOutputFile(jobId.getValue(), fileName.getValue());
+		if (file == null || !file.isFile()) {
+			throw new ResourceNotFoundException("Could not find export file " + fileName.getValue());
+		}
+		
+		HttpServletResponse response = requestDetails.getServletResponse();
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(NDJSON_CONTENT_TYPE);
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Content-Length", Long.toString(file.length()));
+		Files.copy(file.toPath(), response.getOutputStream());
+	}
+	
+	private static List<String> getResourceTypes(StringAndListParam types) {
+		List<String> resourceTypes = new ArrayList<>();
+		if (types == null) {
+			return resourceTypes;
+		}
+		
+		for (StringOrListParam orParam : types.getValuesAsQueryTokens()) {
+			for (StringParam type : orParam.getValuesAsQueryTokens()) {
+				for (String value : type.getValue().split(",")) {
+					if (!value.trim().isEmpty()) {
+						resourceTypes.add(value.trim());
+					}
+				}
+			}
+		}
+		
+		return resourceTypes;
+	}
+	
+	private static Map<String, Object> getManifest(ServletRequestDetails requestDetails, BulkExportJob job) {
+		List<Map<String, Object>> output = new ArrayList<>();
+		for (BulkExportJob.Output jobOutput : job.getOutputs()) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("type", jobOutput.getType());
+			entry.put("url", requestDetails.getFhirServerBase() + "/$" + FILE_OPERATION + "?_jobId=" + job.getId()
+			        + "&_file=" + jobOutput.getFileName());
+			entry.put("count", jobOutput.getCount());
+			output.add(entry);
+		}
+		
+		Map<String, Object> manifest = new LinkedHashMap<>();
+		manifest.put("transactionTime", new InstantType(job.getTransactionTime()).getValueAsString());
+		manifest.put("request", job.getRequest());
+		// the files are served by this server, which requires requests to be authenticated
+		manifest.put("requiresAccessToken", true);
+		manifest.put("output", output);
+		manifest.put("error", new ArrayList<>());
+		return manifest;
+	}
+	
+	private static String getStatusUrl(ServletRequestDetails requestDetails, BulkExportJob job) {
+		return requestDetails.getFhirServerBase() + "/$" + STATUS_OPERATION + "?_jobId=" + job.getId();
+	}
+}
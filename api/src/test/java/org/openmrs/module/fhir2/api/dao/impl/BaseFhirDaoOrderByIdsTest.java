@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openmrs.Obs;
+
+public class BaseFhirDaoOrderByIdsTest {
+	
+	@Test
+	public void shouldOrderResultsByPositionOfId() {
+		Obs first = obs(7), second = obs(3), third = obs(11);
+		
+		List<Obs> result = BaseFhirDao.orderByIds(Arrays.asList(third, first, second), Arrays.asList(7, 3, 11));
+		
+		assertThat(result, contains(first, second, third));
+	}
+	
+	@Test
+	public void shouldSkipIdsWithoutResults() {
+		Obs first = obs(1), second = obs(2);
+		
+		List<Obs> result = BaseFhirDao.orderByIds(Arrays.asList(second, first), Arrays.asList(4, 2, 5, 1));
+		
+		assertThat(result, contains(second, first));
+	}
+	
+	@Test
+	public void shouldDropResultsNotInIds() {
+		Obs first = obs(1), second = obs(2);
+		
+		List<Obs> result = BaseFhirDao.orderByIds(Arrays.asList(second, first), Collections.singletonList(1));
+		
+		assertThat(result, contains(first));
+	}
+	
+	@Test
+	public void shouldReturnEmptyListForNoResults() {
+		assertThat(BaseFhirDao.orderByIds(new ArrayList<Obs>(), Arrays.asList(1, 2, 3)), empty());
+	}
+	
+	private static Obs obs(int id) {
+		Obs obs = new Obs();
+		obs.setId(id);
+		return obs;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class DenseRankQueryTest {
+	
+	@Test
+	public void isSupported_shouldReturnTrueForMySql8() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("MySQL", "8.0.28", 8, 0)), is(true));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnFalseForMySql57() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("MySQL", "5.7.37-log", 5, 7)), is(false));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnTrueForMariaDb102ReportedThroughTheMySqlDriver() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("MySQL", "5.5.5-10.3.22-MariaDB", 5, 5)), is(true));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnFalseForMariaDb101() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("MariaDB", "10.1.48-MariaDB", 10, 1)), is(false));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnTrueForH2From14198() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("H2", "1.4.200 (2019-10-14)", 1, 4)), is(true));
+		assertThat(DenseRankQuery.isSupported(metaData("H2", "2.1.214 (2022-06-13)", 2, 1)), is(true));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnFalseForOlderH2() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("H2", "1.4.190 (2015-10-11)", 1, 4)), is(false));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnTrueForPostgreSql() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("PostgreSQL", "12.4", 12, 4)), is(true));
+	}
+	
+	@Test
+	public void isSupported_shouldReturnFalseForUnknownDatabases() throws SQLException {
+		assertThat(DenseRankQuery.isSupported(metaData("HSQL Database Engine", "2.3.4", 2, 3)), is(false));
+	}
+	
+	private static DatabaseMetaData metaData(String productName, String productVersion, int majorVersion,
+	        int minorVersion) throws SQLException {
+		DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+		when(metaData.getDatabaseProductName()).thenReturn(productName);
+		when(metaData.getDatabaseProductVersion()).thenReturn(productVersion);
+		when(metaData.getDatabaseMajorVersion()).thenReturn(majorVersion);
+		when(metaData.getDatabaseMinorVersion()).thenReturn(minorVersion);
+		return metaData;
+	}
+}
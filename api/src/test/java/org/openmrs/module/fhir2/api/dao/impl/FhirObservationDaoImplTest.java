@@ -10,24 +10,38 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.SessionFactory;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.test.context.ContextConfiguration;
 
 @ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
@@ -39,14 +53,27 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String BAD_OBS_UUID = "121b73a6-e1a4-4424-8610-d5765bf2fdf7";
 	
+	private static final String OBS_LASTN_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirObservationDaoImplTest_lastn_data.xml";
+	
 	private static final String OBS_CONCEPT_ID = "5089";
 	
+	private static final String CIEL_SYSTEM_URL = "https://openconceptlab.org/orgs/CIEL/sources/CIEL";
+	
 	@Autowired
 	private FhirObservationDao dao;
 	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private FhirObservationDaoImpl lastnDao;
+	
 	@Before
 	public void setup() throws Exception {
 		executeDataSet(OBS_DATA_XML);
+		
+		lastnDao = new FhirObservationDaoImpl();
+		lastnDao.setSessionFactory(sessionFactory);
 	}
 	
 	@Test
@@ -80,4 +107,50 @@ public class FhirObservationDaoImplTest extends BaseModuleContextSensitiveTest {
 		assertThat(obs, notNullValue());
 	}
 	
+	@Test
+	public void getSearchResultIds_shouldReturnTiedLastnObservationsWhenRankingInMemory() throws Exception {
+		executeDataSet(OBS_LASTN_DATA_XML);
+		lastnDao.setWindowFunctionSupported(false);
+		
+		List<Integer> ids = lastnDao.getSearchResultIds(lastnSearchParams());
+		
+		assertThat(ids, containsInAnyOrder(1001, 1002, 1003, 1007, 1008, 1009));
+	}
+	
+	@Test
+	public void getSearchResultIds_shouldReturnTheSameLastnObservationsWhenRankingInTheDatabase() throws Exception {
+		Assume.assumeTrue(
+		    sessionFactory.getCurrentSession().doReturningWork(c -> DenseRankQuery.isSupported(c.getMetaData())));
+		executeDataSet(OBS_LASTN_DATA_XML);
+		
+		lastnDao.setWindowFunctionSupported(false);
+		List<Integer> inMemoryIds = new ArrayList<>(lastnDao.getSearchResultIds(lastnSearchParams()));
+		
+		lastnDao.setWindowFunctionSupported(true);
+		List<Integer> databaseIds = new ArrayList<>(lastnDao.getSearchResultIds(lastnSearchParams()));
+		
+		inMemoryIds.sort(null);
+		databaseIds.sort(null);
+		assertThat(databaseIds, equalTo(inMemoryIds));
+		assertThat(databaseIds, containsInAnyOrder(1001, 1002, 1003, 1007, 1008, 1009));
+	}
+	
+	// searches for the two most recent obs of each code recorded in encounters 3 or 4 during January 2020
+	private SearchParameterMap lastnSearchParams() {
+		ReferenceOrListParam encounters = new ReferenceOrListParam()
+		        .addOr(new ReferenceParam().setValue(Context.getEncounterService().getEncounter(3).getUuid()))
+		        .addOr(new ReferenceParam().setValue(Context.getEncounterService().getEncounter(4).getUuid()));
+		
+		TokenOrListParam codes = new TokenOrListParam().add(CIEL_SYSTEM_URL, "5085").add(CIEL_SYSTEM_URL, "5086");
+		
+		DateRangeParam date = new DateRangeParam(new DateParam("ge2020-01-01"), new DateParam("le2020-01-31"));
+		
+		return new SearchParameterMap()
+		        .addParameter(FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER,
+		            new ReferenceAndListParam().addAnd(encounters))
+		        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, new TokenAndListParam().addAnd(codes))
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", date)
+		        .addParameter(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER, new StringParam())
+		        .addParameter(FhirConstants.MAX_SEARCH_HANDLER, new NumberParam(2));
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Date;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.model.FhirPagingSearch;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class FhirPagingSearchDaoImplTest extends BaseModuleContextSensitiveTest {
+	
+	private static final String SEARCH_ID = "5c8ae3d6-7b0e-4f8a-8d7f-3a6f0f0c9b21";
+	
+	private static final String OTHER_SEARCH_ID = "0a6c2f5e-2c43-4c2a-9f5d-6b1f7e8d9c10";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirPagingSearchDaoImpl dao;
+	
+	@Before
+	public void setup() {
+		dao = new FhirPagingSearchDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+	}
+	
+	@Test
+	public void createOrUpdate_shouldStoreSearch() {
+		dao.createOrUpdate(newPagingSearch(SEARCH_ID, new Date()));
+		sessionFactory.getCurrentSession().flush();
+		sessionFactory.getCurrentSession().clear();
+		
+		FhirPagingSearch result = dao.get(SEARCH_ID);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.getSearchState(), equalTo(new byte[] { 1, 2, 3 }));
+	}
+	
+	@Test
+	public void updateDateAccessed_shouldOnlyChangeTheDateAccessed() {
+		dao.createOrUpdate(newPagingSearch(SEARCH_ID, new Date(1000)));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.updateDateAccessed(SEARCH_ID, new Date(5000)), is(true));
+		assertThat(dao.updateDateAccessed(OTHER_SEARCH_ID, new Date(5000)), is(false));
+		sessionFactory.getCurrentSession().clear();
+		
+		FhirPagingSearch result = dao.get(SEARCH_ID);
+		assertThat(result.getDateAccessed().getTime(), equalTo(5000L));
+		assertThat(result.getSearchState(), equalTo(new byte[] { 1, 2, 3 }));
+	}
+	
+	@Test
+	public void deleteAccessedBefore_shouldDeleteOnlyExpiredSearches() {
+		dao.createOrUpdate(newPagingSearch(SEARCH_ID, new Date(1000)));
+		dao.createOrUpdate(newPagingSearch(OTHER_SEARCH_ID, new Date()));
+		sessionFactory.getCurrentSession().flush();
+		
+		assertThat(dao.deleteAccessedBefore(new Date(2000)), equalTo(1));
+		sessionFactory.getCurrentSession().clear();
+		
+		assertThat(dao.get(SEARCH_ID), nullValue());
+		assertThat(dao.get(OTHER_SEARCH_ID), notNullValue());
+	}
+	
+	private static FhirPagingSearch newPagingSearch(String searchId, Date dateAccessed) {
+		FhirPagingSearch pagingSearch = new FhirPagingSearch();
+		pagingSearch.setSearchId(searchId);
+		pagingSearch.setSearchState(new byte[] { 1, 2, 3 });
+		pagingSearch.setDateCreated(dateAccessed);
+		pagingSearch.setDateAccessed(dateAccessed);
+		return pagingSearch;
+	}
+}
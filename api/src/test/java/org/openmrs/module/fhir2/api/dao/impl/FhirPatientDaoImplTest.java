@@ -11,14 +11,19 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.SortSpec;
 import org.hibernate.SessionFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Patient;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.test.BaseModuleContextSensitiveTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
@@ -76,4 +81,40 @@ public class FhirPatientDaoImplTest extends BaseModuleContextSensitiveTest {
 		
 		assertThat(result, nullValue());
 	}
+	
+	@Test
+	public void getSearchResultCount_shouldCountAllMatchingPatients() {
+		List<Integer> ids = dao.getSearchResultIds(new SearchParameterMap());
+		
+		assertThat(ids.size(), greaterThan(2));
+		assertThat(dao.getSearchResultCount(new SearchParameterMap()), equalTo(ids.size()));
+	}
+	
+	@Test
+	public void getSearchResultIds_shouldReturnRequestedWindowOfIds() {
+		List<Integer> ids = dao.getSearchResultIds(new SearchParameterMap());
+		
+		assertThat(dao.getSearchResultIds(new SearchParameterMap(), 1, 2), equalTo(ids.subList(1, 3)));
+		assertThat(dao.getSearchResultIds(new SearchParameterMap(), 0, -1), equalTo(ids));
+		assertThat(dao.getSearchResultIds(new SearchParameterMap(), ids.size(), 10).size(), equalTo(0));
+	}
+	
+	@Test
+	public void getSearchResultIds_shouldReturnRequestedWindowOfIdsSortedByJoinedProperty() {
+		SearchParameterMap theParams = new SearchParameterMap().setSortSpec(new SortSpec("family"));
+		List<Integer> ids = dao.getSearchResultIds(theParams);
+		
+		assertThat(ids.size(), greaterThan(3));
+		assertThat(dao.getSearchResultIds(theParams, 1, 2), equalTo(ids.subList(1, 3)));
+		assertThat(dao.getSearchResultIds(theParams, 2, -1), equalTo(ids.subList(2, ids.size())));
+	}
+	
+	@Test
+	public void getSearchResultCount_shouldStopCountingAtMaxCount() {
+		int count = dao.getSearchResultCount(new SearchParameterMap());
+		
+		assertThat(count, greaterThan(2));
+		assertThat(dao.getSearchResultCount(new SearchParameterMap(), 2), equalTo(2));
+		assertThat(dao.getSearchResultCount(new SearchParameterMap(), count + 1), equalTo(count));
+	}
 }
@@ -158,7 +158,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(patientParam, null, null, null, null, null, null, null, null,
@@ -190,7 +190,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(patientParam, null, null, null, null, null, null, null, null,
@@ -222,7 +222,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(patientParam, null, null, null, null, null, null, null, null,
@@ -254,7 +254,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(patientParam, null, null, null, null, null, null, null, null,
@@ -282,7 +282,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, category, null, null, null, null, null, null, null, null);
@@ -309,7 +309,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, allergen, null, null, null, null, null, null, null);
@@ -336,7 +336,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, severity, null, null, null, null, null, null);
@@ -363,7 +363,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, manifestation, null, null, null, null,
@@ -390,7 +390,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, null, status, null, null, null, null);
@@ -413,7 +413,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, null, null, uuid, null, null, null);
@@ -436,7 +436,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, null, null, null, lastUpdated, null,
@@ -460,7 +460,8 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Patient()));
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, null, null, null, null, null, includes);
@@ -483,7 +484,7 @@ public class FhirAllergyIntoleranceServiceImplTest {
 		when(allergyIntoleranceDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ALLERGY_ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        allergyIntoleranceDao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(omrsAllergy)).thenReturn(fhirAllergy);
 		
 		IBundleProvider results = service.searchForAllergies(null, null, null, null, null, null, null, null, null, includes);
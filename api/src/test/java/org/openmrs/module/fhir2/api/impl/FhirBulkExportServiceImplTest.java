@@ -0,0 +1,401 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.attribute.FileTime;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.openmrs.Cohort;
+import org.openmrs.Obs;
+import org.openmrs.User;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.UserService;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.fhir2.FhirActivator;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirAllergyIntoleranceDao;
+import org.openmrs.module.fhir2.api.dao.FhirDiagnosticReportDao;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.dao.FhirGroupDao;
+import org.openmrs.module.fhir2.api.dao.FhirMedicationRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirServiceRequestDao;
+import org.openmrs.module.fhir2.api.dao.FhirVisitDao;
+import org.openmrs.module.fhir2.api.export.BulkExportJob;
+import org.openmrs.module.fhir2.api.search.SearchCursor;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.util.PrivilegeConstants;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ Context.class, Daemon.class })
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*" })
+public class FhirBulkExportServiceImplTest {
+	
+	private static final String PATIENT_UUID = "a7e04421-525f-442f-8138-05b619d16def";
+	
+	private static final String OBS_UUID = "39fb7f47-e80a-4056-9285-bd798be13c63";
+	
+	private static final String GROUP_UUID = "985ff1a2-c2ef-49fd-836f-8a1d936d9ef9";
+	
+	private static final String OWNER_UUID = "1010d442-e134-11de-babe-001e378eb67e";
+	
+	private static final String OWNER_SYSTEM_ID = "2-6";
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	@Mock
+	private FhirPatientDao patientDao;
+	
+	@Mock
+	private PatientTranslator patientTranslator;
+	
+	@Mock
+	private FhirObservationDao observationDao;
+	
+	@Mock
+	private ObservationTranslator observationTranslator;
+	
+	@Mock
+	private FhirGroupDao groupDao;
+	
+	@Mock
+	private UserService userService;
+	
+	@Mock
+	private User owner;
+	
+	@Mock
+	private User otherUser;
+	
+	private FhirBulkExportServiceImpl bulkExportService;
+	
+	private org.openmrs.Patient patient;
+	
+	private Obs obs;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() throws Exception {
+		PowerMockito.mockStatic(Context.class);
+		when(Context.getAuthenticatedUser()).thenReturn(owner);
+		when(Context.getUserService()).thenReturn(userService);
+		when(userService.getUserByUuid(OWNER_UUID)).thenReturn(owner);
+		when(owner.getUuid()).thenReturn(OWNER_UUID);
+		when(owner.getSystemId()).thenReturn(OWNER_SYSTEM_ID);
+		when(owner.hasPrivilege(anyString())).thenReturn(true);
+		when(otherUser.getUuid()).thenReturn("c98a1558-e131-11de-babe-001e378eb67e");
+		
+		// run the daemon thread's work on the calling thread, returning a thread which has nothing to wait for
+		new FhirActivator().setDaemonToken(mock(DaemonToken.class));
+		PowerMockito.mockStatic(Daemon.class);
+		when(Daemon.runInDaemonThread(any(Runnable.class), any(DaemonToken.class))).thenAnswer(invocation -> {
+			((Runnable) invocation.getArgument(0)).run();
+			return new Thread();
+		});
+		
+		
+		bulkExportService = new FhirBulkExportServiceImpl();
+		bulkExportService.setPatientDao(patientDao);
+		bulkExportService.setPatientTranslator(patientTranslator);
+		bulkExportService.setObservationDao(observationDao);
+		bulkExportService.setObservationTranslator(observationTranslator);
+		bulkExportService.setGroupDao(groupDao);
+		bulkExportService.setEncounterDao(mock(FhirEncounterDao.class));
+		bulkExportService.setVisitDao(mock(FhirVisitDao.class));
+		bulkExportService.setAllergyIntoleranceDao(mock(FhirAllergyIntoleranceDao.class));
+		bulkExportService.setDiagnosticReportDao(mock(FhirDiagnosticReportDao.class));
+		bulkExportService.setMedicationRequestDao(mock(FhirMedicationRequestDao.class));
+		bulkExportService.setServiceRequestDao(mock(FhirServiceRequestDao.class));
+		bulkExportService.setFhirContext(FhirContext.forR4());
+		bulkExportService.setExportDirectory(temporaryFolder.getRoot());
+		// run the export on the calling thread, so that it is complete when startExport returns
+		bulkExportService.setExecutor(MoreExecutors.newDirectExecutorService());
+		
+		patient = new org.openmrs.Patient(1);
+		patient.setUuid(PATIENT_UUID);
+		Patient fhirPatient = new Patient();
+		fhirPatient.setId(PATIENT_UUID);
+		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
+		
+		obs = new Obs(7);
+		obs.setUuid(OBS_UUID);
+		Observation observation = new Observation();
+		observation.setId(OBS_UUID);
+		when(observationTranslator.toFhirResource(obs)).thenReturn(observation);
+	}
+	
+	@Test
+	public void startExport_shouldWriteEachRequestedTypeToAnNdjsonFile() throws Exception {
+		when(patientDao.isKeysetPageable(any())).thenReturn(true);
+		when(patientDao.getSearchResultKeys(any(), isNull(), anyInt()))
+		        .thenReturn(Collections.singletonList(new SearchCursor(Collections.emptyList(), 1)));
+		when(patientDao.getSearchResults(any(), eq(Collections.singletonList(1))))
+		        .thenReturn(Collections.singletonList(patient));
+		when(observationDao.getSearchResultIds(any(), eq(0), anyInt())).thenReturn(Collections.singletonList(7));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(7))))
+		        .thenReturn(Collections.singletonList(obs));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Arrays.asList("Patient", "Observation"), null, "http://localhost/$export");
+		
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.COMPLETE));
+		assertThat(job.getOutputs(), hasSize(2));
+		assertThat(job.getOutputs().get(0).getType(), equalTo("Patient"));
+		assertThat(job.getOutputs().get(0).getCount(), equalTo(1L));
+		assertThat(job.getOutputs().get(1).getType(), equalTo("Observation"));
+		
+		File patientFile = bulkExportService.getOutputFile(job.getId(), "Patient.ndjson");
+		assertThat(patientFile, notNullValue());
+		List<String> lines = Files.readAllLines(patientFile.toPath(), StandardCharsets.UTF_8);
+		assertThat(lines, hasSize(1));
+		assertThat(FhirContext.forR4().newJsonParser().parseResource(Patient.class, lines.get(0)).getIdElement().getIdPart(),
+		    equalTo(PATIENT_UUID));
+	}
+	
+	@Test
+	public void startExport_shouldExportAllSupportedTypesIfNoneRequested() {
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null, null, null, null);
+		
+		assertThat(job.getResourceTypes(), containsInAnyOrder("Patient", "Encounter", "Observation", "AllergyIntolerance",
+		    "DiagnosticReport", "MedicationRequest", "ServiceRequest"));
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.COMPLETE));
+		// nothing was found, so no files were written
+		assertThat(job.getOutputs(), empty());
+	}
+	
+	@Test(expected = InvalidRequestException.class)
+	public void startExport_shouldRejectUnsupportedTypes() {
+		bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null, Collections.singletonList("Practitioner"), null,
+		    null);
+	}
+	
+	@Test(expected = ResourceNotFoundException.class)
+	public void startExport_shouldRejectUnknownGroups() {
+		bulkExportService.startExport(BulkExportJob.Level.GROUP, GROUP_UUID, null, null, null);
+	}
+	
+	@Test
+	public void startExport_shouldOnlyExportResourcesUpdatedSince() {
+		Date since = new Date();
+		
+		bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null, Collections.singletonList("Observation"), since,
+		    null);
+		
+		ArgumentCaptor<SearchParameterMap> captor = ArgumentCaptor.forClass(SearchParameterMap.class);
+		verify(observationDao).getSearchResultIds(captor.capture(), eq(0), anyInt());
+		
+		List<PropParam<?>> lastUpdated = captor.getValue().getParameters(FhirConstants.COMMON_SEARCH_HANDLER);
+		assertThat(lastUpdated, hasSize(1));
+		assertThat(lastUpdated.get(0).getPropertyName(), equalTo(FhirConstants.LAST_UPDATED_PROPERTY));
+		assertThat(((DateRangeParam) lastUpdated.get(0).getParam()).getLowerBound().getValue(), equalTo(since));
+	}
+	
+	@Test
+	public void startExport_shouldRestrictGroupExportsToGroupMembers() {
+		Cohort cohort = new Cohort();
+		cohort.addMember(1);
+		when(groupDao.get(GROUP_UUID)).thenReturn(cohort);
+		when(patientDao.getSearchResults(any(), eq(Collections.singletonList(1))))
+		        .thenReturn(Collections.singletonList(patient));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.GROUP, GROUP_UUID,
+		    Collections.singletonList("Observation"), null, null);
+		
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.COMPLETE));
+		
+		ArgumentCaptor<SearchParameterMap> captor = ArgumentCaptor.forClass(SearchParameterMap.class);
+		verify(observationDao).getSearchResultIds(captor.capture(), eq(0), anyInt());
+		
+		List<PropParam<?>> patientReferences = captor.getValue()
+		        .getParameters(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER);
+		assertThat(patientReferences, hasSize(1));
+		ReferenceAndListParam reference = (ReferenceAndListParam) patientReferences.get(0).getParam();
+		ReferenceParam patientReference = reference.getValuesAsQueryTokens().get(0).getValuesAsQueryTokens().get(0);
+		assertThat(patientReference.getIdPart(), equalTo(PATIENT_UUID));
+	}
+	
+	@Test
+	public void startExport_shouldRecordErrors() {
+		when(observationDao.getSearchResultIds(any(), anyInt(), anyInt())).thenThrow(new IllegalStateException("broken"));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.ERROR));
+		assertThat(job.getError(), equalTo("broken"));
+	}
+	
+	@Test
+	public void deleteJob_shouldRemoveTheJobAndItsFiles() {
+		when(observationDao.getSearchResultIds(any(), eq(0), anyInt())).thenReturn(Collections.singletonList(7));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(7))))
+		        .thenReturn(Collections.singletonList(obs));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		File file = bulkExportService.getOutputFile(job.getId(), "Observation.ndjson");
+		assertThat(file.exists(), is(true));
+		
+		assertThat(bulkExportService.deleteJob(job.getId()), is(true));
+		
+		assertThat(bulkExportService.getJob(job.getId()), nullValue());
+		assertThat(file.exists(), is(false));
+		assertThat(bulkExportService.deleteJob(job.getId()), is(false));
+	}
+	
+	@Test
+	public void getOutputFile_shouldOnlyReturnFilesWrittenByTheJob() {
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		
+		assertThat(bulkExportService.getOutputFile(job.getId(), "Observation.ndjson"), nullValue());
+		assertThat(bulkExportService.getOutputFile(job.getId(), "../../runtime.properties"), nullValue());
+		assertThat(bulkExportService.getOutputFile("unknown", "Observation.ndjson"), nullValue());
+		assertThat(job.getOutputs(), empty());
+	}
+	
+	@Test
+	public void startExport_shouldRunTheExportAsTheUserWhoStartedIt() {
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		
+		assertThat(job.getOwner(), equalTo(OWNER_UUID));
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.COMPLETE));
+		PowerMockito.verifyStatic(Context.class);
+		Context.becomeUser(OWNER_SYSTEM_ID);
+	}
+	
+	@Test(expected = APIAuthenticationException.class)
+	public void startExport_shouldRequireThePrivilegesToReadEachRequestedType() throws Exception {
+		PowerMockito.doThrow(new APIAuthenticationException()).when(Context.class, "requirePrivilege",
+		    PrivilegeConstants.GET_OBS);
+		
+		bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null, Collections.singletonList("Observation"), null,
+		    null);
+	}
+	
+	@Test
+	public void startExport_shouldFailIfTheOwnerCanNoLongerReadARequestedType() {
+		when(owner.hasPrivilege(PrivilegeConstants.GET_OBS)).thenReturn(false);
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		
+		assertThat(job.getStatus(), equalTo(BulkExportJob.Status.ERROR));
+		verify(observationDao, never()).getSearchResultIds(any(), anyInt(), anyInt());
+	}
+	
+	@Test
+	public void getJob_shouldNotReturnJobsStartedByOtherUsers() {
+		when(observationDao.getSearchResultIds(any(), eq(0), anyInt())).thenReturn(Collections.singletonList(7));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(7))))
+		        .thenReturn(Collections.singletonList(obs));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		
+		when(Context.getAuthenticatedUser()).thenReturn(otherUser);
+		
+		assertThat(bulkExportService.getJob(job.getId()), nullValue());
+		assertThat(bulkExportService.getOutputFile(job.getId(), "Observation.ndjson"), nullValue());
+		assertThat(bulkExportService.deleteJob(job.getId()), is(false));
+		
+		when(Context.getAuthenticatedUser()).thenReturn(owner);
+		
+		assertThat(bulkExportService.getJob(job.getId()), equalTo(job));
+		assertThat(bulkExportService.getOutputFile(job.getId(), "Observation.ndjson").exists(), is(true));
+	}
+	
+	@Test
+	public void purgeJobsFinishedBefore_shouldRemoveExpiredJobsAndTheirFiles() throws Exception {
+		when(observationDao.getSearchResultIds(any(), eq(0), anyInt())).thenReturn(Collections.singletonList(7));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(7))))
+		        .thenReturn(Collections.singletonList(obs));
+		
+		BulkExportJob job = bulkExportService.startExport(BulkExportJob.Level.SYSTEM, null,
+		    Collections.singletonList("Observation"), null, null);
+		File file = bulkExportService.getOutputFile(job.getId(), "Observation.ndjson");
+		
+		bulkExportService.purgeJobsFinishedBefore(new Date(job.getDateFinished().getTime() - 1));
+		
+		assertThat(bulkExportService.getJob(job.getId()), equalTo(job));
+		assertThat(file.exists(), is(true));
+		
+		bulkExportService.purgeJobsFinishedBefore(new Date(job.getDateFinished().getTime() + 1));
+		
+		assertThat(bulkExportService.getJob(job.getId()), nullValue());
+		assertThat(file.exists(), is(false));
+	}
+	
+	@Test
+	public void purgeJobsFinishedBefore_shouldRemoveExpiredFilesOfUnknownJobs() throws Exception {
+		File orphan = temporaryFolder.newFolder("a2d4c7b8-7b0c-4f54-a6b1-3f1a44c1f9d1");
+		File recent = temporaryFolder.newFolder("0bd5d8b8-6c62-4c7e-8a7e-5e0c3e7a5f1b");
+		long now = System.currentTimeMillis();
+		Files.setLastModifiedTime(orphan.toPath(), FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(2)));
+		
+		bulkExportService.purgeJobsFinishedBefore(new Date(now - TimeUnit.HOURS.toMillis(1)));
+		
+		assertThat(orphan.exists(), is(false));
+		assertThat(recent.exists(), is(true));
+	}
+}
@@ -232,7 +232,7 @@ public class FhirConditionServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(obsCondition));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(obsCondition)).thenReturn(condition);
 		
 		IBundleProvider result = fhirConditionService.searchConditions(patientReference, codeList, clinicalList, onsetDate,
@@ -212,7 +212,7 @@ public class FhirDiagnosticReportServiceImplTest {
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null, null);
 		
@@ -244,7 +244,8 @@ public class FhirDiagnosticReportServiceImplTest {
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Patient()));
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null,
 		    includes);
@@ -278,7 +279,7 @@ public class FhirDiagnosticReportServiceImplTest {
 		when(translator.toFhirResource(fhirDiagnosticReport)).thenReturn(diagnosticReport);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = service.searchForDiagnosticReports(null, null, null, null, null, null, null, null,
 		    includes);
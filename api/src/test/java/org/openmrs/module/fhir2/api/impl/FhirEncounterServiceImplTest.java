@@ -20,6 +20,8 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -311,7 +313,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -343,7 +345,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -378,7 +380,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -413,7 +415,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -440,7 +442,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -471,7 +473,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -486,6 +488,44 @@ public class FhirEncounterServiceImplTest {
 		assertThat(resultList, hasSize(greaterThanOrEqualTo(1)));
 	}
 	
+	@Test
+	public void searchForEncounter_shouldNotSearchVisitsByEncounterTypeCode() {
+		TokenAndListParam type = new TokenAndListParam()
+		        .addAnd(new TokenParam(FhirConstants.ENCOUNTER_TYPE_SYSTEM_URI, ENCOUNTER_TYPE_UUID));
+		
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.ENCOUNTER_TYPE_REFERENCE_SEARCH_HANDLER, type);
+		
+		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(openMrsEncounter));
+		when(dao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ENCOUNTER_ID));
+		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
+		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
+		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		EncounterSearchParams encounterSearchParams = new EncounterSearchParams();
+		encounterSearchParams.setEncounterType(type);
+		List<IBaseResource> resultList = get(encounterService.searchForEncounters(encounterSearchParams));
+		
+		assertThat(resultList, hasSize(1));
+		verify(visitService, never()).searchForVisits(any());
+	}
+	
+	@Test
+	public void searchForEncounter_shouldNotSearchEncountersByVisitTypeCode() {
+		TokenAndListParam type = new TokenAndListParam()
+		        .addAnd(new TokenParam(FhirConstants.VISIT_TYPE_SYSTEM_URI, ENCOUNTER_TYPE_UUID));
+		
+		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider(fhirEncounter));
+		
+		EncounterSearchParams encounterSearchParams = new EncounterSearchParams();
+		encounterSearchParams.setEncounterType(type);
+		List<IBaseResource> resultList = get(encounterService.searchForEncounters(encounterSearchParams));
+		
+		assertThat(resultList, hasSize(1));
+		verify(searchQuery, never()).getQueryResults(any(), any(), any(), any());
+	}
+	
 	@Test
 	public void searchForEncounter_shouldReturnCollectionOfEncounterByLastUpdated() {
 		DateRangeParam lastUpdated = new DateRangeParam().setUpperBound(LAST_UPDATED_DATE).setLowerBound(LAST_UPDATED_DATE);
@@ -498,7 +538,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -525,7 +565,8 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Patient()));
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -552,7 +593,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -580,7 +621,8 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Observation()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Observation()));
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -608,7 +650,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -637,7 +679,7 @@ public class FhirEncounterServiceImplTest {
 		when(encounterTranslator.toFhirResource(openMrsEncounter)).thenReturn(fhirEncounter);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, encounterTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		when(visitService.searchForVisits(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -655,20 +697,20 @@ public class FhirEncounterServiceImplTest {
 	@Test
 	public void searchEncounters_shouldIncludeAddResourcesThatMatchTagParam() {
 		
-		int numEncounters = 9;
+		int numEncounters = 4;
 		List<org.hl7.fhir.r4.model.Encounter> fhirEncounters = new ArrayList<>();
 		for (int i = 0; i < numEncounters; i++) {
 			fhirEncounters.add(new org.hl7.fhir.r4.model.Encounter());
 		}
 		when(searchQuery.getQueryResults(any(), any(), any(), any()))
-		        .thenReturn(new MockIBundleProvider<>(fhirEncounters, 10, 1));
+		        .thenReturn(new MockIBundleProvider<>(fhirEncounters, 10, numEncounters));
 		
 		int numVisits = 5;
 		List<org.hl7.fhir.r4.model.Encounter> fhirVisits = new ArrayList<>();
 		for (int i = 0; i < numVisits; i++) {
 			fhirVisits.add(new org.hl7.fhir.r4.model.Encounter());
 		}
-		when(visitService.searchForVisits(any())).thenReturn(new MockIBundleProvider<>(fhirVisits, 10, 1));
+		when(visitService.searchForVisits(any())).thenReturn(new MockIBundleProvider<>(fhirVisits, 10, numVisits));
 		
 		{
 			IBundleProvider results = encounterService.searchForEncounters(new EncounterSearchParams());
@@ -213,7 +213,7 @@ public class FhirGroupServiceImplTest {
 		when(translator.toFhirResource(cohort)).thenReturn(group);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = groupService.searchForGroups(participant);
 		
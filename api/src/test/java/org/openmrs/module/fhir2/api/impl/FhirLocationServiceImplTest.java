@@ -154,7 +154,7 @@ public class FhirLocationServiceImplTest {
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        locationDao, locationTranslator, globalPropertyService, searchQueryInclude));
 		
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(locationTranslator.toFhirResource(location)).thenReturn(fhirLocation);
 		when(locationDao.getSearchResults(any(), any())).thenReturn(locations);
 		
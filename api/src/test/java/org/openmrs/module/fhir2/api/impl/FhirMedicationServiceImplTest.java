@@ -147,7 +147,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(medications);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
 		IBundleProvider result = fhirMedicationService.searchForMedications(code, null, null, null, null, null);
@@ -174,7 +174,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(medications);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
 		IBundleProvider result = fhirMedicationService.searchForMedications(null, dosageForm, null, null, null, null);
@@ -202,7 +202,7 @@ public class FhirMedicationServiceImplTest {
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider result = fhirMedicationService.searchForMedications(null, null, ingredientCode, null, null, null);
 		
@@ -224,7 +224,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(drug));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
 		IBundleProvider result = fhirMedicationService.searchForMedications(null, null, null, uuid, null, null);
@@ -247,7 +247,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(drug));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
 		IBundleProvider result = fhirMedicationService.searchForMedications(null, null, null, null, lastUpdated, null);
@@ -271,7 +271,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(drug));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any()))
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
 		        .thenReturn(Collections.singleton(new MedicationRequest()));
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
@@ -296,7 +296,7 @@ public class FhirMedicationServiceImplTest {
 		when(medicationDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(drug));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        medicationDao, medicationTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(medicationTranslator.toFhirResource(drug)).thenReturn(medication);
 		
 		IBundleProvider results = fhirMedicationService.searchForMedications(null, null, null, null, null, revIncludes);
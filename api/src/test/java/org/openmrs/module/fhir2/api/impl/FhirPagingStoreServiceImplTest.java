@@ -0,0 +1,192 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPagingSearchDao;
+import org.openmrs.module.fhir2.api.search.SearchQueryBundleProvider;
+import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.model.FhirPagingSearch;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirPagingStoreServiceImplTest {
+	
+	private static final String SEARCH_ID = "c0a3e2d2-1a4b-4c1e-9e0d-3c6f8f1b2a7d";
+	
+	@Mock
+	private FhirPagingSearchDao dao;
+	
+	@Mock
+	private ApplicationContext applicationContext;
+	
+	@Mock
+	private FhirObservationDao observationDao;
+	
+	@Mock
+	private ObservationTranslator translator;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private SearchQueryInclude<Observation> searchQueryInclude;
+	
+	private FhirPagingStoreServiceImpl pagingStoreService;
+	
+	@Mock
+	private IBundleProvider unserializableBundleProvider;
+	
+	@Before
+	public void setup() {
+		pagingStoreService = new FhirPagingStoreServiceImpl();
+		pagingStoreService.setDao(dao);
+		pagingStoreService.setApplicationContext(applicationContext);
+	}
+	
+	@Test
+	public void shouldRestoreStoredSearchWithItsProgress() {
+		Map<String, Object> beans = new HashMap<>();
+		beans.put("observationDao", observationDao);
+		beans.put("observationTranslator", translator);
+		beans.put("globalPropertyService", globalPropertyService);
+		beans.put("searchQueryInclude", searchQueryInclude);
+		when(applicationContext.getBeansWithAnnotation(Component.class)).thenReturn(beans);
+		
+		SearchQueryBundleProvider<Obs, Observation> bundleProvider = new SearchQueryBundleProvider<>(
+		        new SearchParameterMap(), observationDao, translator, globalPropertyService, searchQueryInclude);
+		when(observationDao.getSearchResultIds(any())).thenReturn(Arrays.asList(1, 2, 3));
+		assertThat(bundleProvider.size(), equalTo(3));
+		
+		ArgumentCaptor<FhirPagingSearch> captor = ArgumentCaptor.forClass(FhirPagingSearch.class);
+		assertThat(pagingStoreService.saveSearch(SEARCH_ID, bundleProvider), is(true));
+		verify(dao).createOrUpdate(captor.capture());
+		
+		FhirPagingSearch pagingSearch = captor.getValue();
+		assertThat(pagingSearch.getSearchId(), equalTo(SEARCH_ID));
+		assertThat(pagingSearch.getSearchState(), notNullValue());
+		assertThat(pagingSearch.getDateAccessed(), notNullValue());
+		
+		when(dao.get(SEARCH_ID)).thenReturn(pagingSearch);
+		when(applicationContext.containsBean(anyString())).thenReturn(true);
+		when(applicationContext.getBean("globalPropertyService")).thenReturn(globalPropertyService);
+		when(applicationContext.getBean("observationDao")).thenReturn(observationDao);
+		when(applicationContext.getBean("observationTranslator")).thenReturn(translator);
+		when(applicationContext.getBean("searchQueryInclude")).thenReturn(searchQueryInclude);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, 10)).thenReturn(7);
+		
+		IBundleProvider result = pagingStoreService.getSearch(SEARCH_ID, new Date(0));
+		
+		assertThat(result, instanceOf(SearchQueryBundleProvider.class));
+		assertThat(result.getUuid(), equalTo(bundleProvider.getUuid()));
+		assertThat(result.size(), equalTo(3));
+		assertThat(result.preferredPageSize(), equalTo(7));
+	}
+	
+	@Test
+	public void shouldOnlyRewriteSearchWhenItsStateHasChanged() {
+		Map<String, Object> beans = new HashMap<>();
+		beans.put("observationDao", observationDao);
+		beans.put("observationTranslator", translator);
+		beans.put("globalPropertyService", globalPropertyService);
+		beans.put("searchQueryInclude", searchQueryInclude);
+		when(applicationContext.getBeansWithAnnotation(Component.class)).thenReturn(beans);
+		
+		SearchQueryBundleProvider<Obs, Observation> bundleProvider = new SearchQueryBundleProvider<>(
+		        new SearchParameterMap(), observationDao, translator, globalPropertyService, searchQueryInclude);
+		assertThat(pagingStoreService.saveSearch(SEARCH_ID, bundleProvider), is(true));
+		
+		assertThat(pagingStoreService.updateSearch(SEARCH_ID, bundleProvider), is(true));
+		verify(dao, times(1)).createOrUpdate(any());
+		
+		when(observationDao.getSearchResultIds(any())).thenReturn(Arrays.asList(1, 2, 3));
+		assertThat(bundleProvider.size(), equalTo(3));
+		
+		assertThat(pagingStoreService.updateSearch(SEARCH_ID, bundleProvider), is(true));
+		verify(dao, times(2)).createOrUpdate(any());
+	}
+	
+	@Test
+	public void shouldTouchSearchWithoutRewritingIt() {
+		pagingStoreService.touchSearch(SEARCH_ID);
+		
+		verify(dao).updateDateAccessed(any(), any());
+		verify(dao, never()).createOrUpdate(any());
+	}
+	
+	@Test
+	public void shouldNotReturnExpiredSearch() {
+		FhirPagingSearch pagingSearch = new FhirPagingSearch();
+		pagingSearch.setSearchId(SEARCH_ID);
+		pagingSearch.setSearchState(new byte[0]);
+		pagingSearch.setDateAccessed(new Date(1000));
+		when(dao.get(SEARCH_ID)).thenReturn(pagingSearch);
+		
+		assertThat(pagingStoreService.getSearch(SEARCH_ID, new Date(2000)), nullValue());
+	}
+	
+	@Test
+	public void shouldNotStoreSearchWhichCannotBeSerialized() {
+		assertThat(pagingStoreService.saveSearch(SEARCH_ID, unserializableBundleProvider), is(false));
+		
+		verify(dao, never()).createOrUpdate(any());
+	}
+	
+	@Test
+	public void shouldNotReadSearchContainingClassesWhichAreNotPartOfASearch() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new PriorityQueue<>(Arrays.asList(1, 2, 3)));
+		}
+		
+		FhirPagingSearch pagingSearch = new FhirPagingSearch();
+		pagingSearch.setSearchId(SEARCH_ID);
+		pagingSearch.setSearchState(bytes.toByteArray());
+		pagingSearch.setDateAccessed(new Date(2000));
+		when(dao.get(SEARCH_ID)).thenReturn(pagingSearch);
+		
+		assertThat(pagingStoreService.getSearch(SEARCH_ID, new Date(1000)), nullValue());
+	}
+}
@@ -23,6 +23,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.text.ParseException;
@@ -36,28 +38,42 @@ import java.util.List;
 
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.HumanName;
 import org.hl7.fhir.r4.model.Observation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.Patient;
 import org.openmrs.PersonAddress;
 import org.openmrs.PersonName;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirAllergyIntoleranceService;
+import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirMedicationRequestService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
+import org.openmrs.module.fhir2.api.FhirServiceRequestService;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
 import org.openmrs.module.fhir2.api.search.SearchQuery;
 import org.openmrs.module.fhir2.api.search.SearchQueryBundleProvider;
 import org.openmrs.module.fhir2.api.search.SearchQueryInclude;
+import org.openmrs.module.fhir2.api.search.param.ObservationSearchParams;
 import org.openmrs.module.fhir2.api.search.param.PatientSearchParams;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.PatientTranslator;
@@ -122,6 +138,27 @@ public class FhirPatientServiceImplTest {
 	@Mock
 	private SearchQuery<Patient, org.hl7.fhir.r4.model.Patient, FhirPatientDao, PatientTranslator, SearchQueryInclude<org.hl7.fhir.r4.model.Patient>> searchQuery;
 	
+	@Mock
+	private FhirEncounterService encounterService;
+	
+	@Mock
+	private FhirObservationService observationService;
+	
+	@Mock
+	private FhirAllergyIntoleranceService allergyIntoleranceService;
+	
+	@Mock
+	private FhirDiagnosticReportService diagnosticReportService;
+	
+	@Mock
+	private FhirMedicationRequestService medicationRequestService;
+	
+	@Mock
+	private FhirServiceRequestService serviceRequestService;
+	
+	@Captor
+	private ArgumentCaptor<ObservationSearchParams> observationSearchParamsCaptor;
+	
 	private FhirPatientServiceImpl patientService;
 	
 	private org.hl7.fhir.r4.model.Patient fhirPatient;
@@ -141,6 +178,12 @@ public class FhirPatientServiceImplTest {
 		patientService.setTranslator(patientTranslator);
 		patientService.setSearchQuery(searchQuery);
 		patientService.setSearchQueryInclude(searchQueryInclude);
+		patientService.setEncounterService(encounterService);
+		patientService.setObservationService(observationService);
+		patientService.setAllergyIntoleranceService(allergyIntoleranceService);
+		patientService.setDiagnosticReportService(diagnosticReportService);
+		patientService.setMedicationRequestService(medicationRequestService);
+		patientService.setServiceRequestService(serviceRequestService);
 		
 		PersonName name = new PersonName();
 		name.setFamilyName(PATIENT_FAMILY_NAME);
@@ -215,7 +258,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(stringAndListParam, null, null,
@@ -239,7 +282,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, stringAndListParam, null,
@@ -265,7 +308,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, stringAndListParam,
@@ -289,7 +332,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, stringAndListParam, null,
@@ -313,7 +356,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, stringAndListParam,
@@ -391,7 +434,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null,
@@ -435,7 +478,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -479,7 +522,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -519,7 +562,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -559,7 +602,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -599,7 +642,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -638,7 +681,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(patients);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -677,7 +720,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -717,7 +760,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -759,7 +802,8 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Observation()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Observation()));
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -784,7 +828,7 @@ public class FhirPatientServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
 		IBundleProvider results = patientService.searchForPatients(new PatientSearchParams(null, null, null, null, null,
@@ -801,25 +845,15 @@ public class FhirPatientServiceImplTest {
 	public void getPatientEverything_shouldReturnAllInformationAboutSpecifiedPatient() {
 		TokenParam patientId = new TokenParam().setValue(PATIENT_UUID);
 		
-		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.EVERYTHING_SEARCH_HANDLER, "")
-		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, patientId);
-		
-		HashSet<Include> revIncludes = new HashSet<>();
-		
-		revIncludes.add(new Include(FhirConstants.OBSERVATION + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ALLERGY_INTOLERANCE + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.DIAGNOSTIC_REPORT + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ENCOUNTER + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.MEDICATION_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.SERVICE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.PROCEDURE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		
-		theParams.addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER,
+		    FhirConstants.ID_PROPERTY, new TokenAndListParam().addAnd(patientId));
 		
 		when(dao.getSearchResultIds(any())).thenReturn(Collections.singletonList(PATIENT_ID));
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		mockEverythingSearches();
 		
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
@@ -828,31 +862,28 @@ public class FhirPatientServiceImplTest {
 		List<IBaseResource> resultList = get(results);
 		
 		assertThat(results, notNullValue());
-		assertThat(resultList, not(empty()));
-		assertThat(resultList.size(), greaterThanOrEqualTo(1));
+		assertThat(results.size(), equalTo(3));
+		assertThat(resultList, hasSize(3));
+		assertThat(resultList.get(0), equalTo(fhirPatient));
+		assertThat(resultList.get(1), instanceOf(Encounter.class));
+		assertThat(resultList.get(2), instanceOf(Observation.class));
 		
+		verify(observationService).searchForObservations(observationSearchParamsCaptor.capture());
+		assertThat(observationSearchParamsCaptor.getValue().getPatient().getValuesAsQueryTokens().get(0)
+		        .getValuesAsQueryTokens().get(0).getIdPart(),
+		    equalTo(PATIENT_UUID));
 	}
 	
 	@Test
 	public void getPatientEverything_shouldReturnAllInformationAboutAllPatients() {
-		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.EVERYTHING_SEARCH_HANDLER, "");
-		
-		HashSet<Include> revIncludes = new HashSet<>();
-		
-		revIncludes.add(new Include(FhirConstants.OBSERVATION + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ALLERGY_INTOLERANCE + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.DIAGNOSTIC_REPORT + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.ENCOUNTER + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.MEDICATION_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.SERVICE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		revIncludes.add(new Include(FhirConstants.PROCEDURE_REQUEST + ":" + FhirConstants.INCLUDE_PATIENT_PARAM));
-		
-		theParams.addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
+		SearchParameterMap theParams = new SearchParameterMap();
 		
 		when(dao.getSearchResultIds(any())).thenReturn(Collections.singletonList(PATIENT_ID));
 		when(dao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(patient));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, patientTranslator, globalPropertyService, searchQueryInclude));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		mockEverythingSearches();
 		
 		when(patientTranslator.toFhirResource(patient)).thenReturn(fhirPatient);
 		
@@ -865,6 +896,63 @@ public class FhirPatientServiceImplTest {
 		assertThat(resultList.size(), greaterThanOrEqualTo(1));
 	}
 	
+	@Test
+	public void getPatientEverything_shouldOnlySearchRequestedTypes() {
+		when(observationService.searchForObservations(any()))
+		        .thenReturn(new SimpleBundleProvider(Collections.singletonList(new Observation())));
+		
+		StringAndListParam types = new StringAndListParam().addAnd(
+		    new StringOrListParam().add(new StringParam(FhirConstants.OBSERVATION)).add(new StringParam("Unknown")));
+		
+		IBundleProvider results = patientService.getPatientEverything(new TokenParam().setValue(PATIENT_UUID), null, types,
+		    null);
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, hasSize(1));
+		assertThat(resultList.get(0), instanceOf(Observation.class));
+		verify(searchQuery, never()).getQueryResults(any(), any(), any(), any());
+		verify(encounterService, never()).searchForEncounters(any());
+	}
+	
+	@Test
+	public void getPatientEverything_shouldOnlyReturnResourcesUpdatedSinceTheSuppliedTime() throws ParseException {
+		Date since = dateFormatter.parse(LAST_UPDATED_DATE);
+		when(observationService.searchForObservations(any())).thenReturn(new SimpleBundleProvider());
+		
+		patientService.getPatientEverything(new TokenParam().setValue(PATIENT_UUID), new DateParam().setValue(since),
+		    new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam(FhirConstants.OBSERVATION))), null);
+		
+		verify(observationService).searchForObservations(observationSearchParamsCaptor.capture());
+		assertThat(observationSearchParamsCaptor.getValue().getLastUpdated().getLowerBound().getValue(), equalTo(since));
+	}
+	
+	@Test
+	public void getPatientEverything_shouldUseTheRequestedPageSize() {
+		when(observationService.searchForObservations(any())).thenReturn(new SimpleBundleProvider());
+		
+		IBundleProvider results = patientService.getPatientEverything(null,
+		    new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam(FhirConstants.OBSERVATION))),
+		    new NumberParam(25));
+		
+		assertThat(results.preferredPageSize(), equalTo(25));
+	}
+	
+	private void mockEverythingSearches() {
+		when(encounterService.searchForEncounters(any()))
+		        .thenReturn(new SimpleBundleProvider(Collections.singletonList(new Encounter())));
+		when(observationService.searchForObservations(any()))
+		        .thenReturn(new SimpleBundleProvider(Collections.singletonList(new Observation())));
+		when(allergyIntoleranceService.searchForAllergies(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+		    any())).thenReturn(new SimpleBundleProvider());
+		when(diagnosticReportService.searchForDiagnosticReports(any(), any(), any(), any(), any(), any(), any(), any(),
+		    any())).thenReturn(new SimpleBundleProvider());
+		when(medicationRequestService.searchForMedicationRequests(any(), any(), any(), any(), any(), any(), any(), any(),
+		    any(), any())).thenReturn(new SimpleBundleProvider());
+		when(serviceRequestService.searchForServiceRequests(any(), any(), any(), any(), any(), any(), any(), any()))
+		        .thenReturn(new SimpleBundleProvider());
+	}
+	
 	private List<IBaseResource> get(IBundleProvider results) {
 		return results.getResources(0, 10);
 	}
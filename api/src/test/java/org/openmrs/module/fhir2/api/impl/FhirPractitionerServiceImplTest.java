@@ -24,6 +24,8 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openmrs.module.fhir2.FhirConstants.FAMILY_PROPERTY;
 import static org.openmrs.module.fhir2.FhirConstants.NAME_PROPERTY;
@@ -216,7 +218,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
@@ -260,7 +262,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
@@ -305,7 +307,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -319,6 +321,22 @@ public class FhirPractitionerServiceImplTest {
 		assertThat(resultList, hasSize(greaterThanOrEqualTo(1)));
 	}
 	
+	@Test
+	public void shouldNotSearchForProvidersByUserIdentifier() {
+		TokenAndListParam identifier = new TokenAndListParam()
+		        .addAnd(new TokenParam(FhirConstants.OPENMRS_FHIR_EXT_USER_IDENTIFIER, USER_NAME));
+		
+		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
+		
+		IBundleProvider results = practitionerService.searchForPractitioners(identifier, null, null, null, null, null, null,
+		    null, null, null, null);
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, hasSize(1));
+		verify(searchQuery, never()).getQueryResults(any(), any(), any(), any());
+	}
+	
 	@Test
 	public void shouldReturnEmptyCollectionByWrongIdentifier() {
 		TokenAndListParam identifier = new TokenAndListParam().addAnd(new TokenOrListParam().add(WRONG_IDENTIFIER));
@@ -350,7 +368,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
@@ -394,7 +412,7 @@ public class FhirPractitionerServiceImplTest {
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ID));
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -442,7 +460,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(singletonList(ID));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider(practitioner2));
 		
@@ -484,7 +502,7 @@ public class FhirPractitionerServiceImplTest {
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ID));
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -527,7 +545,7 @@ public class FhirPractitionerServiceImplTest {
 		    FhirConstants.STATE_PROPERTY, state);
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(ID));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
@@ -574,7 +592,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -618,7 +636,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -663,7 +681,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -709,7 +727,7 @@ public class FhirPractitionerServiceImplTest {
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(Collections.singletonList(provider));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(new SimpleBundleProvider());
 		
@@ -755,7 +773,8 @@ public class FhirPractitionerServiceImplTest {
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(singletonList(ID));
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Encounter()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Encounter()));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -782,7 +801,7 @@ public class FhirPractitionerServiceImplTest {
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(singletonList(ID));
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
@@ -808,13 +827,13 @@ public class FhirPractitionerServiceImplTest {
 		
 		when(practitionerDao.getSearchResultIds(any())).thenReturn(singletonList(ID));
 		when(practitionerDao.getSearchResults(any(), any())).thenReturn(singletonList(provider));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Encounter()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Encounter()));
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(new SearchQueryBundleProvider<>(theParams,
 		        practitionerDao, practitionerTranslator, globalPropertyService, searchQueryInclude));
 		when(practitionerTranslator.toFhirResource(provider)).thenReturn(practitioner);
 		when(userService.searchForUsers(any())).thenReturn(userPractitionerSearchQueryBundleProvider);
 		
-		when(userPractitionerSearchQueryBundleProvider.size()).thenReturn(1);
 		when(userPractitionerSearchQueryBundleProvider.getResources(anyInt(), anyInt()))
 		        .thenReturn(Arrays.asList(practitioner2, new Encounter()));
 		
@@ -155,7 +155,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(patientReference, null, null, null, null,
 		    null, null, null);
@@ -179,7 +179,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, code, null, null, null, null, null,
 		    null);
@@ -204,7 +204,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, encounterReference, null, null,
 		    null, null, null);
@@ -229,7 +229,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, participantReference,
 		    null, null, null, null);
@@ -253,7 +253,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, occurrence, null,
 		    null, null);
@@ -277,7 +277,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, null, uuid, null,
 		    null);
@@ -301,7 +301,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, null, null,
 		    lastUpdated, null);
@@ -325,7 +325,8 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Patient()));
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, null, null, null,
 		    includes);
@@ -350,7 +351,8 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.singleton(new Patient()));
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any()))
+		        .thenReturn(Collections.singleton(new Patient()));
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, null, null, null,
 		    includes);
@@ -374,7 +376,7 @@ public class FhirServiceRequestServiceImplTest {
 		when(translator.toFhirResource(order)).thenReturn(fhirServiceRequest);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		
 		IBundleProvider results = serviceRequestService.searchForServiceRequests(null, null, null, null, null, null, null,
 		    includes);
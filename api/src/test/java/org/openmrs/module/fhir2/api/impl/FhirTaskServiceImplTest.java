@@ -212,7 +212,7 @@ public class FhirTaskServiceImplTest {
 		when(dao.getSearchResults(any(), any())).thenReturn(openmrsTasks);
 		when(searchQuery.getQueryResults(any(), any(), any(), any())).thenReturn(
 		    new SearchQueryBundleProvider<>(theParams, dao, translator, fhirGlobalPropertyService, searchQueryInclude));
-		when(searchQueryInclude.getIncludedResources(any(), any())).thenReturn(Collections.emptySet());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
 		when(translator.toFhirResource(openmrsTask)).thenReturn(task);
 		
 		IBundleProvider results = fhirTaskService.searchForTasks(null, null, null, null, null, null, null);
@@ -0,0 +1,61 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.Test;
+
+public class HistogramTest {
+	
+	@Test
+	public void shouldReportNothingWhenEmpty() {
+		HistogramSnapshot snapshot = new Histogram().getSnapshot();
+		
+		assertThat(snapshot.getCount(), equalTo(0L));
+		assertThat(snapshot.getMean(), closeTo(0, 0));
+		assertThat(snapshot.getP99(), equalTo(0L));
+		assertThat(snapshot.getMax(), equalTo(0L));
+	}
+	
+	@Test
+	public void shouldSummarizeRecordedValues() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		
+		HistogramSnapshot snapshot = histogram.getSnapshot();
+		
+		assertThat(snapshot.getCount(), equalTo(100L));
+		assertThat(snapshot.getSum(), equalTo(5050L));
+		assertThat(snapshot.getMean(), closeTo(50.5, 0.001));
+		assertThat(snapshot.getMax(), equalTo(100L));
+		// the 50th value falls in the bucket [32, 64)
+		assertThat(snapshot.getP50(), equalTo(63L));
+		// the 95th and 99th values fall in the bucket [64, 128), whose bound is capped by the maximum
+		assertThat(snapshot.getP95(), equalTo(100L));
+		assertThat(snapshot.getP99(), equalTo(100L));
+	}
+	
+	@Test
+	public void shouldRecordNegativeValuesAsZero() {
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		
+		HistogramSnapshot snapshot = histogram.getSnapshot();
+		
+		assertThat(snapshot.getCount(), equalTo(1L));
+		assertThat(snapshot.getSum(), equalTo(0L));
+		assertThat(snapshot.getP50(), equalTo(0L));
+	}
+}
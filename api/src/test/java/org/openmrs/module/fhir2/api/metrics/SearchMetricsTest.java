@@ -0,0 +1,114 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics.Phase;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.PatientTranslator;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+
+public class SearchMetricsTest {
+	
+	private SearchMetrics searchMetrics;
+	
+	@Before
+	public void setup() {
+		searchMetrics = new SearchMetrics();
+	}
+	
+	@Test
+	public void shouldDescribeSearchShapeByParameterNamesOnly() {
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY, new StringParam("John"))
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, new TokenParam("male"));
+		SearchParameterMap otherParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, new TokenParam("female"))
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY, new StringParam("Jane"));
+		
+		assertThat(SearchMetrics.getShape(theParams), equalTo("gender,name:given"));
+		assertThat(SearchMetrics.getShape(otherParams), equalTo(SearchMetrics.getShape(theParams)));
+	}
+	
+	@Test
+	public void shouldIncludeSortInSearchShape() {
+		SearchParameterMap theParams = new SearchParameterMap().setSortSpec(new SortSpec("date"));
+		
+		assertThat(SearchMetrics.getShape(theParams), equalTo("_sort"));
+	}
+	
+	@Test
+	public void shouldResolveResourceTypeFromTranslator() {
+		assertThat(SearchMetrics.getResourceType(mock(PatientTranslator.class)), equalTo("Patient"));
+		assertThat(SearchMetrics.getResourceType(mock(ToFhirTranslator.class)), equalTo("Resource"));
+	}
+	
+	@Test
+	public void shouldRecordMetricsPerResourceTypeAndShape() {
+		String result = searchMetrics.time("Patient", "name", Phase.ID_QUERY, () -> "result");
+		searchMetrics.recordTime("Patient", "name", Phase.TRANSLATION, 5000);
+		searchMetrics.recordCardinality("Patient", "name", 12);
+		searchMetrics.recordCardinality("Observation", "code", 3);
+		
+		List<SearchShapeStatistics> searches = searchMetrics.getSearches();
+		
+		assertThat(result, equalTo("result"));
+		assertThat(searches, hasSize(2));
+		assertThat(searches.get(0).getResourceType(), equalTo("Observation"));
+		SearchShapeStatistics patientSearches = searches.get(1);
+		assertThat(patientSearches.getShape(), equalTo("name"));
+		assertThat(patientSearches.getIdQueryMicros().getCount(), equalTo(1L));
+		assertThat(patientSearches.getPageFetchMicros().getCount(), equalTo(0L));
+		assertThat(patientSearches.getTranslationMicros().getMax(), equalTo(5L));
+		assertThat(patientSearches.getCardinality().getMax(), equalTo(12L));
+	}
+	
+	@Test
+	public void shouldCountNewShapesTogetherOnceLimitIsReached() {
+		for (int i = 0; i < SearchMetrics.MAXIMUM_SHAPES; i++) {
+			searchMetrics.recordCardinality("Patient", "shape" + i, 1);
+		}
+		
+		searchMetrics.recordCardinality("Patient", "shape0", 1);
+		searchMetrics.recordCardinality("Patient", "another", 1);
+		searchMetrics.recordCardinality("Patient", "yet another", 1);
+		
+		List<SearchShapeStatistics> searches = searchMetrics.getSearches();
+		SearchShapeStatistics otherSearches = searches.stream()
+		        .filter(search -> search.getShape().equals(SearchMetrics.OTHER_SHAPE)).findFirst().orElse(null);
+		
+		assertThat(searches, hasSize(SearchMetrics.MAXIMUM_SHAPES + 1));
+		assertThat(otherSearches, notNullValue());
+		assertThat(otherSearches.getCardinality().getCount(), equalTo(2L));
+	}
+	
+	@Test
+	public void shouldDiscardMetricsOnReset() {
+		searchMetrics.recordCardinality("Patient", "name", 12);
+		
+		searchMetrics.reset();
+		
+		assertThat(searchMetrics.getSearches(), empty());
+	}
+}
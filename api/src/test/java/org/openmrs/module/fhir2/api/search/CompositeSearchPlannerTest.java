@@ -0,0 +1,72 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+
+public class CompositeSearchPlannerTest {
+	
+	private static final String VISIT_TYPE = FhirConstants.VISIT_TYPE_SYSTEM_URI;
+	
+	private static final String ENCOUNTER_TYPE = FhirConstants.ENCOUNTER_TYPE_SYSTEM_URI;
+	
+	@Test
+	public void canMatch_shouldMatchWhenThereIsNoParameter() {
+		assertThat(CompositeSearchPlanner.canMatch(null, VISIT_TYPE), is(true));
+		assertThat(CompositeSearchPlanner.canMatch(new TokenAndListParam(), VISIT_TYPE), is(true));
+	}
+	
+	@Test
+	public void canMatch_shouldMatchCodesWithoutASystem() {
+		TokenAndListParam type = new TokenAndListParam().addAnd(new TokenParam("1"));
+		
+		assertThat(CompositeSearchPlanner.canMatch(type, VISIT_TYPE), is(true));
+	}
+	
+	@Test
+	public void canMatch_shouldOnlyMatchCodesFromTheGivenSystem() {
+		TokenAndListParam type = new TokenAndListParam().addAnd(new TokenParam(ENCOUNTER_TYPE, "1"));
+		
+		assertThat(CompositeSearchPlanner.canMatch(type, ENCOUNTER_TYPE), is(true));
+		assertThat(CompositeSearchPlanner.canMatch(type, VISIT_TYPE), is(false));
+	}
+	
+	@Test
+	public void canMatch_shouldMatchWhenAnyOredCodeIsFromTheGivenSystem() {
+		TokenAndListParam type = new TokenAndListParam()
+		        .addAnd(new TokenOrListParam().add(ENCOUNTER_TYPE, "1").add(VISIT_TYPE, "2"));
+		
+		assertThat(CompositeSearchPlanner.canMatch(type, VISIT_TYPE), is(true));
+	}
+	
+	@Test
+	public void canMatch_shouldNotMatchWhenAnyAndedCodeIsFromAnotherSystem() {
+		TokenAndListParam type = new TokenAndListParam().addAnd(new TokenParam("1"))
+		        .addAnd(new TokenParam(ENCOUNTER_TYPE, "2"));
+		
+		assertThat(CompositeSearchPlanner.canMatch(type, VISIT_TYPE), is(false));
+	}
+	
+	@Test
+	public void canMatch_shouldMatchCodesWithAModifier() {
+		TokenAndListParam type = new TokenAndListParam()
+		        .addAnd(new TokenParam(ENCOUNTER_TYPE, "1").setModifier(TokenParamModifier.NOT));
+		
+		assertThat(CompositeSearchPlanner.canMatch(type, VISIT_TYPE), is(true));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConcatenatedBundleProviderTest {
+	
+	@After
+	public void cleanup() {
+		SearchRequestContext.clear();
+	}
+	
+	@Test
+	public void shouldReturnResultsOfEveryBundleProviderInOrder() {
+		ConcatenatedBundleProvider results = new ConcatenatedBundleProvider(bundleProviders(), null);
+		
+		assertThat(results.size(), equalTo(6));
+		assertThat(ids(results.getResources(0, 6)), contains("p1", "e1", "e2", "o1", "o2", "o3"));
+	}
+	
+	@Test
+	public void shouldOnlyReadTheRequestedPage() {
+		ConcatenatedBundleProvider results = new ConcatenatedBundleProvider(bundleProviders(), null);
+		
+		assertThat(ids(results.getResources(0, 2)), contains("p1", "e1"));
+		assertThat(ids(results.getResources(2, 4)), contains("e2", "o1"));
+		assertThat(ids(results.getResources(4, 6)), contains("o2", "o3"));
+		assertThat(results.getResources(6, 8), empty());
+	}
+	
+	@Test
+	public void shouldSkipEmptyBundleProviders() {
+		List<IBundleProvider> bundleProviders = new ArrayList<>(bundleProviders());
+		bundleProviders.add(1, new SimpleBundleProvider());
+		
+		ConcatenatedBundleProvider results = new ConcatenatedBundleProvider(bundleProviders, null);
+		
+		assertThat(ids(results.getResources(1, 3)), contains("e1", "e2"));
+	}
+	
+	@Test
+	public void shouldPreferTheSuppliedPageSize() {
+		SimpleBundleProvider first = new SimpleBundleProvider();
+		first.setPreferredPageSize(10);
+		
+		assertThat(new ConcatenatedBundleProvider(Arrays.asList(first), 25).preferredPageSize(), equalTo(25));
+		assertThat(new ConcatenatedBundleProvider(Arrays.asList(first), null).preferredPageSize(), equalTo(10));
+	}
+	
+	@Test
+	public void shouldDeferThePageWhenStreaming() {
+		ConcatenatedBundleProvider results = new ConcatenatedBundleProvider(bundleProviders(), null);
+		SearchRequestContext.setStreaming(true);
+		
+		assertThat(results.getResources(1, 4), empty());
+		
+		List<IBaseResource> streamed = new ArrayList<>();
+		SearchRequestContext.getStreamedPage().forEachResource(streamed::add);
+		assertThat(ids(streamed), contains("e1", "e2", "o1"));
+		assertThat(SearchRequestContext.isStreaming(), is(false));
+	}
+	
+	private static List<IBundleProvider> bundleProviders() {
+		return Arrays.asList(new SimpleBundleProvider(Arrays.asList(resource(new Patient(), "p1"))),
+		    new SimpleBundleProvider(Arrays.asList(resource(new Encounter(), "e1"), resource(new Encounter(), "e2"))),
+		    new SimpleBundleProvider(Arrays.asList(resource(new Observation(), "o1"), resource(new Observation(), "o2"),
+		        resource(new Observation(), "o3"))));
+	}
+	
+	private static IBaseResource resource(Resource resource, String id) {
+		resource.setId(id);
+		return resource;
+	}
+	
+	private static List<String> ids(List<IBaseResource> resources) {
+		return resources.stream().map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CountOnlyBundleProviderTest {
+	
+	@Mock
+	private FhirObservationDao observationDao;
+	
+	private SearchParameterMap theParams;
+	
+	private CountOnlyBundleProvider<Obs> bundleProvider;
+	
+	@Before
+	public void setup() {
+		theParams = new SearchParameterMap();
+		bundleProvider = new CountOnlyBundleProvider<>(theParams, observationDao);
+	}
+	
+	@Test
+	public void shouldCountResultsOnlyOnce() {
+		when(observationDao.getSearchResultCount(theParams)).thenReturn(42);
+		
+		assertThat(bundleProvider.size(), equalTo(42));
+		assertThat(bundleProvider.size(), equalTo(42));
+		verify(observationDao, times(1)).getSearchResultCount(theParams);
+	}
+	
+	@Test
+	public void shouldNeverLoadResults() {
+		assertThat(bundleProvider.getResources(0, 10), empty());
+		verifyNoInteractions(observationDao);
+	}
+}
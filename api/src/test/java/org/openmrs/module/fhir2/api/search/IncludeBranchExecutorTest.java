@@ -0,0 +1,124 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.openmrs.api.context.Context;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Context.class)
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*" })
+public class IncludeBranchExecutorTest {
+	
+	@Mock
+	private SessionFactory sessionFactory;
+	
+	@Mock
+	private Session session;
+	
+	private IncludeBranchExecutor executor;
+	
+	@Before
+	public void setup() {
+		PowerMockito.mockStatic(Context.class);
+		when(sessionFactory.getCurrentSession()).thenReturn(session);
+		
+		executor = new IncludeBranchExecutor();
+		executor.setSessionFactory(sessionFactory);
+	}
+	
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+	
+	@Test
+	public void invokeAll_shouldReturnResultsInTheOrderOfTheBranches() {
+		List<Supplier<String>> branches = Arrays.asList(() -> "first", () -> "second", () -> "third");
+		
+		assertThat(executor.invokeAll(branches), contains("first", "second", "third"));
+	}
+	
+	@Test
+	public void invokeAll_shouldRunBranchesAtTheSameTime() {
+		// the calling thread and every thread of the executor each run one branch, which can only finish once
+		// all of them have started
+		int branchCount = IncludeBranchExecutor.PARALLELISM + 1;
+		CountDownLatch started = new CountDownLatch(branchCount);
+		Supplier<Boolean> branch = () -> {
+			started.countDown();
+			try {
+				return started.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				return false;
+			}
+		};
+		
+		assertThat(executor.invokeAll(Collections.nCopies(branchCount, branch)), everyItem(equalTo(true)));
+	}
+	
+	@Test
+	public void invokeAll_shouldRunBranchesOnOtherThreadsInReadOnlySessions() {
+		List<Supplier<String>> branches = Arrays.asList(() -> "first", () -> "second", () -> "third");
+		
+		executor.invokeAll(branches);
+		
+		verify(session, times(2)).setDefaultReadOnly(true);
+		verify(session, times(2)).setFlushMode(FlushMode.MANUAL);
+	}
+	
+	@Test
+	public void invokeAll_shouldRunNestedBranchesOnTheCallingThread() {
+		Supplier<List<String>> branch = () -> executor
+		        .invokeAll(Arrays.<Supplier<String>> asList(() -> Thread.currentThread().getName(),
+		            () -> Thread.currentThread().getName()))
+		        .stream().distinct().collect(Collectors.toList());
+		
+		List<List<String>> threadNames = executor.invokeAll(Arrays.asList(branch, branch));
+		
+		assertThat(threadNames.get(1).size(), equalTo(1));
+		assertThat(threadNames.get(1).get(0).startsWith("fhir2-include-"), equalTo(true));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void invokeAll_shouldRethrowExceptionsFromBranches() {
+		executor.invokeAll(Arrays.<Supplier<String>> asList(() -> "first", () -> {
+			throw new IllegalStateException();
+		}));
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+
+public class IncludeCacheTest {
+	
+	private final List<Collection<String>> loads = new ArrayList<>();
+	
+	@Test
+	public void get_shouldOnlyLoadResourcesWhichAreNotCached() {
+		IncludeCache cache = new IncludeCache(10);
+		
+		List<IBaseResource> first = cache.get(FhirConstants.PATIENT, Arrays.asList("a", "b"), this::load);
+		List<IBaseResource> second = cache.get(FhirConstants.PATIENT, Arrays.asList("b", "c"), this::load);
+		
+		assertThat(toIds(second), containsInAnyOrder("b", "c"));
+		assertThat(second.get(0), sameInstance(first.get(1)));
+		assertThat(loads.get(1), contains("c"));
+		assertThat(cache.getHitCount(), equalTo(1L));
+		assertThat(cache.getMissCount(), equalTo(3L));
+		assertThat(cache.size(), equalTo(3));
+	}
+	
+	@Test
+	public void get_shouldNotLoadAnythingWhenAllResourcesAreCached() {
+		IncludeCache cache = new IncludeCache(10);
+		
+		cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		List<IBaseResource> result = cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		
+		assertThat(toIds(result), contains("a"));
+		assertThat(loads.size(), equalTo(1));
+	}
+	
+	@Test
+	public void get_shouldKeepResourcesOfDifferentTypesApart() {
+		IncludeCache cache = new IncludeCache(10);
+		
+		cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		cache.get(FhirConstants.PRACTITIONER, Collections.singletonList("a"), this::load);
+		
+		assertThat(loads.size(), equalTo(2));
+		assertThat(cache.getHitCount(), equalTo(0L));
+	}
+	
+	@Test
+	public void get_shouldEvictLeastRecentlyUsedResourcesWhenFull() {
+		IncludeCache cache = new IncludeCache(2);
+		
+		cache.get(FhirConstants.PATIENT, Arrays.asList("a", "b"), this::load);
+		cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		cache.get(FhirConstants.PATIENT, Collections.singletonList("c"), this::load);
+		cache.get(FhirConstants.PATIENT, Arrays.asList("a", "b"), this::load);
+		
+		assertThat(loads.get(3), contains("b"));
+		assertThat(cache.getEvictionCount(), equalTo(2L));
+		assertThat(cache.size(), equalTo(2));
+	}
+	
+	@Test
+	public void get_shouldNotCacheAnythingWhenMaximumSizeIsZero() {
+		IncludeCache cache = new IncludeCache(0);
+		
+		cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		List<IBaseResource> result = cache.get(FhirConstants.PATIENT, Collections.singletonList("a"), this::load);
+		
+		assertThat(toIds(result), contains("a"));
+		assertThat(loads.size(), equalTo(2));
+		assertThat(cache.size(), equalTo(0));
+		assertThat(cache.getWeight(), equalTo(0L));
+	}
+	
+	@Test
+	public void get_shouldNotCacheResourcesWhichCouldNotBeFound() {
+		IncludeCache cache = new IncludeCache(10);
+		
+		List<IBaseResource> result = cache.get(FhirConstants.PATIENT, Collections.singletonList("a"),
+		    ids -> Collections.emptyList());
+		
+		assertThat(result, empty());
+		assertThat(cache.size(), equalTo(0));
+	}
+	
+	private List<Patient> load(Collection<String> ids) {
+		loads.add(new ArrayList<>(ids));
+		return ids.stream().map(id -> {
+			Patient patient = new Patient();
+			patient.setId(id);
+			return patient;
+		}).collect(Collectors.toList());
+	}
+	
+	private static List<String> toIds(List<IBaseResource> resources) {
+		return resources.stream().map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+}
@@ -13,6 +13,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItem;
@@ -23,6 +24,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -46,10 +48,15 @@ import ca.uhn.fhir.rest.param.TokenParam;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Location;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirLocationDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.LocationTranslator;
@@ -98,6 +105,8 @@ public class LocationSearchQueryTest extends BaseModuleContextSensitiveTest {
 	
 	private static final String LOCATION_PARENT_NAME = "Test location 5";
 	
+	private static final String GRANDPARENT_LOCATION_UUID = "76cd2d30-2411-44ef-84ea-8b7473256a6a";
+	
 	private static final String DATE_CREATED = "2005-01-01";
 	
 	private static final String DATE_CHANGED = "2010-03-31";
@@ -119,6 +128,9 @@ public class LocationSearchQueryTest extends BaseModuleContextSensitiveTest {
 	@Autowired
 	private FhirLocationDao fhirLocationDao;
 	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	@Autowired
 	private LocationTranslator translator;
 	
@@ -128,6 +140,20 @@ public class LocationSearchQueryTest extends BaseModuleContextSensitiveTest {
 		executeDataSet(LOCATION_INITIAL_DATA_XML);
 	}
 	
+	@After
+	public void resetMocks() {
+		// the mocked service is shared with other tests, which expect includes to be iterated without a limit
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAX_DEPTH,
+		    SearchQueryInclude.DEFAULT_ITERATE_MAX_DEPTH)).thenReturn(0);
+	}
+	
+	private void setParentLocation(String uuid, String parentUuid) {
+		LocationService locationService = Context.getLocationService();
+		org.openmrs.Location location = locationService.getLocationByUuid(uuid);
+		location.setParentLocation(locationService.getLocationByUuid(parentUuid));
+		locationService.saveLocation(location);
+	}
+	
 	private IBundleProvider search(SearchParameterMap theParams) {
 		return searchQuery.getQueryResults(theParams, fhirLocationDao, translator, searchQueryInclude);
 	}
@@ -489,6 +515,50 @@ public class LocationSearchQueryTest extends BaseModuleContextSensitiveTest {
 		assertThat(resultList.size(), equalTo(1)); // no parent resource included with the result list
 	}
 	
+	@Test
+	public void searchForLocations_shouldIterateIncludesUntilACycleIsFound() {
+		// Test location 7 -> Test location 5 -> Test location 4 -> Test location 7
+		setParentLocation(LOCATION_PARENT_UUID, GRANDPARENT_LOCATION_UUID);
+		setParentLocation(GRANDPARENT_LOCATION_UUID, LOCATION_UUID);
+		
+		HashSet<Include> includes = new HashSet<>();
+		includes.add(new Include("Location:partof", true));
+		
+		TokenAndListParam uuid = new TokenAndListParam().addAnd(new TokenParam(LOCATION_UUID));
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes)
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, uuid);
+		
+		IBundleProvider results = search(theParams);
+		List<IBaseResource> resultList = results.getResources(START_INDEX, END_INDEX);
+		
+		assertThat(results.size(), equalTo(1));
+		assertThat(resultList, hasSize(equalTo(3)));
+		assertThat(resultList, everyItem(is(instanceOf(Location.class))));
+		assertThat(resultList, hasItem(hasProperty("id", equalTo(LOCATION_PARENT_UUID))));
+		assertThat(resultList, hasItem(hasProperty("id", equalTo(GRANDPARENT_LOCATION_UUID))));
+	}
+	
+	@Test
+	public void searchForLocations_shouldStopIteratingIncludesAtMaximumDepth() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_MAX_DEPTH,
+		    SearchQueryInclude.DEFAULT_ITERATE_MAX_DEPTH)).thenReturn(1);
+		setParentLocation(LOCATION_PARENT_UUID, GRANDPARENT_LOCATION_UUID);
+		
+		HashSet<Include> includes = new HashSet<>();
+		includes.add(new Include("Location:partof", true));
+		
+		TokenAndListParam uuid = new TokenAndListParam().addAnd(new TokenParam(LOCATION_UUID));
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes)
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, uuid);
+		
+		List<IBaseResource> resultList = search(theParams).getResources(START_INDEX, END_INDEX);
+		
+		assertThat(resultList, hasSize(equalTo(4)));
+		assertThat(resultList, hasItem(hasProperty("id", equalTo(GRANDPARENT_LOCATION_UUID))));
+		assertThat(resultList, hasItem(allOf(is(instanceOf(OperationOutcome.class)), hasProperty("issueFirstRep",
+		    hasProperty("code", equalTo(OperationOutcome.IssueType.INCOMPLETE))))));
+	}
+	
 	@Test
 	public void searchForLocations_shouldAddReverseIncludedLocationToReturnedResults() {
 		TokenAndListParam uuid = new TokenAndListParam().addAnd(new TokenParam(LOCATION_PARENT_UUID));
@@ -0,0 +1,268 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.After;
+import org.junit.Test;
+
+public class MergingBundleProviderTest {
+	
+	@After
+	public void cleanup() {
+		SearchRequestContext.clear();
+	}
+	
+	@Test
+	public void shouldReturnResultsOneAfterAnotherWhenNotSorted() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 1, "v2", 2), encounters("e1", 1, "e2", 3, "e3", 5)), null, null);
+		
+		assertThat(ids(results.getResources(0, 3)), contains("v1", "v2", "e1"));
+		assertThat(ids(results.getResources(3, 6)), contains("e2", "e3"));
+		assertThat(results.getResources(6, 9), empty());
+	}
+	
+	@Test
+	public void shouldInterleaveResultsBySortParameter() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 1, "v2", 4), encounters("e1", 2, "e2", 3, "e3", 5)), new SortSpec("date"),
+		        null);
+		
+		assertThat(ids(results.getResources(0, 2)), contains("v1", "e1"));
+		assertThat(ids(results.getResources(2, 4)), contains("e2", "v2"));
+		assertThat(ids(results.getResources(4, 6)), contains("e3"));
+	}
+	
+	@Test
+	public void shouldInterleaveResultsInDescendingOrder() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 4, "v2", 1), encounters("e1", 5, "e2", 3, "e3", 2)),
+		        new SortSpec("date", SortOrderEnum.DESC), null);
+		
+		assertThat(ids(results.getResources(0, 10)), contains("e1", "v1", "e2", "e3", "v2"));
+	}
+	
+	@Test
+	public void shouldReturnTiedResultsInTheOrderOfTheBundleProviders() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 1, "v2", 2), encounters("e1", 1, "e2", 2)), new SortSpec("date"), null);
+		
+		assertThat(ids(results.getResources(0, 4)), contains("v1", "e1", "v2", "e2"));
+	}
+	
+	@Test
+	public void shouldInterleavePractitionersByName() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(practitioners("p1", "Adams", "p2", "clark"), practitioners("u1", "Baker", "u2", "Davis")),
+		        new SortSpec("family"), null);
+		
+		assertThat(ids(results.getResources(0, 10)), contains("p1", "u1", "p2", "u2"));
+	}
+	
+	@Test
+	public void shouldInterleaveResultsByChainedSortParameters() {
+		Resource v1 = lastUpdated(encounter("v1", 1), 2);
+		Resource e1 = lastUpdated(encounter("e1", 1), 1);
+		Resource e2 = lastUpdated(encounter("e2", 2), 1);
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(new SimpleBundleProvider(Arrays.<IBaseResource> asList(v1)),
+		            new SimpleBundleProvider(Arrays.<IBaseResource> asList(e1, e2))),
+		        new SortSpec("date", SortOrderEnum.ASC, new SortSpec("_lastUpdated")), null);
+		
+		assertThat(ids(results.getResources(0, 10)), contains("e1", "v1", "e2"));
+	}
+	
+	@Test
+	public void shouldIgnoreUnsupportedSortParameters() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 4), encounters("e1", 2, "e2", 3)), new SortSpec("status"), null);
+		
+		assertThat(ids(results.getResources(0, 10)), contains("v1", "e1", "e2"));
+	}
+	
+	@Test
+	public void shouldOnlyReadEachBundleProvidersShareOfThePage() {
+		IBundleProvider visits = spy(encounters("v1", 1, "v2", 2, "v3", 3, "v4", 4, "v5", 5));
+		IBundleProvider encounters = spy(encounters("e1", 6, "e2", 7, "e3", 8, "e4", 9));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters),
+		        new SortSpec("date"), null);
+		
+		assertThat(ids(results.getResources(0, 4)), contains("v1", "v2", "v3", "v4"));
+		
+		verify(visits).getResources(0, 2);
+		verify(visits).getResources(2, 3);
+		verify(visits).getResources(3, 4);
+		verify(encounters).getResources(0, 2);
+	}
+	
+	@Test
+	public void shouldNotReadResultsReadAheadOnThePreviousPageAgain() {
+		IBundleProvider visits = spy(encounters("v1", 1, "v2", 4));
+		IBundleProvider encounters = spy(encounters("e1", 2, "e2", 3, "e3", 5));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters),
+		        new SortSpec("date"), null);
+		
+		results.getResources(0, 2);
+		clearInvocations(visits, encounters);
+		
+		assertThat(ids(results.getResources(2, 4)), contains("e2", "v2"));
+		verify(visits, never()).getResources(anyInt(), anyInt());
+		verify(encounters).getResources(1, 2);
+	}
+	
+	@Test
+	public void shouldNotCountResultsToReturnAPage() {
+		IBundleProvider visits = spy(encounters("v1", 1, "v2", 4));
+		IBundleProvider encounters = spy(encounters("e1", 2, "e2", 3));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters),
+		        new SortSpec("date"), null);
+		
+		assertThat(ids(results.getResources(0, 2)), contains("v1", "e1"));
+		
+		verify(visits, never()).size();
+		verify(encounters, never()).size();
+	}
+	
+	@Test
+	public void shouldResumeFromTheEndOfThePreviousPage() {
+		IBundleProvider visits = spy(encounters("v1", 1, "v2", 4));
+		IBundleProvider encounters = spy(encounters("e1", 2, "e2", 3, "e3", 5));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters),
+		        new SortSpec("date"), null);
+		
+		results.getResources(0, 2);
+		clearInvocations(visits, encounters);
+		
+		assertThat(ids(results.getResources(2, 4)), contains("e2", "v2"));
+		verify(visits, never()).getResources(eq(0), anyInt());
+		verify(encounters, never()).getResources(eq(0), anyInt());
+	}
+	
+	@Test
+	public void shouldReturnIncludedResourcesAfterTheResults() {
+		Resource patient = resource(new Patient(), "p1");
+		ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(patient, BundleEntrySearchModeEnum.INCLUDE);
+		Resource includedEncounter = encounter("e9", 9);
+		ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(includedEncounter, BundleEntrySearchModeEnum.INCLUDE);
+		
+		List<IBaseResource> visitsWithIncludes = new ArrayList<>(encounters("v1", 1).getAllResources());
+		visitsWithIncludes.add(patient);
+		List<IBaseResource> encountersWithIncludes = new ArrayList<>(encounters("e1", 2).getAllResources());
+		encountersWithIncludes.add(includedEncounter);
+		encountersWithIncludes.add(patient);
+		
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(
+		    new SimpleBundleProvider(visitsWithIncludes), new SimpleBundleProvider(encountersWithIncludes)),
+		    new SortSpec("date"), null);
+		
+		assertThat(ids(results.getResources(0, 10)), contains("v1", "e1", "p1", "e9"));
+	}
+	
+	@Test
+	public void shouldCountResultsWhenAsked() {
+		MergingBundleProvider results = new MergingBundleProvider(
+		        Arrays.asList(encounters("v1", 1, "v2", 2), encounters("e1", 1, "e2", 3, "e3", 5)), null, null);
+		
+		assertThat(results.size(), equalTo(5));
+	}
+	
+	@Test
+	public void shouldNotCountResultsOnceAllHaveBeenRead() {
+		IBundleProvider visits = spy(encounters("v1", 1));
+		IBundleProvider encounters = spy(encounters("e1", 2));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters), null, null);
+		
+		results.getResources(0, 10);
+		
+		assertThat(results.size(), equalTo(2));
+		verify(visits, never()).size();
+		verify(encounters, never()).size();
+	}
+	
+	@Test
+	public void shouldOnlyCountResultsWhenOnlyTheCountIsWanted() {
+		IBundleProvider visits = spy(encounters("v1", 1));
+		IBundleProvider encounters = spy(encounters("e1", 2));
+		MergingBundleProvider results = new MergingBundleProvider(Arrays.asList(visits, encounters), null, null);
+		SearchRequestContext.setCountOnly(true);
+		
+		assertThat(results.getResources(0, 1), empty());
+		assertThat(results.size(), equalTo(2));
+		verify(visits, never()).getResources(anyInt(), anyInt());
+		verify(encounters, never()).getResources(anyInt(), anyInt());
+	}
+	
+	private static SimpleBundleProvider encounters(Object... idsAndDays) {
+		List<IBaseResource> resources = new ArrayList<>();
+		for (int i = 0; i < idsAndDays.length; i += 2) {
+			resources.add(encounter((String) idsAndDays[i], (Integer) idsAndDays[i + 1]));
+		}
+		
+		return new SimpleBundleProvider(resources);
+	}
+	
+	private static Resource encounter(String id, int day) {
+		return resource(new Encounter().setPeriod(new Period().setStart(new Date(day * 86_400_000L))), id);
+	}
+	
+	private static SimpleBundleProvider practitioners(String... idsAndFamilyNames) {
+		List<IBaseResource> resources = new ArrayList<>();
+		for (int i = 0; i < idsAndFamilyNames.length; i += 2) {
+			Practitioner practitioner = new Practitioner();
+			practitioner.addName().setFamily(idsAndFamilyNames[i + 1]);
+			resources.add(resource(practitioner, idsAndFamilyNames[i]));
+		}
+		
+		return new SimpleBundleProvider(resources);
+	}
+	
+	private static Resource lastUpdated(Resource resource, int day) {
+		resource.getMeta().setLastUpdated(new Date(day * 86_400_000L));
+		return resource;
+	}
+	
+	private static Resource resource(Resource resource, String id) {
+		resource.setId(id);
+		return resource;
+	}
+	
+	private static List<String> ids(List<IBaseResource> resources) {
+		return resources.stream().map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+}
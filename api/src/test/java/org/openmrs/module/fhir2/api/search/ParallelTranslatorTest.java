@@ -0,0 +1,130 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class ParallelTranslatorTest extends BaseModuleContextSensitiveTest {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Autowired
+	private FhirObservationDao observationDao;
+	
+	@Autowired
+	private ObservationTranslator observationTranslator;
+	
+	@Test
+	public void translate_shouldLoadAndTranslateEachChunkInTheWorkersOwnReadOnlySession() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		Session requestSession = sessionFactory.getCurrentSession();
+		IParser parser = fhirContext.newJsonParser();
+		
+		// the observations and their concepts, mappings, reference terms and sources, translated serially
+		List<Integer> ids = observationDao.getSearchResultIds(theParams);
+		List<String> expected = observationDao.getSearchResults(theParams, ids).stream()
+		        .map(observationTranslator::toFhirResource).map(parser::encodeResourceToString)
+		        .collect(Collectors.toList());
+		assertThat(ids.size(), greaterThan(ParallelTranslator.PARALLELISM));
+		requestSession.clear();
+		
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		List<String> results = ParallelTranslator.translate(ids, chunk -> {
+			Session session = sessionFactory.getCurrentSession();
+			assertThat(session, not(sameInstance(requestSession)));
+			assertThat(session.isDefaultReadOnly(), is(true));
+			threads.add(Thread.currentThread().getName());
+			
+			// parsers are not thread-safe
+			IParser chunkParser = fhirContext.newJsonParser();
+			List<String> translated = observationDao.getSearchResults(theParams, chunk).stream()
+			        .map(observationTranslator::toFhirResource).map(chunkParser::encodeResourceToString)
+			        .collect(Collectors.toList());
+			
+			// everything the translator read, however deep, came from this thread's session
+			assertThat(session.getStatistics().getEntityCount(), greaterThan(0));
+			return translated;
+		});
+		
+		assertThat(results, equalTo(expected));
+		assertThat(threads, everyItem(startsWith("fhir2-translator-")));
+		assertThat(requestSession.getStatistics().getEntityCount(), equalTo(0));
+	}
+	
+	@Test
+	public void translate_shouldPreserveOrderOfResults() {
+		List<Integer> numbers = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+		
+		List<String> results = ParallelTranslator.translate(numbers,
+		    chunk -> chunk.stream().map(String::valueOf).collect(Collectors.toList()));
+		
+		assertThat(results, equalTo(numbers.stream().map(String::valueOf).collect(Collectors.toList())));
+	}
+	
+	@Test
+	public void translate_shouldTranslateOnPoolThreadsAsRequestingUser() {
+		String username = Context.getAuthenticatedUser().getUsername();
+		List<Integer> numbers = IntStream.range(0, 8).boxed().collect(Collectors.toList());
+		
+		List<String> users = ParallelTranslator.translate(numbers, chunk -> chunk.stream()
+		        .map(number -> Context.getAuthenticatedUser().getUsername()).collect(Collectors.toList()));
+		
+		assertThat(users, everyItem(equalTo(username)));
+	}
+	
+	@Test(expected = ResourceNotFoundException.class)
+	public void translate_shouldRethrowTranslationErrors() {
+		List<Integer> numbers = IntStream.range(0, 8).boxed().collect(Collectors.toList());
+		
+		ParallelTranslator.translate(numbers, chunk -> {
+			if (chunk.contains(5)) {
+				throw new ResourceNotFoundException("Not found");
+			}
+			
+			return chunk;
+		});
+	}
+}
@@ -53,8 +53,10 @@ import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.ServiceRequest;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.module.fhir2.FhirConstants;
@@ -165,6 +167,13 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 		    FhirConstants.GLOBAL_PROPERTY_OTHER)).thenReturn(SEVERITY_CONCEPT_UUIDS);
 	}
 	
+	@After
+	public void resetMocks() {
+		// the mocked service is shared with other tests, which expect reverse includes not to be limited
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT,
+		    SearchQueryInclude.DEFAULT_REVERSE_INCLUDE_LIMIT)).thenReturn(0);
+	}
+	
 	private IBundleProvider search(SearchParameterMap theParams) {
 		return searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
 	}
@@ -704,6 +713,28 @@ public class PatientSearchQueryTest extends BaseModuleContextSensitiveTest {
 		    hasProperty("subject", hasProperty("referenceElement", hasProperty("idPart", equalTo(PATIENT_OTHER2_UUID)))))));
 	}
 	
+	@Test
+	public void searchForPatients_shouldLimitReverseIncludedResourcesAndMarkPageIncomplete() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT,
+		    SearchQueryInclude.DEFAULT_REVERSE_INCLUDE_LIMIT)).thenReturn(3);
+		
+		TokenAndListParam uuid = new TokenAndListParam().addAnd(new TokenParam(PATIENT_OTHER2_UUID));
+		HashSet<Include> revIncludes = new HashSet<>();
+		revIncludes.add(new Include("Observation:patient"));
+		
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, uuid)
+		        .addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, revIncludes);
+		
+		List<IBaseResource> resultList = search(theParams).getResources(START_INDEX, END_INDEX);
+		
+		assertThat(resultList.stream().filter(it -> it instanceof Observation).count(), equalTo(3L));
+		List<OperationOutcome> outcomes = resultList.stream().filter(it -> it instanceof OperationOutcome)
+		        .map(it -> (OperationOutcome) it).collect(Collectors.toList());
+		assertThat(outcomes, hasSize(1));
+		assertThat(outcomes.get(0).getIssueFirstRep().getCode(), equalTo(OperationOutcome.IssueType.INCOMPLETE));
+	}
+	
 	@Test
 	public void searchForPatients_shouldReverseIncludeObservationsWithReturnedResults() {
 		TokenAndListParam uuid = new TokenAndListParam().addAnd(new TokenParam(PATIENT_OTHER2_UUID));
@@ -0,0 +1,57 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.matchesPattern;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class SearchCursorTest {
+	
+	@Test
+	public void shouldRoundTripCursorWithoutSortValues() {
+		SearchCursor cursor = new SearchCursor(Collections.emptyList(), 42);
+		
+		assertThat(SearchCursor.decode(cursor.encode()), equalTo(cursor));
+	}
+	
+	@Test
+	public void shouldRoundTripCursorWithSortValues() {
+		SearchCursor cursor = new SearchCursor(
+		        Arrays.asList(new Date(1577836800000L), null, "Some.value/with?chars", 12L, true, new BigDecimal("1.50")),
+		        7);
+		
+		assertThat(SearchCursor.decode(cursor.encode()), equalTo(cursor));
+	}
+	
+	@Test
+	public void shouldProduceUrlSafeToken() {
+		SearchCursor cursor = new SearchCursor(Collections.singletonList("a b&c=d+e/f"), 1);
+		
+		assertThat(cursor.encode(), matchesPattern("[A-Za-z0-9_\\-.]+"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectInvalidToken() {
+		SearchCursor.decode("not a cursor");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectUnsupportedSortValue() {
+		new SearchCursor(Collections.singletonList(new Object()), 1).encode();
+	}
+}
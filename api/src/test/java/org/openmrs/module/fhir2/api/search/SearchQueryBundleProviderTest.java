@@ -11,12 +11,21 @@ package org.openmrs.module.fhir2.api.search;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
@@ -24,6 +33,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.exparity.hamcrest.date.DateMatchers;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -31,11 +43,15 @@ import org.hl7.fhir.r4.model.Observation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics;
+import org.openmrs.module.fhir2.api.metrics.SearchShapeStatistics;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
 
@@ -97,4 +113,163 @@ public class SearchQueryBundleProviderTest {
 		assertThat(searchQueryBundleProvider.getUuid(), not(equalTo(new SearchQueryBundleProvider<>(new SearchParameterMap(),
 		        observationDao, translator, globalPropertyService, searchQueryInclude).getUuid())));
 	}
+	
+	@Test
+	public void shouldRecordSearchMetrics() {
+		SearchMetrics searchMetrics = new SearchMetrics();
+		Obs obs = new Obs(1);
+		when(observationDao.getSearchResultIds(any())).thenReturn(Collections.singletonList(1));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(1))))
+		        .thenReturn(Collections.singletonList(obs));
+		when(translator.toFhirResource(obs)).thenReturn(new Observation());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		searchQueryBundleProvider = new SearchQueryBundleProvider<>(new SearchParameterMap(), observationDao, translator,
+		        globalPropertyService, searchQueryInclude, null, searchMetrics);
+		searchQueryBundleProvider.getResources(0, 10);
+		
+		List<SearchShapeStatistics> searches = searchMetrics.getSearches();
+		assertThat(searches, hasSize(1));
+		assertThat(searches.get(0).getResourceType(), equalTo("Observation"));
+		assertThat(searches.get(0).getIdQueryMicros().getCount(), equalTo(1L));
+		assertThat(searches.get(0).getPageFetchMicros().getCount(), equalTo(1L));
+		assertThat(searches.get(0).getTranslationMicros().getCount(), equalTo(1L));
+		assertThat(searches.get(0).getIncludeMicros().getCount(), equalTo(1L));
+		assertThat(searches.get(0).getCardinality().getMax(), equalTo(1L));
+	}
+	
+	@Test
+	public void shouldPageUsingCursorsWhenKeysetPagingIsEnabled() {
+		Obs firstObs = new Obs(1);
+		Obs secondObs = new Obs(2);
+		Observation firstObservation = new Observation();
+		Observation secondObservation = new Observation();
+		SearchCursor firstKey = new SearchCursor(Collections.emptyList(), 1);
+		SearchCursor secondKey = new SearchCursor(Collections.emptyList(), 2);
+		
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_KEYSET_PAGING, "false")).thenReturn("true");
+		when(observationDao.isKeysetPageable(any())).thenReturn(true);
+		when(observationDao.getSearchResultKeys(any(), isNull(), eq(2))).thenReturn(Arrays.asList(firstKey, secondKey));
+		when(observationDao.getSearchResultKeys(any(), eq(secondKey), eq(2))).thenReturn(Collections.emptyList());
+		when(observationDao.getSearchResults(any(), eq(Arrays.asList(1, 2)))).thenReturn(Arrays.asList(firstObs, secondObs));
+		when(translator.toFhirResource(firstObs)).thenReturn(firstObservation);
+		when(translator.toFhirResource(secondObs)).thenReturn(secondObservation);
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		assertThat(searchQueryBundleProvider.size(), nullValue());
+		assertThat(searchQueryBundleProvider.getResources(0, 2), contains((IBaseResource) firstObservation, secondObservation));
+		assertThat(searchQueryBundleProvider.getNextPageId(), notNullValue());
+		
+		assertThat(searchQueryBundleProvider.getResources(2, 4), empty());
+		assertThat(searchQueryBundleProvider.size(), equalTo(2));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldResumeSearchFromPageId() {
+		SearchCursor firstKey = new SearchCursor(Collections.emptyList(), 1);
+		SearchCursor secondKey = new SearchCursor(Collections.emptyList(), 2);
+		
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_KEYSET_PAGING, "false")).thenReturn("true");
+		when(observationDao.isKeysetPageable(any())).thenReturn(true);
+		when(observationDao.getSearchResultKeys(any(), isNull(), eq(2))).thenReturn(Arrays.asList(firstKey, secondKey));
+		when(observationDao.getSearchResultKeys(any(), eq(secondKey), eq(2))).thenReturn(Collections.emptyList());
+		when(observationDao.getSearchResults(any(), any())).thenReturn(Collections.emptyList());
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		searchQueryBundleProvider.getResources(0, 2);
+		IBundleProvider nextPage = searchQueryBundleProvider.getPage(searchQueryBundleProvider.getNextPageId());
+		
+		assertThat(nextPage.getResources(0, 2), empty());
+		assertThat(nextPage.getNextPageId(), nullValue());
+		verify(observationDao).getSearchResultKeys(any(), eq(secondKey), eq(2));
+	}
+	
+	@Test(expected = InvalidRequestException.class)
+	public void shouldRejectInvalidPageId() {
+		searchQueryBundleProvider.getPage("not-a-page");
+	}
+	
+	@Test
+	public void shouldNotCountResultsWhenTotalModeIsNone() {
+		SearchQueryBundleProvider<Obs, Observation> provider = new SearchQueryBundleProvider<>(new SearchParameterMap(),
+		        observationDao, translator, globalPropertyService, searchQueryInclude, SearchTotalModeEnum.NONE);
+		
+		assertThat(provider.size(), nullValue());
+		verify(observationDao, never()).getSearchResultIds(any());
+		verify(observationDao, never()).getSearchResultCount(any());
+	}
+	
+	@Test
+	public void shouldCountResultsWhenTotalModeIsAccurate() {
+		SearchQueryBundleProvider<Obs, Observation> provider = new SearchQueryBundleProvider<>(new SearchParameterMap(),
+		        observationDao, translator, globalPropertyService, searchQueryInclude, SearchTotalModeEnum.ACCURATE);
+		when(observationDao.getSearchResultCount(any())).thenReturn(42);
+		
+		assertThat(provider.size(), equalTo(42));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldEstimateTotalUpToLimit() {
+		SearchQueryBundleProvider<Obs, Observation> provider = new SearchQueryBundleProvider<>(new SearchParameterMap(),
+		        observationDao, translator, globalPropertyService, searchQueryInclude, SearchTotalModeEnum.ESTIMATED);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_TOTAL_ESTIMATE_LIMIT, 1000)).thenReturn(2);
+		when(observationDao.getSearchResultCount(any(), eq(3))).thenReturn(2);
+		
+		assertThat(provider.size(), equalTo(2));
+		verify(observationDao, never()).getSearchResultIds(any(), anyInt(), anyInt());
+	}
+	
+	@Test
+	public void shouldOmitEstimatedTotalOverLimit() {
+		SearchQueryBundleProvider<Obs, Observation> provider = new SearchQueryBundleProvider<>(new SearchParameterMap(),
+		        observationDao, translator, globalPropertyService, searchQueryInclude, SearchTotalModeEnum.ESTIMATED);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_TOTAL_ESTIMATE_LIMIT, 1000)).thenReturn(2);
+		when(observationDao.getSearchResultCount(any(), eq(3))).thenReturn(3);
+		
+		assertThat(provider.size(), nullValue());
+		assertThat(provider.size(), nullValue());
+		verify(observationDao).getSearchResultCount(any(), eq(3));
+	}
+	
+	@Test
+	public void shouldOnlyLoadIdsForRequestedPageWhenTotalModeIsSet() {
+		Obs obs = new Obs(3);
+		Observation observation = new Observation();
+		SearchQueryBundleProvider<Obs, Observation> provider = new SearchQueryBundleProvider<>(new SearchParameterMap(),
+		        observationDao, translator, globalPropertyService, searchQueryInclude, SearchTotalModeEnum.NONE);
+		when(observationDao.getSearchResultIds(any(), eq(2), eq(2))).thenReturn(Collections.singletonList(3));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(3))))
+		        .thenReturn(Collections.singletonList(obs));
+		when(translator.toFhirResource(obs)).thenReturn(observation);
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		assertThat(provider.getResources(2, 4), contains((IBaseResource) observation));
+		assertThat(provider.size(), equalTo(3));
+		verify(observationDao, never()).getSearchResultIds(any());
+	}
+	
+	@Test
+	public void shouldShareIncludeCacheBetweenPages() {
+		Obs first = new Obs(1);
+		Obs second = new Obs(2);
+		when(observationDao.getSearchResultIds(any())).thenReturn(Arrays.asList(1, 2));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(1))))
+		        .thenReturn(Collections.singletonList(first));
+		when(observationDao.getSearchResults(any(), eq(Collections.singletonList(2))))
+		        .thenReturn(Collections.singletonList(second));
+		when(translator.toFhirResource(first)).thenReturn(new Observation());
+		when(translator.toFhirResource(second)).thenReturn(new Observation());
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_CACHE_SIZE, 500)).thenReturn(10);
+		when(searchQueryInclude.getIncludedResources(any(), any(), any(), any())).thenReturn(Collections.emptySet());
+		
+		searchQueryBundleProvider.getResources(0, 1);
+		searchQueryBundleProvider.getResources(1, 2);
+		
+		ArgumentCaptor<IncludeCache> includeCache = ArgumentCaptor.forClass(IncludeCache.class);
+		verify(searchQueryInclude, times(2)).getIncludedResources(any(), any(), any(), includeCache.capture());
+		assertThat(includeCache.getAllValues().get(0), sameInstance(includeCache.getAllValues().get(1)));
+		assertThat(includeCache.getValue().getMaximumSize(), equalTo(10));
+	}
 }
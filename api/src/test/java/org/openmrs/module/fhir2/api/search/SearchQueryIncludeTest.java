@@ -0,0 +1,182 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Location;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirLocationService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchQueryIncludeTest {
+	
+	@Mock
+	private FhirObservationService observationService;
+	
+	@Mock
+	private FhirEncounterService encounterService;
+	
+	@Mock
+	private FhirLocationService locationService;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Mock
+	private IBundleProvider reverseIncluded;
+	
+	@InjectMocks
+	private SearchQueryInclude<IBaseResource> searchQueryInclude;
+	
+	@Test
+	public void getIncludedResources_shouldStopReverseIncludingOnceTheLimitIsExceeded() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_REVERSE_INCLUDE_LIMIT,
+		    SearchQueryInclude.DEFAULT_REVERSE_INCLUDE_LIMIT)).thenReturn(1);
+		// only the reverse include searched first is expected to be used
+		lenient().when(observationService.searchForObservations(any())).thenReturn(reverseIncluded);
+		lenient().when(encounterService.searchForEncounters(any())).thenReturn(reverseIncluded);
+		when(reverseIncluded.getResources(anyInt(), anyInt()))
+		        .thenReturn(Arrays.asList(observation("obs-1"), observation("obs-2")));
+		SearchParameterMap theParams = reverseIncludes("Observation:patient", "Encounter:patient");
+		
+		SearchQueryInclude.PageIncludeState state = searchQueryInclude.newPageIncludeState();
+		Set<IBaseResource> included = searchQueryInclude
+		        .getIncludedResources(Collections.singletonList(patient("patient-1")), theParams, state);
+		
+		assertThat(included.size(), equalTo(2));
+		assertThat(included.stream().filter(resource -> resource instanceof OperationOutcome).count(), equalTo(1L));
+		
+		// another batch of the same page has nothing left to take, so is not searched for at all
+		assertThat(searchQueryInclude.getIncludedResources(Collections.singletonList(patient("patient-2")), theParams,
+		    state), empty());
+		
+		verify(reverseIncluded, times(1)).getResources(0, 2);
+	}
+	
+	@Test
+	public void getIncludedResources_shouldNotReverseIncludeResourcesAlreadyInThePage() {
+		when(observationService.searchForObservations(any())).thenReturn(reverseIncluded);
+		when(reverseIncluded.getResources(anyInt(), anyInt())).thenReturn(Collections.singletonList(observation("obs-1")))
+		        .thenReturn(Arrays.asList(observation("obs-1"), observation("obs-2")));
+		SearchParameterMap theParams = reverseIncludes("Observation:patient");
+		
+		SearchQueryInclude.PageIncludeState state = searchQueryInclude.newPageIncludeState();
+		assertThat(ids(searchQueryInclude.getIncludedResources(Collections.singletonList(patient("patient-1")),
+		    theParams, state)), contains("obs-1"));
+		assertThat(ids(searchQueryInclude.getIncludedResources(Collections.singletonList(patient("patient-2")),
+		    theParams, state)), contains("obs-2"));
+	}
+	
+	@Test
+	public void getIncludedResources_shouldApplyTheIterateLimitToTheWholePage() {
+		when(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_INCLUDE_ITERATE_LIMIT,
+		    SearchQueryInclude.DEFAULT_ITERATE_LIMIT)).thenReturn(1);
+		Map<String, Location> locations = new HashMap<>();
+		for (String[] parent : new String[][] { { "child-1", "parent-1" }, { "parent-1", "grandparent-1" },
+		        { "grandparent-1", "great-grandparent-1" }, { "child-2", "parent-2" }, { "parent-2", "grandparent-2" } }) {
+			locations.put(parent[0], location(parent[0], parent[1]));
+		}
+		when(locationService.get(anyCollection())).thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0))
+		        .stream().map(locations::get).filter(location -> location != null).collect(Collectors.toList()));
+		
+		HashSet<Include> includes = new HashSet<>();
+		includes.add(new Include("Location:partof", true));
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER,
+		    includes);
+		
+		SearchQueryInclude.PageIncludeState state = searchQueryInclude.newPageIncludeState();
+		List<IBaseResource> firstBatch = new ArrayList<>(searchQueryInclude
+		        .getIncludedResources(Collections.singletonList(locations.get("child-1")), theParams, state));
+		
+		// the parent is included by the page itself, the grandparent by iterating once
+		assertThat(firstBatch.size(), equalTo(3));
+		assertThat(ids(firstBatch.subList(0, 2)), contains("parent-1", "grandparent-1"));
+		assertThat(firstBatch.get(2), instanceOf(OperationOutcome.class));
+		
+		// the limit has been used up by the first batch, so the second is not iterated and not reported again
+		List<IBaseResource> secondBatch = new ArrayList<>(searchQueryInclude
+		        .getIncludedResources(Collections.singletonList(locations.get("child-2")), theParams, state));
+		
+		assertThat(ids(secondBatch), contains("parent-2"));
+		verify(locationService, never()).get(argThat((Collection<String> ids) -> ids.contains("grandparent-2")));
+	}
+	
+	private static SearchParameterMap reverseIncludes(String... revIncludes) {
+		HashSet<Include> includes = new HashSet<>();
+		for (String revInclude : revIncludes) {
+			includes.add(new Include(revInclude));
+		}
+		
+		return new SearchParameterMap().addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, includes);
+	}
+	
+	private static List<String> ids(Collection<IBaseResource> resources) {
+		return resources.stream().map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+	
+	private static Patient patient(String id) {
+		Patient patient = new Patient();
+		patient.setId(id);
+		return patient;
+	}
+	
+	private static Observation observation(String id) {
+		Observation observation = new Observation();
+		observation.setId(id);
+		return observation;
+	}
+	
+	private static Location location(String id, String parentId) {
+		Location location = new Location();
+		location.setId(id);
+		location.getPartOf().setReference("Location/" + parentId);
+		return location;
+	}
+}
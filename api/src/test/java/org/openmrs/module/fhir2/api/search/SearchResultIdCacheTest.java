@@ -0,0 +1,178 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.impl.FhirPatientDaoImpl;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SearchResultIdCacheTest {
+	
+	private static final String REGION = "patients";
+	
+	private static final Set<String> DEPENDENCIES = new HashSet<>(Arrays.asList("org.openmrs.Patient",
+	    "org.openmrs.PersonName"));
+	
+	@Mock
+	private FhirContext fhirContext;
+	
+	private final AtomicLong now = new AtomicLong(1);
+	
+	private final AtomicInteger loads = new AtomicInteger();
+	
+	private SearchResultIdCache cache;
+	
+	@Before
+	public void setup() {
+		cache = new SearchResultIdCache(now::get);
+		cache.setFhirContext(fhirContext);
+	}
+	
+	@Test
+	public void toCacheKey_shouldIgnoreOrderOfParametersAndValues() {
+		SearchParameterMap first = new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY, new StringAndListParam()
+		                .addAnd(new StringOrListParam().add(new StringParam("John")).add(new StringParam("Jane"))))
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, "gender",
+		            new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam("male"))));
+		SearchParameterMap second = new SearchParameterMap()
+		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, "gender",
+		            new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam("male"))))
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY, new StringAndListParam()
+		                .addAnd(new StringOrListParam().add(new StringParam("Jane")).add(new StringParam("John"))));
+		
+		assertThat(cache.toCacheKey(FhirPatientDaoImpl.class, first),
+		    equalTo(cache.toCacheKey(FhirPatientDaoImpl.class, second)));
+	}
+	
+	@Test
+	public void toCacheKey_shouldDistinguishValuesModifiersAndSorts() {
+		String key = cache.toCacheKey(FhirPatientDaoImpl.class, nameSearch(new StringParam("John")));
+		
+		assertThat(cache.toCacheKey(FhirPatientDaoImpl.class, nameSearch(new StringParam("Jane"))), not(equalTo(key)));
+		assertThat(cache.toCacheKey(FhirPatientDaoImpl.class, nameSearch(new StringParam("John", true))),
+		    not(equalTo(key)));
+		assertThat(cache.toCacheKey(FhirPatientDaoImpl.class,
+		    nameSearch(new StringParam("John")).setSortSpec(new SortSpec("name", SortOrderEnum.DESC))), not(equalTo(key)));
+	}
+	
+	@Test
+	public void toCacheKey_shouldReturnNullForParametersWithoutCanonicalForm() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter("unknown", new Date());
+		
+		assertThat(cache.toCacheKey(FhirPatientDaoImpl.class, theParams), nullValue());
+	}
+	
+	@Test
+	public void shouldServeRepeatedSearchFromCache() {
+		assertThat(cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(1, 2, 3)), contains(1, 2, 3));
+		assertThat(cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(4)), contains(1, 2, 3));
+		
+		assertThat(loads.get(), equalTo(1));
+		assertThat(cache.getHitCount(), equalTo(1L));
+		assertThat(cache.getMissCount(), equalTo(1L));
+		assertThat(cache.getHitRatio(), closeTo(0.5, 0.001));
+	}
+	
+	@Test
+	public void shouldDiscardSearchesWhenDependencyChanges() {
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(1, 2, 3));
+		cache.getSearchResultIds("other", Collections.singleton("org.openmrs.Location"), "other", load(5));
+		
+		cache.invalidate("org.openmrs.PersonName");
+		
+		assertThat(cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(1, 2)), contains(1, 2));
+		assertThat(cache.getSearchResultIds("other", Collections.singleton("org.openmrs.Location"), "other", load(6)),
+		    contains(5));
+		assertThat(cache.getInvalidationCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void shouldNotCacheSearchWhenDependencyChangesWhileItRuns() {
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "key", () -> {
+			cache.invalidate("org.openmrs.Patient");
+			return Arrays.asList(1, 2);
+		});
+		
+		assertThat(cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(1, 2, 3)), contains(1, 2, 3));
+	}
+	
+	@Test
+	public void shouldExpireSearchesAfterTimeToLive() {
+		cache.setTimeToLive(100);
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(1));
+		
+		now.addAndGet(100);
+		
+		assertThat(cache.getSearchResultIds(REGION, DEPENDENCIES, "key", load(2)), contains(2));
+		assertThat(loads.get(), equalTo(2));
+	}
+	
+	@Test
+	public void shouldEvictLeastRecentlyUsedSearchesWhenOverMaximumSize() {
+		// room for two entries with single ids and three-character keys
+		cache.setMaximumSize(2 * (SearchResultIdCache.ENTRY_WEIGHT + 6 + 20));
+		
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "one", load(1));
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "two", load(2));
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "one", load(1));
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "six", load(6));
+		
+		assertThat(cache.getCachedSearchCount(), equalTo(2));
+		assertThat(cache.getEvictionCount(), equalTo(1L));
+		
+		cache.getSearchResultIds(REGION, DEPENDENCIES, "one", load(1));
+		assertThat(loads.get(), equalTo(3));
+	}
+	
+	private SearchParameterMap nameSearch(StringParam name) {
+		return new SearchParameterMap().addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY,
+		    new StringAndListParam().addAnd(new StringOrListParam().add(name)));
+	}
+	
+	private Supplier<List<Integer>> load(Integer... ids) {
+		return () -> {
+			loads.incrementAndGet();
+			return Arrays.asList(ids);
+		};
+	}
+}
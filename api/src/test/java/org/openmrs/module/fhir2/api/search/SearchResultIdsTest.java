@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SearchResultIdsTest {
+	
+	@Test
+	public void shouldPreserveResultOrderAndRemoveDuplicates() {
+		SearchResultIds ids = SearchResultIds.of(Arrays.asList(5, 3, 5, 9, 3, 1));
+		
+		assertThat(ids, contains(5, 3, 9, 1));
+		assertThat(ids.isBitmap(), is(false));
+	}
+	
+	@Test
+	public void shouldRemoveDuplicatesOnceIdsAreOutOfOrder() {
+		SearchResultIds.Builder builder = new SearchResultIds.Builder();
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			builder.add(i);
+			expected.add(i);
+		}
+		
+		for (int i = 2999; i >= 0; i--) {
+			builder.add(i);
+			if (i >= 1000) {
+				expected.add(i);
+			}
+		}
+		
+		assertThat(builder.size(), equalTo(3000));
+		assertThat(builder.build(), equalTo(expected));
+	}
+	
+	@Test
+	public void shouldStoreDenseAscendingIdsAsBitmap() {
+		SearchResultIds.Builder builder = new SearchResultIds.Builder();
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 1; i <= 10000; i++) {
+			builder.add(i);
+			expected.add(i);
+		}
+		
+		SearchResultIds ids = builder.build();
+		
+		assertThat(ids.isBitmap(), is(true));
+		assertThat(ids, equalTo(expected));
+		assertThat(ids.getByteSize(), lessThan(4L * expected.size()));
+	}
+	
+	@Test
+	public void shouldSupportPositionalAccessIntoBitmap() {
+		SearchResultIds.Builder builder = new SearchResultIds.Builder();
+		for (int i = 0; i < 1000; i++) {
+			builder.add(i * 3);
+		}
+		
+		SearchResultIds ids = builder.build();
+		
+		assertThat(ids.isBitmap(), is(true));
+		assertThat(ids.getInt(0), equalTo(0));
+		assertThat(ids.getInt(64), equalTo(192));
+		assertThat(ids.getInt(999), equalTo(2997));
+		assertThat(ids.subList(130, 133), contains(390, 393, 396));
+	}
+	
+	@Test
+	public void shouldStoreSparseAscendingIdsAsArray() {
+		SearchResultIds ids = SearchResultIds.of(Arrays.asList(1, 1000000, 2000000));
+		
+		assertThat(ids.isBitmap(), is(false));
+		assertThat(ids, contains(1, 1000000, 2000000));
+	}
+	
+	@Test
+	public void shouldReturnEmptyIds() {
+		assertThat(SearchResultIds.of(Collections.emptyList()), empty());
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void shouldThrowWhenIndexIsOutOfBounds() {
+		SearchResultIds.of(Arrays.asList(1, 2)).get(2);
+	}
+}
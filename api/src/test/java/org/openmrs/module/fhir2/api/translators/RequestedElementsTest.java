@@ -0,0 +1,86 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class RequestedElementsTest {
+	
+	@Test
+	public void shouldRequestEverythingByDefault() {
+		assertThat(RequestedElements.all().isAll(), is(true));
+		assertThat(RequestedElements.all().isRequested("Patient", "telecom"), is(true));
+	}
+	
+	@Test
+	public void shouldRequestEverythingWhenNoElementsAreNamed() {
+		assertThat(RequestedElements.of("Patient", Arrays.asList("", " "), false), sameInstance(RequestedElements.all()));
+	}
+	
+	@Test
+	public void shouldOnlyRequestNamedElementsOfTheRequestedResourceType() {
+		RequestedElements elements = RequestedElements.of("Patient", Arrays.asList("name", " gender "), false);
+		
+		assertThat(elements.isAll(), is(false));
+		assertThat(elements.isRequested("Patient", "name"), is(true));
+		assertThat(elements.isRequested("Patient", "gender"), is(true));
+		assertThat(elements.isRequested("Patient", "telecom"), is(false));
+		assertThat(elements.isRequested("Observation", "code"), is(true));
+	}
+	
+	@Test
+	public void shouldApplyQualifiedElementsToTheirResourceType() {
+		RequestedElements elements = RequestedElements.of("Patient", Arrays.asList("Patient.name", "Observation.code"),
+		    false);
+		
+		assertThat(elements.isRequested("Patient", "name"), is(true));
+		assertThat(elements.isRequested("Patient", "telecom"), is(false));
+		assertThat(elements.isRequested("Observation", "code"), is(true));
+		assertThat(elements.isRequested("Observation", "value"), is(false));
+	}
+	
+	@Test
+	public void shouldApplyWildcardElementsToEveryResourceType() {
+		RequestedElements elements = RequestedElements.of(null, Collections.singletonList("*.identifier"), false);
+		
+		assertThat(elements.isRequested("Patient", "identifier"), is(true));
+		assertThat(elements.isRequested("Patient", "name"), is(false));
+		assertThat(elements.isRequested("Practitioner", "name"), is(false));
+	}
+	
+	@Test
+	public void shouldIgnoreUnqualifiedElementsWithoutResourceType() {
+		assertThat(RequestedElements.of(null, Collections.singletonList("name"), false).isAll(), is(true));
+	}
+	
+	@Test
+	public void shouldOnlyTrackTopLevelElements() {
+		RequestedElements elements = RequestedElements.of("Patient", Arrays.asList("name.given", "deceased[x]"), false);
+		
+		assertThat(elements.isRequested("Patient", "name"), is(true));
+		assertThat(elements.isRequested("Patient", "deceased"), is(true));
+		assertThat(elements.isRequested("Patient", "gender"), is(false));
+	}
+	
+	@Test
+	public void shouldRequestEverythingButExcludedElements() {
+		RequestedElements elements = RequestedElements.of("Patient", Collections.singletonList("telecom"), true);
+		
+		assertThat(elements.isRequested("Patient", "telecom"), is(false));
+		assertThat(elements.isRequested("Patient", "name"), is(true));
+	}
+}
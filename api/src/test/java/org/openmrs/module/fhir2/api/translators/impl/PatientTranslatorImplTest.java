@@ -19,11 +19,15 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -50,6 +54,7 @@ import org.openmrs.PersonAddress;
 import org.openmrs.PersonAttribute;
 import org.openmrs.PersonAttributeType;
 import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirPersonDao;
 import org.openmrs.module.fhir2.api.translators.BirthDateTranslator;
@@ -57,6 +62,7 @@ import org.openmrs.module.fhir2.api.translators.GenderTranslator;
 import org.openmrs.module.fhir2.api.translators.PatientIdentifierTranslator;
 import org.openmrs.module.fhir2.api.translators.PersonAddressTranslator;
 import org.openmrs.module.fhir2.api.translators.PersonNameTranslator;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
 import org.openmrs.module.fhir2.api.translators.TelecomTranslator;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -440,4 +446,44 @@ public class PatientTranslatorImplTest {
 		assertThat(result.getBirthDateElement().getYear(), equalTo(dateType.getYear()));
 		assertThat(result.getBirthDateElement().getMonth(), equalTo(dateType.getMonth()));
 	}
+	
+	@Test
+	public void shouldOnlyTranslateRequestedElements() {
+		HumanName humanName = new HumanName();
+		humanName.setFamily(PATIENT_FAMILY_NAME);
+		when(nameTranslator.toFhirResource(argThat(hasProperty("familyName", equalTo(PATIENT_FAMILY_NAME)))))
+		        .thenReturn(humanName);
+		
+		org.openmrs.Patient patient = new org.openmrs.Patient();
+		patient.setUuid(PATIENT_UUID);
+		patient.addName(new PersonName(PATIENT_GIVEN_NAME, null, PATIENT_FAMILY_NAME));
+		PatientIdentifier patientIdentifier = new PatientIdentifier();
+		patientIdentifier.setUuid(PATIENT_IDENTIFIER_UUID);
+		patient.addIdentifier(patientIdentifier);
+		PersonAddress address = new PersonAddress();
+		address.setUuid(ADDRESS_UUID);
+		patient.addAddress(address);
+		
+		Patient result = patientTranslator.toFhirResource(patient,
+		    RequestedElements.of("Patient", Arrays.asList("name", "gender"), false));
+		
+		assertThat(result.getIdElement().getIdPart(), equalTo(PATIENT_UUID));
+		assertThat(result.getName(), hasItem(hasProperty("family", equalTo(PATIENT_FAMILY_NAME))));
+		assertThat(result.getIdentifier(), empty());
+		assertThat(result.getAddress(), empty());
+		assertThat(result.hasDeceased(), is(false));
+		assertThat(result.getTelecom(), empty());
+		verifyNoInteractions(identifierTranslator, addressTranslator, fhirPersonDao, globalPropertyService);
+	}
+	
+	@Test
+	public void shouldLoadContactDetailsWhenTelecomIsRequested() {
+		org.openmrs.Patient patient = new org.openmrs.Patient();
+		
+		Patient result = patientTranslator.toFhirResource(patient,
+		    RequestedElements.of("Patient", Collections.singletonList("telecom"), false));
+		
+		assertThat(result.getTelecom(), empty());
+		verify(globalPropertyService).getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE);
+	}
 }
@@ -0,0 +1,87 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.providers.r4;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.DecimalType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.metrics.SearchMetrics;
+import org.openmrs.util.PrivilegeConstants;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Context.class)
+@PowerMockIgnore({ "javax.management.*", "javax.xml.*", "org.xml.*", "org.w3c.*" })
+public class MetricsProviderTest {
+	
+	private SearchMetrics searchMetrics;
+	
+	private MetricsProvider metricsProvider;
+	
+	@Before
+	public void setup() {
+		searchMetrics = new SearchMetrics();
+		metricsProvider = new MetricsProvider();
+		metricsProvider.setSearchMetrics(searchMetrics);
+		PowerMockito.mockStatic(Context.class);
+	}
+	
+	@Test(expected = APIAuthenticationException.class)
+	public void shouldRequireThePrivilegeToViewAdministrationFunctions() throws Exception {
+		PowerMockito.doThrow(new APIAuthenticationException()).when(Context.class, "requirePrivilege",
+		    PrivilegeConstants.VIEW_ADMIN_FUNCTIONS);
+		
+		metricsProvider.getMetrics();
+	}
+	
+	@Test
+	public void shouldReturnNoSearchesBeforeAnyAreRecorded() {
+		assertThat(metricsProvider.getMetrics().getParameter(), empty());
+	}
+	
+	@Test
+	public void shouldReturnMetricsOfEachSearchShape() {
+		searchMetrics.recordCardinality("Patient", "gender,name:given", 7);
+		
+		List<Parameters.ParametersParameterComponent> searches = metricsProvider.getMetrics().getParameter();
+		
+		assertThat(searches, hasSize(1));
+		Parameters.ParametersParameterComponent search = searches.get(0);
+		assertThat(search.getName(), equalTo("search"));
+		assertThat(getPart(search, "resourceType").getValue().primitiveValue(), equalTo("Patient"));
+		assertThat(getPart(search, "shape").getValue().primitiveValue(), equalTo("gender,name:given"));
+		
+		Parameters.ParametersParameterComponent cardinality = getPart(search, "cardinality");
+		assertThat(((DecimalType) getPart(cardinality, "count").getValue()).getValue(), equalTo(BigDecimal.ONE));
+		assertThat(((DecimalType) getPart(cardinality, "max").getValue()).getValue(), equalTo(BigDecimal.valueOf(7)));
+		assertThat(getPart(getPart(search, "idQueryMicros"), "count").getValue().primitiveValue(), equalTo("0"));
+	}
+	
+	private static Parameters.ParametersParameterComponent getPart(Parameters.ParametersParameterComponent parameter,
+	        String name) {
+		return parameter.getPart().stream().filter(part -> name.equals(part.getName())).findFirst()
+		        .orElseThrow(() -> new AssertionError("No part named " + name));
+	}
+}
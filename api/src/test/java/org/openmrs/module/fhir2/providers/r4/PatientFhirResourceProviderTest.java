@@ -483,10 +483,10 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 	
 	@Test
 	public void searchForPatients_shouldReturnPatientEverything() {
-		when(patientService.getPatientEverything(any()))
+		when(patientService.getPatientEverything(any(), any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
-		IBundleProvider results = resourceProvider.getPatientEverything(new IdType(PATIENT_UUID));
+		IBundleProvider results = resourceProvider.getPatientEverything(new IdType(PATIENT_UUID), null, null, null);
 		
 		List<IBaseResource> resultList = getAllResources(results);
 		
@@ -498,31 +498,31 @@ public class PatientFhirResourceProviderTest extends BaseFhirProvenanceResourceT
 	
 	@Test
 	public void searchForPatients_shouldReturnNullForPatientEverythingWhenIdParamIsMissing() {
-		IBundleProvider results = resourceProvider.getPatientEverything(null);
+		IBundleProvider results = resourceProvider.getPatientEverything(null, null, null, null);
 		
 		assertThat(results, nullValue());
 	}
 	
 	@Test
 	public void searchForPatients_shouldReturnNullForPatientEverythingWhenIdPartIsMissingInIdParam() {
-		IBundleProvider results = resourceProvider.getPatientEverything(new IdType());
+		IBundleProvider results = resourceProvider.getPatientEverything(new IdType(), null, null, null);
 		
 		assertThat(results, nullValue());
 	}
 	
 	@Test
 	public void searchForPatients_shouldReturnNullPatientEverythingWhenIdPartIsEmptyInIdParam() {
-		IBundleProvider results = resourceProvider.getPatientEverything(new IdType(""));
+		IBundleProvider results = resourceProvider.getPatientEverything(new IdType(""), null, null, null);
 		
 		assertThat(results, nullValue());
 	}
 	
 	@Test
 	public void searchForPatients_shouldReturnPatientEverythingForTypeLevel() {
-		when(patientService.getPatientEverything())
+		when(patientService.getPatientEverything(any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
-		IBundleProvider results = resourceProvider.getPatientEverything();
+		IBundleProvider results = resourceProvider.getPatientEverything(null, null, null);
 		
 		List<IBaseResource> resultList = getAllResources(results);
 		
@@ -0,0 +1,140 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.testdata;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.model.FhirTask;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class ClinicalDataGeneratorTest extends BaseModuleContextSensitiveTest {
+	
+	private static final int FIRST_ID = 1_000_000;
+	
+	private static final int PATIENTS = 20;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private ClinicalDataGenerator generator;
+	
+	@Before
+	public void setup() {
+		generator = new ClinicalDataGenerator(42).patients(PATIENTS).visitsPerPatient(2).encountersPerVisit(3)
+		        .obsPerEncounter(4).obsGroupsPerEncounter(1, 2).drugOrdersPerPatient(1).testOrdersPerPatient(2)
+		        .cohorts(2, 5).firstId(FIRST_ID).batchSize(50);
+	}
+	
+	@Test
+	public void shouldWriteTheConfiguredNumberOfRowsToEachTable() {
+		Map<String, Long> rows = sessionFactory.getCurrentSession().doReturningWork(generator::generate);
+		
+		assertThat(rows.get("person"), equalTo(20L));
+		assertThat(rows.get("patient_identifier"), equalTo(20L));
+		assertThat(rows.get("visit"), equalTo(40L));
+		assertThat(rows.get("encounter"), equalTo(120L));
+		assertThat(rows.get("obs"), equalTo(120L * (4 + 1 + 2)));
+		assertThat(rows.get("orders"), equalTo(60L));
+		assertThat(rows.get("drug_order"), equalTo(20L));
+		assertThat(rows.get("test_order"), equalTo(40L));
+		assertThat(rows.get("fhir_task"), equalTo(40L));
+		assertThat(rows.get("cohort"), equalTo(2L));
+		assertThat(rows.get("cohort_member"), equalTo(10L));
+		assertThat(count("SELECT COUNT(*) FROM obs WHERE obs_id > " + FIRST_ID), equalTo(rows.get("obs")));
+	}
+	
+	@Test
+	public void shouldWriteRowsThatHibernateCanLoad() {
+		sessionFactory.getCurrentSession().doReturningWork(generator::generate);
+		
+		Patient patient = sessionFactory.getCurrentSession().get(Patient.class, FIRST_ID + 1);
+		assertThat(patient, notNullValue());
+		assertThat(patient.getPatientIdentifier().getIdentifier(), equalTo("GEN-1"));
+		assertThat(patient.getPersonName(), notNullValue());
+		
+		// the first obs group follows the four plain obs of the first encounter
+		Obs group = sessionFactory.getCurrentSession().get(Obs.class, FIRST_ID + 5);
+		assertThat(group.isObsGrouping(), equalTo(true));
+		assertThat(group.getGroupMembers(), hasSize(2));
+		
+		FhirTask task = sessionFactory.getCurrentSession().get(FhirTask.class, FIRST_ID + 1);
+		assertThat(task.getBasedOnReferences(), hasSize(1));
+		assertThat(task.getBasedOnReferences().iterator().next().getType(), equalTo("ServiceRequest"));
+	}
+	
+	@Test
+	public void shouldGenerateTheSameDataForTheSameSeed() {
+		List<String> first = generateAndRollBack(new ClinicalDataGenerator(42).patients(PATIENTS).firstId(FIRST_ID));
+		List<String> second = generateAndRollBack(new ClinicalDataGenerator(42).patients(PATIENTS).firstId(FIRST_ID));
+		List<String> other = generateAndRollBack(new ClinicalDataGenerator(7).patients(PATIENTS).firstId(FIRST_ID));
+		
+		assertThat(first, hasSize(PATIENTS * 2));
+		assertThat(second, equalTo(first));
+		assertThat(other, not(equalTo(first)));
+	}
+	
+	private List<String> generateAndRollBack(ClinicalDataGenerator generator) {
+		return sessionFactory.getCurrentSession().doReturningWork(connection -> {
+			Savepoint savepoint = connection.setSavepoint();
+			try {
+				generator.generate(connection);
+				List<String> rows = new ArrayList<>();
+				try (Statement statement = connection.createStatement();
+				        ResultSet resultSet = statement.executeQuery("SELECT p.uuid, n.given_name || ' ' || n.family_name "
+				                + "FROM person p JOIN person_name n ON n.person_id = p.person_id WHERE p.person_id > "
+				                + FIRST_ID + " ORDER BY p.person_id")) {
+					while (resultSet.next()) {
+						rows.add(resultSet.getString(1));
+						rows.add(resultSet.getString(2));
+					}
+				}
+				return rows;
+			}
+			finally {
+				connection.rollback(savepoint);
+			}
+		});
+	}
+	
+	private long count(String sql) {
+		return sessionFactory.getCurrentSession().doReturningWork(connection -> queryForLong(connection, sql));
+	}
+	
+	private static long queryForLong(Connection connection, String sql) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Obs;
+
+/**
+ * Measures the cost of putting a page of search results back into the order of their ids, comparing
+ * {@link BaseFhirDao#orderByIds(List, List)} with sorting by {@link List#indexOf(Object)}. The time
+ * taken by the former should grow linearly with the size of the page, while the latter grows with
+ * its square.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchResultOrderingBenchmark {
+	
+	@Param({ "100", "1000", "10000" })
+	public int size;
+	
+	private List<Integer> ids;
+	
+	private List<Obs> results;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		
+		ids = new ArrayList<>(size);
+		results = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			ids.add(i * 3);
+			Obs obs = new Obs();
+			obs.setId(i * 3);
+			results.add(obs);
+		}
+		
+		Collections.shuffle(ids, random);
+		Collections.shuffle(results, random);
+	}
+	
+	@Benchmark
+	public List<Obs> positionIndex() {
+		return BaseFhirDao.orderByIds(results, ids);
+	}
+	
+	@Benchmark
+	public List<Obs> indexOfSort() {
+		List<Obs> sorted = new ArrayList<>(results);
+		sorted.sort(Comparator.comparingInt(r -> ids.indexOf(r.getId())));
+		return sorted;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.db.ContextDAO;
+
+/**
+ * Measures how long the _include and _revinclude branches of a page take when run one after another
+ * and when run by {@link IncludeBranchExecutor}. Each branch waits for a simulated database round
+ * trip, so the parallel time should approach that of a single branch as long as there are enough
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncludeBranchExecutorBenchmark {
+	
+	@Param({ "2", "4", "8" })
+	public int branchCount;
+	
+	@Param({ "5" })
+	public int roundTripMillis;
+	
+	private IncludeBranchExecutor executor;
+	
+	private List<Supplier<Integer>> branches;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		// the branches open sessions of their own, which only need to exist rather than reach a database
+		new Context().setContextDAO(mock(ContextDAO.class));
+		Context.openSession();
+		
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		when(sessionFactory.getCurrentSession()).thenReturn(mock(Session.class));
+		
+		executor = new IncludeBranchExecutor();
+		executor.setSessionFactory(sessionFactory);
+		branches = Collections.nCopies(branchCount, this::simulateRoundTrip);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdown();
+		Context.closeSession();
+	}
+	
+	@Benchmark
+	public List<Integer> serial() {
+		return branches.stream().map(Supplier::get).collect(Collectors.toList());
+	}
+	
+	@Benchmark
+	public List<Integer> parallel() {
+		return executor.invokeAll(branches);
+	}
+	
+	private Integer simulateRoundTrip() {
+		try {
+			Thread.sleep(roundTripMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		return 1;
+	}
+}
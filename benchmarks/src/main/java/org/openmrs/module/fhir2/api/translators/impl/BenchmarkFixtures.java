@@ -0,0 +1,601 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.fhir.ucum.UcumEssenceService;
+import org.fhir.ucum.UcumException;
+import org.fhir.ucum.UcumService;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Task;
+import org.openmrs.Concept;
+import org.openmrs.ConceptClass;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptMapType;
+import org.openmrs.ConceptName;
+import org.openmrs.ConceptNumeric;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.Encounter;
+import org.openmrs.EncounterRole;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.LocationAttribute;
+import org.openmrs.LocationAttributeType;
+import org.openmrs.Obs;
+import org.openmrs.Order;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.Person;
+import org.openmrs.PersonAddress;
+import org.openmrs.PersonAttribute;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.PersonName;
+import org.openmrs.Provider;
+import org.openmrs.TestOrder;
+import org.openmrs.Visit;
+import org.openmrs.VisitType;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.ObsService;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.messagesource.MessageSourceService;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirConceptService;
+import org.openmrs.module.fhir2.api.FhirConceptSourceService;
+import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirPatientIdentifierSystemService;
+import org.openmrs.module.fhir2.api.FhirTaskService;
+import org.openmrs.module.fhir2.api.dao.FhirPersonDao;
+import org.openmrs.module.fhir2.api.mappings.EncounterClassMap;
+import org.openmrs.module.fhir2.api.mappings.ObservationCategoryMap;
+import org.openmrs.util.LocaleUtility;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * Builds the translators exercised by the benchmarks, wired to each other as they are in a running
+ * server, and the in-memory OpenMRS object graphs they translate. The graphs are shaped like the
+ * records of a long-running installation: patients with several names, identifiers, addresses and
+ * contact numbers, concepts mapped to many reference terms and encounters with many providers.
+ * Their size grows with a {@code scale} factor so the cost of each collection shows up in the
+ * results.
+ * <p/>
+ * Services and DAOs which would query the database are replaced with stubs which answer from the
+ * object graph itself, so the measurements only cover the translation work.
+ */
+@Slf4j
+final class BenchmarkFixtures {
+	
+	static final String FACILITY_CODE = "C1022";
+	
+	static final String ORDER_NUMBER = "ORD-1234";
+	
+	private static final long BASE_DATE = 1_577_836_800_000L; // 2020-01-01T00:00:00Z
+	
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+	
+	private static final Map<ConceptSource, String> CONCEPT_SOURCE_URLS = new LinkedHashMap<>();
+	
+	private static final List<ConceptSource> CONCEPT_SOURCES = new ArrayList<>();
+	
+	private static final Map<PatientIdentifierType, String> IDENTIFIER_SYSTEM_URLS = new LinkedHashMap<>();
+	
+	private static final List<PatientIdentifierType> IDENTIFIER_TYPES = new ArrayList<>();
+	
+	private static final ConceptMapType SAME_AS = newConceptMapType(ConceptMapType.SAME_AS_MAP_TYPE_UUID, "SAME-AS");
+	
+	private static final ConceptMapType NARROWER_THAN = newConceptMapType("43ac5109-7d8c-11e1-909d-c80aa9edcf4e",
+	    "NARROWER-THAN");
+	
+	private static final ConceptClass TEST_CLASS = new ConceptClass();
+	
+	private static final PersonAttributeType PHONE_NUMBER = newPersonAttributeType("Telephone Number");
+	
+	private static final PersonAttributeType NEXT_OF_KIN_PHONE_NUMBER = newPersonAttributeType("Next of Kin Phone Number");
+	
+	private static final PersonAttributeType SA_PHONE_NUMBER = newPersonAttributeType("South African Phone Number");
+	
+	private static final EncounterType ADULT_RETURN = new EncounterType("Adult Return", "Routine adult follow-up");
+	
+	private static final EncounterRole CLINICIAN = new EncounterRole();
+	
+	private static final VisitType OUTPATIENT = new VisitType("Outpatient", "Visit to the outpatient department");
+	
+	private static final Location FACILITY = new Location();
+	
+	private static final Location WARD = new Location();
+	
+	static {
+		addConceptSource("CIEL", "https://cielterminology.org");
+		addConceptSource("LOINC", "http://loinc.org");
+		addConceptSource("SNOMED CT", "http://snomed.info/sct");
+		addConceptSource("PIH", "https://openconceptlab.org/orgs/PIH/sources/PIH");
+		addConceptSource("AMPATH", "https://openconceptlab.org/orgs/AMPATH/sources/AMPATH");
+		
+		addIdentifierType("OpenMRS ID", "http://openmrs.org/identifier");
+		addIdentifierType("Omang", "http://gov.bw/omang");
+		addIdentifierType("ART Number", null);
+		addIdentifierType("Old Identification Number", null);
+		
+		TEST_CLASS.setUuid("8d4907b2-c2cc-11de-8d13-0010c6dffd0f");
+		TEST_CLASS.setName("Test");
+		
+		CLINICIAN.setName("Clinician");
+		
+		LocationAttributeType facilityCodeType = new LocationAttributeType();
+		facilityCodeType.setName("Facility Code");
+		
+		LocationAttribute facilityCode = new LocationAttribute();
+		facilityCode.setAttributeType(facilityCodeType);
+		facilityCode.setValueReferenceInternal(FACILITY_CODE);
+		
+		FACILITY.setName("Princess Marina Hospital");
+		FACILITY.addAttribute(facilityCode);
+		
+		WARD.setName("Outpatient Department");
+		WARD.setParentLocation(FACILITY);
+	}
+	
+	private BenchmarkFixtures() {
+	}
+	
+	/**
+	 * Prepares the parts of the OpenMRS context the translators reach for statically. Metadata names
+	 * are localized through {@code Context.getMessageSourceService()}; outside of a running server
+	 * every lookup fails and logs a stack trace, which would dominate the measurements, so a message
+	 * source which never finds a translation is installed instead.
+	 */
+	static void initializeContext() {
+		LocaleUtility.setLocalesAllowedListCache(Collections.singletonList(Locale.ENGLISH));
+		
+		try {
+			ServiceContext.getInstance().setMessageSourceService(
+			    (MessageSourceService) new ProxyFactory(stub(MessageSourceService.class)).getProxy());
+		}
+		catch (RuntimeException e) {
+			log.warn("Unable to install a message source service, metadata names will not be localized", e);
+		}
+	}
+	
+	static ConceptTranslatorImpl newConceptTranslator() {
+		FhirConceptSourceService conceptSourceService = stub(FhirConceptSourceService.class);
+		when(conceptSourceService.getUrlForConceptSource(any()))
+		        .thenAnswer(invocation -> CONCEPT_SOURCE_URLS.get(invocation.getArgument(0)));
+		
+		ConceptTranslatorImpl conceptTranslator = new ConceptTranslatorImpl();
+		conceptTranslator.setConceptService(stub(FhirConceptService.class));
+		conceptTranslator.setConceptSourceService(conceptSourceService);
+		return conceptTranslator;
+	}
+	
+	static PatientTranslatorImpl newPatientTranslator() {
+		FhirPatientIdentifierSystemService identifierSystemService = stub(FhirPatientIdentifierSystemService.class);
+		when(identifierSystemService.getUrlByPatientIdentifierType(any()))
+		        .thenAnswer(invocation -> IDENTIFIER_SYSTEM_URLS.get(invocation.getArgument(0)));
+		
+		PatientIdentifierTranslatorImpl identifierTranslator = new PatientIdentifierTranslatorImpl();
+		identifierTranslator.setPatientIdentifierSystemService(identifierSystemService);
+		
+		FhirGlobalPropertyService globalPropertyService = stub(FhirGlobalPropertyService.class);
+		when(globalPropertyService.getGlobalProperty(FhirConstants.PERSON_CONTACT_POINT_ATTRIBUTE_TYPE))
+		        .thenReturn(PHONE_NUMBER.getUuid());
+		when(globalPropertyService.getGlobalProperty("otherContactPersonAttributeUUID"))
+		        .thenReturn(NEXT_OF_KIN_PHONE_NUMBER.getUuid());
+		when(globalPropertyService.getGlobalProperty("saNumberAttributeUUID")).thenReturn(SA_PHONE_NUMBER.getUuid());
+		
+		// answers like the query it replaces: a fresh list of the person's active attributes of the requested type
+		FhirPersonDao personDao = stub(FhirPersonDao.class);
+		when(personDao.getActiveAttributesByPersonAndAttributeTypeUuid(any(), any())).thenAnswer(invocation -> {
+			Person person = invocation.getArgument(0);
+			String attributeTypeUuid = invocation.getArgument(1);
+			return person.getActiveAttributes().stream()
+			        .filter(attribute -> attribute.getAttributeType().getUuid().equals(attributeTypeUuid))
+			        .collect(Collectors.toList());
+		});
+		
+		PatientTranslatorImpl patientTranslator = new PatientTranslatorImpl();
+		patientTranslator.setIdentifierTranslator(identifierTranslator);
+		patientTranslator.setNameTranslator(new PersonNameTranslatorImpl());
+		patientTranslator.setGenderTranslator(new GenderTranslatorImpl());
+		patientTranslator.setBirthDateTranslator(new BirthDateTranslatorImpl());
+		patientTranslator.setAddressTranslator(new PersonAddressTranslatorImpl());
+		patientTranslator.setGlobalPropertyService(globalPropertyService);
+		patientTranslator.setFhirPersonDao(personDao);
+		patientTranslator.setTelecomTranslator(new TelecomTranslatorImpl());
+		return patientTranslator;
+	}
+	
+	static ObservationTranslatorImpl newObservationTranslator() {
+		ConceptTranslatorImpl conceptTranslator = newConceptTranslator();
+		
+		ObservationQuantityCodingTranslatorImpl quantityCodingTranslator = new ObservationQuantityCodingTranslatorImpl();
+		quantityCodingTranslator.setConceptTranslator(conceptTranslator);
+		quantityCodingTranslator.setUcumServices(newUcumServices());
+		
+		ObservationValueTranslatorImpl valueTranslator = new ObservationValueTranslatorImpl();
+		valueTranslator.setConceptTranslator(conceptTranslator);
+		valueTranslator.setQuantityCodingTranslator(quantityCodingTranslator);
+		
+		ObservationCategoryMap categoryMap = stub(ObservationCategoryMap.class);
+		when(categoryMap.getCategory(anyString())).thenReturn("laboratory");
+		
+		ObservationCategoryTranslatorImpl categoryTranslator = new ObservationCategoryTranslatorImpl();
+		categoryTranslator.setCategoryMap(categoryMap);
+		
+		ObservationTranslatorImpl observationTranslator = new ObservationTranslatorImpl();
+		observationTranslator.setObservationStatusTranslator(new ObservationStatusTranslatorImpl());
+		observationTranslator.setObservationReferenceTranslator(new ObservationReferenceTranslatorImpl());
+		observationTranslator.setObservationValueTranslator(valueTranslator);
+		observationTranslator.setConceptTranslator(conceptTranslator);
+		observationTranslator.setCategoryTranslator(categoryTranslator);
+		observationTranslator.setEncounterReferenceTranslator(new EncounterReferenceTranslatorImpl());
+		observationTranslator.setPatientReferenceTranslator(new PatientReferenceTranslatorImpl());
+		observationTranslator.setInterpretationTranslator(new ObservationInterpretationTranslatorImpl());
+		observationTranslator.setReferenceRangeTranslator(new ObservationReferenceRangeTranslatorImpl());
+		observationTranslator.setBasedOnReferenceTranslator(new ObservationBasedOnReferenceTranslatorImpl());
+		observationTranslator.setDatetimeTranslator(new ObservationEffectiveDatetimeTranslatorImpl());
+		return observationTranslator;
+	}
+	
+	static EncounterTranslatorImpl newEncounterTranslator() {
+		EncounterClassMap encounterClassMap = stub(EncounterClassMap.class);
+		when(encounterClassMap.getFhirClass(anyString())).thenReturn("AMB");
+		
+		EncounterTranslatorImpl encounterTranslator = new EncounterTranslatorImpl();
+		encounterTranslator.setParticipantTranslator(new EncounterParticipantTranslatorImpl());
+		encounterTranslator.setEncounterLocationTranslator(new EncounterLocationTranslatorImpl());
+		encounterTranslator.setPatientReferenceTranslator(new PatientReferenceTranslatorImpl());
+		encounterTranslator.setVisitReferenceTranlator(new VisitReferenceTranslatorImpl());
+		encounterTranslator.setEncounterTypeTranslator(new EncounterTypeTranslatorImpl());
+		encounterTranslator.setEncounterPeriodTranslator(new EncounterPeriodTranslatorImpl());
+		encounterTranslator.setEncounterClassMap(encounterClassMap);
+		return encounterTranslator;
+	}
+	
+	/**
+	 * Creates a service request translator whose concept and obs services answer from the given maps,
+	 * as filled in by {@link #newViralLoadOrder(int, Map, Map)}. Saved observations are added to the
+	 * maps, so once an order has been translated its lab order number is found on every later
+	 * translation, as it is in a running server.
+	 */
+	static ServiceRequestTranslatorImpl newServiceRequestTranslator(Map<String, Concept> conceptsByName,
+	        Map<Concept, List<Obs>> observationsByConcept) {
+		ConceptService conceptService = stub(ConceptService.class);
+		when(conceptService.getConceptByName(anyString()))
+		        .thenAnswer(invocation -> conceptsByName.get(invocation.<String> getArgument(0)));
+		
+		ObsService obsService = stub(ObsService.class);
+		when(obsService.getObservationsByPersonAndConcept(any(), any())).thenAnswer(invocation -> new ArrayList<>(
+		        observationsByConcept.getOrDefault(invocation.<Concept> getArgument(1), Collections.emptyList())));
+		when(obsService.saveObs(any(), any())).thenAnswer(invocation -> {
+			Obs obs = invocation.getArgument(0);
+			observationsByConcept.computeIfAbsent(obs.getConcept(), concept -> new ArrayList<>()).add(obs);
+			return obs;
+		});
+		
+		Task task = new Task();
+		task.setId("44fdc8ad-fe4d-499b-93a8-8a991c1d477e");
+		task.setOwner(new Reference().setReference("Organization/8b2f4a36-2bd4-4f02-8a1c-a4d4a6f9a1b3")
+		        .setDisplay("National Health Laboratory"));
+		
+		FhirTaskService taskService = stub(FhirTaskService.class);
+		when(taskService.searchForTasks(any(), any(), any(), any(), any(), any(), any()))
+		        .thenReturn(new SimpleBundleProvider(Collections.singletonList(task)));
+		
+		ServiceRequestTranslatorImpl serviceRequestTranslator = new ServiceRequestTranslatorImpl();
+		serviceRequestTranslator.setTaskService(taskService);
+		serviceRequestTranslator.setDiagnosticReportService(stub(FhirDiagnosticReportService.class));
+		serviceRequestTranslator.setConceptTranslator(newConceptTranslator());
+		serviceRequestTranslator.setPatientReferenceTranslator(new PatientReferenceTranslatorImpl());
+		serviceRequestTranslator.setEncounterReferenceTranslator(new EncounterReferenceTranslatorImpl());
+		serviceRequestTranslator.setProviderReferenceTranslator(new PractitionerReferenceTranslatorProviderImpl());
+		serviceRequestTranslator.setOrderIdentifierTranslator(new OrderIdentifierTranslatorImpl());
+		serviceRequestTranslator.setObservationReferenceTranslator(new ObservationReferenceTranslatorImpl());
+		serviceRequestTranslator.setConceptService(conceptService);
+		serviceRequestTranslator.setObsService(obsService);
+		return serviceRequestTranslator;
+	}
+	
+	/**
+	 * Creates a patient with {@code 3 * scale} names, {@code 4 * scale} identifiers spread over several
+	 * identifier types, {@code 2 * scale} addresses and {@code 2 * scale} contact numbers.
+	 */
+	static Patient newPatient(int scale) {
+		Patient patient = new Patient();
+		patient.setGender("F");
+		patient.setBirthdate(daysFromBase(-12_000));
+		patient.setBirthdateEstimated(false);
+		patient.setDead(false);
+		patient.setDateCreated(daysFromBase(-3_000));
+		patient.setDateChanged(daysFromBase(-30));
+		
+		for (int i = 0; i < 3 * scale; i++) {
+			PersonName name = new PersonName("Given" + i, "Middle" + i, "Family" + i);
+			name.setPrefix("Ms");
+			name.setPreferred(i == 0);
+			patient.addName(name);
+		}
+		
+		for (int i = 0; i < 4 * scale; i++) {
+			PatientIdentifier identifier = new PatientIdentifier(String.format("%08d", 100_000 + i),
+			        IDENTIFIER_TYPES.get(i % IDENTIFIER_TYPES.size()), FACILITY);
+			identifier.setPreferred(i == 0);
+			patient.addIdentifier(identifier);
+		}
+		
+		for (int i = 0; i < 2 * scale; i++) {
+			PersonAddress address = new PersonAddress();
+			address.setAddress1("Plot " + (1_000 + i) + ", Nelson Mandela Drive");
+			address.setCityVillage("Gaborone");
+			address.setStateProvince("South-East");
+			address.setCountry("Botswana");
+			address.setPostalCode(String.format("%05d", i));
+			address.setPreferred(i == 0);
+			patient.addAddress(address);
+		}
+		
+		// Person.addAttribute() keeps a single active attribute per type, so the attributes are added directly
+		for (int i = 0; i < 2 * scale; i++) {
+			PersonAttribute phoneNumber = new PersonAttribute(i % 2 == 0 ? PHONE_NUMBER : NEXT_OF_KIN_PHONE_NUMBER,
+			        String.format("+267 71%06d", i));
+			phoneNumber.setPerson(patient);
+			patient.getAttributes().add(phoneNumber);
+		}
+		
+		return patient;
+	}
+	
+	/**
+	 * Creates a concept with English and French names and {@code mappings} mappings spread over several
+	 * concept sources. The first mapping to each source is SAME-AS, the rest are NARROWER-THAN.
+	 */
+	static Concept newConcept(String name, int mappings) {
+		return initializeConcept(new Concept(), name, mappings);
+	}
+	
+	static ConceptNumeric newConceptNumeric(String name, String units, int mappings) {
+		ConceptNumeric concept = initializeConcept(new ConceptNumeric(), name, mappings);
+		concept.setUnits(units);
+		concept.setAllowDecimal(true);
+		concept.setLowAbsolute(0.0);
+		concept.setLowCritical(40.0);
+		concept.setLowNormal(70.0);
+		concept.setHiNormal(110.0);
+		concept.setHiCritical(400.0);
+		concept.setHiAbsolute(1_000.0);
+		return concept;
+	}
+	
+	/**
+	 * Creates an encounter of the given patient with {@code 2 * scale} providers, each with a name and
+	 * an identifier.
+	 */
+	static Encounter newEncounter(int scale, Patient patient) {
+		Visit visit = new Visit();
+		visit.setPatient(patient);
+		visit.setVisitType(OUTPATIENT);
+		visit.setLocation(WARD);
+		visit.setStartDatetime(daysFromBase(-1));
+		
+		Encounter encounter = new Encounter();
+		encounter.setEncounterType(ADULT_RETURN);
+		encounter.setPatient(patient);
+		encounter.setLocation(WARD);
+		encounter.setVisit(visit);
+		encounter.setEncounterDatetime(daysFromBase(-1));
+		encounter.setDateCreated(daysFromBase(-1));
+		
+		for (int i = 0; i < 2 * scale; i++) {
+			encounter.addProvider(CLINICIAN, newProvider(i));
+		}
+		
+		return encounter;
+	}
+	
+	static Obs newObs(Concept concept, Patient patient, Encounter encounter, Date obsDatetime) {
+		Obs obs = new Obs(patient, concept, obsDatetime, WARD);
+		obs.setEncounter(encounter);
+		obs.setDateCreated(obsDatetime);
+		return obs;
+	}
+	
+	/**
+	 * Creates a viral load {@link TestOrder} and the history of observations the
+	 * {@link ServiceRequestTranslatorImpl} attaches to it as supporting information: {@code 4 * scale}
+	 * ART regimen observations and {@code 2 * scale} observations for each of the other supporting
+	 * concepts. Every concept looked up by name is added to {@code conceptsByName} and every
+	 * observation to {@code observationsByConcept}.
+	 */
+	static TestOrder newViralLoadOrder(int scale, Map<String, Concept> conceptsByName,
+	        Map<Concept, List<Obs>> observationsByConcept) {
+		Patient patient = newPatient(scale);
+		Encounter encounter = newEncounter(scale, patient);
+		
+		Concept viralLoad = newConcept("HIV Viral Load", 4 * scale);
+		
+		Concept labSamples = register(conceptsByName, newConcept("Lab Samples", 0));
+		labSamples.setSet(true);
+		for (String sampleType : Arrays.asList("Whole Blood", "Plasma", "Sputum", "Urine")) {
+			Concept sample = newConcept(sampleType, scale);
+			sample.setSet(true);
+			for (int i = 0; i < 2 * scale; i++) {
+				sample.addSetMember(newConcept(sampleType + " Test " + i, scale));
+			}
+			if (sampleType.equals("Plasma")) {
+				sample.addSetMember(viralLoad);
+			}
+			labSamples.addSetMember(sample);
+		}
+		
+		register(conceptsByName, newConcept("eRegister Lab Order Number", 0));
+		
+		List<Concept> regimens = Arrays.asList(newConcept("TDF/3TC/DTG", scale), newConcept("AZT/3TC/NVP", scale),
+		    newConcept("TDF/FTC/EFV", scale));
+		Concept aboveThreshold = newConcept("Greater or equals to 20", scale);
+		Concept no = newConcept("No", scale);
+		Concept routine = newConcept("Routine Viral Load", scale);
+		
+		addObservations(conceptsByName, observationsByConcept, newConcept("HIVTC, ART Regimen", scale), patient,
+		    encounter, 4 * scale, (obs, i) -> obs.setValueCoded(regimens.get(i / 2 % regimens.size())));
+		addObservations(conceptsByName, observationsByConcept, newConcept("HIVTC, Viral Load Result", scale), patient,
+		    encounter, 2 * scale, (obs, i) -> obs.setValueCoded(aboveThreshold));
+		addObservations(conceptsByName, observationsByConcept,
+		    newConceptNumeric("HIVTC, Viral Load", "{copies}/mL", 2 * scale), patient, encounter, 2 * scale,
+		    (obs, i) -> obs.setValueNumeric(1_000.0 + 50 * i));
+		addObservations(conceptsByName, observationsByConcept, newConcept("HIVTC, VL Pregnancy Status", scale), patient,
+		    encounter, 2 * scale, (obs, i) -> obs.setValueCoded(no));
+		addObservations(conceptsByName, observationsByConcept, newConcept("HIVTC, VL Breastfeeding Status", scale),
+		    patient, encounter, 2 * scale, (obs, i) -> obs.setValueCoded(no));
+		addObservations(conceptsByName, observationsByConcept, newConcept("HIVTC, ART start date", scale), patient,
+		    encounter, 2 * scale, (obs, i) -> obs.setValueDatetime(daysFromBase(-2_000 + 100 * i)));
+		addObservations(conceptsByName, observationsByConcept, newConceptNumeric("HIVTC, CD4", "{cells}/uL", 2 * scale),
+		    patient, encounter, 2 * scale, (obs, i) -> obs.setValueNumeric(350.0 + 10 * i));
+		addObservations(conceptsByName, observationsByConcept,
+		    newConcept("HIVTC, Viral Load Monitoring Type", scale), patient, encounter, 2 * scale,
+		    (obs, i) -> obs.setValueCoded(routine));
+		addObservations(conceptsByName, observationsByConcept,
+		    newConcept("HIVTC, Viral Load Blood drawn date", scale), patient, encounter, 2 * scale,
+		    (obs, i) -> obs.setValueDatetime(obs.getObsDatetime()));
+		
+		TestOrder order = new TestOrder();
+		order.setConcept(viralLoad);
+		order.setPatient(patient);
+		order.setEncounter(encounter);
+		order.setOrderer(newProvider(0));
+		order.setDateActivated(daysFromBase(-1));
+		order.setDateCreated(daysFromBase(-1));
+		setOrderNumber(order, ORDER_NUMBER);
+		return order;
+	}
+	
+	private static <T extends Concept> T initializeConcept(T concept, String name, int mappings) {
+		concept.setConceptClass(TEST_CLASS);
+		concept.setFullySpecifiedName(new ConceptName(name, Locale.ENGLISH));
+		concept.addName(new ConceptName(name + " (fr)", Locale.FRENCH));
+		
+		for (int i = 0; i < mappings; i++) {
+			ConceptSource source = CONCEPT_SOURCES.get(i % CONCEPT_SOURCES.size());
+			ConceptReferenceTerm term = new ConceptReferenceTerm(source, Integer.toString(1_000 + i), null);
+			concept.addConceptMapping(new ConceptMap(term, i < CONCEPT_SOURCES.size() ? SAME_AS : NARROWER_THAN));
+		}
+		
+		return concept;
+	}
+	
+	private static void addObservations(Map<String, Concept> conceptsByName, Map<Concept, List<Obs>> observationsByConcept,
+	        Concept concept, Patient patient, Encounter encounter, int count, ObjIntConsumer<Obs> value) {
+		register(conceptsByName, concept);
+		
+		List<Obs> observations = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Obs obs = newObs(concept, patient, encounter, daysFromBase(-30 * (count - i)));
+			value.accept(obs, i);
+			observations.add(obs);
+		}
+		
+		observationsByConcept.put(concept, observations);
+	}
+	
+	private static Concept register(Map<String, Concept> conceptsByName, Concept concept) {
+		conceptsByName.put(concept.getName(Locale.ENGLISH).getName(), concept);
+		return concept;
+	}
+	
+	private static Provider newProvider(int index) {
+		Person person = new Person();
+		person.addName(new PersonName("Provider" + index, null, "Clinician"));
+		
+		Provider provider = new Provider();
+		provider.setPerson(person);
+		provider.setIdentifier(String.format("PRV-%04d", index));
+		return provider;
+	}
+	
+	private static void setOrderNumber(Order order, String orderNumber) {
+		// Order has no setter for its number, which is normally assigned by the OrderService
+		try {
+			Field orderNumberField = Order.class.getDeclaredField("orderNumber");
+			orderNumberField.setAccessible(true);
+			orderNumberField.set(order, orderNumber);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to set the order number", e);
+		}
+	}
+	
+	private static List<UcumEssenceService> newUcumServices() {
+		try (InputStream baseUcum = UcumService.class.getClassLoader().getResourceAsStream("ucum-essence.xml");
+		        InputStream fhirUcum = BenchmarkFixtures.class.getClassLoader()
+		                .getResourceAsStream("ucum-fhir-essence.xml")) {
+			return Arrays.asList(new UcumEssenceService(baseUcum), new UcumEssenceService(fhirUcum));
+		}
+		catch (IOException | UcumException e) {
+			throw new IllegalStateException("Unable to load the UCUM definitions", e);
+		}
+	}
+	
+	private static Date daysFromBase(int days) {
+		return new Date(BASE_DATE + days * DAY);
+	}
+	
+	private static void addConceptSource(String name, String url) {
+		ConceptSource source = new ConceptSource();
+		source.setName(name);
+		CONCEPT_SOURCES.add(source);
+		CONCEPT_SOURCE_URLS.put(source, url);
+	}
+	
+	private static void addIdentifierType(String name, String url) {
+		PatientIdentifierType identifierType = new PatientIdentifierType();
+		identifierType.setName(name);
+		IDENTIFIER_TYPES.add(identifierType);
+		IDENTIFIER_SYSTEM_URLS.put(identifierType, url);
+	}
+	
+	private static ConceptMapType newConceptMapType(String uuid, String name) {
+		ConceptMapType mapType = new ConceptMapType();
+		mapType.setUuid(uuid);
+		mapType.setName(name);
+		return mapType;
+	}
+	
+	private static PersonAttributeType newPersonAttributeType(String name) {
+		PersonAttributeType attributeType = new PersonAttributeType();
+		attributeType.setName(name);
+		return attributeType;
+	}
+	
+	private static <T> T stub(Class<T> type) {
+		return mock(type, withSettings().stubOnly());
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.initializeContext;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newConcept;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newConceptTranslator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Concept;
+
+/**
+ * Measures {@link ConceptTranslatorImpl} translating a concept with {@code 4 * scale} mappings
+ * spread over five concept sources, so that most sources have both SAME-AS and NARROWER-THAN
+ * mappings to choose between.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConceptTranslatorBenchmark {
+	
+	@Param({ "1", "4", "16" })
+	public int scale;
+	
+	private ConceptTranslatorImpl conceptTranslator;
+	
+	private Concept concept;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		initializeContext();
+		conceptTranslator = newConceptTranslator();
+		concept = newConcept("Hemoglobin", 4 * scale);
+	}
+	
+	@Benchmark
+	public CodeableConcept toFhirResource() {
+		return conceptTranslator.toFhirResource(concept);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.initializeContext;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newEncounter;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newEncounterTranslator;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newPatient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Encounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link EncounterTranslatorImpl} translating an encounter with {@code 2 * scale}
+ * providers, which belongs to a visit and takes place at a location nested in a facility.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EncounterTranslatorBenchmark {
+	
+	@Param({ "1", "4", "16" })
+	public int scale;
+	
+	private EncounterTranslatorImpl encounterTranslator;
+	
+	private org.openmrs.Encounter encounter;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		initializeContext();
+		encounterTranslator = newEncounterTranslator();
+		encounter = newEncounter(scale, newPatient(scale));
+	}
+	
+	@Benchmark
+	public Encounter toFhirResource() {
+		return encounterTranslator.toFhirResource(encounter);
+	}
+}
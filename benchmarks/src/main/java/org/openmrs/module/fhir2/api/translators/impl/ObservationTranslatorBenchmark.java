@@ -0,0 +1,102 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.initializeContext;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newConcept;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newConceptNumeric;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newEncounter;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newObs;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newObservationTranslator;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newPatient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Encounter;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+
+/**
+ * Measures {@link ObservationTranslatorImpl} translating a numeric observation with a UCUM unit and
+ * reference ranges, a coded observation and an observation group with {@code 3 * scale} members.
+ * Every concept involved has {@code 4 * scale} mappings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ObservationTranslatorBenchmark {
+	
+	@Param({ "1", "4", "16" })
+	public int scale;
+	
+	private ObservationTranslatorImpl observationTranslator;
+	
+	private Obs numericObs;
+	
+	private Obs codedObs;
+	
+	private Obs obsGroup;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		initializeContext();
+		observationTranslator = newObservationTranslator();
+		
+		Patient patient = newPatient(scale);
+		Encounter encounter = newEncounter(scale, patient);
+		
+		numericObs = newObs(newConceptNumeric("Serum Glucose", "mg/dL", 4 * scale), patient, encounter,
+		    encounter.getEncounterDatetime());
+		numericObs.setValueNumeric(104.0);
+		
+		codedObs = newObs(newConcept("HIV Rapid Test Result", 4 * scale), patient, encounter,
+		    encounter.getEncounterDatetime());
+		codedObs.setValueCoded(newConcept("Positive", 4 * scale));
+		
+		obsGroup = newObs(newConcept("Vital Signs", 4 * scale), patient, encounter, encounter.getEncounterDatetime());
+		for (int i = 0; i < 3 * scale; i++) {
+			Obs member = newObs(newConceptNumeric("Vital Sign " + i, "mm[Hg]", 4 * scale), patient, encounter,
+			    encounter.getEncounterDatetime());
+			member.setValueNumeric(80.0 + i);
+			obsGroup.addGroupMember(member);
+		}
+	}
+	
+	@Benchmark
+	public Observation toFhirResourceNumeric() {
+		return observationTranslator.toFhirResource(numericObs);
+	}
+	
+	@Benchmark
+	public Observation toFhirResourceCoded() {
+		return observationTranslator.toFhirResource(codedObs);
+	}
+	
+	@Benchmark
+	public Observation toFhirResourceGroup() {
+		return observationTranslator.toFhirResource(obsGroup);
+	}
+}
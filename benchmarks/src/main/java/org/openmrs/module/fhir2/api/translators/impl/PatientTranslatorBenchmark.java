@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.initializeContext;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newPatient;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newPatientTranslator;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
+
+/**
+ * Measures {@link PatientTranslatorImpl} translating a patient with {@code 3 * scale} names,
+ * {@code 4 * scale} identifiers, {@code 2 * scale} addresses and {@code 2 * scale} contact numbers,
+ * both in full and restricted to the elements a typical {@code _elements} search asks for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PatientTranslatorBenchmark {
+	
+	@Param({ "1", "4", "16" })
+	public int scale;
+	
+	private PatientTranslatorImpl patientTranslator;
+	
+	private org.openmrs.Patient patient;
+	
+	private RequestedElements requestedElements;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		initializeContext();
+		patientTranslator = newPatientTranslator();
+		patient = newPatient(scale);
+		requestedElements = RequestedElements.of(FhirConstants.PATIENT,
+		    Arrays.asList("identifier", "name", "gender", "birthDate"), false);
+	}
+	
+	@Benchmark
+	public Patient toFhirResource() {
+		return patientTranslator.toFhirResource(patient);
+	}
+	
+	@Benchmark
+	public Patient toFhirResourceWithRequestedElements() {
+		return patientTranslator.toFhirResource(patient, requestedElements);
+	}
+}
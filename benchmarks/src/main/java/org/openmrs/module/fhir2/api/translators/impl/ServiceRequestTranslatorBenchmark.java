@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators.impl;
+
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.initializeContext;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newServiceRequestTranslator;
+import static org.openmrs.module.fhir2.api.translators.impl.BenchmarkFixtures.newViralLoadOrder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.ServiceRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.TestOrder;
+
+/**
+ * Measures {@link ServiceRequestTranslatorImpl} translating a viral load order, including the
+ * lookups of the specimen type and of the supporting observations it attaches: {@code 4 * scale}
+ * ART regimen observations and {@code 2 * scale} observations of each other supporting concept.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ServiceRequestTranslatorBenchmark {
+	
+	@Param({ "1", "4", "16" })
+	public int scale;
+	
+	private ServiceRequestTranslatorImpl serviceRequestTranslator;
+	
+	private TestOrder order;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		initializeContext();
+		
+		Map<String, Concept> conceptsByName = new HashMap<>();
+		Map<Concept, List<Obs>> observationsByConcept = new HashMap<>();
+		order = newViralLoadOrder(scale, conceptsByName, observationsByConcept);
+		serviceRequestTranslator = newServiceRequestTranslator(conceptsByName, observationsByConcept);
+		
+		// the first translation of an order stores its lab order number; only later translations are measured
+		serviceRequestTranslator.toFhirResource(order);
+	}
+	
+	@Benchmark
+	public ServiceRequest toFhirResource() {
+		return serviceRequestTranslator.toFhirResource(order);
+	}
+}
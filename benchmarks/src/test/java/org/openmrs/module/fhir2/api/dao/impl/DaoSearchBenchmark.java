@@ -0,0 +1,323 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.TestFhirSpringConfiguration;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirTaskDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.testdata.ClinicalDataGenerator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Times the searches of the observation, patient, encounter and task DAOs against the in-memory H2
+ * database of the test context, after seeding it with far more data than the usual test fixtures.
+ * For the common combinations of search parameters it reports the median time taken by
+ * {@link FhirDao#getSearchResultIds(SearchParameterMap)} and by
+ * {@link FhirDao#getSearchResults(SearchParameterMap, List)} for the first page of results, the
+ * number of SQL statements each issued and the statements themselves. The report is written to the
+ * file named by the {@code benchmark.output} system property,
+ * {@code target/dao-search-benchmark.txt} by default.
+ * <p/>
+ * The data is written by the {@link ClinicalDataGenerator}. The size of the dataset is set with the
+ * {@code benchmark.patients}, {@code benchmark.visitsPerPatient},
+ * {@code benchmark.encountersPerVisit}, {@code benchmark.obsPerEncounter} and
+ * {@code benchmark.ordersPerPatient} system properties; the defaults give 10,000 patients, 100,000
+ * encounters, roughly 1,400,000 obs, and 50,000 drug and 50,000 test orders, with a task for each
+ * test order. Larger datasets need a larger heap for the test JVM.
+ * <p/>
+ * This is not run as part of the test suite. Run it with
+ *
+ * <pre>
+ * mvn -P benchmarks -pl benchmarks -am test -Dtest=DaoSearchBenchmark \
+ *     -Dsurefire.failIfNoSpecifiedTests=false -Dbenchmark.patients=10000
+ * </pre>
+ */
+@ContextConfiguration(classes = TestFhirSpringConfiguration.class, inheritLocations = false)
+public class DaoSearchBenchmark extends BaseModuleContextSensitiveTest {
+	
+	private static final int PATIENTS = Integer.getInteger("benchmark.patients", 10_000);
+	
+	private static final int VISITS_PER_PATIENT = Integer.getInteger("benchmark.visitsPerPatient", 5);
+	
+	private static final int ENCOUNTERS_PER_VISIT = Integer.getInteger("benchmark.encountersPerVisit", 2);
+	
+	private static final int OBS_PER_ENCOUNTER = Integer.getInteger("benchmark.obsPerEncounter", 10);
+	
+	private static final int ORDERS_PER_PATIENT = Integer.getInteger("benchmark.ordersPerPatient", 5);
+	
+	// generated rows are numbered from here, well clear of the ids used by the standard test dataset
+	private static final int FIRST_ID = 1_000_000;
+	
+	private static final long SEED = 42;
+	
+	private static final int PAGE_SIZE = 50;
+	
+	private static final int WARMUP_ROUNDS = 3;
+	
+	private static final int MEASURED_ROUNDS = 10;
+	
+	private static final Path OUTPUT = Paths.get(System.getProperty("benchmark.output", "target/dao-search-benchmark.txt"));
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Autowired
+	private FhirObservationDao observationDao;
+	
+	@Autowired
+	private FhirPatientDao patientDao;
+	
+	@Autowired
+	private FhirEncounterDao encounterDao;
+	
+	@Autowired
+	private FhirTaskDao taskDao;
+	
+	private final StatementCapture statementCapture = new StatementCapture();
+	
+	private PrintWriter out;
+	
+	@Test
+	public void run() throws IOException {
+		Files.createDirectories(OUTPUT.toAbsolutePath().getParent());
+		
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(OUTPUT))) {
+			out = writer;
+			runSearches();
+		}
+		finally {
+			out = null;
+		}
+		
+		System.out.println("DAO search benchmark results written to " + OUTPUT.toAbsolutePath());
+	}
+	
+	private void runSearches() {
+		long start = System.nanoTime();
+		Map<String, Long> rows = sessionFactory.getCurrentSession()
+		        .doReturningWork(connection -> new ClinicalDataGenerator(SEED).patients(PATIENTS)
+		                .visitsPerPatient(VISITS_PER_PATIENT).encountersPerVisit(ENCOUNTERS_PER_VISIT)
+		                .obsPerEncounter(OBS_PER_ENCOUNTER).drugOrdersPerPatient(ORDERS_PER_PATIENT)
+		                .testOrdersPerPatient(ORDERS_PER_PATIENT).firstId(FIRST_ID).batchSize(10_000).generate(connection));
+		out.printf("Seeded %s in %,d ms%n%n", rows, (System.nanoTime() - start) / 1_000_000);
+		
+		int patientId = FIRST_ID + PATIENTS / 2;
+		String patientUuid = queryForString("SELECT uuid FROM person WHERE person_id = " + patientId);
+		String identifier = queryForString("SELECT identifier FROM patient_identifier WHERE patient_id = " + patientId);
+		String familyName = queryForString("SELECT family_name FROM person_name WHERE person_id = " + patientId);
+		String encounterUuid = queryForString(
+		    "SELECT uuid FROM encounter WHERE patient_id = " + patientId + " ORDER BY encounter_id LIMIT 1");
+		String orderUuid = queryForString(
+		    "SELECT uuid FROM orders WHERE order_id = (SELECT MIN(t.order_id) FROM test_order t JOIN orders o "
+		            + "ON o.order_id = t.order_id WHERE o.patient_id = " + patientId + ")");
+		
+		Logger sqlLogger = Logger.getLogger("org.hibernate.SQL");
+		Level sqlLoggerLevel = sqlLogger.getLevel();
+		boolean sqlLoggerAdditivity = sqlLogger.getAdditivity();
+		sqlLogger.setLevel(Level.DEBUG);
+		sqlLogger.setAdditivity(false);
+		sqlLogger.addAppender(statementCapture);
+		
+		try {
+			out.printf("%-12s %-32s %10s %10s %8s %10s %8s%n", "resource", "shape", "matches", "ids ms",
+			    "ids sql", "page ms", "page sql");
+			
+			benchmark("Observation", "patient", observationDao,
+			    new SearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER,
+			        reference(null, patientUuid)));
+			benchmark("Observation", "patient,code", observationDao,
+			    new SearchParameterMap()
+			            .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, reference(null, patientUuid))
+			            .addParameter(FhirConstants.CODED_SEARCH_HANDLER, token("5089")));
+			benchmark("Observation", "patient,code,date", observationDao, new SearchParameterMap()
+			        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, reference(null, patientUuid))
+			        .addParameter(FhirConstants.CODED_SEARCH_HANDLER, token("5089"))
+			        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime",
+			            new DateRangeParam("2015-01-01", "2015-12-31")));
+			benchmark("Observation", "patient,_sort=-date", observationDao,
+			    new SearchParameterMap()
+			            .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, reference(null, patientUuid))
+			            .setSortSpec(new SortSpec("date", SortOrderEnum.DESC)));
+			benchmark("Observation", "encounter", observationDao, new SearchParameterMap()
+			        .addParameter(FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER, reference(null, encounterUuid)));
+			benchmark("Observation", "code", observationDao,
+			    new SearchParameterMap().addParameter(FhirConstants.CODED_SEARCH_HANDLER, token("5497")));
+			
+			benchmark("Patient", "identifier", patientDao,
+			    new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER, token(identifier)));
+			benchmark("Patient", "family", patientDao, new SearchParameterMap()
+			        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.FAMILY_PROPERTY, string(familyName)));
+			benchmark("Patient", "name,gender", patientDao,
+			    new SearchParameterMap()
+			            .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY, string("Maria"))
+			            .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, "gender", token("female")));
+			benchmark("Patient", "birthdate", patientDao, new SearchParameterMap().addParameter(
+			    FhirConstants.DATE_RANGE_SEARCH_HANDLER, "birthdate", new DateRangeParam("1980-01-01", "1980-12-31")));
+			
+			benchmark("Encounter", "subject", encounterDao, new SearchParameterMap()
+			        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, reference(null, patientUuid)));
+			benchmark("Encounter", "subject,_sort=-date", encounterDao,
+			    new SearchParameterMap()
+			            .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, reference(null, patientUuid))
+			            .setSortSpec(new SortSpec("date", SortOrderEnum.DESC)));
+			benchmark("Encounter", "date", encounterDao, new SearchParameterMap()
+			        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, new DateRangeParam("2015-01-01", "2015-01-31")));
+			
+			benchmark("Task", "based-on", taskDao, new SearchParameterMap().addParameter(
+			    FhirConstants.BASED_ON_REFERENCE_SEARCH_HANDLER, reference(FhirConstants.SERVICE_REQUEST, orderUuid)));
+			benchmark("Task", "status", taskDao,
+			    new SearchParameterMap().addParameter(FhirConstants.STATUS_SEARCH_HANDLER, token("requested")));
+			benchmark("Task", "status,_lastUpdated", taskDao,
+			    new SearchParameterMap().addParameter(FhirConstants.STATUS_SEARCH_HANDLER, token("requested"))
+			            .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY,
+			                new DateRangeParam().setLowerBound("2016-01-01")));
+		}
+		finally {
+			sqlLogger.removeAppender(statementCapture);
+			sqlLogger.setAdditivity(sqlLoggerAdditivity);
+			sqlLogger.setLevel(sqlLoggerLevel);
+		}
+	}
+	
+	private <T extends OpenmrsObject & Auditable> void benchmark(String resourceType, String shape, FhirDao<T> dao,
+	        SearchParameterMap theParams) {
+		long[] idNanos = new long[MEASURED_ROUNDS];
+		long[] pageNanos = new long[MEASURED_ROUNDS];
+		List<Integer> ids = Collections.emptyList();
+		List<String> idStatements = Collections.emptyList();
+		List<String> pageStatements = Collections.emptyList();
+		
+		for (int round = -WARMUP_ROUNDS; round < MEASURED_ROUNDS; round++) {
+			// each round starts with an empty session so that nothing is answered from the first-level cache
+			sessionFactory.getCurrentSession().clear();
+			statementCapture.drain();
+			
+			long start = System.nanoTime();
+			ids = dao.getSearchResultIds(theParams);
+			long idTime = System.nanoTime() - start;
+			idStatements = statementCapture.drain();
+			
+			List<Integer> page = ids.subList(0, Math.min(PAGE_SIZE, ids.size()));
+			long pageTime = 0;
+			if (!page.isEmpty()) {
+				start = System.nanoTime();
+				dao.getSearchResults(theParams, page);
+				pageTime = System.nanoTime() - start;
+			}
+			pageStatements = statementCapture.drain();
+			
+			if (round >= 0) {
+				idNanos[round] = idTime;
+				pageNanos[round] = pageTime;
+			}
+		}
+		
+		out.printf("%-12s %-32s %,10d %10.2f %8d %10.2f %8d%n", resourceType, shape, ids.size(), median(idNanos),
+		    idStatements.size(), median(pageNanos), pageStatements.size());
+		idStatements.forEach(sql -> out.println("    ids:  " + sql));
+		pageStatements.forEach(sql -> out.println("    page: " + sql));
+	}
+	
+	private String queryForString(String sql) {
+		return sessionFactory.getCurrentSession().doReturningWork(connection -> {
+			try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+				return resultSet.next() ? resultSet.getString(1) : null;
+			}
+		});
+	}
+	
+	private static ReferenceAndListParam reference(String resourceType, String id) {
+		return new ReferenceAndListParam()
+		        .addAnd(new ReferenceOrListParam().add(new ReferenceParam(resourceType, null, id)));
+	}
+	
+	private static TokenAndListParam token(String value) {
+		return new TokenAndListParam().addAnd(new TokenParam().setValue(value));
+	}
+	
+	private static StringAndListParam string(String value) {
+		return new StringAndListParam().addAnd(new StringParam(value));
+	}
+	
+	private static double median(long[] nanos) {
+		long[] sorted = Arrays.copyOf(nanos, nanos.length);
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2] / 1_000_000.0;
+	}
+	
+	/**
+	 * Collects the statements Hibernate logs to {@code org.hibernate.SQL}, one per statement it
+	 * prepares.
+	 */
+	private static class StatementCapture extends AppenderSkeleton {
+		
+		private final List<String> statements = new ArrayList<>();
+		
+		@Override
+		protected synchronized void append(LoggingEvent event) {
+			statements.add(event.getRenderedMessage());
+		}
+		
+		synchronized List<String> drain() {
+			List<String> drained = new ArrayList<>(statements);
+			statements.clear();
+			return drained;
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+}
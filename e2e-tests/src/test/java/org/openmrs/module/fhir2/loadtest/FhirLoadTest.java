@@ -0,0 +1,343 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.loadtest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import javax.servlet.ServletConfig;
+
+import java.io.File;
+import java.net.URL;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.DelegatingWebApplicationContext;
+import org.openmrs.module.fhir2.FhirActivator;
+import org.openmrs.module.fhir2.IntegrationTestConfiguration;
+import org.openmrs.module.fhir2.model.GroupMember;
+import org.openmrs.module.fhir2.testdata.ClinicalDataGenerator;
+import org.openmrs.module.fhir2.web.servlet.FhirRestServlet;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Replays a mix of realistic FHIR traffic from concurrent clients against the R4 servlet, running
+ * embedded in the test context on an in-memory database seeded by the
+ * {@link ClinicalDataGenerator}. The latency percentiles, throughput and error count of each
+ * endpoint are written to a JSON file, so that runs can be compared between releases.
+ * <p/>
+ * The scenarios in the mix are:
+ * <ul>
+ * <li>{@code task-poll}: a lab system polling for requested Tasks</li>
+ * <li>{@code service-request}: a lab system reading the ServiceRequest a Task is based on</li>
+ * <li>{@code patient-identifier}: a search for a patient by identifier</li>
+ * <li>{@code lastn}: the {@code $lastn} operation for a patient</li>
+ * <li>{@code paging}: a search for a patient's observations, following the next links through
+ * {@code _getpages}</li>
+ * </ul>
+ * Requests are passed straight to the servlet, so the timings cover the FHIR module and the
+ * database but not the network or the OpenMRS web filters. The run is configured with the following
+ * system properties:
+ * <ul>
+ * <li>{@code loadtest.patients}: the number of patients to generate, 10,000 by default</li>
+ * <li>{@code loadtest.clients}: the number of concurrent clients, 8 by default</li>
+ * <li>{@code loadtest.warmupSeconds}: how long to run before recording, 15 by default</li>
+ * <li>{@code loadtest.durationSeconds}: how long to record for, 60 by default</li>
+ * <li>{@code loadtest.mix}: the weighted mix of scenarios, {@value #DEFAULT_MIX} by default</li>
+ * <li>{@code loadtest.output}: the file the results are written to,
+ * {@code target/load-test-results.json} by default</li>
+ * </ul>
+ * The generated data is committed, so this should run in its own JVM. It is not run as part of the
+ * build; run it with {@code mvn -P load-test -pl e2e-tests test} after installing the other
+ * modules.
+ */
+@ContextConfiguration(classes = IntegrationTestConfiguration.class, inheritLocations = false)
+public class FhirLoadTest extends BaseModuleWebContextSensitiveTest {
+	
+	private static final String DEFAULT_MIX = "task-poll=25,service-request=15,patient-identifier=30,lastn=15,paging=15";
+	
+	private static final List<String> SCENARIOS = Arrays.asList("task-poll", "service-request", "patient-identifier",
+	    "lastn", "paging");
+	
+	private static final String SERVLET_NAME = "fhir2Servlet";
+	
+	private static final int FIRST_ID = 1_000_000;
+	
+	private static final int PAGE_SIZE = 10;
+	
+	private static final int MAX_PAGES = 5;
+	
+	private final int patients = Integer.getInteger("loadtest.patients", 10_000);
+	
+	private final int clients = Integer.getInteger("loadtest.clients", 8);
+	
+	private final int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 15);
+	
+	private final int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 60);
+	
+	private final TrafficMix mix = TrafficMix.parse(System.getProperty("loadtest.mix", DEFAULT_MIX), SCENARIOS);
+	
+	private final File output = new File(System.getProperty("loadtest.output", "target/load-test-results.json"));
+	
+	private final FhirContext fhirContext = FhirContext.forR4();
+	
+	@Autowired
+	private ConfigurableApplicationContext ctx;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private FhirRestServlet servlet;
+	
+	private List<String> patientUuids;
+	
+	private List<String> orderUuids;
+	
+	@Test
+	public void shouldReplayTrafficMix() throws Exception {
+		setupFhirServlet();
+		
+		sessionFactory.getCurrentSession().doReturningWork(
+		    connection -> new ClinicalDataGenerator(42).patients(patients).firstId(FIRST_ID).batchSize(10_000)
+		            .generate(connection));
+		patientUuids = queryForStrings("SELECT uuid FROM person WHERE person_id > " + FIRST_ID + " ORDER BY person_id");
+		orderUuids = queryForStrings("SELECT o.uuid FROM orders o JOIN test_order t ON t.order_id = o.order_id "
+		        + "WHERE o.order_id > " + FIRST_ID + " ORDER BY o.order_id");
+		
+		// the clients use their own transactions, so they only see the data once it is committed
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+		
+		LatencyRecorder results = new LatencyRecorder();
+		try {
+			long start = System.nanoTime();
+			long recordFrom = start + warmupSeconds * 1_000_000_000L;
+			long stopAt = recordFrom + durationSeconds * 1_000_000_000L;
+			
+			ExecutorService executor = Executors.newFixedThreadPool(clients);
+			List<Future<LatencyRecorder>> futures = new ArrayList<>();
+			for (int i = 0; i < clients; i++) {
+				long clientSeed = i;
+				futures.add(executor.submit(() -> runClient(new Random(clientSeed), recordFrom, stopAt)));
+			}
+			
+			executor.shutdown();
+			for (Future<LatencyRecorder> future : futures) {
+				results.merge(future.get());
+			}
+		}
+		finally {
+			// leave a transaction for the clean up after the test
+			TestTransaction.start();
+		}
+		
+		Map<String, LatencyRecorder.EndpointStatistics> statistics = results.summarize(durationSeconds);
+		writeResults(statistics);
+		
+		for (Map.Entry<String, LatencyRecorder.EndpointStatistics> endpoint : statistics.entrySet()) {
+			assertThat("errors from " + endpoint.getKey(), endpoint.getValue().getErrors(), equalTo(0));
+		}
+	}
+	
+	private LatencyRecorder runClient(Random random, long recordFrom, long stopAt) throws Exception {
+		UserContext userContext;
+		Context.openSession();
+		try {
+			Context.authenticate("admin", "test");
+			// load the user's roles while the user is still attached to a session, as each request gets a new one
+			Context.getAuthenticatedUser().isSuperUser();
+			userContext = Context.getUserContext();
+		}
+		finally {
+			Context.closeSession();
+		}
+		
+		LatencyRecorder warmup = new LatencyRecorder();
+		LatencyRecorder recorder = new LatencyRecorder();
+		long now;
+		while ((now = System.nanoTime()) < stopAt) {
+			runScenario(mix.next(random), random, userContext, now < recordFrom ? warmup : recorder);
+		}
+		
+		return recorder;
+	}
+	
+	private void runScenario(String scenario, Random random, UserContext userContext, LatencyRecorder recorder) {
+		switch (scenario) {
+			case "task-poll":
+				get("task-poll", "/Task", "status=requested&_lastUpdated=ge2016-01-01&_count=50", userContext, recorder);
+				break;
+			case "service-request":
+				get("service-request", "/ServiceRequest/" + pick(orderUuids, random), null, userContext, recorder);
+				break;
+			case "patient-identifier":
+				get("patient-identifier", "/Patient", "identifier=GEN-" + (1 + random.nextInt(patients)), userContext,
+				    recorder);
+				break;
+			case "lastn":
+				get("lastn", "/Observation/$lastn", "patient=" + pick(patientUuids, random) + "&max=3", userContext,
+				    recorder);
+				break;
+			case "paging":
+				String endpoint = "observation-search";
+				MockHttpServletResponse response = get(endpoint, "/Observation",
+				    "patient=" + pick(patientUuids, random) + "&_sort=-date&_count=" + PAGE_SIZE, userContext, recorder);
+				for (int page = 0; page < MAX_PAGES; page++) {
+					String nextQuery;
+					try {
+						String next = nextLink(response);
+						if (next == null) {
+							break;
+						}
+						
+						// only the query string of the next link is relevant, as the servlet is not at the linked address
+						nextQuery = new URL(next).getQuery();
+					}
+					catch (Exception e) {
+						// a page which cannot be read is an error of the request which returned it
+						recorder.recordError(endpoint);
+						break;
+					}
+					
+					endpoint = "getpages";
+					response = get(endpoint, "/", nextQuery, userContext, recorder);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown scenario " + scenario);
+		}
+	}
+	
+	/**
+	 * @return the response or null if the servlet threw an exception, which is recorded as an error
+	 */
+	private MockHttpServletResponse get(String endpoint, String path, String query, UserContext userContext,
+	        LatencyRecorder recorder) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setMethod("GET");
+		request.setRequestURI("/ms/" + SERVLET_NAME + path);
+		request.setQueryString(query);
+		request.setServletPath("/ms/");
+		request.addHeader("Accept", "application/fhir+json");
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		// each request gets its own session, as the web application's open-session-in-view filter would give it
+		Context.openSession();
+		Context.setUserContext(userContext);
+		long start = System.nanoTime();
+		try {
+			servlet.service(request, response);
+			recorder.record(endpoint, System.nanoTime() - start, response.getStatus() < 400);
+		}
+		catch (Exception e) {
+			// one failed request should not stop the client and lose everything it has recorded
+			recorder.record(endpoint, System.nanoTime() - start, false);
+			return null;
+		}
+		finally {
+			Context.closeSession();
+		}
+		
+		return response;
+	}
+	
+	private String nextLink(MockHttpServletResponse response) throws Exception {
+		if (response == null || response.getStatus() >= 400) {
+			return null;
+		}
+		
+		IParser parser = fhirContext.newJsonParser();
+		Bundle bundle = parser.parseResource(Bundle.class, response.getContentAsString());
+		Bundle.BundleLinkComponent next = bundle.getLink(Bundle.LINK_NEXT);
+		return next == null ? null : next.getUrl();
+	}
+	
+	private void writeResults(Map<String, LatencyRecorder.EndpointStatistics> statistics) throws Exception {
+		Map<String, Object> configuration = new LinkedHashMap<>();
+		configuration.put("patients", patients);
+		configuration.put("clients", clients);
+		configuration.put("warmupSeconds", warmupSeconds);
+		configuration.put("durationSeconds", durationSeconds);
+		configuration.put("mix", mix.getWeights());
+		
+		Map<String, Object> document = new LinkedHashMap<>();
+		document.put("timestamp", Instant.now().toString());
+		document.put("configuration", configuration);
+		document.put("endpoints", statistics);
+		
+		File directory = output.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalStateException("Could not create the directory " + directory);
+		}
+		
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output, document);
+		
+		System.out.println("Results written to " + output.getAbsolutePath());
+	}
+	
+	private void setupFhirServlet() throws Exception {
+		MockServletContext servletContext = new MockServletContext();
+		WebApplicationContext wac = new DelegatingWebApplicationContext(applicationContext, servletContext);
+		servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, wac);
+		ServletConfig servletConfig = new MockServletConfig(servletContext, SERVLET_NAME);
+		
+		fhirContext.registerCustomType(GroupMember.class);
+		servlet = new FhirRestServlet();
+		new FhirActivator().setApplicationContext(ctx);
+		servlet.setFhirContext(fhirContext);
+		servlet.init(servletConfig);
+	}
+	
+	private List<String> queryForStrings(String sql) {
+		return sessionFactory.getCurrentSession().doReturningWork(connection -> {
+			List<String> values = new ArrayList<>();
+			try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+				while (resultSet.next()) {
+					values.add(resultSet.getString(1));
+				}
+			}
+			return values;
+		});
+	}
+	
+	private static String pick(List<String> values, Random random) {
+		return values.get(random.nextInt(values.size()));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Records the latency of each request made by one load-test client, grouped by endpoint. Each
+ * client has its own recorder, so recording needs no synchronisation; the recorders are merged once
+ * the clients have finished.
+ */
+public class LatencyRecorder {
+	
+	private final Map<String, Samples> samplesByEndpoint = new TreeMap<>();
+	
+	public void record(String endpoint, long nanos, boolean succeeded) {
+		samplesByEndpoint.computeIfAbsent(endpoint, e -> new Samples()).add(nanos, succeeded);
+	}
+	
+	/**
+	 * Records an error found in the response to a request which has already been recorded, such as a
+	 * response which cannot be parsed, without counting the request again
+	 */
+	public void recordError(String endpoint) {
+		samplesByEndpoint.computeIfAbsent(endpoint, e -> new Samples()).errors++;
+	}
+	
+	public void merge(LatencyRecorder other) {
+		other.samplesByEndpoint.forEach(
+		    (endpoint, samples) -> samplesByEndpoint.computeIfAbsent(endpoint, e -> new Samples()).addAll(samples));
+	}
+	
+	/**
+	 * Summarises the recorded latencies
+	 *
+	 * @param seconds the length of the period in which the requests were recorded, used to calculate
+	 *            throughput
+	 * @return the statistics for each endpoint, ordered by name
+	 */
+	public Map<String, EndpointStatistics> summarize(double seconds) {
+		Map<String, EndpointStatistics> statistics = new TreeMap<>();
+		samplesByEndpoint.forEach((endpoint, samples) -> statistics.put(endpoint, samples.summarize(seconds)));
+		return statistics;
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	public static class EndpointStatistics {
+		
+		private final int requests;
+		
+		private final int errors;
+		
+		private final double requestsPerSecond;
+		
+		private final double p50Millis;
+		
+		private final double p95Millis;
+		
+		private final double p99Millis;
+		
+		private final double maxMillis;
+	}
+	
+	private static class Samples {
+		
+		private long[] nanos = new long[1024];
+		
+		private int size;
+		
+		private int errors;
+		
+		private void add(long value, boolean succeeded) {
+			if (size == nanos.length) {
+				nanos = Arrays.copyOf(nanos, size * 2);
+			}
+			
+			nanos[size++] = value;
+			if (!succeeded) {
+				errors++;
+			}
+		}
+		
+		private void addAll(Samples other) {
+			if (size + other.size > nanos.length) {
+				nanos = Arrays.copyOf(nanos, Math.max(size + other.size, size * 2));
+			}
+			
+			System.arraycopy(other.nanos, 0, nanos, size, other.size);
+			size += other.size;
+			errors += other.errors;
+		}
+		
+		private EndpointStatistics summarize(double seconds) {
+			long[] sorted = Arrays.copyOf(nanos, size);
+			Arrays.sort(sorted);
+			return new EndpointStatistics(size, errors, size / seconds, percentile(sorted, 50), percentile(sorted, 95),
+			        percentile(sorted, 99), size == 0 ? 0 : sorted[size - 1] / 1_000_000.0);
+		}
+		
+		/**
+		 * The nearest-rank percentile, in milliseconds
+		 */
+		private static double percentile(long[] sorted, int percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			
+			int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+			return sorted[Math.max(rank, 1) - 1] / 1_000_000.0;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A weighted mix of the scenarios a load test replays, parsed from a specification such as
+ * {@code task-poll=30,patient-identifier=30,lastn=20,paging=20}. Each scenario is picked with a
+ * probability proportional to its weight.
+ */
+public class TrafficMix {
+	
+	private final Map<String, Integer> weights;
+	
+	private final List<String> scenarios = new ArrayList<>();
+	
+	private final int[] cumulativeWeights;
+	
+	private TrafficMix(Map<String, Integer> weights) {
+		this.weights = Collections.unmodifiableMap(weights);
+		this.cumulativeWeights = new int[weights.size()];
+		
+		int total = 0;
+		for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+			total += weight.getValue();
+			cumulativeWeights[scenarios.size()] = total;
+			scenarios.add(weight.getKey());
+		}
+	}
+	
+	/**
+	 * Parses a mix specification
+	 *
+	 * @param specification comma-separated pairs of scenario name and weight
+	 * @param knownScenarios the scenarios that may appear in the mix
+	 * @return the parsed mix
+	 * @throws IllegalArgumentException if the specification is malformed or names an unknown scenario
+	 */
+	public static TrafficMix parse(String specification, Collection<String> knownScenarios) {
+		Map<String, Integer> weights = new LinkedHashMap<>();
+		for (String entry : specification.split(",")) {
+			String[] parts = entry.trim().split("=");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Expected scenario=weight but found '" + entry + "'");
+			}
+			
+			String scenario = parts[0].trim();
+			if (!knownScenarios.contains(scenario)) {
+				throw new IllegalArgumentException(
+				        "Unknown scenario '" + scenario + "'; the known scenarios are " + knownScenarios);
+			}
+			
+			int weight;
+			try {
+				weight = Integer.parseInt(parts[1].trim());
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid weight for scenario '" + scenario + "'", e);
+			}
+			
+			if (weight < 0) {
+				throw new IllegalArgumentException("Invalid weight for scenario '" + scenario + "'");
+			}
+			
+			if (weight > 0) {
+				weights.put(scenario, weight);
+			}
+		}
+		
+		if (weights.isEmpty()) {
+			throw new IllegalArgumentException("The traffic mix '" + specification + "' has no scenarios");
+		}
+		
+		return new TrafficMix(weights);
+	}
+	
+	public String next(Random random) {
+		int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (value < cumulativeWeights[i]) {
+				return scenarios.get(i);
+			}
+		}
+		
+		// unreachable, as the value is always below the last cumulative weight
+		throw new IllegalStateException();
+	}
+	
+	public Map<String, Integer> getWeights() {
+		return weights;
+	}
+}
@@ -18,12 +18,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.server.BasePagingProvider;
-import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
+import ca.uhn.fhir.rest.server.IPagingProvider;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.IServerAddressStrategy;
 import ca.uhn.fhir.rest.server.RestfulServer;
@@ -39,12 +40,17 @@ import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.fhir2.FhirActivator;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.FhirPagingStoreService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
 import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
 import org.openmrs.module.fhir2.web.authentication.RequireAuthenticationInterceptor;
+import org.openmrs.module.fhir2.web.util.DatabasePagingProvider;
 import org.openmrs.module.fhir2.web.util.DisableCacheInterceptor;
+import org.openmrs.module.fhir2.web.util.FhirPagingProvider;
 import org.openmrs.module.fhir2.web.util.NarrativeUtils;
+import org.openmrs.module.fhir2.web.util.SearchRequestInterceptor;
+import org.openmrs.module.fhir2.web.util.StreamingResponseInterceptor;
 import org.openmrs.module.fhir2.web.util.SummaryInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
@@ -69,10 +75,15 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	@Autowired
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Autowired
+	private FhirPagingStoreService pagingStoreService;
+	
 	@Autowired
 	@Qualifier("hapiLoggingInterceptor")
 	private LoggingInterceptor loggingInterceptor;
 	
+	private final StreamingResponseInterceptor streamingResponseInterceptor = new StreamingResponseInterceptor();
+	
 	private boolean started = false;
 	
 	@Autowired
@@ -84,11 +95,19 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 		@Override
 		public boolean supportsPropertyName(String propertyName) {
 			return FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE.equals(propertyName)
-			        || FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE.equals(propertyName);
+			        || FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE.equals(propertyName)
+			        || FhirConstants.OPENMRS_FHIR_PAGING_STORE_MAXIMUM_SIZE.equals(propertyName)
+			        || FhirConstants.OPENMRS_FHIR_PAGING_STORE_IDLE_TIMEOUT.equals(propertyName)
+			        || FhirConstants.OPENMRS_FHIR_STREAMING_RESPONSES.equals(propertyName);
 		}
 		
 		@Override
 		public void globalPropertyChanged(GlobalProperty newValue) {
+			if (FhirConstants.OPENMRS_FHIR_STREAMING_RESPONSES.equals(newValue.getProperty())) {
+				streamingResponseInterceptor.setEnabled(Boolean.parseBoolean(newValue.getPropertyValue()));
+				return;
+			}
+			
 			int value;
 			try {
 				value = Integer.parseInt(newValue.getPropertyValue());
@@ -105,6 +124,12 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 				case FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE:
 					((BasePagingProvider) getPagingProvider()).setMaximumPageSize(value);
 					break;
+				case FhirConstants.OPENMRS_FHIR_PAGING_STORE_MAXIMUM_SIZE:
+					((FhirPagingProvider) getPagingProvider()).setMaximumSize(megabytesToBytes(value));
+					break;
+				case FhirConstants.OPENMRS_FHIR_PAGING_STORE_IDLE_TIMEOUT:
+					((FhirPagingProvider) getPagingProvider()).setIdleTimeout(TimeUnit.MINUTES.toMillis(value));
+					break;
 			}
 		}
 		
@@ -117,6 +142,15 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 				case FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE:
 					((BasePagingProvider) getPagingProvider()).setMaximumPageSize(100);
 					break;
+				case FhirConstants.OPENMRS_FHIR_PAGING_STORE_MAXIMUM_SIZE:
+					((FhirPagingProvider) getPagingProvider()).setMaximumSize(FhirPagingProvider.DEFAULT_MAXIMUM_SIZE);
+					break;
+				case FhirConstants.OPENMRS_FHIR_PAGING_STORE_IDLE_TIMEOUT:
+					((FhirPagingProvider) getPagingProvider()).setIdleTimeout(FhirPagingProvider.DEFAULT_IDLE_TIMEOUT);
+					break;
+				case FhirConstants.OPENMRS_FHIR_STREAMING_RESPONSES:
+					streamingResponseInterceptor.setEnabled(false);
+					break;
 			}
 		}
 	};
@@ -141,13 +175,20 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 			administrationService.addGlobalPropertyListener(fhirRestServletListener);
 		}
 
-		setPagingProvider(createPagingProvider());
+		replacePagingProvider();
 		setDefaultResponseEncoding(EncodingEnum.JSON);
 
+		ConfigurableApplicationContext ctx = FhirActivator.getApplicationContext();
+		if (ctx != null) {
+			registerPlainProviders(ctx);
+		}
+
 		registerInterceptor(loggingInterceptor);
 		registerInterceptor(new RequireAuthenticationInterceptor());
 		registerInterceptor(new DisableCacheInterceptor());
 		registerInterceptor(new SummaryInterceptor());
+		registerInterceptor(new SearchRequestInterceptor());
+		registerStreamingResponseInterceptor();
 
 		String narrativesOverridePropertyFile = NarrativeUtils.getValidatedPropertiesFilePath(
 				globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_OVERRIDE_PROPERTY_FILE, (String) null));
@@ -209,12 +250,66 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 		int maximumPageSize = NumberUtils
 		        .toInt(globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE), 100);
 		
-		BasePagingProvider pagingProvider = new FifoMemoryPagingProvider(100);
+		long maximumSize = NumberUtils.toLong(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PAGING_STORE_MAXIMUM_SIZE), -1);
+		long idleTimeout = NumberUtils.toLong(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PAGING_STORE_IDLE_TIMEOUT), -1);
+		
+		maximumSize = maximumSize < 0 ? FhirPagingProvider.DEFAULT_MAXIMUM_SIZE : megabytesToBytes(maximumSize);
+		idleTimeout = idleTimeout < 0 ? FhirPagingProvider.DEFAULT_IDLE_TIMEOUT : TimeUnit.MINUTES.toMillis(idleTimeout);
+		
+		BasePagingProvider pagingProvider;
+		if (pagingStoreService != null && Boolean.parseBoolean(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_PAGING_SHARED_STORE, "false"))) {
+			pagingProvider = new DatabasePagingProvider(pagingStoreService, maximumSize, idleTimeout);
+		} else {
+			pagingProvider = new FhirPagingProvider(maximumSize, idleTimeout);
+		}
+		
 		pagingProvider.setDefaultPageSize(defaultPageSize);
 		pagingProvider.setMaximumPageSize(maximumPageSize);
 		return pagingProvider;
 	}
 	
+	private void registerPlainProviders(ConfigurableApplicationContext ctx) {
+		// operations which do not belong to a resource type, e.g. system-level operations, are provided by
+		// beans which are not resource providers
+		registerProviders(Arrays.stream(ctx.getBeanNamesForAnnotation(getResourceProviderAnnotation())).map(ctx::getBean)
+		        .filter(bean -> !(bean instanceof IResourceProvider)).collect(Collectors.toList()));
+	}
+	
+	private void registerStreamingResponseInterceptor() {
+		streamingResponseInterceptor.setEnabled(Boolean.parseBoolean(
+		    globalPropertyService.getGlobalProperty(FhirConstants.OPENMRS_FHIR_STREAMING_RESPONSES, "false")));
+		
+		// registered last, so that it writes the response after other interceptors have seen it
+		registerInterceptor(streamingResponseInterceptor);
+	}
+	
+	private void replacePagingProvider() {
+		IPagingProvider previousPagingProvider = getPagingProvider();
+		IPagingProvider pagingProvider = createPagingProvider();
+		setPagingProvider(pagingProvider);
+		
+		// the database paging provider stores each search once the request reading its page has completed
+		if (pagingProvider instanceof DatabasePagingProvider) {
+			registerInterceptor(pagingProvider);
+		}
+		
+		shutdownPagingProvider(previousPagingProvider);
+	}
+	
+	private void shutdownPagingProvider(IPagingProvider pagingProvider) {
+		if (pagingProvider instanceof DatabasePagingProvider) {
+			unregisterInterceptor(pagingProvider);
+			((DatabasePagingProvider) pagingProvider).shutdown();
+		}
+	}
+	
+	private static long megabytesToBytes(long megabytes) {
+		return megabytes * 1024 * 1024;
+	}
+	
 	protected void autoInject() {
 		final ConfigurableApplicationContext ctx = FhirActivator.getApplicationContext();
 		if (ctx != null) {
@@ -239,15 +334,19 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 				setResourceProviders(ctx.getBeansOfType(IResourceProvider.class).entrySet().stream()
 				        .filter(entry -> validBeanNames.contains(entry.getKey())).map(Map.Entry::getValue)
 				        .collect(Collectors.toList()));
+				registerPlainProviders(ctx);
 				
 				registerInterceptor(ctx.getBean("hapiLoggingInterceptor", LoggingInterceptor.class));
 				registerInterceptor(new RequireAuthenticationInterceptor());
 				registerInterceptor(new DisableCacheInterceptor());
 				registerInterceptor(new SummaryInterceptor());
+				registerInterceptor(new SearchRequestInterceptor());
 				setAdministrationService(ctx.getBean("adminService", AdministrationService.class));
 				setGlobalPropertyService(ctx.getBean(FhirGlobalPropertyService.class));
 				setServerAddressStrategy(ctx.getBean(IServerAddressStrategy.class));
-				setPagingProvider(createPagingProvider());
+				setPagingStoreService(ctx.getBean(FhirPagingStoreService.class));
+				replacePagingProvider();
+				registerStreamingResponseInterceptor();
 				
 				administrationService.addGlobalPropertyListener(fhirRestServletListener);
 			}
@@ -273,6 +372,8 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 			
 		}
 		
+		shutdownPagingProvider(getPagingProvider());
+		
 		super.destroy();
 	}
 }
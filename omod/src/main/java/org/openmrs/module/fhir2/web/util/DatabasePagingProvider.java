@@ -0,0 +1,141 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.FhirPagingStoreService;
+
+/**
+ * A {@link FhirPagingProvider} which also stores searches in the database, so that when several
+ * servers share a database, the pages of a search can be served by any of them. Searches are
+ * still kept in memory on the server that last used them. Each time a search is accessed, it is
+ * marked as used in the database; once the request has been served, the database copy is rewritten
+ * if reading the page changed the search, so that it records how far through the search earlier
+ * pages got. Searches that have not been accessed within the idle timeout are removed from the
+ * database in the background.
+ * <p/>
+ * This provider must also be registered as an interceptor with the server it serves.
+ */
+@Slf4j
+@Interceptor
+public class DatabasePagingProvider extends FhirPagingProvider {
+	
+	private static final long MAXIMUM_PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+	
+	private static final String SEARCH_ID_KEY = DatabasePagingProvider.class.getName() + ".searchId";
+	
+	private static final String SEARCH_KEY = DatabasePagingProvider.class.getName() + ".search";
+	
+	private final FhirPagingStoreService pagingStoreService;
+	
+	private final ScheduledExecutorService reaper;
+	
+	public DatabasePagingProvider(FhirPagingStoreService pagingStoreService, long maximumSize, long idleTimeout) {
+		super(maximumSize, idleTimeout);
+		this.pagingStoreService = pagingStoreService;
+		
+		reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "fhir2-paging-store-reaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		long purgeInterval = Math.max(Math.min(idleTimeout / 4, MAXIMUM_PURGE_INTERVAL), 1000);
+		reaper.scheduleWithFixedDelay(this::purgeExpiredSearches, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public String storeResultList(@Nullable RequestDetails theRequestDetails, IBundleProvider theList) {
+		String searchId = super.storeResultList(theRequestDetails, theList);
+		pagingStoreService.saveSearch(searchId, theList);
+		updateAfterRequest(theRequestDetails, searchId, theList);
+		return searchId;
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId) {
+		IBundleProvider bundleProvider = super.retrieveResultList(theRequestDetails, theSearchId);
+		
+		if (bundleProvider == null) {
+			Date accessedSince = new Date(System.currentTimeMillis() - getIdleTimeout());
+			bundleProvider = pagingStoreService.getSearch(theSearchId, accessedSince);
+			if (bundleProvider == null) {
+				return null;
+			}
+			
+			putResultList(theSearchId, bundleProvider);
+		}
+		
+		pagingStoreService.touchSearch(theSearchId);
+		updateAfterRequest(theRequestDetails, theSearchId, bundleProvider);
+		return bundleProvider;
+	}
+	
+	/**
+	 * Stores the progress made by reading the page of the search used by this request, if any
+	 */
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void updateSearchAfterRequest(RequestDetails requestDetails) {
+		String searchId = (String) requestDetails.getUserData().remove(SEARCH_ID_KEY);
+		IBundleProvider bundleProvider = (IBundleProvider) requestDetails.getUserData().remove(SEARCH_KEY);
+		if (searchId != null && bundleProvider != null) {
+			pagingStoreService.updateSearch(searchId, bundleProvider);
+		}
+	}
+	
+	/**
+	 * Stops removing expired searches from the database
+	 */
+	public void shutdown() {
+		reaper.shutdownNow();
+	}
+	
+	private void updateAfterRequest(@Nullable RequestDetails theRequestDetails, String searchId,
+	        IBundleProvider bundleProvider) {
+		if (theRequestDetails == null) {
+			// without a request, there is no telling when the page has been read
+			pagingStoreService.updateSearch(searchId, bundleProvider);
+			return;
+		}
+		
+		theRequestDetails.getUserData().put(SEARCH_ID_KEY, searchId);
+		theRequestDetails.getUserData().put(SEARCH_KEY, bundleProvider);
+	}
+	
+	protected void purgeExpiredSearches() {
+		try {
+			Context.openSession();
+			int purged = pagingStoreService.purgeSearches(new Date(System.currentTimeMillis() - getIdleTimeout()));
+			if (purged > 0) {
+				log.debug("Removed {} expired searches from the paging store", purged);
+			}
+		}
+		catch (Exception e) {
+			log.warn("Failed to remove expired searches from the paging store", e);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.BasePagingProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.fhir2.api.search.CursorBundleProvider;
+import org.openmrs.module.fhir2.api.search.WeightedBundleProvider;
+
+/**
+ * <p>
+ * An in-memory paging provider which holds searches until either they have not been accessed for
+ * an idle timeout or the store grows beyond a maximum size, measured in estimated bytes. When the
+ * store is too large, the searches which were least recently accessed are evicted first, so that
+ * searches which clients are still paging through are kept.
+ * </p>
+ * <p>
+ * Searches are held in a {@link ConcurrentHashMap}, so storing and retrieving searches does not
+ * require a global lock. The size of a search is taken from {@link WeightedBundleProvider} where
+ * available and re-evaluated every time the search is accessed, as most searches load their
+ * results lazily.
+ * </p>
+ * <p>
+ * This provider can also serve {@code _getpages} requests that identify the page with a page id
+ * rather than an offset, as issued by {@link CursorBundleProvider}s.
+ * </p>
+ */
+@Slf4j
+public class FhirPagingProvider extends BasePagingProvider {
+	
+	public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+	
+	public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+	
+	// assumed size of searches whose size cannot be estimated
+	static final long DEFAULT_WEIGHT = 16 * 1024;
+	
+	// assumed size of each resource held by a SimpleBundleProvider
+	static final long RESOURCE_WEIGHT = 2 * 1024;
+	
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	
+	private final AtomicLong totalWeight = new AtomicLong();
+	
+	private final AtomicLong nextExpiry = new AtomicLong();
+	
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder evictions = new LongAdder();
+	
+	private final LongAdder expirations = new LongAdder();
+	
+	private final LongSupplier clock;
+	
+	private volatile long maximumSize;
+	
+	private volatile long idleTimeout;
+	
+	public FhirPagingProvider() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_IDLE_TIMEOUT);
+	}
+	
+	/**
+	 * @param maximumSize the maximum estimated size of all stored searches in bytes
+	 * @param idleTimeout the time in milliseconds after which a search which has not been accessed is
+	 *            discarded
+	 */
+	public FhirPagingProvider(long maximumSize, long idleTimeout) {
+		this(maximumSize, idleTimeout, System::currentTimeMillis);
+	}
+	
+	FhirPagingProvider(long maximumSize, long idleTimeout, LongSupplier clock) {
+		this.maximumSize = maximumSize;
+		this.idleTimeout = idleTimeout;
+		this.clock = clock;
+	}
+	
+	@Override
+	public String storeResultList(@Nullable RequestDetails theRequestDetails, IBundleProvider theList) {
+		expireIdleEntries();
+		
+		String key = UUID.randomUUID().toString();
+		putResultList(key, theList);
+		return key;
+	}
+	
+	/**
+	 * Adds a search to the store under a known id, for example, one loaded from elsewhere
+	 *
+	 * @param theSearchId the id of the search
+	 * @param theList the search
+	 */
+	protected void putResultList(@Nonnull String theSearchId, IBundleProvider theList) {
+		Entry entry = new Entry(theList, clock.getAsLong());
+		Entry previous = entries.put(theSearchId, entry);
+		if (previous != null) {
+			previous.removed = true;
+			totalWeight.addAndGet(-previous.weight.getAndSet(0));
+		}
+		
+		updateWeight(entry);
+		evictIfNecessary(entry);
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId) {
+		expireIdleEntries();
+		
+		Entry entry = entries.get(theSearchId);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		
+		hits.increment();
+		entry.lastAccess = clock.getAsLong();
+		updateWeight(entry);
+		
+		evictIfNecessary(entry);
+		return entry.bundleProvider;
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId,
+	        String thePageId) {
+		IBundleProvider bundleProvider = retrieveResultList(theRequestDetails, theSearchId);
+		
+		if (bundleProvider instanceof CursorBundleProvider && thePageId != null) {
+			return ((CursorBundleProvider) bundleProvider).getPage(thePageId);
+		}
+		
+		return bundleProvider;
+	}
+	
+	public void setMaximumSize(long maximumSize) {
+		this.maximumSize = maximumSize;
+		evictIfNecessary(null);
+	}
+	
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+	
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		nextExpiry.set(0);
+	}
+	
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	/**
+	 * @return the number of searches currently stored
+	 */
+	public int getStoredSearchCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the estimated size in bytes of all searches currently stored
+	 */
+	public long getStoredSize() {
+		return totalWeight.get();
+	}
+	
+	/**
+	 * @return the number of requests for a search which was found in the store
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of requests for a search which was not found in the store
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the number of searches discarded because the store grew too large
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return the number of searches discarded because they were not accessed within the idle timeout
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+	
+	private void updateWeight(Entry entry) {
+		long weight = weigh(entry.bundleProvider);
+		totalWeight.addAndGet(weight - entry.weight.getAndSet(weight));
+		
+		// the entry may have been removed concurrently, in which case its weight must not be counted
+		if (entry.removed) {
+			totalWeight.addAndGet(-entry.weight.getAndSet(0));
+		}
+	}
+	
+	private void expireIdleEntries() {
+		long now = clock.getAsLong();
+		long scheduled = nextExpiry.get();
+		
+		// at most one thread sweeps the store, and only a few times per timeout period
+		if (now < scheduled || !nextExpiry.compareAndSet(scheduled, now + Math.max(idleTimeout / 4, 1))) {
+			return;
+		}
+		
+		long expiredBefore = now - idleTimeout;
+		for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			if (mapEntry.getValue().lastAccess < expiredBefore && remove(mapEntry.getKey(), mapEntry.getValue())) {
+				expirations.increment();
+			}
+		}
+	}
+	
+	private void evictIfNecessary(Entry current) {
+		if (totalWeight.get() <= maximumSize || !evicting.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+			candidates.sort(Comparator.comparingLong(mapEntry -> mapEntry.getValue().lastAccess));
+			
+			for (Map.Entry<String, Entry> candidate : candidates) {
+				if (totalWeight.get() <= maximumSize) {
+					break;
+				}
+				
+				// never evict the search being served
+				if (candidate.getValue() != current && remove(candidate.getKey(), candidate.getValue())) {
+					evictions.increment();
+				}
+			}
+			
+			if (totalWeight.get() > maximumSize) {
+				log.debug("Paging store holds {} bytes, which exceeds its maximum size of {} bytes", totalWeight.get(),
+				    maximumSize);
+			}
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+	
+	private boolean remove(String key, Entry entry) {
+		if (entries.remove(key, entry)) {
+			entry.removed = true;
+			totalWeight.addAndGet(-entry.weight.getAndSet(0));
+			return true;
+		}
+		
+		return false;
+	}
+	
+	private static long weigh(IBundleProvider bundleProvider) {
+		if (bundleProvider instanceof WeightedBundleProvider) {
+			long weight = ((WeightedBundleProvider) bundleProvider).getWeight();
+			if (weight >= 0) {
+				return Math.max(weight, 1);
+			}
+		}
+		
+		if (bundleProvider instanceof SimpleBundleProvider) {
+			Integer size = bundleProvider.size();
+			return Math.max(size == null ? DEFAULT_WEIGHT : size * RESOURCE_WEIGHT, 1);
+		}
+		
+		return DEFAULT_WEIGHT;
+	}
+	
+	private static class Entry {
+		
+		private final IBundleProvider bundleProvider;
+		
+		private final AtomicLong weight = new AtomicLong();
+		
+		private volatile long lastAccess;
+		
+		private volatile boolean removed;
+		
+		private Entry(IBundleProvider bundleProvider, long lastAccess) {
+			this.bundleProvider = bundleProvider;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
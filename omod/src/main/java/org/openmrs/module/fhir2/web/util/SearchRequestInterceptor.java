@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import org.openmrs.module.fhir2.api.search.SearchRequestContext;
+import org.openmrs.module.fhir2.api.translators.RequestedElements;
+
+/**
+ * Copies request options which are not search parameters, such as {@code _total},
+ * {@code _summary=count} and {@code _elements}, into the {@link SearchRequestContext} so that they
+ * are available to the search layer
+ */
+@Interceptor
+public class SearchRequestInterceptor {
+	
+	private static final String TOTAL_PARAMETER = "_total";
+	
+	private static final String SUMMARY_PARAMETER = "_summary";
+	
+	private static final String ELEMENTS_PARAMETER = "_elements";
+	
+	private static final String ELEMENTS_EXCLUDE_PARAMETER = "_elements:exclude";
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public void handleSearchOptions(RequestDetails requestDetails) {
+		SearchRequestContext.clear();
+		
+		// unlike _total, _summary is understood by HAPI, so it is left for HAPI to apply to the response
+		String[] summary = requestDetails.getParameters().get(SUMMARY_PARAMETER);
+		if (summary != null && summary.length > 0 && SummaryEnum.COUNT.getCode().equals(summary[0])) {
+			SearchRequestContext.setCountOnly(true);
+		}
+		
+		SearchRequestContext.setRequestedElements(getRequestedElements(requestDetails, summary));
+		
+		String[] total = requestDetails.getParameters().get(TOTAL_PARAMETER);
+		if (total == null || total.length == 0) {
+			return;
+		}
+		
+		SearchTotalModeEnum totalMode = SearchTotalModeEnum.fromCode(total[0]);
+		if (totalMode == null) {
+			throw new InvalidRequestException("Invalid value for " + TOTAL_PARAMETER + ": " + total[0]);
+		}
+		
+		SearchRequestContext.setTotalMode(totalMode);
+		
+		// _total is not a search parameter, so hide it from search method matching
+		Map<String, String[]> parameters = new HashMap<>(requestDetails.getParameters());
+		parameters.remove(TOTAL_PARAMETER);
+		requestDetails.setParameters(parameters);
+	}
+	
+	private RequestedElements getRequestedElements(RequestDetails requestDetails, String[] summary) {
+		String resourceName = requestDetails.getResourceName();
+		
+		String[] elements = requestDetails.getParameters().get(ELEMENTS_PARAMETER);
+		if (elements != null && elements.length > 0) {
+			return RequestedElements.of(resourceName, split(elements), false);
+		}
+		
+		String[] excludedElements = requestDetails.getParameters().get(ELEMENTS_EXCLUDE_PARAMETER);
+		if (excludedElements != null && excludedElements.length > 0) {
+			return RequestedElements.of(resourceName, split(excludedElements), true);
+		}
+		
+		FhirContext fhirContext = requestDetails.getFhirContext();
+		if (summary != null && summary.length > 0 && SummaryEnum.TRUE.getCode().equals(summary[0])
+		        && resourceName != null && fhirContext != null) {
+			// HAPI only returns the elements marked as part of the summary
+			return RequestedElements.of(resourceName, fhirContext.getResourceDefinition(resourceName).getChildren()
+			        .stream().filter(BaseRuntimeChildDefinition::isSummary).map(BaseRuntimeChildDefinition::getElementName)
+			        .collect(Collectors.toList()), false);
+		}
+		
+		return RequestedElements.all();
+	}
+	
+	private static List<String> split(String[] values) {
+		return Arrays.stream(values).flatMap(value -> Arrays.stream(value.split(","))).collect(Collectors.toList());
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void clearSearchOptions() {
+		SearchRequestContext.clear();
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.RestfulServerUtils.ResponseEncoding;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.openmrs.module.fhir2.api.search.SearchRequestContext;
+import org.openmrs.module.fhir2.api.search.StreamedPage;
+
+/**
+ * <p>
+ * Streams the entries of search result Bundles to the client as each resource is translated, so
+ * that the memory needed to serve a page does not grow with the page size.
+ * </p>
+ * <p>
+ * For requests which may return a page of search results, this marks the {@link SearchRequestContext}
+ * as streaming, which lets the search defer translating its page (see
+ * {@link SearchRequestContext#deferPage(StreamedPage)}). HAPI then builds the Bundle without any
+ * entries. When the response is written, the Bundle is encoded by HAPI and the deferred page is
+ * translated and encoded one entry at a time into the place where the entries belong. Requests
+ * which ask HAPI to filter the elements of each resource, e.g. using {@code _summary}, are not
+ * streamed.
+ * </p>
+ */
+@Slf4j
+@Interceptor
+public class StreamingResponseInterceptor {
+	
+	private static final Set<RestOperationTypeEnum> STREAMED_OPERATIONS = EnumSet.of(RestOperationTypeEnum.SEARCH_TYPE,
+	    RestOperationTypeEnum.SEARCH_SYSTEM, RestOperationTypeEnum.GET_PAGE,
+	    RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE, RestOperationTypeEnum.EXTENDED_OPERATION_TYPE);
+	
+	private static final List<String> UNSUPPORTED_PARAMETERS = Arrays.asList(Constants.PARAM_SUMMARY,
+	    Constants.PARAM_ELEMENTS);
+	
+	private static final String XML_BUNDLE_END = "</Bundle>";
+	
+	@Getter
+	@Setter
+	private volatile boolean enabled = false;
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void handleStreamingRequest(RequestDetails requestDetails, RestOperationTypeEnum operation) {
+		if (!enabled || !STREAMED_OPERATIONS.contains(operation)
+		        || requestDetails.getFhirContext().getVersion().getVersion() != FhirVersionEnum.R4
+		        || getEncoding(requestDetails) == null) {
+			return;
+		}
+		
+		for (String parameter : UNSUPPORTED_PARAMETERS) {
+			if (requestDetails.getParameters().containsKey(parameter)) {
+				return;
+			}
+		}
+		
+		SearchRequestContext.setStreaming(true);
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean handleOutgoingResponse(RequestDetails requestDetails, ResponseDetails responseDetails,
+	        HttpServletResponse servletResponse) throws IOException {
+		StreamedPage page = SearchRequestContext.getStreamedPage();
+		if (page == null || !(responseDetails.getResponseResource() instanceof Bundle)) {
+			return true;
+		}
+		
+		EncodingEnum encoding = getEncoding(requestDetails);
+		FhirContext fhirContext = requestDetails.getFhirContext();
+		IParser parser = encoding.newParser(fhirContext);
+		parser.setPrettyPrint(RestfulServerUtils.prettyPrintResponse(requestDetails.getServer(), requestDetails));
+		
+		// the Bundle is normally empty, but any entries it does have are written ahead of the page
+		Bundle bundle = (Bundle) responseDetails.getResponseResource();
+		List<Bundle.BundleEntryComponent> entries = new ArrayList<>(bundle.getEntry());
+		bundle.getEntry().clear();
+		
+		String envelope = parser.encodeResourceToString(bundle);
+		int entriesStart = encoding == EncodingEnum.JSON ? envelope.lastIndexOf('}') : envelope.lastIndexOf(XML_BUNDLE_END);
+		if (entriesStart < 0) {
+			// not expected, but if the entries cannot be placed, let HAPI write the Bundle as usual
+			bundle.getEntry().addAll(entries);
+			page.forEachResource(
+			    resource -> bundle.addEntry(toEntry(resource, requestDetails.getFhirServerBase(), fhirContext)));
+			return true;
+		}
+		
+		servletResponse.setStatus(responseDetails.getResponseCode());
+		for (Map.Entry<String, List<String>> header : requestDetails.getResponse().getHeaders().entrySet()) {
+			for (String value : header.getValue()) {
+				servletResponse.addHeader(header.getKey(), value);
+			}
+		}
+		servletResponse.setContentType(encoding.getResourceContentTypeNonLegacy());
+		servletResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		
+		Writer writer = servletResponse.getWriter();
+		EntryWriter entryWriter = new EntryWriter(writer, parser, encoding);
+		
+		try {
+			writer.write(envelope, 0, entriesStart);
+			
+			for (Bundle.BundleEntryComponent entry : entries) {
+				entryWriter.write(entry);
+			}
+			
+			page.forEachResource(
+			    resource -> entryWriter.write(toEntry(resource, requestDetails.getFhirServerBase(), fhirContext)));
+			entryWriter.finish();
+			
+			writer.write(envelope, entriesStart, envelope.length() - entriesStart);
+			writer.flush();
+		}
+		catch (RuntimeException e) {
+			// if nothing has reached the client yet, HAPI can still respond with an OperationOutcome
+			if (!servletResponse.isCommitted()) {
+				servletResponse.resetBuffer();
+				throw e;
+			}
+			
+			log.error("Error while streaming search results, the response has been truncated", e);
+			writer.flush();
+		}
+		
+		return false;
+	}
+	
+	private static EncodingEnum getEncoding(RequestDetails requestDetails) {
+		EncodingEnum defaultEncoding = requestDetails.getServer().getDefaultResponseEncoding();
+		ResponseEncoding responseEncoding = RestfulServerUtils.determineResponseEncodingNoDefault(requestDetails,
+		    defaultEncoding);
+		
+		EncodingEnum encoding = responseEncoding == null ? defaultEncoding : responseEncoding.getEncoding();
+		if (encoding == EncodingEnum.JSON || encoding == EncodingEnum.XML) {
+			return encoding;
+		}
+		
+		return null;
+	}
+	
+	private static Bundle.BundleEntryComponent toEntry(IBaseResource resource, String serverBase,
+	        FhirContext fhirContext) {
+		Bundle.BundleEntryComponent entry = new Bundle.BundleEntryComponent().setResource((Resource) resource);
+		
+		// as populated by HAPI's R4BundleFactory
+		IIdType id = resource.getIdElement();
+		if (id.hasBaseUrl()) {
+			entry.setFullUrl(id.toVersionless().getValue());
+		} else if (isNotBlank(serverBase) && id.hasIdPart()) {
+			entry.setFullUrl(
+			    id.withServerBase(serverBase, fhirContext.getResourceType(resource)).toVersionless().getValue());
+		}
+		
+		BundleEntrySearchModeEnum searchMode = ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(entry.getResource());
+		if (searchMode != null) {
+			entry.getSearch().getModeElement().setValueAsString(searchMode.getCode());
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Writes Bundle entries one at a time. Each entry is encoded as part of a single-entry Bundle by
+	 * the HAPI parser, so that it is encoded exactly as HAPI would have, and then cut out of it.
+	 */
+	private static class EntryWriter {
+		
+		private final Writer writer;
+		
+		private final IParser parser;
+		
+		private final boolean json;
+		
+		private int entryCount = 0;
+		
+		private EntryWriter(Writer writer, IParser parser, EncodingEnum encoding) {
+			this.writer = writer;
+			this.parser = parser;
+			this.json = encoding == EncodingEnum.JSON;
+		}
+		
+		private void write(Bundle.BundleEntryComponent entry) {
+			Bundle singleEntryBundle = new Bundle();
+			singleEntryBundle.addEntry(entry);
+			String encoded = parser.encodeResourceToString(singleEntryBundle);
+			
+			int start;
+			int end;
+			if (json) {
+				// {"resourceType":"Bundle","entry":[ ... ]}
+				start = encoded.indexOf('[') + 1;
+				end = encoded.lastIndexOf(']');
+			} else {
+				// <Bundle xmlns="http://hl7.org/fhir"> ... </Bundle>
+				start = encoded.indexOf('>') + 1;
+				end = encoded.lastIndexOf(XML_BUNDLE_END);
+			}
+			
+			try {
+				if (json) {
+					writer.write(entryCount == 0 ? ",\"entry\":[" : ",");
+				}
+				
+				writer.write(encoded, start, end - start);
+			}
+			catch (IOException e) {
+				throw new StreamingException(e);
+			}
+			
+			entryCount++;
+		}
+		
+		private void finish() throws IOException {
+			if (json && entryCount > 0) {
+				writer.write(']');
+			}
+		}
+	}
+	
+	private static class StreamingException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private StreamingException(IOException cause) {
+			super(cause);
+		}
+	}
+}
@@ -120,13 +120,7 @@ public abstract class BaseFhirResourceProviderWebTest<T extends IResourceProvide
 			@Override
 			@Transactional(readOnly = true)
 			public String getGlobalProperty(String property) throws APIException {
-				switch (property) {
-					case FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE:
-						return "10";
-					case FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE:
-						return "100";
-				}
-				return null;
+				return BaseFhirResourceProviderWebTest.this.getGlobalProperty(property);
 			}
 		});
 		
@@ -137,6 +131,17 @@ public abstract class BaseFhirResourceProviderWebTest<T extends IResourceProvide
 		servlet.init(servletConfig);
 	}
 	
+	// the global properties seen by the servlet; subclasses may override this to configure it
+	public String getGlobalProperty(String property) {
+		switch (property) {
+			case FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE:
+				return "10";
+			case FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE:
+				return "100";
+		}
+		return null;
+	}
+	
 	public Matcher<MockHttpServletResponse> isOk() {
 		return new IsOkMatcher();
 	}
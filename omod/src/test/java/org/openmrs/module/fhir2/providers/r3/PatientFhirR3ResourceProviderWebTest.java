@@ -22,6 +22,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -694,7 +695,7 @@ public class PatientFhirR3ResourceProviderWebTest extends BaseFhirR3ResourceProv
 	public void getPatientEverything_shouldHandlePatientId() throws Exception {
 		verifyEverythingOperation("/Patient/" + PATIENT_UUID + "/$everything?");
 		
-		verify(patientService).getPatientEverything(tokenCaptor.capture());
+		verify(patientService).getPatientEverything(tokenCaptor.capture(), isNull(), isNull(), isNull());
 		
 		assertThat(tokenCaptor.getValue(), notNullValue());
 		assertThat(tokenCaptor.getValue().getValue(), equalTo(PATIENT_UUID));
@@ -704,14 +705,14 @@ public class PatientFhirR3ResourceProviderWebTest extends BaseFhirR3ResourceProv
 	public void getPatientEverything_shouldHandleNoPatientId() throws Exception {
 		verifyEverythingTypeOperation("/Patient/$everything?");
 		
-		verify(patientService).getPatientEverything();
+		verify(patientService).getPatientEverything(isNull(), isNull(), isNull());
 	}
 	
 	private void verifyEverythingOperation(String uri) throws Exception {
 		Patient patient = new Patient();
 		patient.setId(PATIENT_UUID);
 		
-		when(patientService.getPatientEverything(any()))
+		when(patientService.getPatientEverything(any(), any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
 		MockHttpServletResponse response = get(uri).accept(FhirMediaTypes.JSON).go();
@@ -730,7 +731,7 @@ public class PatientFhirR3ResourceProviderWebTest extends BaseFhirR3ResourceProv
 		Patient patient = new Patient();
 		patient.setId(PATIENT_UUID);
 		
-		when(patientService.getPatientEverything())
+		when(patientService.getPatientEverything(any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
 		MockHttpServletResponse response = get(uri).accept(FhirMediaTypes.JSON).go();
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.providers.r4;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsStringIgnoringCase;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
@@ -23,6 +24,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,10 +37,14 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
@@ -46,6 +52,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.InstantType;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.Before;
 import org.junit.Test;
@@ -88,6 +95,15 @@ public class PatientFhirResourceProviderWebTest extends BaseFhirR4ResourceProvid
 	@Captor
 	private ArgumentCaptor<PatientSearchParams> patientSearchParamsCaptor;
 	
+	@Captor
+	private ArgumentCaptor<DateParam> dateCaptor;
+	
+	@Captor
+	private ArgumentCaptor<StringAndListParam> typesCaptor;
+	
+	@Captor
+	private ArgumentCaptor<NumberParam> countCaptor;
+	
 	@Before
 	public void setup() throws ServletException {
 		resourceProvider = new PatientFhirResourceProvider();
@@ -712,7 +728,7 @@ public class PatientFhirResourceProviderWebTest extends BaseFhirR4ResourceProvid
 	public void getPatientEverything_shouldHandlePatientId() throws Exception {
 		verifyEverythingOperation("/Patient/" + PATIENT_UUID + "/$everything?");
 		
-		verify(patientService).getPatientEverything(tokenCaptor.capture());
+		verify(patientService).getPatientEverything(tokenCaptor.capture(), isNull(), isNull(), isNull());
 		
 		assertThat(tokenCaptor.getValue(), notNullValue());
 		assertThat(tokenCaptor.getValue().getValue(), equalTo(PATIENT_UUID));
@@ -722,14 +738,42 @@ public class PatientFhirResourceProviderWebTest extends BaseFhirR4ResourceProvid
 	public void getPatientEverything_shouldHandleNoPatientId() throws Exception {
 		verifyEverythingTypeOperation("/Patient/$everything?");
 		
-		verify(patientService).getPatientEverything();
+		verify(patientService).getPatientEverything(isNull(), isNull(), isNull());
+	}
+	
+	@Test
+	public void getPatientEverything_shouldHandleSinceTypeAndCount() throws Exception {
+		verifyEverythingOperation(
+		    "/Patient/" + PATIENT_UUID + "/$everything?_since=2020-01-01T00:00:00Z&_type=Observation,Encounter&_count=20");
+		
+		verify(patientService).getPatientEverything(tokenCaptor.capture(), dateCaptor.capture(), typesCaptor.capture(),
+		    countCaptor.capture());
+		
+		assertThat(tokenCaptor.getValue().getValue(), equalTo(PATIENT_UUID));
+		assertThat(dateCaptor.getValue().getValue(), equalTo(new InstantType("2020-01-01T00:00:00Z").getValue()));
+		assertThat(typesCaptor.getValue().getValuesAsQueryTokens().get(0).getValuesAsQueryTokens().stream()
+		        .map(StringParam::getValue).collect(Collectors.toList()),
+		    contains(FhirConstants.OBSERVATION, FhirConstants.ENCOUNTER));
+		assertThat(countCaptor.getValue().getValue().intValue(), equalTo(20));
+	}
+	
+	@Test
+	public void getPatientEverything_shouldHandleSinceTypeAndCountWithNoPatientId() throws Exception {
+		verifyEverythingTypeOperation("/Patient/$everything?_since=2020-01-01T00:00:00Z&_type=Patient&_count=5");
+		
+		verify(patientService).getPatientEverything(dateCaptor.capture(), typesCaptor.capture(), countCaptor.capture());
+		
+		assertThat(dateCaptor.getValue(), notNullValue());
+		assertThat(typesCaptor.getValue().getValuesAsQueryTokens().get(0).getValuesAsQueryTokens().get(0).getValue(),
+		    equalTo(FhirConstants.PATIENT));
+		assertThat(countCaptor.getValue().getValue().intValue(), equalTo(5));
 	}
 	
 	private void verifyEverythingOperation(String uri) throws Exception {
 		Patient patient = new Patient();
 		patient.setId(PATIENT_UUID);
 		
-		when(patientService.getPatientEverything(any()))
+		when(patientService.getPatientEverything(any(), any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
 		MockHttpServletResponse response = get(uri).accept(FhirMediaTypes.JSON).go();
@@ -748,7 +792,7 @@ public class PatientFhirResourceProviderWebTest extends BaseFhirR4ResourceProvid
 		Patient patient = new Patient();
 		patient.setId(PATIENT_UUID);
 		
-		when(patientService.getPatientEverything())
+		when(patientService.getPatientEverything(any(), any(), any()))
 		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(patient), 10, 1));
 		
 		MockHttpServletResponse response = get(uri).accept(FhirMediaTypes.JSON).go();
@@ -0,0 +1,95 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.FhirPagingStoreService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DatabasePagingProviderTest {
+	
+	private static final String SEARCH_ID = "d3b07384-d9a0-4c9b-8f3e-1c2b3a4d5e6f";
+	
+	@Mock
+	private FhirPagingStoreService pagingStoreService;
+	
+	@Mock
+	private IBundleProvider search;
+	
+	@Mock
+	private RequestDetails requestDetails;
+	
+	private final Map<Object, Object> userData = new HashMap<>();
+	
+	private DatabasePagingProvider pagingProvider;
+	
+	@Before
+	public void setup() {
+		pagingProvider = new DatabasePagingProvider(pagingStoreService, 1024 * 1024,
+		        FhirPagingProvider.DEFAULT_IDLE_TIMEOUT);
+		when(requestDetails.getUserData()).thenReturn(userData);
+	}
+	
+	@After
+	public void tearDown() {
+		pagingProvider.shutdown();
+	}
+	
+	@Test
+	public void shouldOnlyTouchSearchUntilTheRequestHasCompleted() {
+		when(pagingStoreService.getSearch(any(), any())).thenReturn(search);
+		
+		assertThat(pagingProvider.retrieveResultList(requestDetails, SEARCH_ID), sameInstance(search));
+		
+		verify(pagingStoreService).touchSearch(SEARCH_ID);
+		verify(pagingStoreService, never()).saveSearch(any(), any());
+		verify(pagingStoreService, never()).updateSearch(any(), any());
+		
+		pagingProvider.updateSearchAfterRequest(requestDetails);
+		
+		verify(pagingStoreService).updateSearch(SEARCH_ID, search);
+	}
+	
+	@Test
+	public void shouldUpdateNewSearchOnceTheRequestHasCompleted() {
+		String searchId = pagingProvider.storeResultList(requestDetails, search);
+		
+		verify(pagingStoreService).saveSearch(searchId, search);
+		verify(pagingStoreService, never()).updateSearch(any(), any());
+		
+		pagingProvider.updateSearchAfterRequest(requestDetails);
+		
+		verify(pagingStoreService).updateSearch(searchId, search);
+	}
+	
+	@Test
+	public void shouldNotUpdateSearchesForRequestsWhichDidNotUseOne() {
+		pagingProvider.updateSearchAfterRequest(requestDetails);
+		
+		verify(pagingStoreService, never()).updateSearch(any(), any());
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.search.WeightedBundleProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirPagingProviderTest {
+	
+	private static final long IDLE_TIMEOUT = 1000;
+	
+	@Mock
+	private WeightedBundleProvider firstSearch;
+	
+	@Mock
+	private WeightedBundleProvider secondSearch;
+	
+	@Mock
+	private WeightedBundleProvider thirdSearch;
+	
+	private final AtomicLong now = new AtomicLong(1);
+	
+	private FhirPagingProvider pagingProvider;
+	
+	@Before
+	public void setup() {
+		pagingProvider = new FhirPagingProvider(100, IDLE_TIMEOUT, now::get);
+	}
+	
+	@Test
+	public void shouldRetrieveStoredSearch() {
+		when(firstSearch.getWeight()).thenReturn(10L);
+		
+		String searchId = pagingProvider.storeResultList(null, firstSearch);
+		
+		assertThat(pagingProvider.retrieveResultList(null, searchId), sameInstance(firstSearch));
+		assertThat(pagingProvider.getHitCount(), equalTo(1L));
+		assertThat(pagingProvider.getMissCount(), equalTo(0L));
+		assertThat(pagingProvider.getStoredSize(), equalTo(10L));
+	}
+	
+	@Test
+	public void shouldCountMisses() {
+		assertThat(pagingProvider.retrieveResultList(null, "unknown"), nullValue());
+		assertThat(pagingProvider.getMissCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void shouldEvictLeastRecentlyUsedSearchWhenOverMaximumSize() {
+		when(firstSearch.getWeight()).thenReturn(40L);
+		when(secondSearch.getWeight()).thenReturn(40L);
+		when(thirdSearch.getWeight()).thenReturn(40L);
+		
+		String firstId = pagingProvider.storeResultList(null, firstSearch);
+		now.incrementAndGet();
+		String secondId = pagingProvider.storeResultList(null, secondSearch);
+		now.incrementAndGet();
+		// the first search is still being paged through, so the second becomes the oldest
+		pagingProvider.retrieveResultList(null, firstId);
+		now.incrementAndGet();
+		String thirdId = pagingProvider.storeResultList(null, thirdSearch);
+		
+		assertThat(pagingProvider.retrieveResultList(null, secondId), nullValue());
+		assertThat(pagingProvider.retrieveResultList(null, firstId), sameInstance(firstSearch));
+		assertThat(pagingProvider.retrieveResultList(null, thirdId), sameInstance(thirdSearch));
+		assertThat(pagingProvider.getEvictionCount(), equalTo(1L));
+		assertThat(pagingProvider.getStoredSize(), equalTo(80L));
+	}
+	
+	@Test
+	public void shouldTrackChangesInWeight() {
+		when(firstSearch.getWeight()).thenReturn(10L, 60L);
+		
+		String searchId = pagingProvider.storeResultList(null, firstSearch);
+		pagingProvider.retrieveResultList(null, searchId);
+		
+		assertThat(pagingProvider.getStoredSize(), equalTo(60L));
+	}
+	
+	@Test
+	public void shouldExpireIdleSearches() {
+		when(firstSearch.getWeight()).thenReturn(10L);
+		when(secondSearch.getWeight()).thenReturn(10L);
+		
+		String firstId = pagingProvider.storeResultList(null, firstSearch);
+		now.addAndGet(IDLE_TIMEOUT / 2);
+		String secondId = pagingProvider.storeResultList(null, secondSearch);
+		now.addAndGet(IDLE_TIMEOUT / 2 + 1);
+		
+		assertThat(pagingProvider.retrieveResultList(null, firstId), nullValue());
+		assertThat(pagingProvider.retrieveResultList(null, secondId), sameInstance(secondSearch));
+		assertThat(pagingProvider.getExpirationCount(), equalTo(1L));
+		assertThat(pagingProvider.getStoredSearchCount(), equalTo(1));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.ServletException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.search.SearchRequestContext;
+import org.openmrs.module.fhir2.providers.r4.BaseFhirR4ResourceProviderWebTest;
+import org.openmrs.module.fhir2.providers.r4.MockIBundleProvider;
+import org.openmrs.module.fhir2.providers.r4.PatientFhirResourceProvider;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamingResponseInterceptorWebTest extends BaseFhirR4ResourceProviderWebTest<PatientFhirResourceProvider, Patient> {
+	
+	private static final List<String> PATIENT_UUIDS = Arrays.asList("0b42f99b-776e-4388-8f6f-84357ae2a8fb",
+	    "5946f880-b197-400b-9caa-a3c661d23041", "8d703ff2-c3e2-4070-9737-73e713d5a50d");
+	
+	@Getter(AccessLevel.PUBLIC)
+	private PatientFhirResourceProvider resourceProvider;
+	
+	@Mock
+	private FhirPatientService patientService;
+	
+	@Before
+	public void setup() throws ServletException {
+		resourceProvider = new PatientFhirResourceProvider();
+		resourceProvider.setPatientService(patientService);
+		super.setup();
+	}
+	
+	@Override
+	public String getGlobalProperty(String property) {
+		if (FhirConstants.OPENMRS_FHIR_STREAMING_RESPONSES.equals(property)) {
+			return "true";
+		}
+		
+		return super.getGlobalProperty(property);
+	}
+	
+	@Test
+	public void shouldStreamSearchResultsAsJson() throws Exception {
+		when(patientService.searchForPatients(any())).thenReturn(new StreamingBundleProvider(patients()));
+		
+		MockHttpServletResponse response = get("/Patient?name=John").accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isOk());
+		
+		Bundle results = readBundleResponse(response);
+		assertThat(results.getTotal(), equalTo(3));
+		assertThat(entryIds(results), contains(PATIENT_UUIDS.toArray()));
+		assertThat(results.getEntryFirstRep().getFullUrl(), endsWith("/Patient/" + PATIENT_UUIDS.get(0)));
+	}
+	
+	@Test
+	public void shouldStreamSearchResultsAsXml() throws Exception {
+		when(patientService.searchForPatients(any())).thenReturn(new StreamingBundleProvider(patients()));
+		
+		MockHttpServletResponse response = get("/Patient?name=John").accept(FhirMediaTypes.XML).go();
+		
+		assertThat(response, isOk());
+		
+		Bundle results = getFhirContext().newXmlParser().parseResource(Bundle.class, response.getContentAsString());
+		assertThat(results.getTotal(), equalTo(3));
+		assertThat(entryIds(results), contains(PATIENT_UUIDS.toArray()));
+	}
+	
+	@Test
+	public void shouldNotStreamSearchResultsWhenElementsAreFiltered() throws Exception {
+		when(patientService.searchForPatients(any())).thenReturn(new StreamingBundleProvider(patients()));
+		
+		MockHttpServletResponse response = get("/Patient?name=John&_summary=true").accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isOk());
+		assertThat(entryIds(readBundleResponse(response)), contains(PATIENT_UUIDS.toArray()));
+	}
+	
+	@Test
+	public void shouldStreamEmptySearchResults() throws Exception {
+		when(patientService.searchForPatients(any()))
+		        .thenReturn(new StreamingBundleProvider(Collections.emptyList()));
+		
+		MockHttpServletResponse response = get("/Patient?name=John").accept(FhirMediaTypes.JSON).go();
+		
+		assertThat(response, isOk());
+		assertThat(readBundleResponse(response).getTotal(), equalTo(0));
+	}
+	
+	private static List<Patient> patients() {
+		return PATIENT_UUIDS.stream().map(uuid -> {
+			Patient patient = new Patient();
+			patient.setId(uuid);
+			return patient;
+		}).collect(Collectors.toList());
+	}
+	
+	private static List<String> entryIds(Bundle bundle) {
+		return bundle.getEntry().stream().map(entry -> entry.getResource().getIdElement().getIdPart())
+		        .collect(Collectors.toList());
+	}
+	
+	/**
+	 * Defers its page for streaming in the same way as
+	 * {@link org.openmrs.module.fhir2.api.search.SearchQueryBundleProvider}
+	 */
+	private static class StreamingBundleProvider extends MockIBundleProvider<Patient> {
+		
+		private final List<Patient> patients;
+		
+		private StreamingBundleProvider(List<Patient> patients) {
+			super(patients, 10, patients.size());
+			this.patients = patients;
+		}
+		
+		@Override
+		public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+			if (SearchRequestContext.deferPage(consumer -> patients.forEach(consumer))) {
+				return Collections.emptyList();
+			}
+			
+			return super.getResources(fromIndex, toIndex);
+		}
+	}
+}
@@ -0,0 +1,549 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.testdata;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates OpenMRS-shaped clinical data at a configurable scale and writes it straight into the
+ * database through batched JDBC statements, bypassing the OpenMRS services and Hibernate. This is
+ * intended for performance tests and benchmarks which need datasets far larger than the
+ * hand-written fixtures in this module.
+ * <p/>
+ * Each generated patient has a name and an identifier, a number of visits each with a number of
+ * encounters, and each encounter has both plain numeric obs and obs groups with numeric members.
+ * Each patient also has drug orders and test orders, and every test order has a FHIR Task based on
+ * it, as the lab integrations create. Finally, the generator creates cohorts from a sample of the
+ * generated patients.
+ * <p/>
+ * The output is fully determined by the seed and the settings: running the same generator against
+ * an empty database twice produces identical rows, uuids included. Generated rows are numbered from
+ * {@link #firstId(int)} so that they do not collide with existing data. The rows refer to a user,
+ * location, identifier type, visit type, encounter type, order types, care setting and provider
+ * with the id 1 (or 2 for the test order type), as well as to the configured concepts and drug; all
+ * of these must already exist. The defaults match the core standard test dataset.
+ * <p/>
+ * The generator neither opens nor closes a transaction. Unless {@link #commitInterval(int)} is set,
+ * committing is left to the caller, so that in-memory test databases can roll the data back. When
+ * loading a MySQL database, add {@code rewriteBatchedStatements=true} to the connection URL so that
+ * the driver sends each batch as a single statement; without it, loading ten million rows takes
+ * hours rather than minutes.
+ *
+ * <pre>
+ * Map&lt;String, Long&gt; rows = new ClinicalDataGenerator(42).patients(100_000).generate(connection);
+ * </pre>
+ */
+public class ClinicalDataGenerator {
+	
+	private static final int USER_ID = 1;
+	
+	private static final int LOCATION_ID = 1;
+	
+	private static final int IDENTIFIER_TYPE_ID = 1;
+	
+	private static final int VISIT_TYPE_ID = 1;
+	
+	private static final int ENCOUNTER_TYPE_ID = 1;
+	
+	private static final int DRUG_ORDER_TYPE_ID = 1;
+	
+	private static final int TEST_ORDER_TYPE_ID = 2;
+	
+	private static final int CARE_SETTING_ID = 1;
+	
+	private static final int PROVIDER_ID = 1;
+	
+	private static final LocalDateTime START = LocalDateTime.of(2015, 1, 1, 8, 0);
+	
+	private static final Timestamp DATE_CREATED = Timestamp.valueOf(LocalDateTime.of(2021, 1, 1, 0, 0));
+	
+	private static final String[] GIVEN_NAMES = { "Alice", "Amina", "Ana", "Bruno", "Chen", "David", "Esther", "Fatima",
+	        "Grace", "Hassan", "Irene", "James", "John", "Joseph", "Lucy", "Maria", "Mary", "Moses", "Peter", "Sarah" };
+	
+	private static final String[] FAMILY_NAMES = { "Achieng", "Banda", "Chege", "Doe", "Garcia", "Hakizimana", "Kamau",
+	        "Mensah", "Moyo", "Mutua", "Nakato", "Ngugi", "Okello", "Otieno", "Phiri", "Silva", "Smith", "Tembo", "Wanjiru",
+	        "Zulu" };
+	
+	private static final String[] TASK_STATUSES = { "REQUESTED", "ACCEPTED", "COMPLETED", "REJECTED" };
+	
+	private final long seed;
+	
+	private int patients = 1_000;
+	
+	private int visitsPerPatient = 2;
+	
+	private int encountersPerVisit = 2;
+	
+	private int obsPerEncounter = 6;
+	
+	private int obsGroupsPerEncounter = 1;
+	
+	private int membersPerObsGroup = 3;
+	
+	private int drugOrdersPerPatient = 2;
+	
+	private int testOrdersPerPatient = 2;
+	
+	private int cohorts = 10;
+	
+	private int membersPerCohort = 100;
+	
+	private boolean cohortMemberHistory = false;
+	
+	private int[] numericConceptIds = { 5089, 5497 };
+	
+	private int obsGroupConceptId = 23;
+	
+	private int drugId = 2;
+	
+	private int drugConceptId = 792;
+	
+	private int testConceptId = 5497;
+	
+	private int firstId = 1_000_000;
+	
+	private int batchSize = 1_000;
+	
+	private int commitInterval = 0;
+	
+	private Random random;
+	
+	private Connection connection;
+	
+	private List<TableWriter> writers;
+	
+	private long rowsSinceCommit;
+	
+	private int nextPersonId;
+	
+	private int nextVisitId;
+	
+	private int nextEncounterId;
+	
+	private int nextObsId;
+	
+	private int nextOrderId;
+	
+	private int nextReferenceId;
+	
+	private int nextTaskId;
+	
+	private int nextCohortId;
+	
+	private int nextCohortMemberId;
+	
+	public ClinicalDataGenerator(long seed) {
+		this.seed = seed;
+	}
+	
+	public ClinicalDataGenerator patients(int patients) {
+		this.patients = patients;
+		return this;
+	}
+	
+	public ClinicalDataGenerator visitsPerPatient(int visitsPerPatient) {
+		this.visitsPerPatient = visitsPerPatient;
+		return this;
+	}
+	
+	public ClinicalDataGenerator encountersPerVisit(int encountersPerVisit) {
+		this.encountersPerVisit = encountersPerVisit;
+		return this;
+	}
+	
+	public ClinicalDataGenerator obsPerEncounter(int obsPerEncounter) {
+		this.obsPerEncounter = obsPerEncounter;
+		return this;
+	}
+	
+	public ClinicalDataGenerator obsGroupsPerEncounter(int obsGroupsPerEncounter, int membersPerObsGroup) {
+		this.obsGroupsPerEncounter = obsGroupsPerEncounter;
+		this.membersPerObsGroup = membersPerObsGroup;
+		return this;
+	}
+	
+	public ClinicalDataGenerator drugOrdersPerPatient(int drugOrdersPerPatient) {
+		this.drugOrdersPerPatient = drugOrdersPerPatient;
+		return this;
+	}
+	
+	public ClinicalDataGenerator testOrdersPerPatient(int testOrdersPerPatient) {
+		this.testOrdersPerPatient = testOrdersPerPatient;
+		return this;
+	}
+	
+	public ClinicalDataGenerator cohorts(int cohorts, int membersPerCohort) {
+		this.cohorts = cohorts;
+		this.membersPerCohort = membersPerCohort;
+		return this;
+	}
+	
+	/**
+	 * Cohort members have their own id, uuid and start date from OpenMRS 2.1 onwards; before that, they
+	 * are just pairs of cohort and patient ids. Defaults to false, matching the OpenMRS version this
+	 * module is built against.
+	 */
+	public ClinicalDataGenerator cohortMemberHistory(boolean cohortMemberHistory) {
+		this.cohortMemberHistory = cohortMemberHistory;
+		return this;
+	}
+	
+	/**
+	 * The concepts used for the numeric obs and obs group members, which must have a numeric datatype
+	 */
+	public ClinicalDataGenerator numericConceptIds(int... numericConceptIds) {
+		this.numericConceptIds = numericConceptIds;
+		return this;
+	}
+	
+	public ClinicalDataGenerator obsGroupConceptId(int obsGroupConceptId) {
+		this.obsGroupConceptId = obsGroupConceptId;
+		return this;
+	}
+	
+	public ClinicalDataGenerator drug(int drugId, int drugConceptId) {
+		this.drugId = drugId;
+		this.drugConceptId = drugConceptId;
+		return this;
+	}
+	
+	public ClinicalDataGenerator testConceptId(int testConceptId) {
+		this.testConceptId = testConceptId;
+		return this;
+	}
+	
+	/**
+	 * The id of every generated row is greater than this. Defaults to 1,000,000.
+	 */
+	public ClinicalDataGenerator firstId(int firstId) {
+		this.firstId = firstId;
+		return this;
+	}
+	
+	/**
+	 * The number of rows each statement accumulates before the batch is sent. Defaults to 1,000.
+	 */
+	public ClinicalDataGenerator batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+	
+	/**
+	 * Commits the connection after approximately this many rows. Defaults to 0, which leaves committing
+	 * to the caller.
+	 */
+	public ClinicalDataGenerator commitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+		return this;
+	}
+	
+	/**
+	 * Writes the data through the given connection
+	 *
+	 * @param connection the connection to write to
+	 * @return the number of rows written to each table, in the order the tables were written
+	 * @throws SQLException if any of the inserts fails
+	 */
+	public Map<String, Long> generate(Connection connection) throws SQLException {
+		this.connection = connection;
+		random = new Random(seed);
+		writers = new ArrayList<>();
+		rowsSinceCommit = 0;
+		nextPersonId = nextVisitId = nextEncounterId = nextObsId = nextOrderId = firstId;
+		nextReferenceId = nextTaskId = nextCohortId = nextCohortMemberId = firstId;
+		
+		try {
+			TableWriter person = writer("person", "person_id", "gender", "birthdate", "dead", "creator", "date_created",
+			    "voided", "uuid");
+			TableWriter personName = writer("person_name", "person_name_id", "preferred", "person_id", "given_name",
+			    "family_name", "creator", "date_created", "voided", "uuid");
+			TableWriter patient = writer("patient", "patient_id", "creator", "date_created", "voided");
+			TableWriter patientIdentifier = writer("patient_identifier", "patient_identifier_id", "patient_id",
+			    "identifier", "identifier_type", "preferred", "location_id", "creator", "date_created", "voided", "uuid");
+			TableWriter visit = writer("visit", "visit_id", "patient_id", "visit_type_id", "date_started", "date_stopped",
+			    "location_id", "creator", "date_created", "voided", "uuid");
+			TableWriter encounter = writer("encounter", "encounter_id", "encounter_type", "patient_id", "location_id",
+			    "visit_id", "encounter_datetime", "creator", "date_created", "voided", "uuid");
+			TableWriter obs = writer("obs", "obs_id", "person_id", "concept_id", "encounter_id", "obs_datetime",
+			    "location_id", "obs_group_id", "value_numeric", "creator", "date_created", "voided", "uuid");
+			TableWriter orders = writer("orders", "order_id", "order_type_id", "order_number", "urgency", "order_action",
+			    "concept_id", "orderer", "date_activated", "patient_id", "care_setting", "encounter_id", "creator",
+			    "date_created", "voided", "uuid");
+			TableWriter drugOrder = writer("drug_order", "order_id", "drug_inventory_id", "dosing_type",
+			    "dosing_instructions", "as_needed", "dispense_as_written");
+			TableWriter testOrder = writer("test_order", "order_id");
+			TableWriter reference = writer("fhir_reference", "reference_id", "name", "target_type", "reference",
+			    "creator", "date_created", "retired", "uuid");
+			TableWriter task = writer("fhir_task", "task_id", "name", "status", "intent", "creator", "date_created",
+			    "date_changed", "retired", "uuid");
+			TableWriter taskBasedOn = writer("fhir_task_based_on_reference", "task_id", "reference_id");
+			
+			for (int i = 0; i < patients; i++) {
+				int patientId = ++nextPersonId;
+				boolean female = random.nextBoolean();
+				LocalDate birthdate = START.toLocalDate().minusDays(random.nextInt(80 * 365));
+				
+				person.add(patientId, female ? "F" : "M", java.sql.Date.valueOf(birthdate), false, USER_ID, DATE_CREATED,
+				    false, uuid());
+				personName.add(patientId, true, patientId, pick(GIVEN_NAMES), pick(FAMILY_NAMES), USER_ID, DATE_CREATED,
+				    false, uuid());
+				patient.add(patientId, USER_ID, DATE_CREATED, false);
+				patientIdentifier.add(patientId, patientId, "GEN-" + (patientId - firstId), IDENTIFIER_TYPE_ID, true,
+				    LOCATION_ID, USER_ID, DATE_CREATED, false, uuid());
+				
+				List<Integer> encounterIds = new ArrayList<>();
+				List<LocalDateTime> encounterDates = new ArrayList<>();
+				LocalDateTime visitStart = START.plusDays(random.nextInt(90));
+				for (int v = 0; v < visitsPerPatient; v++) {
+					int visitId = ++nextVisitId;
+					visit.add(visitId, patientId, VISIT_TYPE_ID, timestamp(visitStart), timestamp(visitStart.plusHours(8)),
+					    LOCATION_ID, USER_ID, DATE_CREATED, false, uuid());
+					
+					for (int e = 0; e < encountersPerVisit; e++) {
+						int encounterId = ++nextEncounterId;
+						LocalDateTime encounterDate = visitStart.plusMinutes(e * 60L + random.nextInt(60));
+						encounter.add(encounterId, ENCOUNTER_TYPE_ID, patientId, LOCATION_ID, visitId,
+						    timestamp(encounterDate), USER_ID, DATE_CREATED, false, uuid());
+						encounterIds.add(encounterId);
+						encounterDates.add(encounterDate);
+						
+						for (int o = 0; o < obsPerEncounter; o++) {
+							obs.add(++nextObsId, patientId, pick(numericConceptIds), encounterId, timestamp(encounterDate),
+							    LOCATION_ID, null, numericValue(), USER_ID, DATE_CREATED, false, uuid());
+						}
+						
+						for (int g = 0; g < obsGroupsPerEncounter; g++) {
+							int groupId = ++nextObsId;
+							obs.add(groupId, patientId, obsGroupConceptId, encounterId, timestamp(encounterDate),
+							    LOCATION_ID, null, null, USER_ID, DATE_CREATED, false, uuid());
+							for (int m = 0; m < membersPerObsGroup; m++) {
+								obs.add(++nextObsId, patientId, numericConceptIds[m % numericConceptIds.length],
+								    encounterId, timestamp(encounterDate), LOCATION_ID, groupId, numericValue(), USER_ID,
+								    DATE_CREATED, false, uuid());
+							}
+						}
+					}
+					
+					visitStart = visitStart.plusDays(30 + random.nextInt(150));
+				}
+				
+				for (int d = 0; d < drugOrdersPerPatient && !encounterIds.isEmpty(); d++) {
+					int e = random.nextInt(encounterIds.size());
+					int orderId = order(orders, DRUG_ORDER_TYPE_ID, drugConceptId, patientId, encounterIds.get(e),
+					    encounterDates.get(e));
+					drugOrder.add(orderId, drugId, "org.openmrs.FreeTextDosingInstructions", "1 tablet daily", false,
+					    false);
+				}
+				
+				for (int t = 0; t < testOrdersPerPatient && !encounterIds.isEmpty(); t++) {
+					int e = random.nextInt(encounterIds.size());
+					String orderUuid = uuid();
+					int orderId = order(orders, TEST_ORDER_TYPE_ID, testConceptId, patientId, encounterIds.get(e),
+					    encounterDates.get(e), orderUuid);
+					testOrder.add(orderId);
+					
+					int referenceId = ++nextReferenceId;
+					reference.add(referenceId, "basedOn reference", "ServiceRequest", orderUuid, USER_ID, DATE_CREATED,
+					    false, uuid());
+					
+					int taskId = ++nextTaskId;
+					LocalDateTime taskCreated = encounterDates.get(e);
+					task.add(taskId, "Lab Order Task", pick(TASK_STATUSES), "ORDER", USER_ID, timestamp(taskCreated),
+					    timestamp(taskCreated.plusMinutes(random.nextInt(7 * 24 * 60))), false, uuid());
+					taskBasedOn.add(taskId, referenceId);
+				}
+				
+				flushIfFull();
+			}
+			
+			generateCohorts();
+			flush();
+			
+			Map<String, Long> rows = new LinkedHashMap<>();
+			for (TableWriter writer : writers) {
+				rows.put(writer.table, writer.rows);
+			}
+			return rows;
+		}
+		finally {
+			for (TableWriter writer : writers) {
+				writer.close();
+			}
+			this.connection = null;
+			writers = null;
+		}
+	}
+	
+	private void generateCohorts() throws SQLException {
+		TableWriter cohort = writer("cohort", "cohort_id", "name", "description", "creator", "date_created", "voided",
+		    "uuid");
+		TableWriter cohortMember = cohortMemberHistory
+		        ? writer("cohort_member", "cohort_member_id", "cohort_id", "patient_id", "start_date", "creator",
+		            "date_created", "voided", "uuid")
+		        : writer("cohort_member", "cohort_id", "patient_id");
+		
+		for (int c = 0; c < cohorts; c++) {
+			int cohortId = ++nextCohortId;
+			cohort.add(cohortId, "Generated cohort " + (c + 1), "Patients sampled by the data generator", USER_ID,
+			    DATE_CREATED, false, uuid());
+			
+			for (int patientId : samplePatients(Math.min(membersPerCohort, patients))) {
+				if (cohortMemberHistory) {
+					cohortMember.add(++nextCohortMemberId, cohortId, patientId, DATE_CREATED, USER_ID, DATE_CREATED, false,
+					    uuid());
+				} else {
+					cohortMember.add(cohortId, patientId);
+				}
+			}
+			
+			flushIfFull();
+		}
+	}
+	
+	/**
+	 * Selects {@code count} distinct generated patients, in ascending order of id, using Knuth's
+	 * selection sampling
+	 */
+	private List<Integer> samplePatients(int count) {
+		List<Integer> sample = new ArrayList<>(count);
+		for (int i = 0; i < patients && sample.size() < count; i++) {
+			if (random.nextInt(patients - i) < count - sample.size()) {
+				sample.add(firstId + 1 + i);
+			}
+		}
+		return sample;
+	}
+	
+	private int order(TableWriter orders, int orderTypeId, int conceptId, int patientId, int encounterId,
+	        LocalDateTime dateActivated) throws SQLException {
+		return order(orders, orderTypeId, conceptId, patientId, encounterId, dateActivated, uuid());
+	}
+	
+	private int order(TableWriter orders, int orderTypeId, int conceptId, int patientId, int encounterId,
+	        LocalDateTime dateActivated, String uuid) throws SQLException {
+		int orderId = ++nextOrderId;
+		orders.add(orderId, orderTypeId, "GEN-ORD-" + (orderId - firstId), "ROUTINE", "NEW", conceptId, PROVIDER_ID,
+		    timestamp(dateActivated), patientId, CARE_SETTING_ID, encounterId, USER_ID, DATE_CREATED, false, uuid);
+		return orderId;
+	}
+	
+	private TableWriter writer(String table, String... columns) throws SQLException {
+		TableWriter writer = new TableWriter(table, connection.prepareStatement("INSERT INTO " + table + " ("
+		        + String.join(", ", columns) + ") VALUES (" + String.join(", ", Collections.nCopies(columns.length, "?"))
+		        + ")"));
+		writers.add(writer);
+		return writer;
+	}
+	
+	private void flushIfFull() throws SQLException {
+		for (TableWriter writer : writers) {
+			if (writer.pending >= batchSize) {
+				flush();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Sends the pending rows of every table in the order the tables were created, so that rows are
+	 * always inserted after the rows they refer to
+	 */
+	private void flush() throws SQLException {
+		for (TableWriter writer : writers) {
+			rowsSinceCommit += writer.flush();
+		}
+		
+		if (commitInterval > 0 && rowsSinceCommit >= commitInterval) {
+			connection.commit();
+			rowsSinceCommit = 0;
+		}
+	}
+	
+	private String uuid() {
+		// a version 4 uuid, but drawn from the seeded generator so that it is reproducible
+		long mostSignificantBits = random.nextLong() & 0xFFFFFFFFFFFF0FFFL | 0x0000000000004000L;
+		long leastSignificantBits = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+		return new UUID(mostSignificantBits, leastSignificantBits).toString();
+	}
+	
+	private double numericValue() {
+		return Math.round(random.nextDouble() * 2000.0) / 10.0;
+	}
+	
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private int pick(int[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	private static Timestamp timestamp(LocalDateTime dateTime) {
+		return Timestamp.valueOf(dateTime);
+	}
+	
+	private static class TableWriter {
+		
+		private final String table;
+		
+		private final PreparedStatement statement;
+		
+		private int pending;
+		
+		private long rows;
+		
+		private TableWriter(String table, PreparedStatement statement) {
+			this.table = table;
+			this.statement = statement;
+		}
+		
+		private void add(Object... values) throws SQLException {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					statement.setNull(i + 1, Types.NULL);
+				} else {
+					statement.setObject(i + 1, values[i]);
+				}
+			}
+			statement.addBatch();
+			pending++;
+			rows++;
+		}
+		
+		private int flush() throws SQLException {
+			int flushed = pending;
+			if (pending > 0) {
+				statement.executeBatch();
+				pending = 0;
+			}
+			return flushed;
+		}
+		
+		private void close() {
+			try {
+				statement.close();
+			}
+			catch (SQLException ignored) {}
+		}
+	}
+}